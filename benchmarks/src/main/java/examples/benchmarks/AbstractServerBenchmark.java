@@ -0,0 +1,92 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base class for benchmarks that start one of the example servers in-process,
+ * on an ephemeral port, and drive it with a Jetty {@link HttpClient}.
+ * <p>
+ * Both the throughput and the sampled latency of the requests are measured.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public abstract class AbstractServerBenchmark
+{
+    protected Server server;
+    protected HttpClient client;
+    protected URI serverURI;
+
+    /**
+     * @return a new, not yet started, server listening on an ephemeral port
+     * @throws Exception if unable to create the server
+     */
+    protected abstract Server newServer() throws Exception;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        server = newServer();
+        server.start();
+        serverURI = server.getURI();
+
+        client = new HttpClient();
+        client.setMaxConnectionsPerDestination(64);
+        client.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception
+    {
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    protected Request newRequest(String path)
+    {
+        return client.newRequest(serverURI.resolve(path))
+            .timeout(5, TimeUnit.SECONDS);
+    }
+
+    protected ContentResponse GET(String path) throws Exception
+    {
+        return newRequest(path).send();
+    }
+}
@@ -0,0 +1,310 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import examples.EarlyHintsFilter;
+import examples.LinkHints;
+import examples.SlowImageServlet;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.eclipse.jetty.ee10.servlet.DefaultServlet;
+import org.eclipse.jetty.ee10.servlet.FilterHolder;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to load a page like the one of the HTTP/2 demo webapp, with its style sheet
+ * and 20 images served by {@link SlowImageServlet}, over one HTTP/2 connection of an {@link HTTP2Client},
+ * with and without the {@code 103 Early Hints} of the {@link EarlyHintsFilter}.
+ * <p>
+ * The page takes {@link #PAGE_TIME_MS} to be generated, and each sub-resource {@link #RESOURCE_TIME_MS},
+ * as if they were produced by remote services.
+ * Without hints, the client requests the sub-resources after it has received and parsed the page.
+ * With hints, the client requests the hinted sub-resources as soon as it receives the {@code 103},
+ * while the page is being generated, as a browser would; the hints are learned during the warmup.
+ * The per page statistics of the hints are printed at the end of each trial.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class EarlyHintsBenchmark
+{
+    private static final long PAGE_TIME_MS = 20;
+    private static final long RESOURCE_TIME_MS = 10;
+    private static final Pattern SUB_RESOURCE = Pattern.compile("(?:src|href)=\"/?([^\"]+)\"");
+
+    @Param({"false", "true"})
+    boolean hints;
+
+    private Path webapp;
+    private Server server;
+    private ServletContextHandler context;
+    private HTTP2Client http2Client;
+    private Session session;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception
+    {
+        webapp = newWebApp();
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server, new HTTP2CServerConnectionFactory(new HttpConfiguration()));
+        server.addConnector(connector);
+        context = new ServletContextHandler("/");
+        context.setBaseResourceAsPath(webapp);
+        if (hints)
+            context.addFilter(new FilterHolder(EarlyHintsFilter.class), "/*", null);
+        context.addFilter(new FilterHolder(new ServiceTimeFilter()), "/*", null);
+        context.addServlet(SlowImageServlet.class, "/images/*").setAsyncSupported(true);
+        context.addServlet(DefaultServlet.class, "/");
+        server.setHandler(context);
+        server.start();
+
+        http2Client = new HTTP2Client();
+        http2Client.start();
+        session = http2Client.connect(new InetSocketAddress("localhost", connector.getLocalPort()), new Session.Listener() {})
+            .get(5, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException
+    {
+        LinkHints linkHints = (LinkHints)context.getServletContext().getAttribute(LinkHints.class.getName());
+        if (linkHints != null)
+            linkHints.getPageStats().forEach((page, stats) -> System.out.printf("%n%s %s hitRate=%.2f coverage=%.2f%n", page, stats, stats.hitRate(), stats.coverage()));
+        LifeCycle.stop(http2Client);
+        LifeCycle.stop(server);
+        IO.delete(webapp.toFile());
+    }
+
+    /**
+     * @return a webapp with a page, its style sheet and 20 images of a few KiB each
+     */
+    private static Path newWebApp() throws IOException
+    {
+        Path webapp = Files.createTempDirectory("early-hints");
+        Path images = Files.createDirectories(webapp.resolve("images"));
+        Random random = new Random(103);
+        StringBuilder page = new StringBuilder("<!DOCTYPE html>\n<html>\n<head>\n<link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\">\n</head>\n<body>\n");
+        for (int i = 0; i < 20; i++)
+        {
+            String image = "images/%02d.png".formatted(i);
+            byte[] bytes = new byte[1024 + random.nextInt(8 * 1024)];
+            random.nextBytes(bytes);
+            Files.write(webapp.resolve(image), bytes);
+            page.append("<img src=\"").append(image).append("\" />\n");
+        }
+        page.append("</body>\n</html>\n");
+        Files.writeString(webapp.resolve("http2.html"), page);
+        Files.writeString(webapp.resolve("style.css"), "img { width: 100px; height: 100px; }\n".repeat(100));
+        return webapp;
+    }
+
+    @Benchmark
+    public void testPageLoad() throws Exception
+    {
+        new PageLoad("/http2.html").load().get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Loads a page and its sub-resources, each one once, as a browser would.
+     */
+    private class PageLoad
+    {
+        private final Map<String, CompletableFuture<String>> subResources = new ConcurrentHashMap<>();
+        private final String page;
+
+        private PageLoad(String page)
+        {
+            this.page = page;
+        }
+
+        private CompletableFuture<Void> load()
+        {
+            return GET(page, "text/html", null, links -> links.forEach(this::fetch))
+                .thenCompose(content ->
+                {
+                    Matcher matcher = SUB_RESOURCE.matcher(content);
+                    while (matcher.find())
+                    {
+                        fetch("/" + matcher.group(1));
+                    }
+                    return CompletableFuture.allOf(subResources.values().toArray(CompletableFuture[]::new));
+                });
+        }
+
+        private void fetch(String path)
+        {
+            subResources.computeIfAbsent(path, p -> GET(p, "*/*", "http://localhost" + page, null));
+        }
+    }
+
+    private CompletableFuture<String> GET(String path, String accept, String referer, Consumer<List<String>> onEarlyHints)
+    {
+        HttpFields.Mutable headers = HttpFields.build().put(HttpHeader.ACCEPT, accept);
+        if (referer != null)
+            headers.put(HttpHeader.REFERER, referer);
+        HttpURI uri = HttpURI.from(URI.create("http://localhost").resolve(path));
+        MetaData.Request request = new MetaData.Request("GET", uri, HttpVersion.HTTP_2, headers);
+        Exchange exchange = new Exchange(onEarlyHints);
+        session.newStream(new HeadersFrame(request, null, true), exchange);
+        return exchange.complete;
+    }
+
+    /**
+     * Collects the content of a response, and notifies the paths of its early hints.
+     */
+    private static class Exchange implements Stream.Listener
+    {
+        private static final Pattern LINK = Pattern.compile("<([^>]+)>");
+
+        private final CompletableFuture<String> complete = new CompletableFuture<>();
+        private final StringBuilder content = new StringBuilder();
+        private final Consumer<List<String>> onEarlyHints;
+
+        private Exchange(Consumer<List<String>> onEarlyHints)
+        {
+            this.onEarlyHints = onEarlyHints;
+        }
+
+        @Override
+        public void onHeaders(Stream stream, HeadersFrame frame)
+        {
+            MetaData.Response response = (MetaData.Response)frame.getMetaData();
+            if (response.getStatus() == HttpStatus.EARLY_HINTS_103)
+            {
+                if (onEarlyHints != null)
+                {
+                    List<String> paths = new ArrayList<>();
+                    Matcher matcher = LINK.matcher(response.getHttpFields().get(HttpHeader.LINK));
+                    while (matcher.find())
+                    {
+                        paths.add(matcher.group(1));
+                    }
+                    onEarlyHints.accept(paths);
+                }
+                return;
+            }
+            if (response.getStatus() != HttpStatus.OK_200)
+                complete.completeExceptionally(new IllegalStateException("Status " + response.getStatus()));
+            else if (frame.isEndStream())
+                complete.complete("");
+            else
+                stream.demand();
+        }
+
+        @Override
+        public void onDataAvailable(Stream stream)
+        {
+            Stream.Data data = stream.readData();
+            if (data == null)
+            {
+                stream.demand();
+                return;
+            }
+            content.append(BufferUtil.toString(data.frame().getByteBuffer(), StandardCharsets.ISO_8859_1));
+            data.release();
+            if (data.frame().isEndStream())
+                complete.complete(content.toString());
+            else
+                stream.demand();
+        }
+
+        @Override
+        public void onFailure(Stream stream, int error, String reason, Throwable failure, Callback callback)
+        {
+            complete.completeExceptionally(failure);
+            callback.succeeded();
+        }
+    }
+
+    /**
+     * Delays the responses, after the early hints, as if they were produced by remote services.
+     */
+    private static class ServiceTimeFilter implements Filter
+    {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+        {
+            String path = ((HttpServletRequest)request).getServletPath();
+            try
+            {
+                Thread.sleep(path.endsWith(".html") ? PAGE_TIME_MS : RESOURCE_TIME_MS);
+            }
+            catch (InterruptedException x)
+            {
+                throw new ServletException(x);
+            }
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import examples.FormEndpoints;
+import org.eclipse.jetty.client.BytesRequestContent;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.StringRequestContent;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures the three ways {@link FormEndpoints} receives the same form:
+ * as a query, as {@code application/x-www-form-urlencoded} and as {@code multipart/form-data}.
+ */
+public class FormEndpointsBenchmark extends AbstractServerBenchmark
+{
+    private static final String MEMBER = "Álvar Núñez Cabeza de Vaca";
+    private static final String URL_ENCODED = "Member=" + URLEncoder.encode(MEMBER, StandardCharsets.UTF_8);
+    private static final String BOUNDARY = "JettyBenchmarkBoundary";
+    private static final byte[] MULTIPART = ("""
+        --%s\r
+        Content-Disposition: form-data; name="Member"\r
+        Content-Type: text/plain; charset=UTF-8\r
+        \r
+        %s\r
+        --%s--\r
+        """.formatted(BOUNDARY, MEMBER, BOUNDARY)).getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    protected Server newServer() throws Exception
+    {
+        return FormEndpoints.newServer(0);
+    }
+
+    @Benchmark
+    public ContentResponse testQuery() throws Exception
+    {
+        return GET("/form/query?" + URL_ENCODED);
+    }
+
+    @Benchmark
+    public ContentResponse testUrlEncoded() throws Exception
+    {
+        return newRequest("/form/urlencoded")
+            .method(HttpMethod.POST)
+            .body(new StringRequestContent("application/x-www-form-urlencoded", URL_ENCODED, StandardCharsets.UTF_8))
+            .send();
+    }
+
+    @Benchmark
+    public ContentResponse testMultipart() throws Exception
+    {
+        return newRequest("/form/multipart")
+            .method(HttpMethod.POST)
+            .body(new BytesRequestContent("multipart/form-data; boundary=" + BOUNDARY, MULTIPART))
+            .send();
+    }
+}
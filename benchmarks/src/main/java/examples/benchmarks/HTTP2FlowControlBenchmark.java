@@ -0,0 +1,324 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import examples.PooledHttpClient;
+import examples.http2.HTTP2Tuner;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the time to download a page of many small resources over a single clear-text HTTP/2
+ * connection, through a local proxy that delays and paces the bytes like a long and narrow network path.
+ * <p>
+ * The receive windows of the client are either:
+ * </p>
+ * <ul>
+ * <li>{@code rfc}: the 64 KiB default windows of RFC 9113, that limit the throughput to a window per round trip</li>
+ * <li>{@code jetty}: the large default windows of {@link HTTP2Client}, that let the server fill the proxy
+ * with up to 16 MiB, buffered on the path</li>
+ * <li>{@code tuned}: the windows of a {@link HTTP2Tuner}, a few times the bandwidth-delay product of the path</li>
+ * </ul>
+ * <p>
+ * The windows of the connection are printed at the end of each trial, with the maximum number of bytes
+ * buffered by the proxy.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class HTTP2FlowControlBenchmark
+{
+    private static final int RESOURCES = 32;
+    private static final int RESOURCE_SIZE = 64 * 1024;
+    private static final long ONE_WAY_DELAY_MS = 5;
+    // 200 Mbit/s, so that the bandwidth-delay product is about 250 KB.
+    private static final long BYTES_PER_SECOND = 25_000_000;
+
+    @Param({"rfc", "jetty", "tuned"})
+    String windows;
+
+    private Server server;
+    private DelayingProxy proxy;
+    private HTTP2Tuner tuner;
+    private PooledHttpClient client;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server, new HTTP2CServerConnectionFactory(new HttpConfiguration()));
+        server.addConnector(connector);
+        server.setHandler(new ResourceHandler());
+        server.start();
+        proxy = new DelayingProxy(connector.getLocalPort(), ONE_WAY_DELAY_MS, BYTES_PER_SECOND);
+        uri = "http://localhost:" + proxy.getPort() + "/";
+
+        ClientConnector clientConnector = new ClientConnector();
+        HTTP2Client http2Client = new HTTP2Client(clientConnector);
+        switch (windows)
+        {
+            case "rfc" ->
+            {
+                http2Client.setInitialSessionRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+                http2Client.setInitialStreamRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+            }
+            case "tuned" ->
+            {
+                // The default windows of the tuner, 1 MiB per session and 256 KiB per stream.
+                tuner = new HTTP2Tuner();
+                tuner.configure(http2Client);
+            }
+            case "jetty" ->
+            {
+            }
+            default -> throw new IllegalArgumentException(windows);
+        }
+        client = new PooledHttpClient(clientConnector, new ClientConnectionFactoryOverHTTP2.HTTP2(http2Client));
+        client.setMaxConnectionsPerDestination(1);
+        if (tuner != null)
+            client.getHttpClient().addBean(tuner);
+        client.start();
+        client.prewarm(uri, 1).get(5, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer()
+    {
+        if (tuner != null)
+            tuner.getConnectionWindows().forEach(window -> System.out.printf("%n%s%n", window));
+        System.out.printf("%nproxy maxQueued=%d bytes%n", proxy.getMaxQueued());
+        LifeCycle.stop(client);
+        IO.close(proxy);
+        LifeCycle.stop(server);
+    }
+
+    @Benchmark
+    public void testPage() throws Exception
+    {
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>(RESOURCES);
+        for (int i = 0; i < RESOURCES; i++)
+        {
+            responses.add(client.send(client.newRequest(uri + i)));
+        }
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            if (response.get(10, TimeUnit.SECONDS).getContent().length != RESOURCE_SIZE)
+                throw new IllegalStateException();
+        }
+    }
+
+    private static class ResourceHandler extends Handler.Abstract
+    {
+        private final ByteBuffer _resource = ByteBuffer.allocateDirect(RESOURCE_SIZE);
+
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            response.write(true, _resource.slice(), callback);
+            return true;
+        }
+    }
+
+    /**
+     * A TCP proxy that forwards the bytes in each direction at a fixed rate and after a fixed delay,
+     * with two threads per direction, so that the flow control of the proxied connections sees the
+     * round trip time and the bandwidth of a real network path.
+     */
+    private static class DelayingProxy implements Closeable
+    {
+        private static final Chunk EOF = new Chunk(new byte[0], 0);
+
+        private final ServerSocket _serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final List<Socket> _sockets = new CopyOnWriteArrayList<>();
+        private final int _targetPort;
+        private final long _delay;
+        private final long _bytesPerSecond;
+        private final AtomicLong _maxQueued = new AtomicLong();
+
+        private DelayingProxy(int targetPort, long delayMs, long bytesPerSecond) throws IOException
+        {
+            _targetPort = targetPort;
+            _delay = TimeUnit.MILLISECONDS.toNanos(delayMs);
+            _bytesPerSecond = bytesPerSecond;
+            start("proxy-acceptor", this::accept);
+        }
+
+        private int getPort()
+        {
+            return _serverSocket.getLocalPort();
+        }
+
+        /**
+         * @return the maximum number of bytes that have been waiting in one direction of a connection
+         */
+        private long getMaxQueued()
+        {
+            return _maxQueued.get();
+        }
+
+        private static void start(String name, Runnable task)
+        {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void accept()
+        {
+            try
+            {
+                while (true)
+                {
+                    Socket client = _serverSocket.accept();
+                    Socket server = new Socket(InetAddress.getLoopbackAddress(), _targetPort);
+                    client.setTcpNoDelay(true);
+                    server.setTcpNoDelay(true);
+                    _sockets.add(client);
+                    _sockets.add(server);
+                    forward(client, server);
+                    forward(server, client);
+                }
+            }
+            catch (IOException x)
+            {
+                // The proxy is closed.
+            }
+        }
+
+        private void forward(Socket from, Socket to)
+        {
+            BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+            AtomicLong queued = new AtomicLong();
+            start("proxy-reader", () -> read(from, queue, queued));
+            start("proxy-writer", () -> write(queue, queued, to));
+        }
+
+        private void read(Socket from, BlockingQueue<Chunk> queue, AtomicLong queued)
+        {
+            byte[] buffer = new byte[64 * 1024];
+            long linkFree = NanoTime.now();
+            try (InputStream input = from.getInputStream())
+            {
+                while (true)
+                {
+                    int read = input.read(buffer);
+                    if (read < 0)
+                        break;
+                    // The bytes leave the link after the previous ones, at the link rate, and arrive after the delay.
+                    long now = NanoTime.now();
+                    if (NanoTime.isBefore(linkFree, now))
+                        linkFree = now;
+                    linkFree += read * 1_000_000_000L / _bytesPerSecond;
+                    queue.offer(new Chunk(Arrays.copyOf(buffer, read), linkFree + _delay));
+                    _maxQueued.accumulateAndGet(queued.addAndGet(read), Math::max);
+                }
+            }
+            catch (IOException x)
+            {
+                // The connection is closed.
+            }
+            queue.offer(EOF);
+        }
+
+        private void write(BlockingQueue<Chunk> queue, AtomicLong queued, Socket to)
+        {
+            try (OutputStream output = to.getOutputStream())
+            {
+                while (true)
+                {
+                    Chunk chunk = queue.take();
+                    if (chunk == EOF)
+                        break;
+                    long wait;
+                    while ((wait = NanoTime.until(chunk.due())) > 0)
+                    {
+                        LockSupport.parkNanos(wait);
+                    }
+                    output.write(chunk.bytes());
+                    queued.addAndGet(-chunk.bytes().length);
+                }
+            }
+            catch (IOException | InterruptedException x)
+            {
+                // The connection is closed.
+            }
+            IO.close(to);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            _serverSocket.close();
+            _sockets.forEach(IO::close);
+        }
+
+        private record Chunk(byte[] bytes, long due)
+        {
+        }
+    }
+}
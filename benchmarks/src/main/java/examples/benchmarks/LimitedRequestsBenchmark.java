@@ -0,0 +1,38 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import examples.LimitedRequestsExample;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures the {@link LimitedRequestsExample} server, which closes each connection
+ * after a few requests, so this also measures the cost of connection churn.
+ */
+public class LimitedRequestsBenchmark extends AbstractServerBenchmark
+{
+    @Override
+    protected Server newServer()
+    {
+        return LimitedRequestsExample.newServer(0);
+    }
+
+    @Benchmark
+    public ContentResponse testGet() throws Exception
+    {
+        return GET("/");
+    }
+}
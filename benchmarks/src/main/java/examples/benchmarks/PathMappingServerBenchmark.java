@@ -0,0 +1,48 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.nio.file.Path;
+
+import examples.PathMappingServer;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures the {@link PathMappingServer} for each kind of mapping it has:
+ * the default mapping, a prefix mapping with the context path stripped,
+ * a suffix mapping with the path rewritten, and a plain handler.
+ */
+public class PathMappingServerBenchmark extends AbstractServerBenchmark
+{
+    // Relative to the benchmarks module directory.
+    private static final Path EXTRAS_DIR = Path.of("../embedded/path-mapping-handler/extras").toAbsolutePath().normalize();
+
+    @Param({"/hello.html", "/extras/extra.css", "/deep/into/a/path/logo.png", "/hello/world"})
+    String path;
+
+    @Override
+    protected Server newServer() throws Exception
+    {
+        return PathMappingServer.newServer(0, EXTRAS_DIR);
+    }
+
+    @Benchmark
+    public ContentResponse testGet() throws Exception
+    {
+        return GET(path);
+    }
+}
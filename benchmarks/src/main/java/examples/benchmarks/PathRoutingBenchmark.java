@@ -0,0 +1,150 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import examples.PathMappingServer;
+import examples.PathRoutingHandler;
+import org.eclipse.jetty.http.pathmap.PathSpec;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.PathMappingsHandler;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the routing of requests, with the path rewritten for the target handler,
+ * between a {@link PathMappingsHandler} with the wrappers of {@link PathMappingServer}
+ * and a {@link PathRoutingHandler}, for an increasing number of mappings.
+ * <p>
+ * Requests are sent through a {@link LocalConnector}, so that there is no network I/O.
+ * Run with {@code -prof gc} to see the allocation rate per request.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathRoutingBenchmark
+{
+    @Param({"PathMappingsHandler", "PathRoutingHandler"})
+    String router;
+
+    @Param({"10", "100", "1000"})
+    int mappings;
+
+    private Server server;
+    private LocalConnector connector;
+    private String prefixRequest;
+    private String suffixRequest;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        server = new Server();
+        connector = new LocalConnector(server);
+        server.addConnector(connector);
+
+        PathTargetHandler target = new PathTargetHandler();
+        switch (router)
+        {
+            case "PathMappingsHandler" ->
+            {
+                PathMappingsHandler handler = new PathMappingsHandler();
+                handler.addMapping(PathSpec.from("/"), target);
+                for (int i = 0; i < mappings; i++)
+                {
+                    handler.addMapping(PathSpec.from("/app" + i + "/*"), new PathMappingServer.StripContextPath("/app" + i, target));
+                    handler.addMapping(PathSpec.from("*.ext" + i), new PathMappingServer.PathNameWrapper((path) -> "/images" + path.substring(path.lastIndexOf('/')), target));
+                }
+                server.setHandler(handler);
+            }
+            case "PathRoutingHandler" ->
+            {
+                PathRoutingHandler handler = new PathRoutingHandler();
+                handler.addMapping("/", target);
+                for (int i = 0; i < mappings; i++)
+                {
+                    handler.addMapping("/app" + i + "/*", "", target);
+                    handler.addMapping("*.ext" + i, "/images", target);
+                }
+                server.setHandler(handler);
+            }
+            default -> throw new IllegalArgumentException(router);
+        }
+        server.start();
+
+        int middle = mappings / 2;
+        prefixRequest = "GET /app%d/some/file.txt HTTP/1.1\r\nHost: localhost\r\n\r\n".formatted(middle);
+        suffixRequest = "GET /deep/into/a/path/logo.ext%d HTTP/1.1\r\nHost: localhost\r\n\r\n".formatted(middle);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer()
+    {
+        LifeCycle.stop(server);
+    }
+
+    @Benchmark
+    public String testPrefixMapping() throws Exception
+    {
+        return connector.getResponse(prefixRequest);
+    }
+
+    @Benchmark
+    public String testSuffixMapping() throws Exception
+    {
+        return connector.getResponse(suffixRequest);
+    }
+
+    /**
+     * Answers with the path it is given in a response header, and no content.
+     */
+    private static class PathTargetHandler extends Handler.Abstract.NonBlocking implements PathRoutingHandler.PathHandler
+    {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback) throws Exception
+        {
+            return handle(request, response, callback, Request.getPathInContext(request));
+        }
+
+        @Override
+        public boolean handle(Request request, Response response, Callback callback, String pathInContext)
+        {
+            response.getHeaders().put("X-Path", pathInContext);
+            response.getHeaders().put("Content-Length", 0);
+            callback.succeeded();
+            return true;
+        }
+    }
+}
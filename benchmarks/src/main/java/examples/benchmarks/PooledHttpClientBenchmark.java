@@ -0,0 +1,141 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import examples.PooledHttpClient;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.transport.HttpClientConnectionFactory;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the requests of a {@link PooledHttpClient} to an in-process server that speaks
+ * both HTTP/1.1 and clear-text HTTP/2, over a pool of HTTP/1.1 connections, each carrying one
+ * request at a time, with the same requests multiplexed over HTTP/2 connections.
+ * <p>
+ * Each operation sends a burst of concurrent requests, more than the number of pooled connections,
+ * and waits for their responses, whose content is produced after a delay, as if by a remote service.
+ * The state of the client, with its average queue wait and the number of connections it opened,
+ * is printed at the end of each trial.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class PooledHttpClientBenchmark
+{
+    private static final int MAX_CONNECTIONS = 8;
+    private static final int BURST = 64;
+    private static final long SERVICE_TIME_MS = 1;
+
+    @Param({"http/1.1", "h2c"})
+    String protocol;
+
+    private Server server;
+    private PooledHttpClient client;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig), new HTTP2CServerConnectionFactory(httpConfig));
+        server.addConnector(connector);
+        server.setHandler(new DelayedHandler());
+        server.start();
+        uri = "http://localhost:" + connector.getLocalPort() + "/";
+
+        ClientConnector clientConnector = new ClientConnector();
+        ClientConnectionFactory.Info info = "h2c".equals(protocol)
+            ? new ClientConnectionFactoryOverHTTP2.HTTP2(new HTTP2Client(clientConnector))
+            : HttpClientConnectionFactory.HTTP11;
+        client = new PooledHttpClient(clientConnector, info);
+        client.setMaxConnectionsPerDestination(MAX_CONNECTIONS);
+        client.setMaxRequestsInFlight(BURST);
+        client.start();
+        // One HTTP/2 connection is enough for the burst.
+        client.prewarm(uri, "h2c".equals(protocol) ? 1 : MAX_CONNECTIONS).get(5, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer()
+    {
+        System.out.printf("%n%s connectionsOpened=%d maxQueueWait=%dms%n", client, client.getConnectionsOpened(), client.getMaxQueueWait(TimeUnit.MILLISECONDS));
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    @Benchmark
+    public void testBurst() throws Exception
+    {
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++)
+        {
+            responses.add(client.send(client.newRequest(uri)));
+        }
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            if (response.get(5, TimeUnit.SECONDS).getStatus() != 200)
+                throw new IllegalStateException();
+        }
+    }
+
+    private static class DelayedHandler extends Handler.Abstract
+    {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            request.getComponents().getScheduler().schedule(() -> Content.Sink.write(response, true, "OK", callback), SERVICE_TIME_MS, TimeUnit.MILLISECONDS);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import examples.RequestLogToFileDemo;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.IO;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures the cost of request logging with the {@link RequestLogToFileDemo} server.
+ */
+public class RequestLogBenchmark extends AbstractServerBenchmark
+{
+    private Path logsDir;
+
+    @Override
+    protected Server newServer() throws Exception
+    {
+        logsDir = Files.createTempDirectory("requestlog-benchmark");
+        return RequestLogToFileDemo.newServer(0, logsDir);
+    }
+
+    @Override
+    public void stopServer() throws Exception
+    {
+        super.stopServer();
+        IO.delete(logsDir);
+    }
+
+    @Benchmark
+    public ContentResponse testLoggedRequest() throws Exception
+    {
+        return GET("/");
+    }
+}
@@ -0,0 +1,95 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import examples.GroupCommitRequestLogWriter;
+import org.eclipse.jetty.server.AsyncRequestLogWriter;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost, for the request threads, of writing a log entry with the
+ * {@link AsyncRequestLogWriter} and with the {@link GroupCommitRequestLogWriter}.
+ * <p>
+ * Both writers drop entries when their queue is full, the number of dropped
+ * entries is printed at the end of each trial.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class RequestLogWriterBenchmark
+{
+    private static final String ENTRY = "127.0.0.1 - - [18/Oct/2024:10:15:32 +0000] \"GET /css/main.css?v=42 HTTP/1.1\" 200 1116 " +
+        "\"http://localhost:8080/\" \"Mozilla/5.0 (X11; Linux x86_64; rv:131.0) Gecko/20100101 Firefox/131.0\"";
+
+    @Param({"AsyncRequestLogWriter", "GroupCommitRequestLogWriter"})
+    String writer;
+
+    private Path logsDir;
+    private RequestLog.Writer requestLogWriter;
+
+    @Setup(Level.Trial)
+    public void startWriter() throws Exception
+    {
+        logsDir = Files.createTempDirectory("requestlog-writer-benchmark");
+        Path logFile = logsDir.resolve("request.log");
+        requestLogWriter = switch (writer)
+        {
+            case "AsyncRequestLogWriter" -> new AsyncRequestLogWriter(logFile.toString());
+            case "GroupCommitRequestLogWriter" -> new GroupCommitRequestLogWriter(logFile);
+            default -> throw new IllegalArgumentException(writer);
+        };
+        LifeCycle.start(requestLogWriter);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopWriter()
+    {
+        LifeCycle.stop(requestLogWriter);
+        if (requestLogWriter instanceof GroupCommitRequestLogWriter groupCommit)
+            System.out.printf("%n%s%n", groupCommit);
+        IO.delete(logsDir);
+    }
+
+    @Benchmark
+    public void testWrite() throws Exception
+    {
+        requestLogWriter.write(ENTRY);
+    }
+}
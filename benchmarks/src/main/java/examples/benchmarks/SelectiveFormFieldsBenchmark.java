@@ -0,0 +1,94 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import examples.SelectiveFormFields;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.util.Fields;
+import org.eclipse.jetty.util.UrlEncoded;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the decoding of a single {@code Member} field with {@link SelectiveFormFields}
+ * against the decoding of the whole form into a {@link Fields} instance, as done by
+ * {@link org.eclipse.jetty.server.FormFields}, for forms of different sizes.
+ * <p>
+ * The {@code Member} field is the last field of the form, which is the worst case
+ * for {@link SelectiveFormFields}, as it has to scan the whole content.
+ * </p>
+ * <p>
+ * Run with {@code -prof gc} for the allocations.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectiveFormFieldsBenchmark
+{
+    private static final byte[] MEMBER = "Member".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1", "10", "100"})
+    int fields;
+
+    private byte[] form;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i < fields; i++)
+        {
+            builder.append("Field").append(i).append('=')
+                .append(URLEncoder.encode("Some value for field #" + i, StandardCharsets.UTF_8))
+                .append('&');
+        }
+        builder.append("Member=").append(URLEncoder.encode("Álvar Núñez Cabeza de Vaca", StandardCharsets.UTF_8));
+        form = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String testFullFields() throws Exception
+    {
+        Content.Source source = Content.Source.from(ByteBuffer.wrap(form));
+        String content = Content.Source.asString(source, StandardCharsets.UTF_8);
+        Fields fields = new Fields(true);
+        UrlEncoded.decodeUtf8To(content, fields);
+        return fields.getValue("Member");
+    }
+
+    @Benchmark
+    public String testSelectiveFields() throws Exception
+    {
+        Content.Source source = Content.Source.from(ByteBuffer.wrap(form));
+        return SelectiveFormFields.from(source, StandardCharsets.UTF_8, -1, MEMBER).get()[0];
+    }
+}
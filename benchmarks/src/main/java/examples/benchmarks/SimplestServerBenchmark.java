@@ -0,0 +1,38 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import examples.SimplestServer;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures the overhead of the server itself, as {@link SimplestServer} has no handlers
+ * and answers every request with a {@code 404}.
+ */
+public class SimplestServerBenchmark extends AbstractServerBenchmark
+{
+    @Override
+    protected Server newServer()
+    {
+        return SimplestServer.newServer(0);
+    }
+
+    @Benchmark
+    public ContentResponse testNotFound() throws Exception
+    {
+        return GET("/");
+    }
+}
@@ -0,0 +1,103 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import examples.HotFileResourceHandler;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the serving of a skewed working set of small static files between the
+ * default {@link ResourceHandler} and the {@link HotFileResourceHandler} of the file-server example.
+ * <p>
+ * The files are requested with a Zipf distribution, so that a few files get most of the requests,
+ * and the cache of the {@link HotFileResourceHandler} only has room for a fraction of them.
+ * </p>
+ */
+public class StaticFileBenchmark extends AbstractServerBenchmark
+{
+    private static final int FILES = 2000;
+    private static final int FILE_SIZE = 4 * 1024;
+
+    @Param({"ResourceHandler", "HotFileResourceHandler"})
+    String handler;
+
+    private Path resourcesRoot;
+    private double[] zipf;
+
+    @Override
+    protected Server newServer() throws Exception
+    {
+        resourcesRoot = Files.createTempDirectory("static-files");
+        byte[] bytes = new byte[FILE_SIZE];
+        Arrays.fill(bytes, (byte)'x');
+        zipf = new double[FILES];
+        double sum = 0;
+        for (int i = 0; i < FILES; i++)
+        {
+            Files.write(resourcesRoot.resolve("file-" + i + ".txt"), bytes);
+            sum += 1.0 / (i + 1);
+            zipf[i] = sum;
+        }
+        for (int i = 0; i < FILES; i++)
+        {
+            zipf[i] /= sum;
+        }
+
+        ResourceHandler resourceHandler = switch (handler)
+        {
+            case "ResourceHandler" -> new ResourceHandler();
+            case "HotFileResourceHandler" ->
+            {
+                HotFileResourceHandler hotFileResourceHandler = new HotFileResourceHandler();
+                // Room for a tenth of the files.
+                hotFileResourceHandler.setMaxCacheSize(FILES * FILE_SIZE / 10);
+                yield hotFileResourceHandler;
+            }
+            default -> throw new IllegalArgumentException(handler);
+        };
+
+        Server server = new Server(0);
+        resourceHandler.setBaseResource(ResourceFactory.of(server).newResource(resourcesRoot));
+        server.setHandler(resourceHandler);
+        return server;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles()
+    {
+        IO.delete(resourcesRoot.toFile());
+    }
+
+    @Benchmark
+    public ContentResponse testSkewedFiles() throws Exception
+    {
+        int index = Arrays.binarySearch(zipf, ThreadLocalRandom.current().nextDouble());
+        if (index < 0)
+            index = Math.min(-index - 1, FILES - 1);
+        return GET("/file-" + index + ".txt");
+    }
+}
@@ -0,0 +1,71 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import examples.ServerConnectorUnixDomain;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.Transport;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.IO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the same requests to {@link ServerConnectorUnixDomain} over loopback TCP
+ * and over its Unix-Domain socket, the p99 latency being reported by the sample time mode.
+ */
+public class UnixDomainBenchmark extends AbstractServerBenchmark
+{
+    @Param({"tcp", "unix"})
+    String transport;
+
+    private Path socketDirectory;
+    private Transport unixDomain;
+
+    @Override
+    protected Server newServer() throws Exception
+    {
+        // A short path, as the length of a socket path is limited to about 100 bytes.
+        socketDirectory = Files.createTempDirectory("jetty");
+        Path socketPath = socketDirectory.resolve("jetty.sock");
+        if ("unix".equals(transport))
+            unixDomain = new Transport.TCPUnix(socketPath);
+        return ServerConnectorUnixDomain.newServer(0, socketPath);
+    }
+
+    @TearDown
+    public void deleteSocketDirectory()
+    {
+        IO.delete(socketDirectory.toFile());
+    }
+
+    @Override
+    protected Request newRequest(String path)
+    {
+        Request request = super.newRequest(path);
+        return unixDomain == null ? request : request.transport(unixDomain);
+    }
+
+    @Benchmark
+    public ContentResponse testGet() throws Exception
+    {
+        return GET("/");
+    }
+}
@@ -0,0 +1,121 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import examples.batching.AutoFlushPolicy;
+import examples.browser.JakartaBrowserMain;
+import jakarta.websocket.ClientEndpoint;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.Session;
+import org.eclipse.jetty.ee10.websocket.jakarta.client.JakartaWebSocketClientContainer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast the {@link JakartaBrowserMain} socket sends many small messages,
+ * with the {@code many:size,count} command, each message on its own or batched with an {@link AutoFlushPolicy}.
+ * <p>
+ * The average number of estimated frames per write of the policy is printed at the end of each trial.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class WebSocketBatchingBenchmark
+{
+    private static final int COUNT = 1000;
+
+    @Param({"false", "true"})
+    boolean batching;
+
+    @Param({"16", "256"})
+    int size;
+
+    private Server server;
+    private AutoFlushPolicy autoFlushPolicy;
+    private JakartaWebSocketClientContainer client;
+    private Session session;
+    private final Semaphore received = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        autoFlushPolicy = batching ? new AutoFlushPolicy() : null;
+        server = JakartaBrowserMain.newServer(0, 0, autoFlushPolicy);
+        server.start();
+        ServerConnector connector = server.getBeans(ServerConnector.class).stream()
+            .filter(c -> c.getConnectionFactory(SslConnectionFactory.class) == null)
+            .findFirst()
+            .orElseThrow();
+
+        client = new JakartaWebSocketClientContainer();
+        client.start();
+        URI wsURI = new URI("ws", null, "localhost", connector.getLocalPort(), "/", null, null);
+        session = client.connectToServer(new ToolEndpoint(), wsURI);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception
+    {
+        session.close();
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+        if (autoFlushPolicy != null)
+            System.out.printf("%n%s%n", autoFlushPolicy);
+    }
+
+    @Benchmark
+    public void testMany() throws Exception
+    {
+        session.getBasicRemote().sendText("many:" + size + "," + COUNT);
+        if (!received.tryAcquire(COUNT, 10, TimeUnit.SECONDS))
+            throw new TimeoutException();
+    }
+
+    @ClientEndpoint(subprotocols = "tool")
+    public class ToolEndpoint
+    {
+        @OnMessage
+        public void onMessage(String message)
+        {
+            received.release();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import examples.annotated.EchoWebSocket;
+import examples.annotated.EchoWebSocketServlet;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the echo of text messages by {@link EchoWebSocket}, decoded to a {@code String} and encoded again,
+ * with the echo of binary messages, whose received frames are sent back without copying.
+ * <p>
+ * Each operation sends a window of messages and waits for their echo.
+ * The server and the client run in the benchmark JVM, so run with {@code -prof gc} to see the bytes
+ * allocated by both for each window.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class WebSocketEchoBenchmark
+{
+    private static final int WINDOW = 16;
+
+    @Param({"text", "binary"})
+    String mode;
+
+    @Param({"1024", "32768"})
+    int size;
+
+    private Server server;
+    private WebSocketClient client;
+    private Session session;
+    private String text;
+    private ByteBuffer binary;
+    private final Semaphore received = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        // Not EchoServer, as both WebSocket example modules have an examples.annotated.EchoServer class.
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        JettyWebSocketServletContainerInitializer.configure(context, null);
+        context.addServlet(EchoWebSocketServlet.class, "/echo");
+        server.setHandler(context);
+        server.start();
+
+        text = "x".repeat(size);
+        binary = ByteBuffer.allocateDirect(size);
+
+        client = new WebSocketClient();
+        client.start();
+        int port = server.getBean(ServerConnector.class).getLocalPort();
+        session = client.connect(new EchoClientSocket(), URI.create("ws://localhost:" + port + "/echo")).get(5, TimeUnit.SECONDS);
+        // The greeting of the server.
+        if (!received.tryAcquire(5, TimeUnit.SECONDS))
+            throw new TimeoutException();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer()
+    {
+        session.close();
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    @Benchmark
+    public void testEcho() throws Exception
+    {
+        for (int i = 0; i < WINDOW; i++)
+        {
+            if ("text".equals(mode))
+                session.sendText(text, Callback.NOOP);
+            else
+                session.sendBinary(binary.slice(), Callback.NOOP);
+        }
+        if (!received.tryAcquire(WINDOW, 10, TimeUnit.SECONDS))
+            throw new TimeoutException();
+    }
+
+    @WebSocket
+    public class EchoClientSocket
+    {
+        @OnWebSocketMessage
+        public void onText(String message)
+        {
+            received.release();
+        }
+
+        @OnWebSocketMessage
+        public void onBinary(ByteBuffer payload, boolean last, Callback callback)
+        {
+            callback.succeed();
+            if (last)
+                received.release();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import examples.time.WebSocketTimeServer;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the WebSocket sessions of {@link WebSocketTimeServer} opened with HTTP/1.1 upgrades,
+ * one connection per session, with the sessions opened with extended CONNECT requests (RFC 8441)
+ * multiplexed over a single clear-text HTTP/2 connection.
+ * <p>
+ * Each operation opens a session and closes it, so the score is the latency of the handshake.
+ * At the end of each trial, {@link #SESSIONS} sessions are opened at once, and the number of
+ * connections accepted by the server and the heap used per session, by both the client and
+ * the server running in the benchmark JVM, are printed.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class WebSocketHttp2Benchmark
+{
+    private static final int SESSIONS = 500;
+
+    @Param({"http/1.1", "h2c"})
+    String protocol;
+
+    private Server server;
+    private ServerConnector connector;
+    private WebSocketClient client;
+    private URI uri;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception
+    {
+        server = WebSocketTimeServer.newServer(0);
+        server.start();
+        connector = server.getBean(ServerConnector.class);
+        uri = URI.create("ws://localhost:" + connector.getLocalPort() + "/time/");
+
+        if ("h2c".equals(protocol))
+        {
+            // Clear-text HTTP/2 with prior knowledge.
+            HttpClient httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+            client = new WebSocketClient(httpClient);
+            client.addManaged(httpClient);
+        }
+        else
+        {
+            client = new WebSocketClient();
+        }
+        client.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception
+    {
+        try
+        {
+            printSessionFootprint();
+        }
+        finally
+        {
+            LifeCycle.stop(client);
+            LifeCycle.stop(server);
+        }
+    }
+
+    private void printSessionFootprint() throws Exception
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        List<ClientSocket> sockets = new ArrayList<>();
+        List<Future<Session>> connects = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++)
+        {
+            ClientSocket socket = new ClientSocket();
+            sockets.add(socket);
+            connects.add(client.connect(socket, uri));
+        }
+        List<Session> sessions = new ArrayList<>();
+        for (Future<Session> connect : connects)
+        {
+            sessions.add(connect.get(10, TimeUnit.SECONDS));
+        }
+
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        int connections = connector.getConnectedEndPoints().size();
+
+        for (int i = 0; i < SESSIONS; i++)
+        {
+            sessions.get(i).close();
+            sockets.get(i).closed.get(10, TimeUnit.SECONDS);
+        }
+
+        System.out.printf("%n%s: sessions=%d connections=%d heap/session=%d bytes%n",
+            protocol, SESSIONS, connections, (heapAfter - heapBefore) / SESSIONS);
+    }
+
+    @Benchmark
+    public void testHandshake() throws Exception
+    {
+        ClientSocket socket = new ClientSocket();
+        Session session = client.connect(socket, uri).get(5, TimeUnit.SECONDS);
+        session.close();
+        socket.closed.get(5, TimeUnit.SECONDS);
+    }
+
+    @WebSocket
+    public static class ClientSocket
+    {
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+        @OnWebSocketMessage
+        public void onText(String time)
+        {
+            // The time broadcast to every session is ignored.
+        }
+
+        @OnWebSocketClose
+        public void onClose(int statusCode, String reason)
+        {
+            closed.complete(null);
+        }
+
+        @OnWebSocketError
+        public void onError(Throwable cause)
+        {
+            // Over HTTP/2, the stream may be reset while the close handshake completes,
+            // which fails the session instead of closing it, but it is closed either way.
+            closed.complete(null);
+        }
+    }
+}
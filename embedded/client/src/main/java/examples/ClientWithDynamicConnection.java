@@ -13,10 +13,13 @@
 
 package examples;
 
-import org.eclipse.jetty.client.HttpClient;
+import java.util.concurrent.TimeUnit;
+
+import examples.cache.HttpResponseCache;
+import examples.http2.HTTP2Tuner;
 import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.transport.HttpClientConnectionFactory;
-import org.eclipse.jetty.client.transport.HttpClientTransportDynamic;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http2.client.HTTP2Client;
 import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
 import org.eclipse.jetty.io.ClientConnectionFactory;
@@ -26,6 +29,18 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
 /**
  * Example of using a high level HttpClient to connect to a server that
  * supports both HTTP/2 and HTTP/1.1, using TLSv1.3 only.
+ * <p>
+ * The client is a {@link PooledHttpClient}, whose connections to the server are
+ * opened before the first request, and whose requests are sent asynchronously.
+ * </p>
+ * <p>
+ * The responses of the server are stored by a {@link HttpResponseCache}, so that a second request
+ * for the same resource is answered from the cache, or revalidated with a conditional request.
+ * </p>
+ * <p>
+ * The HTTP/2 receive windows are set by a {@link HTTP2Tuner}, that also reports them
+ * for each connection.
+ * </p>
  */
 public class ClientWithDynamicConnection
 {
@@ -38,26 +53,44 @@ public class ClientWithDynamicConnection
 
         ClientConnectionFactory.Info http1Info = HttpClientConnectionFactory.HTTP11;
         HTTP2Client http2Client = new HTTP2Client(clientConnector);
+        HTTP2Tuner tuner = new HTTP2Tuner();
+        tuner.configure(http2Client);
         ClientConnectionFactoryOverHTTP2.HTTP2 http2Info = new ClientConnectionFactoryOverHTTP2.HTTP2(http2Client);
-        HttpClientTransportDynamic dynamicTransport = new HttpClientTransportDynamic(clientConnector, http1Info, http2Info);
-
-        HttpClient httpClient = new HttpClient(dynamicTransport);
+        PooledHttpClient client = new PooledHttpClient(clientConnector, http1Info, http2Info);
+        client.setMaxConnectionsPerDestination(4);
+        client.setMaxConcurrentStreams(100);
+        client.setMaxRequestsInFlight(64);
+        // The tuner knows the sessions of the connections of the client.
+        client.getHttpClient().addBean(tuner);
+        HttpResponseCache cache = new HttpResponseCache(client::send);
+        client.addBean(cache);
         try
         {
-            httpClient.start();
+            client.start();
+            // Pay for the TCP and TLS handshakes before the first request.
+            client.prewarm("https://api.github.com/", 1).get(10, TimeUnit.SECONDS);
             // To see the SslContextFactory configuration, dump the client
-            System.out.printf("Dump of client: %s%n", httpClient.dump());
-            ContentResponse res = httpClient.GET("https://api.github.com/zen");
+            System.out.printf("Dump of client: %s%n", client.getHttpClient().dump());
+            ContentResponse res = client.send(client.newRequest("https://api.github.com/zen")).get(10, TimeUnit.SECONDS);
             System.out.printf("response status: %d%n", res.getStatus());
             res.getHeaders().forEach((field) ->
             {
                 System.out.printf("response header [%s]: %s%n", field.getName(), field.getValue());
             });
             System.out.printf("response body: %s%n", res.getContentAsString());
+            // The second request does not reach the server while the first response is fresh.
+            for (int i = 0; i < 2; i++)
+            {
+                ContentResponse cached = cache.send(client.newRequest("https://api.github.com/")).get(10, TimeUnit.SECONDS);
+                System.out.printf("cached response status: %d, age: %s%n", cached.getStatus(), cached.getHeaders().get(HttpHeader.AGE));
+            }
+            System.out.printf("cache: %s%n", cache);
+            System.out.printf("client: %s%n", client);
+            tuner.getConnectionWindows().forEach(window -> System.out.printf("HTTP/2 connection: %s%n", window));
         }
         finally
         {
-            httpClient.stop();
+            client.stop();
         }
     }
 }
@@ -0,0 +1,337 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.CompletableResponseListener;
+import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.transport.HttpClientTransportDynamic;
+import org.eclipse.jetty.io.ClientConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.util.ConcurrentPool;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.SerializedInvoker;
+
+/**
+ * An outbound {@link HttpClient}, for service to service calls, that keeps its connections
+ * pooled and warm, and bounds the number of requests in flight.
+ * <p>
+ * The client speaks the given protocols with a {@link HttpClientTransportDynamic}: over TLS,
+ * the protocol is negotiated with ALPN, while over clear-text the first protocol is used,
+ * so that with HTTP/2 listed first the requests to a destination are multiplexed over a
+ * few connections, instead of each waiting for a pooled HTTP/1.1 connection.
+ * </p>
+ * <p>
+ * The connections to a destination can be opened before the first request with
+ * {@link #prewarm(String, int)}, so that the first calls do not pay for the TCP and TLS handshakes.
+ * At most {@link #getMaxConnectionsPerDestination()} connections are opened to each destination,
+ * and at most {@link #getMaxConcurrentStreams()} requests are multiplexed over each HTTP/2 connection,
+ * or less if the server advertises a smaller limit.
+ * </p>
+ * <p>
+ * Requests are sent asynchronously with {@link #send(Request)}: when {@link #getMaxRequestsInFlight()}
+ * requests are in flight, the others wait in a queue, and the time from {@link #send(Request)} until
+ * a request begins to be sent on a connection is measured as its {@link #getAverageQueueWait(TimeUnit) queue wait}.
+ * </p>
+ */
+public class PooledHttpClient extends ContainerLifeCycle
+{
+    private final HttpClient _httpClient;
+    private final ConnectionStatistics _connectionStatistics = new ConnectionStatistics();
+    private final Queue<Runnable> _queue = new ConcurrentLinkedQueue<>();
+    private final SerializedInvoker _invoker = new SerializedInvoker(PooledHttpClient.class);
+    private final AtomicInteger _inFlight = new AtomicInteger();
+    private final LongAdder _requests = new LongAdder();
+    private final LongAdder _queueWait = new LongAdder();
+    private final LongAdder _queueWaits = new LongAdder();
+    private final AtomicLong _maxQueueWait = new AtomicLong();
+    private volatile int _maxConcurrentStreams = 128;
+    private int _maxRequestsInFlight = 256;
+
+    /**
+     * @param connector the connector of the client, with its TLS configuration if any
+     * @param protocols the protocols spoken by the client, in order of preference
+     */
+    public PooledHttpClient(ClientConnector connector, ClientConnectionFactory.Info... protocols)
+    {
+        HttpClientTransportDynamic transport = new HttpClientTransportDynamic(connector, protocols);
+        transport.setConnectionPoolFactory(destination ->
+            new StreamLimitedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination()));
+        _httpClient = new HttpClient(transport);
+        // Counts the opened connections, as a measure of the connection churn.
+        _httpClient.addBean(_connectionStatistics);
+        addBean(_httpClient);
+    }
+
+    public HttpClient getHttpClient()
+    {
+        return _httpClient;
+    }
+
+    public int getMaxConnectionsPerDestination()
+    {
+        return _httpClient.getMaxConnectionsPerDestination();
+    }
+
+    /**
+     * @param maxConnectionsPerDestination the maximum number of connections to each destination,
+     * must be set before the first request to a destination
+     */
+    public void setMaxConnectionsPerDestination(int maxConnectionsPerDestination)
+    {
+        _httpClient.setMaxConnectionsPerDestination(maxConnectionsPerDestination);
+    }
+
+    public int getMaxConcurrentStreams()
+    {
+        return _maxConcurrentStreams;
+    }
+
+    /**
+     * @param maxConcurrentStreams the maximum number of requests multiplexed over each HTTP/2 connection
+     */
+    public void setMaxConcurrentStreams(int maxConcurrentStreams)
+    {
+        _maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public int getMaxRequestsInFlight()
+    {
+        return _maxRequestsInFlight;
+    }
+
+    /**
+     * @param maxRequestsInFlight the maximum number of requests sent and not yet completed, the others are queued
+     */
+    public void setMaxRequestsInFlight(int maxRequestsInFlight)
+    {
+        _maxRequestsInFlight = maxRequestsInFlight;
+    }
+
+    public Request newRequest(String uri)
+    {
+        return _httpClient.newRequest(uri);
+    }
+
+    /**
+     * Opens connections to the destination of the given URI, up to the maximum number of connections per destination.
+     *
+     * @param uri the URI of the destination
+     * @param connections the number of connections to open
+     * @return a future completed when the connections are opened
+     */
+    public CompletableFuture<Void> prewarm(String uri, int connections)
+    {
+        Destination destination = _httpClient.resolveDestination(newRequest(uri));
+        if (destination.getConnectionPool() instanceof AbstractConnectionPool pool)
+            return pool.preCreateConnections(connections);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Sends the request as soon as less than {@link #getMaxRequestsInFlight()} requests are in flight.
+     *
+     * @param request the request to send
+     * @return a future completed with the response, whose content is buffered
+     */
+    public CompletableFuture<ContentResponse> send(Request request)
+    {
+        long submitted = NanoTime.now();
+        request.onRequestBegin(r -> onQueueWait(NanoTime.since(submitted)));
+        CompletableFuture<ContentResponse> result = new CompletableFuture<>();
+        _queue.offer(() ->
+        {
+            try
+            {
+                new CompletableResponseListener(request).send().whenComplete((response, failure) ->
+                {
+                    _inFlight.decrementAndGet();
+                    process();
+                    if (failure == null)
+                        result.complete(response);
+                    else
+                        result.completeExceptionally(failure);
+                });
+            }
+            catch (Throwable x)
+            {
+                // The request could not be sent, release its slot.
+                _inFlight.decrementAndGet();
+                result.completeExceptionally(x);
+            }
+        });
+        _requests.increment();
+        process();
+        return result;
+    }
+
+    private void process()
+    {
+        // A request that completes while it is sent calls process() again, the invoker
+        // runs that call once the current one returns, rather than recursively.
+        _invoker.run(this::sendQueued);
+    }
+
+    private void sendQueued()
+    {
+        while (_inFlight.get() < _maxRequestsInFlight)
+        {
+            Runnable send = _queue.poll();
+            if (send == null)
+                return;
+            _inFlight.incrementAndGet();
+            send.run();
+        }
+    }
+
+    private void onQueueWait(long nanos)
+    {
+        _queueWait.add(nanos);
+        _queueWaits.increment();
+        _maxQueueWait.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the number of requests sent
+     */
+    public long getRequests()
+    {
+        return _requests.sum();
+    }
+
+    /**
+     * @return the number of requests sent and not yet completed
+     */
+    public int getRequestsInFlight()
+    {
+        return _inFlight.get();
+    }
+
+    /**
+     * @return the number of requests waiting for less requests to be in flight
+     */
+    public int getRequestsQueued()
+    {
+        return _queue.size();
+    }
+
+    /**
+     * @param unit the unit of the result
+     * @return the average time from {@link #send(Request)} until the request begins to be sent on a connection
+     */
+    public double getAverageQueueWait(TimeUnit unit)
+    {
+        long waits = _queueWaits.sum();
+        return waits == 0 ? 0 : (double)_queueWait.sum() / waits / unit.toNanos(1);
+    }
+
+    /**
+     * @param unit the unit of the result
+     * @return the maximum time from {@link #send(Request)} until a request began to be sent on a connection
+     */
+    public long getMaxQueueWait(TimeUnit unit)
+    {
+        return unit.convert(_maxQueueWait.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of connections opened since the client started
+     */
+    public long getConnectionsOpened()
+    {
+        return _connectionStatistics.getConnectionsTotal();
+    }
+
+    /**
+     * @return the number of pooled connections to all the destinations
+     */
+    public int getConnectionCount()
+    {
+        return sumPools(AbstractConnectionPool::getConnectionCount);
+    }
+
+    /**
+     * @return the number of pooled connections to all the destinations that carry at least one request
+     */
+    public int getActiveConnectionCount()
+    {
+        return sumPools(AbstractConnectionPool::getActiveConnectionCount);
+    }
+
+    /**
+     * @return the ratio, between 0 and 1, of the active connections to the maximum
+     * number of connections of all the destinations
+     */
+    public double getPoolUtilization()
+    {
+        int max = sumPools(AbstractConnectionPool::getMaxConnectionCount);
+        return max == 0 ? 0 : (double)getActiveConnectionCount() / max;
+    }
+
+    private int sumPools(ToIntFunction<AbstractConnectionPool> value)
+    {
+        int sum = 0;
+        for (Destination destination : _httpClient.getDestinations())
+        {
+            if (destination.getConnectionPool() instanceof AbstractConnectionPool pool)
+                sum += value.applyAsInt(pool);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[requests=%d,inFlight=%d,queued=%d,avgQueueWait=%.3fms,connections=%d/%d,utilization=%.2f]".formatted(
+            getClass().getSimpleName(), hashCode(), getRequests(), getRequestsInFlight(), getRequestsQueued(),
+            getAverageQueueWait(TimeUnit.MILLISECONDS), getActiveConnectionCount(), getConnectionCount(), getPoolUtilization());
+    }
+
+    /**
+     * A {@link MultiplexConnectionPool} that multiplexes at most {@link #getMaxConcurrentStreams()}
+     * requests over each connection, HTTP/1.1 connections only carrying one request at a time.
+     */
+    private class StreamLimitedConnectionPool extends MultiplexConnectionPool
+    {
+        private StreamLimitedConnectionPool(Destination destination, int maxConnections)
+        {
+            super(destination, () -> new ConcurrentPool<>(ConcurrentPool.StrategyType.FIRST, maxConnections, PooledHttpClient.this::maxMultiplex), 1);
+        }
+    }
+
+    private int maxMultiplex(Connection connection)
+    {
+        if (connection instanceof ConnectionPool.MaxMultiplexable maxMultiplexable)
+            return Math.min(maxMultiplexable.getMaxMultiplex(), _maxConcurrentStreams);
+        return 1;
+    }
+}
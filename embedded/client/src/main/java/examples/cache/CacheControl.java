@@ -0,0 +1,72 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.cache;
+
+import java.util.Locale;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.QuotedCSV;
+
+/**
+ * The {@code Cache-Control} directives of a request or of a response that matter to a private cache.
+ *
+ * @param maxAge the {@code max-age} in seconds, or -1 if absent
+ * @param noCache whether {@code no-cache} is present, so that a stored response must be revalidated before it is used
+ * @param noStore whether {@code no-store} is present, so that the response must not be stored
+ * @param onlyIfCached whether {@code only-if-cached} is present in a request
+ */
+record CacheControl(long maxAge, boolean noCache, boolean noStore, boolean onlyIfCached)
+{
+    static CacheControl from(HttpFields headers)
+    {
+        long maxAge = -1;
+        boolean noCache = false;
+        boolean noStore = false;
+        boolean onlyIfCached = false;
+        QuotedCSV directives = new QuotedCSV(false, headers.getValuesList(HttpHeader.CACHE_CONTROL).toArray(String[]::new));
+        for (String directive : directives.getValues())
+        {
+            int equals = directive.indexOf('=');
+            String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase(Locale.ENGLISH);
+            String value = equals < 0 ? null : directive.substring(equals + 1).trim();
+            switch (name)
+            {
+                case "max-age" -> maxAge = parseSeconds(value);
+                // A qualified no-cache="field" only forbids to reuse the named fields, be conservative.
+                case "no-cache" -> noCache = true;
+                case "no-store" -> noStore = true;
+                case "only-if-cached" -> onlyIfCached = true;
+                default ->
+                {
+                    // Directives for shared caches, or that are only hints, are ignored.
+                }
+            }
+        }
+        // The older HTTP/1.0 way of asking for a revalidation.
+        if (headers.contains(HttpHeader.PRAGMA, "no-cache") && !headers.contains(HttpHeader.CACHE_CONTROL))
+            noCache = true;
+        return new CacheControl(maxAge, noCache, noStore, onlyIfCached);
+    }
+
+    private static long parseSeconds(String value)
+    {
+        // An invalid delta-seconds is treated as stale, a too large one as the largest one.
+        String seconds = value == null ? "" : value.replace("\"", "");
+        if (seconds.isEmpty() || !seconds.chars().allMatch(Character::isDigit))
+            return 0;
+        return seconds.length() > 10 ? Integer.MAX_VALUE : Math.min(Long.parseLong(seconds), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,450 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The storage of a {@link HttpResponseCache}: a size-bounded in-memory tier, backed by an optional,
+ * also size-bounded, disk tier.
+ * <p>
+ * Both tiers evict their least recently used entries. The entries evicted from memory, and the ones
+ * too large for it, are written to the disk tier, and moved back to memory when they are used again,
+ * so that an entry is only in one of the tiers.
+ * The disk tier survives restarts, its index is rebuilt from the files of its directory.
+ * </p>
+ * <p>
+ * The files are read and written by an {@link Executor}, rather than by the threads that complete the
+ * responses. The state of the tiers is only changed under a single lock: an entry being written is
+ * pending until its write completes, so that a later {@link #put(CachedEntry)} or {@link #remove(String)}
+ * cancels it, and each entry on disk has a generation, so that an entry read from disk is only moved
+ * back to memory if it was not replaced or removed while it was read.
+ * </p>
+ */
+class CacheStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CacheStore.class);
+    private static final String SUFFIX = ".entry";
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Map<String, CachedEntry> _memory = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<String, CachedEntry> _pendingWrites = new HashMap<>();
+    private final Map<String, DiskEntry> _disk = new LinkedHashMap<>(16, 0.75F, true);
+    private final long _maxMemorySize;
+    private final Path _directory;
+    private final long _maxDiskSize;
+    private final Executor _executor;
+    private long _memorySize;
+    private long _diskSize;
+    private long _generation;
+    private long _diskWrites;
+    private long _diskReads;
+    private long _evictions;
+
+    /**
+     * @param maxMemorySize the maximum size of the entries in memory
+     * @param directory the directory of the disk tier, or null for no disk tier
+     * @param maxDiskSize the maximum size of the entries on disk
+     * @param executor the executor that reads and writes the files of the disk tier
+     * @throws IOException if the directory cannot be created or read
+     */
+    CacheStore(long maxMemorySize, Path directory, long maxDiskSize, Executor executor) throws IOException
+    {
+        _maxMemorySize = maxMemorySize;
+        _directory = directory;
+        _maxDiskSize = maxDiskSize;
+        _executor = executor;
+        if (directory != null)
+        {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory))
+            {
+                files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(this::index);
+            }
+        }
+    }
+
+    private void index(Path file)
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            String key = in.readUTF();
+            long size = Files.size(file);
+            _disk.put(key, new DiskEntry(size, ++_generation));
+            _diskSize += size;
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Ignoring unreadable cache file {}", file, x);
+            delete(file);
+        }
+    }
+
+    /**
+     * @param key the key of the entry
+     * @return a future completed with the entry, or with null if there is none, that is read from disk
+     * by the executor if the entry is not in memory
+     */
+    CompletableFuture<CachedEntry> get(String key)
+    {
+        DiskEntry diskEntry;
+        _lock.lock();
+        try
+        {
+            CachedEntry entry = _memory.get(key);
+            if (entry != null)
+                return CompletableFuture.completedFuture(entry);
+            // The entry was evicted from memory, but is not written yet.
+            entry = _pendingWrites.get(key);
+            if (entry != null)
+            {
+                putLocked(entry);
+                return CompletableFuture.completedFuture(entry);
+            }
+            diskEntry = _disk.get(key);
+            if (diskEntry == null)
+                return CompletableFuture.completedFuture(null);
+            _diskReads++;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        return CompletableFuture.supplyAsync(() -> promote(key, diskEntry, read(key)), _executor);
+    }
+
+    private CachedEntry promote(String key, DiskEntry diskEntry, CachedEntry entry)
+    {
+        _lock.lock();
+        try
+        {
+            // The entry was replaced or removed while it was read.
+            if (!diskEntry.equals(_disk.get(key)))
+                return _memory.get(key);
+            if (entry == null)
+            {
+                removeLocked(key);
+                return null;
+            }
+            // Move the entry back to memory, which also removes it from disk.
+            putLocked(entry);
+            return entry;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    void put(CachedEntry entry)
+    {
+        _lock.lock();
+        try
+        {
+            putLocked(entry);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void putLocked(CachedEntry entry)
+    {
+        removeLocked(entry.getKey());
+        if (entry.getSize() > _maxMemorySize)
+        {
+            evictLocked(entry);
+        }
+        else
+        {
+            _memory.put(entry.getKey(), entry);
+            _memorySize += entry.getSize();
+            Iterator<CachedEntry> iterator = _memory.values().iterator();
+            while (_memorySize > _maxMemorySize)
+            {
+                CachedEntry eldest = iterator.next();
+                iterator.remove();
+                _memorySize -= eldest.getSize();
+                evictLocked(eldest);
+            }
+        }
+    }
+
+    private void evictLocked(CachedEntry entry)
+    {
+        if (_directory == null)
+        {
+            _evictions++;
+        }
+        else
+        {
+            _pendingWrites.put(entry.getKey(), entry);
+            _executor.execute(() -> write(entry));
+        }
+    }
+
+    void remove(String key)
+    {
+        _lock.lock();
+        try
+        {
+            removeLocked(key);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void removeLocked(String key)
+    {
+        CachedEntry entry = _memory.remove(key);
+        if (entry != null)
+            _memorySize -= entry.getSize();
+        // Cancels the write in progress, if any.
+        _pendingWrites.remove(key);
+        // Files are deleted under the lock, as a concurrent write() may move a new file to the same path.
+        DiskEntry diskEntry = _disk.remove(key);
+        if (diskEntry != null)
+        {
+            _diskSize -= diskEntry.size();
+            delete(path(key));
+        }
+    }
+
+    private void write(CachedEntry entry)
+    {
+        Path file = path(entry.getKey());
+        try
+        {
+            // Write aside then move, so that a concurrent read never sees a partial file.
+            Path temp = Files.createTempFile(_directory, "write", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+            {
+                entry.writeTo(out);
+            }
+            long size = Files.size(temp);
+
+            _lock.lock();
+            try
+            {
+                // The entry was replaced, removed or moved back to memory while it was written.
+                if (!_pendingWrites.remove(entry.getKey(), entry))
+                {
+                    delete(temp);
+                }
+                else
+                {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    DiskEntry previous = _disk.put(entry.getKey(), new DiskEntry(size, ++_generation));
+                    _diskSize += size - (previous == null ? 0 : previous.size());
+                    _diskWrites++;
+                    Iterator<Map.Entry<String, DiskEntry>> iterator = _disk.entrySet().iterator();
+                    while (_diskSize > _maxDiskSize)
+                    {
+                        Map.Entry<String, DiskEntry> eldest = iterator.next();
+                        iterator.remove();
+                        _diskSize -= eldest.getValue().size();
+                        _evictions++;
+                        delete(path(eldest.getKey()));
+                    }
+                }
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Unable to write cache entry {}", entry, x);
+            _lock.lock();
+            try
+            {
+                if (_pendingWrites.remove(entry.getKey(), entry))
+                    _evictions++;
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+    }
+
+    private CachedEntry read(String key)
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path(key)))))
+        {
+            CachedEntry entry = CachedEntry.readFrom(in);
+            return key.equals(entry.getKey()) ? entry : null;
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to read cache entry {}", key, x);
+            return null;
+        }
+    }
+
+    private Path path(String key)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return _directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    private void delete(Path file)
+    {
+        try
+        {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Unable to delete cache file {}", file, x);
+        }
+    }
+
+    long getMemorySize()
+    {
+        _lock.lock();
+        try
+        {
+            return _memorySize;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    int getMemoryEntries()
+    {
+        _lock.lock();
+        try
+        {
+            return _memory.size();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    long getDiskSize()
+    {
+        _lock.lock();
+        try
+        {
+            return _diskSize;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    int getDiskEntries()
+    {
+        _lock.lock();
+        try
+        {
+            return _disk.size();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    long getDiskWrites()
+    {
+        _lock.lock();
+        try
+        {
+            return _diskWrites;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    long getDiskReads()
+    {
+        _lock.lock();
+        try
+        {
+            return _diskReads;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries dropped from the last tier
+     */
+    long getEvictions()
+    {
+        _lock.lock();
+        try
+        {
+            return _evictions;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @param size the size of the file of the entry
+     * @param generation the generation of the file, so that a file replaced while it is read is detected
+     */
+    private record DiskEntry(long size, long generation)
+    {
+    }
+}
@@ -0,0 +1,312 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.transport.HttpResponse;
+import org.eclipse.jetty.http.HttpDateTime;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.QuotedCSV;
+
+/**
+ * A response stored by a {@link HttpResponseCache}, with the times needed to compute its age.
+ * <p>
+ * The freshness and the age of the entry are computed as described by RFC 9111, section 4.2.
+ * </p>
+ */
+class CachedEntry
+{
+    // One day, the longest heuristic freshness lifetime.
+    private static final long MAX_HEURISTIC_LIFETIME = TimeUnit.DAYS.toMillis(1);
+    // Fields that describe the stored content, not to be updated by a 304 response.
+    private static final EnumSet<HttpHeader> CONTENT_HEADERS = EnumSet.of(HttpHeader.CONTENT_LENGTH, HttpHeader.CONTENT_ENCODING,
+        HttpHeader.CONTENT_TYPE, HttpHeader.TRANSFER_ENCODING);
+
+    private final String _key;
+    private final int _status;
+    private final String _reason;
+    private final HttpFields _headers;
+    private final HttpFields _varyHeaders;
+    private final byte[] _content;
+    private final String _mediaType;
+    private final String _encoding;
+    private final long _requestTime;
+    private final long _responseTime;
+
+    private CachedEntry(String key, int status, String reason, HttpFields headers, HttpFields varyHeaders, byte[] content,
+                        String mediaType, String encoding, long requestTime, long responseTime)
+    {
+        _key = key;
+        _status = status;
+        _reason = reason;
+        _headers = headers.asImmutable();
+        _varyHeaders = varyHeaders.asImmutable();
+        _content = content;
+        _mediaType = mediaType;
+        _encoding = encoding;
+        _requestTime = requestTime;
+        _responseTime = responseTime;
+    }
+
+    /**
+     * @param key the key of the entry
+     * @param request the request that was sent
+     * @param response the response received
+     * @param requestTime the time at which the request was sent, in milliseconds since the epoch
+     * @param responseTime the time at which the response was received, in milliseconds since the epoch
+     * @return a new entry
+     */
+    static CachedEntry of(String key, Request request, ContentResponse response, long requestTime, long responseTime)
+    {
+        // Remember the values of the request headers the response varies on.
+        HttpFields.Mutable varyHeaders = HttpFields.build();
+        for (String name : varyNames(response.getHeaders()))
+        {
+            String value = request.getHeaders().get(name);
+            if (value != null)
+                varyHeaders.put(name, value);
+        }
+        return new CachedEntry(key, response.getStatus(), response.getReason(), response.getHeaders(), varyHeaders,
+            response.getContent(), response.getMediaType(), response.getEncoding(), requestTime, responseTime);
+    }
+
+    static List<String> varyNames(HttpFields headers)
+    {
+        return new QuotedCSV(false, headers.getValuesList(HttpHeader.VARY).toArray(String[]::new)).getValues();
+    }
+
+    String getKey()
+    {
+        return _key;
+    }
+
+    HttpFields getHeaders()
+    {
+        return _headers;
+    }
+
+    int getSize()
+    {
+        // The content dominates, roughly account for the headers.
+        return _content.length + 32 * _headers.size();
+    }
+
+    /**
+     * @param requestHeaders the headers of a new request
+     * @return whether this entry can be used for the request, as it has the same values
+     * for the request headers the stored response varies on
+     */
+    boolean matches(HttpFields requestHeaders)
+    {
+        for (String name : varyNames(_headers))
+        {
+            if (!Objects.equals(_varyHeaders.get(name), requestHeaders.get(name)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the time, in milliseconds, during which the response is fresh after it was generated
+     */
+    long getFreshnessLifetime()
+    {
+        CacheControl cacheControl = CacheControl.from(_headers);
+        if (cacheControl.maxAge() >= 0)
+            return TimeUnit.SECONDS.toMillis(cacheControl.maxAge());
+
+        long date = getDate();
+        if (_headers.contains(HttpHeader.EXPIRES))
+        {
+            // An invalid date, such as "0", means already expired.
+            long expires = parseDate(_headers.get(HttpHeader.EXPIRES));
+            return expires < 0 ? 0 : Math.max(0, expires - date);
+        }
+
+        // Heuristic freshness, a fraction of the time since the last modification.
+        long lastModified = parseDate(_headers.get(HttpHeader.LAST_MODIFIED));
+        if (lastModified >= 0 && lastModified < date)
+            return Math.min((date - lastModified) / 10, MAX_HEURISTIC_LIFETIME);
+        return 0;
+    }
+
+    /**
+     * @param now the current time, in milliseconds since the epoch
+     * @return the age of the response, in milliseconds
+     */
+    long getAge(long now)
+    {
+        long apparentAge = Math.max(0, _responseTime - getDate());
+        long correctedAgeValue = getAgeValue() + (_responseTime - _requestTime);
+        long correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+        return correctedInitialAge + (now - _responseTime);
+    }
+
+    /**
+     * @param now the current time, in milliseconds since the epoch
+     * @return whether the entry can be used without being revalidated with the origin
+     */
+    boolean isFresh(long now)
+    {
+        return !CacheControl.from(_headers).noCache() && getFreshnessLifetime() > getAge(now);
+    }
+
+    /**
+     * @param request the request to validate this entry with, to which the validators are added
+     * @return whether this entry has validators, so that it can be revalidated
+     */
+    boolean addValidators(Request request)
+    {
+        String etag = _headers.get(HttpHeader.ETAG);
+        String lastModified = _headers.get(HttpHeader.LAST_MODIFIED);
+        request.headers(headers ->
+        {
+            if (etag != null)
+                headers.put(HttpHeader.IF_NONE_MATCH, etag);
+            if (lastModified != null)
+                headers.put(HttpHeader.IF_MODIFIED_SINCE, lastModified);
+        });
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * @param notModified the headers of the 304 response that validated this entry
+     * @param requestTime the time at which the conditional request was sent
+     * @param responseTime the time at which the 304 response was received
+     * @return a new entry, with the stored headers updated with the ones of the 304 response
+     */
+    CachedEntry revalidated(HttpFields notModified, long requestTime, long responseTime)
+    {
+        HttpFields.Mutable headers = HttpFields.build(_headers);
+        for (HttpField field : notModified)
+        {
+            if (field.getHeader() == null || !CONTENT_HEADERS.contains(field.getHeader()))
+                headers.put(field);
+        }
+        return new CachedEntry(_key, _status, _reason, headers, _varyHeaders, _content, _mediaType, _encoding, requestTime, responseTime);
+    }
+
+    /**
+     * @param request the request to respond to
+     * @param now the current time, in milliseconds since the epoch
+     * @return a response for the request, with the stored content and the current {@code Age}
+     */
+    ContentResponse toResponse(Request request, long now)
+    {
+        HttpResponse response = new HttpResponse(request)
+            .version(HttpVersion.HTTP_1_1)
+            .status(_status)
+            .reason(_reason)
+            .headers(headers ->
+            {
+                headers.add(_headers);
+                headers.put(HttpHeader.AGE, TimeUnit.MILLISECONDS.toSeconds(getAge(now)));
+            });
+        return ContentResponse.from(response, _content, _mediaType, _encoding);
+    }
+
+    private long getDate()
+    {
+        long date = parseDate(_headers.get(HttpHeader.DATE));
+        return date < 0 ? _responseTime : date;
+    }
+
+    private static long parseDate(String value)
+    {
+        return value == null ? -1 : HttpDateTime.parseToEpoch(value);
+    }
+
+    private long getAgeValue()
+    {
+        try
+        {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, _headers.getLongField(HttpHeader.AGE)));
+        }
+        catch (NumberFormatException x)
+        {
+            return 0;
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException
+    {
+        out.writeUTF(_key);
+        out.writeInt(_status);
+        out.writeUTF(Objects.toString(_reason, ""));
+        writeFields(out, _headers);
+        writeFields(out, _varyHeaders);
+        out.writeUTF(Objects.toString(_mediaType, ""));
+        out.writeUTF(Objects.toString(_encoding, ""));
+        out.writeLong(_requestTime);
+        out.writeLong(_responseTime);
+        out.writeInt(_content.length);
+        out.write(_content);
+    }
+
+    static CachedEntry readFrom(DataInputStream in) throws IOException
+    {
+        String key = in.readUTF();
+        int status = in.readInt();
+        String reason = in.readUTF();
+        HttpFields headers = readFields(in);
+        HttpFields varyHeaders = readFields(in);
+        String mediaType = in.readUTF();
+        String encoding = in.readUTF();
+        long requestTime = in.readLong();
+        long responseTime = in.readLong();
+        byte[] content = in.readNBytes(in.readInt());
+        return new CachedEntry(key, status, reason, headers, varyHeaders, content,
+            mediaType.isEmpty() ? null : mediaType, encoding.isEmpty() ? null : encoding, requestTime, responseTime);
+    }
+
+    private static void writeFields(DataOutputStream out, HttpFields fields) throws IOException
+    {
+        out.writeInt(fields.size());
+        for (HttpField field : fields)
+        {
+            out.writeUTF(field.getName());
+            out.writeUTF(field.getValue());
+        }
+    }
+
+    private static HttpFields readFields(DataInputStream in) throws IOException
+    {
+        HttpFields.Mutable fields = HttpFields.build();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++)
+        {
+            fields.add(in.readUTF(), in.readUTF());
+        }
+        return fields;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[%s,status=%d,size=%d]".formatted(getClass().getSimpleName(), hashCode(), _key, _status, getSize());
+    }
+}
@@ -0,0 +1,459 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.cache;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.eclipse.jetty.client.CompletableResponseListener;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.client.transport.HttpResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * A private HTTP response cache, as described by RFC 9111, for the requests sent with a Jetty {@link HttpClient}.
+ * <p>
+ * Requests are sent with {@link #send(Request)} instead of {@link Request#send()}. The responses to {@code GET}
+ * requests are stored when {@code Cache-Control}, {@code Expires} or {@code Last-Modified} allow it, and later
+ * requests are answered from the cache, without a round trip, for as long as the stored response is fresh.
+ * A stale response is revalidated with a conditional request, with {@code If-None-Match} and
+ * {@code If-Modified-Since}, so that a {@code 304 Not Modified} response is enough to use it again.
+ * The responses to unsafe requests, such as {@code POST}, invalidate the stored response of their URI.
+ * </p>
+ * <p>
+ * Concurrent requests for the same URI that miss the cache are collapsed: only the first one is sent to
+ * the origin, and the others wait for its response.
+ * </p>
+ * <p>
+ * The responses are stored in memory, up to {@link #getMaxMemorySize()} bytes, and the least recently used
+ * ones are moved to the disk tier when a {@link #setDiskDirectory(Path) disk directory} is configured,
+ * or dropped otherwise. The files of the disk tier are read and written by the {@link #setExecutor(Executor) executor}.
+ * </p>
+ */
+public class HttpResponseCache extends ContainerLifeCycle
+{
+    // The status codes whose responses are cacheable by default, RFC 9110 section 15.1.
+    private static final Set<Integer> CACHEABLE_STATUSES = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+
+    private final Function<Request, CompletableFuture<ContentResponse>> _sender;
+    private final Map<String, CompletableFuture<ContentResponse>> _fetches = new ConcurrentHashMap<>();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _revalidations = new LongAdder();
+    private final LongAdder _notModified = new LongAdder();
+    private final LongAdder _collapsed = new LongAdder();
+    private final LongAdder _stored = new LongAdder();
+    private final LongAdder _invalidations = new LongAdder();
+    private Executor _executor;
+    private long _maxMemorySize = 32 * 1024 * 1024;
+    private Path _diskDirectory;
+    private long _maxDiskSize = 256 * 1024 * 1024;
+    private int _maxEntrySize = 2 * 1024 * 1024;
+    private CacheStore _store;
+
+    /**
+     * @param httpClient the client of the requests, that sends the ones that miss the cache
+     */
+    public HttpResponseCache(HttpClient httpClient)
+    {
+        this(request -> new CompletableResponseListener(request).send());
+        addBean(httpClient, false);
+    }
+
+    /**
+     * @param sender sends the requests that miss the cache, and buffers their responses,
+     * for example {@code PooledHttpClient::send}
+     */
+    public HttpResponseCache(Function<Request, CompletableFuture<ContentResponse>> sender)
+    {
+        _sender = sender;
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @param executor the executor that reads and writes the files of the disk tier, not managed by the cache,
+     * or null for a thread pool of the cache, must be set before starting
+     */
+    public void setExecutor(Executor executor)
+    {
+        _executor = executor;
+    }
+
+    public long getMaxMemorySize()
+    {
+        return _maxMemorySize;
+    }
+
+    /**
+     * @param maxMemorySize the maximum size, in bytes, of the responses stored in memory, must be set before starting
+     */
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        _maxMemorySize = maxMemorySize;
+    }
+
+    public Path getDiskDirectory()
+    {
+        return _diskDirectory;
+    }
+
+    /**
+     * @param diskDirectory the directory of the disk tier, or null for no disk tier, must be set before starting
+     */
+    public void setDiskDirectory(Path diskDirectory)
+    {
+        _diskDirectory = diskDirectory;
+    }
+
+    public long getMaxDiskSize()
+    {
+        return _maxDiskSize;
+    }
+
+    /**
+     * @param maxDiskSize the maximum size, in bytes, of the responses stored on disk, must be set before starting
+     */
+    public void setMaxDiskSize(long maxDiskSize)
+    {
+        _maxDiskSize = maxDiskSize;
+    }
+
+    public int getMaxEntrySize()
+    {
+        return _maxEntrySize;
+    }
+
+    /**
+     * @param maxEntrySize the maximum size, in bytes, of the content of a stored response
+     */
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        _maxEntrySize = maxEntrySize;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_executor == null)
+        {
+            QueuedThreadPool threadPool = new QueuedThreadPool();
+            threadPool.setName("http-cache");
+            addManaged(threadPool);
+            _executor = threadPool;
+        }
+        _store = new CacheStore(_maxMemorySize, _diskDirectory, _maxDiskSize, _executor);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        _store = null;
+        _fetches.clear();
+    }
+
+    /**
+     * Answers the request from the cache when possible, otherwise sends it and stores its response.
+     *
+     * @param request the request to send
+     * @return a future completed with the response, whose content is buffered,
+     * or failed with {@link IllegalStateException} if this cache is not started
+     */
+    public CompletableFuture<ContentResponse> send(Request request)
+    {
+        if (!isStarted())
+            return CompletableFuture.failedFuture(new IllegalStateException(this + " is not started"));
+
+        String method = request.getMethod();
+        String key = request.getURI().toString();
+        if (!HttpMethod.GET.is(method))
+        {
+            CompletableFuture<ContentResponse> response = _sender.apply(request);
+            if (!HttpMethod.HEAD.is(method) && !HttpMethod.OPTIONS.is(method) && !HttpMethod.TRACE.is(method))
+                return response.thenApply(r -> invalidate(key, r));
+            return response;
+        }
+
+        // Conditional requests of the application are its own business.
+        CacheControl requestCacheControl = CacheControl.from(request.getHeaders());
+        if (requestCacheControl.noStore() || request.getHeaders().contains(HttpHeader.IF_NONE_MATCH) ||
+            request.getHeaders().contains(HttpHeader.IF_MODIFIED_SINCE) || request.getHeaders().contains(HttpHeader.RANGE))
+            return _sender.apply(request);
+
+        long now = System.currentTimeMillis();
+        return _store.get(key).thenCompose(entry -> send(request, key, requestCacheControl, entry, now));
+    }
+
+    private CompletableFuture<ContentResponse> send(Request request, String key, CacheControl requestCacheControl, CachedEntry entry, long now)
+    {
+        if (entry != null && !entry.matches(request.getHeaders()))
+            entry = null;
+        if (entry != null && entry.isFresh(now) && !requestCacheControl.noCache() &&
+            (requestCacheControl.maxAge() < 0 || entry.getAge(now) <= requestCacheControl.maxAge() * 1000))
+        {
+            _hits.increment();
+            return CompletableFuture.completedFuture(entry.toResponse(request, now));
+        }
+
+        if (requestCacheControl.onlyIfCached())
+        {
+            _misses.increment();
+            HttpResponse response = new HttpResponse(request).version(HttpVersion.HTTP_1_1).status(HttpStatus.GATEWAY_TIMEOUT_504);
+            return CompletableFuture.completedFuture(ContentResponse.from(response, new byte[0], null, null));
+        }
+
+        // Only one request at a time goes to the origin for a key.
+        CompletableFuture<ContentResponse> fetch = new CompletableFuture<>();
+        CompletableFuture<ContentResponse> leader = _fetches.putIfAbsent(key, fetch);
+        if (leader != null)
+        {
+            _collapsed.increment();
+            return leader.thenCompose(response -> onCollapsed(request, key, response));
+        }
+
+        CachedEntry stale = entry != null && entry.addValidators(request) ? entry : null;
+        if (stale == null)
+            _misses.increment();
+        else
+            _revalidations.increment();
+        CompletableFuture<ContentResponse> response;
+        try
+        {
+            response = _sender.apply(request);
+        }
+        catch (Throwable x)
+        {
+            // The waiting requests must not wait for a fetch that never completes.
+            _fetches.remove(key, fetch);
+            fetch.completeExceptionally(x);
+            return fetch;
+        }
+        response.whenComplete((result, failure) ->
+        {
+            ContentResponse stored = null;
+            Throwable error = failure;
+            try
+            {
+                if (error == null)
+                    stored = onResponse(request, key, stale, now, result);
+            }
+            catch (Throwable x)
+            {
+                error = x;
+            }
+            // The response is stored, later requests can use it rather than wait for this fetch.
+            _fetches.remove(key, fetch);
+            if (error == null)
+                fetch.complete(stored);
+            else
+                fetch.completeExceptionally(error);
+        });
+        return fetch;
+    }
+
+    private ContentResponse onResponse(Request request, String key, CachedEntry stale, long requestTime, ContentResponse response)
+    {
+        long responseTime = System.currentTimeMillis();
+        if (stale != null && response.getStatus() == HttpStatus.NOT_MODIFIED_304)
+        {
+            _notModified.increment();
+            CachedEntry revalidated = stale.revalidated(response.getHeaders(), requestTime, responseTime);
+            _store.put(revalidated);
+            return revalidated.toResponse(request, responseTime);
+        }
+
+        if (isStorable(response))
+        {
+            _store.put(CachedEntry.of(key, request, response, requestTime, responseTime));
+            _stored.increment();
+        }
+        else if (stale != null)
+        {
+            _store.remove(key);
+        }
+        return response;
+    }
+
+    private CompletableFuture<ContentResponse> onCollapsed(Request request, String key, ContentResponse response)
+    {
+        long now = System.currentTimeMillis();
+        return _store.get(key).thenCompose(entry ->
+        {
+            if (entry != null && entry.matches(request.getHeaders()))
+                return CompletableFuture.completedFuture(entry.toResponse(request, now));
+            // The response was not stored, it can be shared unless it varies on the request headers.
+            if (CachedEntry.varyNames(response.getHeaders()).isEmpty())
+                return CompletableFuture.completedFuture(response);
+            return _sender.apply(request);
+        });
+    }
+
+    private boolean isStorable(ContentResponse response)
+    {
+        if (!CACHEABLE_STATUSES.contains(response.getStatus()))
+            return false;
+        if (CacheControl.from(response.getHeaders()).noStore())
+            return false;
+        if (CachedEntry.varyNames(response.getHeaders()).contains("*"))
+            return false;
+        if (response.getContent().length > _maxEntrySize)
+            return false;
+        // Without freshness information nor validators, a stored response could never be used.
+        return response.getHeaders().contains(HttpHeader.CACHE_CONTROL) ||
+            response.getHeaders().contains(HttpHeader.EXPIRES) ||
+            response.getHeaders().contains(HttpHeader.LAST_MODIFIED) ||
+            response.getHeaders().contains(HttpHeader.ETAG);
+    }
+
+    private ContentResponse invalidate(String key, ContentResponse response)
+    {
+        // A successful unsafe request changes the state of the resource, RFC 9111 section 4.4.
+        if (response.getStatus() >= 200 && response.getStatus() < 400)
+        {
+            _store.remove(key);
+            _invalidations.increment();
+        }
+        return response;
+    }
+
+    /**
+     * @return the number of requests answered from the cache without contacting the origin
+     */
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the number of requests sent to the origin because no response was stored
+     */
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the number of conditional requests sent to the origin to revalidate a stale response
+     */
+    public long getRevalidations()
+    {
+        return _revalidations.sum();
+    }
+
+    /**
+     * @return the number of revalidations that the origin answered with {@code 304 Not Modified}
+     */
+    public long getNotModified()
+    {
+        return _notModified.sum();
+    }
+
+    /**
+     * @return the number of requests that waited for the response to a concurrent request instead of being sent
+     */
+    public long getCollapsed()
+    {
+        return _collapsed.sum();
+    }
+
+    /**
+     * @return the number of responses stored
+     */
+    public long getStored()
+    {
+        return _stored.sum();
+    }
+
+    /**
+     * @return the number of stored responses invalidated by unsafe requests
+     */
+    public long getInvalidations()
+    {
+        return _invalidations.sum();
+    }
+
+    /**
+     * @return the number of responses in memory
+     */
+    public int getMemoryEntries()
+    {
+        return _store.getMemoryEntries();
+    }
+
+    /**
+     * @return the size, in bytes, of the responses in memory
+     */
+    public long getMemorySize()
+    {
+        return _store.getMemorySize();
+    }
+
+    /**
+     * @return the number of responses on disk
+     */
+    public int getDiskEntries()
+    {
+        return _store.getDiskEntries();
+    }
+
+    /**
+     * @return the size, in bytes, of the responses on disk
+     */
+    public long getDiskSize()
+    {
+        return _store.getDiskSize();
+    }
+
+    /**
+     * @return the number of responses read back from disk
+     */
+    public long getDiskReads()
+    {
+        return _store.getDiskReads();
+    }
+
+    /**
+     * @return the number of stored responses dropped to make room for others
+     */
+    public long getEvictions()
+    {
+        return _store.getEvictions();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[hits=%d,misses=%d,revalidations=%d,notModified=%d,collapsed=%d]".formatted(
+            getClass().getSimpleName(), hashCode(), getHits(), getMisses(), getRevalidations(), getNotModified(), getCollapsed());
+    }
+}
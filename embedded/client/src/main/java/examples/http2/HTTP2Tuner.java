@@ -0,0 +1,386 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.http2;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the receive windows and the max concurrent streams of HTTP/2 sessions.
+ * <p>
+ * On the client side, {@link #configure(HTTP2Client)} sets the initial receive windows of the sessions
+ * to {@link #getInitialSessionRecvWindow()} and {@link #getInitialStreamRecvWindow()}, which should be a few
+ * times the bandwidth-delay product of the expected network paths: smaller windows limit the throughput
+ * to a window per round trip, while larger ones let a fast server buffer more on a slow path.
+ * </p>
+ * <p>
+ * When a {@link #setThreadPool(ThreadPool) thread pool} is set, as it is on the server side, the tuner
+ * also checks every {@link #getPeriod() period} whether it {@link #isUnderPressure() is under pressure}.
+ * If so, the max concurrent streams that the peers may open is halved, down to {@link #getMinConcurrentStreams()},
+ * otherwise it is increased by an eighth of {@link #getMaxConcurrentStreams()}, back up to it.
+ * The new value is sent to the peers of the sessions with a {@code SETTINGS} frame; the streams
+ * already open are not reset, but the peers may not open new ones above the new limit.
+ * A server is configured with:
+ * </p>
+ * <pre>{@code
+ * tuner.setThreadPool(server.getThreadPool());
+ * server.addBean(tuner);
+ * h2c.setMaxConcurrentStreams(tuner.getMaxConcurrentStreams());
+ * connector.addEventListener(tuner);
+ * }</pre>
+ * <p>
+ * The tuner is a {@link Connection.Listener}, that knows the sessions of the connections it listens to,
+ * those of a server connector, or those of a {@code HttpClient} when it is added as one of its beans.
+ * The windows of each session are exported by {@link #getConnectionWindows()}, and dumped with the tuner.
+ * </p>
+ */
+public class HTTP2Tuner extends ContainerLifeCycle implements Connection.Listener
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HTTP2Tuner.class);
+
+    private final Set<HTTP2Session> _sessions = ConcurrentHashMap.newKeySet();
+    private final Scheduler _scheduler = new ScheduledExecutorScheduler("http2-tuner", true);
+    private final LongAdder _concurrencyDecreases = new LongAdder();
+    private int _initialSessionRecvWindow = 1024 * 1024;
+    private int _initialStreamRecvWindow = 256 * 1024;
+    private int _minConcurrentStreams = 8;
+    private int _maxConcurrentStreams = 128;
+    private long _period = 1000;
+    private double _maxThreadUtilization = 0.9;
+    private double _maxHeapUtilization = 0.9;
+    private ThreadPool _threadPool;
+    private volatile int _concurrentStreams = _maxConcurrentStreams;
+    private Scheduler.Task _task;
+
+    public HTTP2Tuner()
+    {
+        addBean(_scheduler);
+    }
+
+    /**
+     * Sets the initial windows of this tuner to the given client.
+     *
+     * @param client the client to configure, before it is started
+     */
+    public void configure(HTTP2Client client)
+    {
+        client.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
+        client.setInitialStreamRecvWindow(getInitialStreamRecvWindow());
+    }
+
+    public int getInitialSessionRecvWindow()
+    {
+        return _initialSessionRecvWindow;
+    }
+
+    /**
+     * @param initialSessionRecvWindow the initial size of the session receive windows of a client
+     */
+    public void setInitialSessionRecvWindow(int initialSessionRecvWindow)
+    {
+        _initialSessionRecvWindow = initialSessionRecvWindow;
+    }
+
+    public int getInitialStreamRecvWindow()
+    {
+        return _initialStreamRecvWindow;
+    }
+
+    /**
+     * @param initialStreamRecvWindow the initial size of the stream receive windows of a client
+     */
+    public void setInitialStreamRecvWindow(int initialStreamRecvWindow)
+    {
+        _initialStreamRecvWindow = initialStreamRecvWindow;
+    }
+
+    public int getMinConcurrentStreams()
+    {
+        return _minConcurrentStreams;
+    }
+
+    /**
+     * @param minConcurrentStreams the max concurrent streams below which the peers are not limited under pressure
+     */
+    public void setMinConcurrentStreams(int minConcurrentStreams)
+    {
+        _minConcurrentStreams = minConcurrentStreams;
+    }
+
+    public int getMaxConcurrentStreams()
+    {
+        return _maxConcurrentStreams;
+    }
+
+    /**
+     * @param maxConcurrentStreams the max concurrent streams that the peers may open without pressure,
+     * which should be the one of the server connection factory
+     */
+    public void setMaxConcurrentStreams(int maxConcurrentStreams)
+    {
+        _maxConcurrentStreams = maxConcurrentStreams;
+        _concurrentStreams = maxConcurrentStreams;
+    }
+
+    /**
+     * @return the max concurrent streams that the peers may currently open
+     */
+    public int getConcurrentStreams()
+    {
+        return _concurrentStreams;
+    }
+
+    /**
+     * @return the number of times the max concurrent streams has been decreased under pressure
+     */
+    public long getConcurrencyDecreases()
+    {
+        return _concurrencyDecreases.sum();
+    }
+
+    public long getPeriod()
+    {
+        return _period;
+    }
+
+    /**
+     * @param period the period in milliseconds of the pressure checks
+     */
+    public void setPeriod(long period)
+    {
+        _period = period;
+    }
+
+    public double getMaxThreadUtilization()
+    {
+        return _maxThreadUtilization;
+    }
+
+    /**
+     * @param maxThreadUtilization the utilization rate of a {@link QueuedThreadPool} above which it is under pressure
+     */
+    public void setMaxThreadUtilization(double maxThreadUtilization)
+    {
+        _maxThreadUtilization = maxThreadUtilization;
+    }
+
+    public double getMaxHeapUtilization()
+    {
+        return _maxHeapUtilization;
+    }
+
+    /**
+     * @param maxHeapUtilization the ratio of the maximum heap size above which the used heap is under pressure
+     */
+    public void setMaxHeapUtilization(double maxHeapUtilization)
+    {
+        _maxHeapUtilization = maxHeapUtilization;
+    }
+
+    public ThreadPool getThreadPool()
+    {
+        return _threadPool;
+    }
+
+    /**
+     * @param threadPool the thread pool whose pressure limits the max concurrent streams, or null to not limit them
+     */
+    public void setThreadPool(ThreadPool threadPool)
+    {
+        _threadPool = threadPool;
+    }
+
+    /**
+     * @return the windows of the open connections
+     */
+    public List<ConnectionWindow> getConnectionWindows()
+    {
+        return _sessions.stream()
+            .filter(session -> !session.isClosed())
+            .map(session -> ConnectionWindow.of(session, getInitialSessionRecvWindow(session)))
+            .toList();
+    }
+
+    private int getInitialSessionRecvWindow(HTTP2Session session)
+    {
+        // Client sessions do not record the initial window that the client configured.
+        int initialSessionRecvWindow = session.getInitialSessionRecvWindow();
+        return initialSessionRecvWindow > 0 ? initialSessionRecvWindow : getInitialSessionRecvWindow();
+    }
+
+    @Override
+    public void onOpened(Connection connection)
+    {
+        if (connection instanceof HTTP2Connection http2Connection)
+            _sessions.add(http2Connection.getSession());
+    }
+
+    @Override
+    public void onClosed(Connection connection)
+    {
+        if (connection instanceof HTTP2Connection http2Connection)
+            _sessions.remove(http2Connection.getSession());
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _concurrentStreams = _maxConcurrentStreams;
+        super.doStart();
+        _task = _scheduler.schedule(this::run, _period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_task != null)
+            _task.cancel();
+        _task = null;
+        super.doStop();
+        _sessions.clear();
+    }
+
+    private void run()
+    {
+        try
+        {
+            tune();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not tune {}", this, x);
+        }
+        if (isRunning())
+            _task = _scheduler.schedule(this::run, _period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * When a thread pool is set, adjusts the max concurrent streams to the current pressure,
+     * and sends it to the sessions that do not have it yet, such as the ones opened since the last change.
+     */
+    public void tune()
+    {
+        _sessions.removeIf(HTTP2Session::isClosed);
+        if (_threadPool == null)
+            return;
+
+        int concurrentStreams = _concurrentStreams;
+        int newConcurrentStreams;
+        if (isUnderPressure())
+            newConcurrentStreams = Math.max(_minConcurrentStreams, concurrentStreams / 2);
+        else
+            newConcurrentStreams = Math.min(_maxConcurrentStreams, concurrentStreams + Math.max(1, _maxConcurrentStreams / 8));
+        if (newConcurrentStreams < concurrentStreams)
+            _concurrencyDecreases.increment();
+        _concurrentStreams = newConcurrentStreams;
+        if (newConcurrentStreams != concurrentStreams && LOG.isDebugEnabled())
+            LOG.debug("Max concurrent streams {} -> {} for {} sessions", concurrentStreams, newConcurrentStreams, _sessions.size());
+        for (HTTP2Session session : _sessions)
+        {
+            // The new limit is enforced locally when the SETTINGS frame is sent.
+            if (session.getMaxRemoteStreams() != newConcurrentStreams)
+                session.settings(new SettingsFrame(Map.of(SettingsFrame.MAX_CONCURRENT_STREAMS, newConcurrentStreams), false), Callback.NOOP);
+        }
+    }
+
+    /**
+     * <p>Whether the thread pool is low on threads or too busy, or the used heap is too large.</p>
+     * <p>The used heap includes the garbage not yet collected, so the heap is only under pressure
+     * when the collector cannot keep up with the allocations.</p>
+     *
+     * @return whether fewer concurrent streams should be accepted
+     */
+    protected boolean isUnderPressure()
+    {
+        ThreadPool threadPool = _threadPool;
+        if (threadPool != null && threadPool.isLowOnThreads())
+            return true;
+        if (threadPool instanceof QueuedThreadPool queuedThreadPool && queuedThreadPool.getUtilizationRate() > _maxThreadUtilization)
+            return true;
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        return usedHeap > runtime.maxMemory() * _maxHeapUtilization;
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        dumpObjects(out, indent, new DumpableCollection("connections", getConnectionWindows()));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[sessions=%d,concurrentStreams=%d/%d]".formatted(getClass().getSimpleName(), hashCode(),
+            _sessions.size(), getConcurrentStreams(), getMaxConcurrentStreams());
+    }
+
+    /**
+     * The receive and send windows of a connection.
+     *
+     * @param remoteAddress the address of the peer
+     * @param sessionRecvWindow the current session receive window
+     * @param initialSessionRecvWindow the size of the session receive window when fully replenished
+     * @param sessionSendWindow the current session send window
+     * @param maxRemoteStreams the max concurrent streams that the peer may open
+     */
+    public record ConnectionWindow(SocketAddress remoteAddress, int sessionRecvWindow, int initialSessionRecvWindow,
+                                   int sessionSendWindow, int maxRemoteStreams)
+    {
+        private static ConnectionWindow of(HTTP2Session session, int initialSessionRecvWindow)
+        {
+            return new ConnectionWindow(session.getRemoteSocketAddress(), session.getRecvWindow(), initialSessionRecvWindow,
+                session.getSendWindow(), session.getMaxRemoteStreams());
+        }
+
+        /**
+         * @return the ratio of the session receive window that is consumed and not yet replenished
+         */
+        public double utilization()
+        {
+            if (initialSessionRecvWindow <= 0)
+                return 0.0;
+            return Math.max(0.0, 1.0 - (double)sessionRecvWindow / initialSessionRecvWindow);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s recv=%d/%d(%.0f%%) send=%d maxRemoteStreams=%d".formatted(remoteAddress,
+                sessionRecvWindow, initialSessionRecvWindow, utilization() * 100, sessionSendWindow, maxRemoteStreams);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.transport.HttpClientConnectionFactory;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PooledHttpClientTest
+{
+    private final BlockingQueue<Runnable> pendingResponses = new LinkedBlockingQueue<>();
+    private Server server;
+    private String uri;
+    private PooledHttpClient client;
+
+    @BeforeEach
+    public void startServer() throws Exception
+    {
+        server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig), new HTTP2CServerConnectionFactory(httpConfig));
+        server.addConnector(connector);
+        server.setHandler(new PendingResponseHandler());
+        server.start();
+        uri = "http://localhost:" + connector.getLocalPort() + "/";
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    private void startClient(boolean http2, int maxConnections) throws Exception
+    {
+        ClientConnector connector = new ClientConnector();
+        ClientConnectionFactory.Info protocol = http2
+            ? new ClientConnectionFactoryOverHTTP2.HTTP2(new HTTP2Client(connector))
+            : HttpClientConnectionFactory.HTTP11;
+        client = new PooledHttpClient(connector, protocol);
+        client.setMaxConnectionsPerDestination(maxConnections);
+        client.start();
+    }
+
+    private List<CompletableFuture<ContentResponse>> send(int count)
+    {
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            responses.add(client.send(client.newRequest(uri)));
+        }
+        return responses;
+    }
+
+    private void awaitPendingResponses(int count) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pendingResponses.size() < count && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(count, pendingResponses.size());
+    }
+
+    private void respond(List<CompletableFuture<ContentResponse>> responses) throws Exception
+    {
+        for (int i = 0; i < responses.size(); i++)
+        {
+            pendingResponses.poll(5, TimeUnit.SECONDS).run();
+        }
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            assertEquals("OK", response.get(5, TimeUnit.SECONDS).getContentAsString());
+        }
+    }
+
+    @Test
+    public void testHTTP11Pooled() throws Exception
+    {
+        startClient(false, 4);
+        client.prewarm(uri, 4).get(5, TimeUnit.SECONDS);
+        assertEquals(4, client.getConnectionCount());
+        assertEquals(0, client.getActiveConnectionCount());
+
+        List<CompletableFuture<ContentResponse>> responses = send(4);
+        awaitPendingResponses(4);
+        // Each connection carries one request.
+        assertEquals(1.0, client.getPoolUtilization());
+        respond(responses);
+
+        respond(send(20));
+        // The pre-warmed connections were reused.
+        assertEquals(4, client.getConnectionsOpened());
+    }
+
+    @Test
+    public void testHTTP2Multiplexed() throws Exception
+    {
+        startClient(true, 4);
+        client.prewarm(uri, 1).get(5, TimeUnit.SECONDS);
+        assertEquals(1, client.getConnectionCount());
+
+        List<CompletableFuture<ContentResponse>> responses = send(50);
+        awaitPendingResponses(50);
+        assertEquals(0.25, client.getPoolUtilization());
+        respond(responses);
+        assertEquals(1, client.getConnectionsOpened());
+    }
+
+    @Test
+    public void testMaxConcurrentStreams() throws Exception
+    {
+        startClient(true, 4);
+        client.setMaxConcurrentStreams(2);
+
+        List<CompletableFuture<ContentResponse>> responses = send(8);
+        awaitPendingResponses(8);
+        assertEquals(4, client.getConnectionCount());
+        respond(responses);
+    }
+
+    @Test
+    public void testMaxRequestsInFlight() throws Exception
+    {
+        startClient(true, 1);
+        client.setMaxRequestsInFlight(2);
+
+        List<CompletableFuture<ContentResponse>> responses = send(5);
+        awaitPendingResponses(2);
+        assertEquals(2, client.getRequestsInFlight());
+        assertEquals(3, client.getRequestsQueued());
+
+        // Slow responses, so that the queued requests wait.
+        for (int i = 0; i < 5; i++)
+        {
+            Thread.sleep(50);
+            pendingResponses.poll(5, TimeUnit.SECONDS).run();
+        }
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            assertEquals(200, response.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(0, client.getRequestsInFlight());
+        assertEquals(5, client.getRequests());
+        assertThat(client.getMaxQueueWait(TimeUnit.MILLISECONDS), greaterThan(50L));
+    }
+
+    @Test
+    public void testFailedSendReleasesSlot() throws Exception
+    {
+        startClient(false, 1);
+        client.setMaxRequestsInFlight(1);
+
+        // Requests that cannot be sent fail without a network round trip, one after the other,
+        // each one sent from the completion of the previous one.
+        List<CompletableFuture<ContentResponse>> failures = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++)
+        {
+            failures.add(client.send(client.newRequest("unknown://localhost/")));
+        }
+        for (CompletableFuture<ContentResponse> failure : failures)
+        {
+            assertThrows(ExecutionException.class, () -> failure.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, client.getRequestsInFlight());
+
+        // The slots of the failed requests were released.
+        List<CompletableFuture<ContentResponse>> responses = send(1);
+        awaitPendingResponses(1);
+        respond(responses);
+    }
+
+    /**
+     * Responds to each request only when the test runs its pending response.
+     */
+    private class PendingResponseHandler extends Handler.Abstract
+    {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            pendingResponses.offer(() -> Content.Sink.write(response, true, "OK", callback));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.cache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.transport.HttpResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HttpResponseCacheTest
+{
+    private final Map<String, AtomicInteger> originRequests = new ConcurrentHashMap<>();
+    private final CountDownLatch slowLatch = new CountDownLatch(1);
+    private Server server;
+    private HttpClient httpClient;
+    private HttpResponseCache cache;
+
+    @BeforeEach
+    public void startServerAndClient() throws Exception
+    {
+        server = new Server(0);
+        server.setHandler(new OriginHandler());
+        server.start();
+        httpClient = new HttpClient();
+        httpClient.start();
+        cache = new HttpResponseCache(httpClient);
+        cache.start();
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        slowLatch.countDown();
+        LifeCycle.stop(cache);
+        LifeCycle.stop(httpClient);
+        LifeCycle.stop(server);
+    }
+
+    private ContentResponse GET(String path) throws Exception
+    {
+        return cache.send(httpClient.newRequest(server.getURI().resolve(path))).get(5, TimeUnit.SECONDS);
+    }
+
+    private int originRequests(String path)
+    {
+        return originRequests.getOrDefault(path, new AtomicInteger()).get();
+    }
+
+    @Test
+    public void testFreshResponseIsReused() throws Exception
+    {
+        ContentResponse first = GET("/fresh");
+        assertNull(first.getHeaders().get(HttpHeader.AGE));
+        ContentResponse second = GET("/fresh");
+        assertEquals(200, second.getStatus());
+        assertEquals("/fresh", second.getContentAsString());
+        assertEquals("text/plain", second.getMediaType());
+        assertNotNull(second.getHeaders().get(HttpHeader.AGE));
+
+        assertEquals(1, originRequests("/fresh"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidated() throws Exception
+    {
+        GET("/stale");
+        ContentResponse second = GET("/stale");
+        // The origin answered 304, the stored content is used.
+        assertEquals(200, second.getStatus());
+        assertEquals("/stale", second.getContentAsString());
+
+        assertEquals(2, originRequests("/stale"));
+        assertEquals(1, cache.getRevalidations());
+        assertEquals(1, cache.getNotModified());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testHeuristicFreshness() throws Exception
+    {
+        GET("/last-modified");
+        GET("/last-modified");
+        assertEquals(1, originRequests("/last-modified"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testRequestNoCache() throws Exception
+    {
+        GET("/fresh");
+        ContentResponse response = cache.send(httpClient.newRequest(server.getURI().resolve("/fresh"))
+            .headers(headers -> headers.put(HttpHeader.CACHE_CONTROL, "no-cache"))).get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.getStatus());
+        assertEquals(2, originRequests("/fresh"));
+        assertEquals(1, cache.getNotModified());
+    }
+
+    @Test
+    public void testNoStore() throws Exception
+    {
+        GET("/no-store");
+        GET("/no-store");
+        assertEquals(2, originRequests("/no-store"));
+        assertEquals(0, cache.getStored());
+    }
+
+    @Test
+    public void testUnsafeRequestInvalidates() throws Exception
+    {
+        GET("/fresh");
+        cache.send(httpClient.newRequest(server.getURI().resolve("/fresh")).method(HttpMethod.POST)).get(5, TimeUnit.SECONDS);
+        assertEquals(1, cache.getInvalidations());
+        GET("/fresh");
+        assertEquals(3, originRequests("/fresh"));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testVary() throws Exception
+    {
+        cache.send(httpClient.newRequest(server.getURI().resolve("/vary")).headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "en"))).get(5, TimeUnit.SECONDS);
+        cache.send(httpClient.newRequest(server.getURI().resolve("/vary")).headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "en"))).get(5, TimeUnit.SECONDS);
+        ContentResponse fr = cache.send(httpClient.newRequest(server.getURI().resolve("/vary")).headers(headers -> headers.put(HttpHeader.ACCEPT_LANGUAGE, "fr"))).get(5, TimeUnit.SECONDS);
+        assertEquals("/vary fr", fr.getContentAsString());
+        assertEquals(2, originRequests("/vary"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCollapsed() throws Exception
+    {
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            responses.add(cache.send(httpClient.newRequest(server.getURI().resolve("/slow"))));
+        }
+        assertEquals(9, cache.getCollapsed());
+        slowLatch.countDown();
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            assertEquals("/slow", response.get(5, TimeUnit.SECONDS).getContentAsString());
+        }
+        assertEquals(1, originRequests("/slow"));
+    }
+
+    @Test
+    public void testDiskTier(@TempDir Path directory) throws Exception
+    {
+        cache.stop();
+        cache.setMaxMemorySize(3000);
+        cache.setDiskDirectory(directory);
+        // Read and write the files before the responses complete.
+        cache.setExecutor(Runnable::run);
+        cache.start();
+
+        // Each response is about 2 KiB, only one fits in memory.
+        GET("/large/1");
+        GET("/large/2");
+        GET("/large/3");
+        assertEquals(1, cache.getMemoryEntries());
+        assertEquals(2, cache.getDiskEntries());
+
+        assertEquals("/large/1".repeat(256), GET("/large/1").getContentAsString());
+        assertEquals(1, cache.getDiskReads());
+        assertEquals(1, cache.getHits());
+
+        // The disk tier survives a restart.
+        cache.stop();
+        cache.start();
+        assertEquals(2, cache.getDiskEntries());
+        assertEquals("/large/2".repeat(256), GET("/large/2").getContentAsString());
+        assertEquals(1, originRequests("/large/2"));
+    }
+
+    @Test
+    public void testRemoveCancelsPendingWrite(@TempDir Path directory) throws Exception
+    {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        CacheStore store = new CacheStore(1000, directory, 100_000, tasks::offer);
+
+        // Too large for memory, the entry is written to disk.
+        store.put(newEntry("/large", 2000));
+        store.remove("/large");
+        runAll(tasks);
+
+        assertEquals(0, store.getDiskEntries());
+        assertNull(store.get("/large").get());
+        try (Stream<Path> files = Files.list(directory))
+        {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testPromotionDoesNotOverwriteNewerEntry(@TempDir Path directory) throws Exception
+    {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        CacheStore store = new CacheStore(1000, directory, 100_000, tasks::offer);
+        store.put(newEntry("/entry", 2000));
+        runAll(tasks);
+        assertEquals(1, store.getDiskEntries());
+
+        // A newer entry is stored while the older one is read from disk.
+        CompletableFuture<CachedEntry> read = store.get("/entry");
+        CachedEntry newer = newEntry("/entry", 10);
+        store.put(newer);
+        runAll(tasks);
+
+        assertSame(newer, read.get());
+        assertSame(newer, store.get("/entry").get());
+        assertEquals(0, store.getDiskEntries());
+        assertEquals(1, store.getMemoryEntries());
+    }
+
+    @Test
+    public void testSenderFailure() throws Exception
+    {
+        AtomicInteger sends = new AtomicInteger();
+        HttpResponseCache failingCache = new HttpResponseCache(request ->
+        {
+            sends.incrementAndGet();
+            throw new IllegalStateException("no origin");
+        });
+        failingCache.start();
+        try
+        {
+            // The failed fetch does not remain, the second request is sent rather than collapsed on it.
+            for (int i = 0; i < 2; i++)
+            {
+                CompletableFuture<ContentResponse> response = failingCache.send(httpClient.newRequest(server.getURI().resolve("/fresh")));
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, failure.getCause());
+            }
+            assertEquals(2, sends.get());
+            assertEquals(0, failingCache.getCollapsed());
+        }
+        finally
+        {
+            failingCache.stop();
+        }
+    }
+
+    private CachedEntry newEntry(String path, int size)
+    {
+        org.eclipse.jetty.client.Request request = httpClient.newRequest(server.getURI().resolve(path));
+        HttpResponse response = new HttpResponse(request).version(HttpVersion.HTTP_1_1).status(HttpStatus.OK_200);
+        long now = System.currentTimeMillis();
+        return CachedEntry.of(path, request, ContentResponse.from(response, new byte[size], null, null), now, now);
+    }
+
+    private static void runAll(Queue<Runnable> tasks)
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+        {
+            task.run();
+        }
+    }
+
+    @Test
+    public void testNotStarted() throws Exception
+    {
+        cache.stop();
+        CompletableFuture<ContentResponse> response = cache.send(httpClient.newRequest(server.getURI().resolve("/fresh")));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(0, originRequests("/fresh"));
+    }
+
+    private class OriginHandler extends Handler.Abstract
+    {
+        private static final String ETAG = "\"v1\"";
+
+        @Override
+        public boolean handle(Request request, Response response, Callback callback) throws Exception
+        {
+            String path = Request.getPathInContext(request);
+            originRequests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain");
+            String content = path;
+            switch (path)
+            {
+                case "/fresh" ->
+                {
+                    response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                    response.getHeaders().put(HttpHeader.ETAG, ETAG);
+                }
+                case "/stale" ->
+                {
+                    response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=0");
+                    response.getHeaders().put(HttpHeader.ETAG, ETAG);
+                }
+                case "/last-modified" ->
+                    response.getHeaders().putDate(HttpHeader.LAST_MODIFIED, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10));
+                case "/no-store" -> response.getHeaders().put(HttpHeader.CACHE_CONTROL, "no-store");
+                case "/vary" ->
+                {
+                    response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                    response.getHeaders().put(HttpHeader.VARY, "Accept-Language");
+                    content = path + " " + request.getHeaders().get(HttpHeader.ACCEPT_LANGUAGE);
+                }
+                case "/slow" ->
+                {
+                    response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                    slowLatch.await(5, TimeUnit.SECONDS);
+                }
+                default ->
+                {
+                    response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                    content = path.repeat(256);
+                }
+            }
+
+            if (ETAG.equals(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)))
+            {
+                response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                callback.succeeded();
+                return true;
+            }
+            Content.Sink.write(response, true, content, callback);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.http2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import examples.PooledHttpClient;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HTTP2TunerTest
+{
+    private static final int CONTENT_LENGTH = 1024 * 1024;
+
+    private Server server;
+    private String uri;
+    private PooledHttpClient client;
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    private void startServer(HTTP2Tuner tuner) throws Exception
+    {
+        if (tuner == null)
+        {
+            server = new Server();
+            server.addConnector(new ServerConnector(server, new HTTP2CServerConnectionFactory(new HttpConfiguration())));
+        }
+        else
+        {
+            server = TunedHTTP2Server.newServer(0, tuner);
+        }
+        server.setHandler(new ContentHandler());
+        server.start();
+        uri = "http://localhost:" + ((ServerConnector)server.getConnectors()[0]).getLocalPort() + "/";
+    }
+
+    private void startClient(HTTP2Tuner tuner) throws Exception
+    {
+        ClientConnector connector = new ClientConnector();
+        HTTP2Client http2Client = new HTTP2Client(connector);
+        if (tuner != null)
+            tuner.configure(http2Client);
+        client = new PooledHttpClient(connector, new ClientConnectionFactoryOverHTTP2.HTTP2(http2Client));
+        client.setMaxConnectionsPerDestination(1);
+        if (tuner != null)
+        {
+            // The tuner knows the sessions of the connections of the client.
+            client.getHttpClient().addBean(tuner);
+        }
+        client.start();
+    }
+
+    private void download(int count) throws Exception
+    {
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            responses.add(client.send(client.newRequest(uri)));
+        }
+        for (CompletableFuture<ContentResponse> response : responses)
+        {
+            assertEquals(CONTENT_LENGTH, response.get(10, TimeUnit.SECONDS).getContent().length);
+        }
+    }
+
+    @Test
+    public void testConnectionWindows() throws Exception
+    {
+        startServer(null);
+        HTTP2Tuner tuner = new HTTP2Tuner();
+        tuner.setInitialSessionRecvWindow(128 * 1024);
+        tuner.setInitialStreamRecvWindow(64 * 1024);
+        startClient(tuner);
+
+        download(4);
+
+        List<HTTP2Tuner.ConnectionWindow> windows = tuner.getConnectionWindows();
+        assertEquals(1, windows.size());
+        HTTP2Tuner.ConnectionWindow window = windows.get(0);
+        assertEquals(128 * 1024, window.initialSessionRecvWindow());
+        assertThat(window.sessionRecvWindow(), lessThanOrEqualTo(128 * 1024));
+        assertThat(window.utilization(), lessThanOrEqualTo(1.0));
+
+        client.stop();
+        assertEquals(List.of(), tuner.getConnectionWindows());
+    }
+
+    @Test
+    public void testConcurrentStreamsUnderPressure() throws Exception
+    {
+        PressureTuner tuner = new PressureTuner();
+        // The pressure is only checked by the test.
+        tuner.setPeriod(TimeUnit.HOURS.toMillis(1));
+        tuner.setMaxConcurrentStreams(64);
+        tuner.setMinConcurrentStreams(16);
+        startServer(tuner);
+        startClient(null);
+        download(1);
+        awaitMaxRemoteStreams(tuner, 64);
+
+        tuner.pressure = true;
+        tuner.tune();
+        assertEquals(32, tuner.getConcurrentStreams());
+        awaitMaxRemoteStreams(tuner, 32);
+        tuner.tune();
+        tuner.tune();
+        assertEquals(16, tuner.getConcurrentStreams());
+        // Already at the minimum.
+        assertEquals(2, tuner.getConcurrencyDecreases());
+        awaitMaxRemoteStreams(tuner, 16);
+        // The client still completes its requests, 16 at a time.
+        download(40);
+
+        // A new connection gets the current limit at the next check.
+        client.stop();
+        startClient(null);
+        download(1);
+        tuner.tune();
+        awaitMaxRemoteStreams(tuner, 16);
+
+        tuner.pressure = false;
+        tuner.tune();
+        assertEquals(24, tuner.getConcurrentStreams());
+        awaitMaxRemoteStreams(tuner, 24);
+        for (int i = 0; i < 10; i++)
+        {
+            tuner.tune();
+        }
+        assertEquals(64, tuner.getConcurrentStreams());
+        awaitMaxRemoteStreams(tuner, 64);
+    }
+
+    private void awaitMaxRemoteStreams(HTTP2Tuner tuner, int maxRemoteStreams) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline)
+        {
+            List<HTTP2Tuner.ConnectionWindow> windows = tuner.getConnectionWindows();
+            if (windows.size() == 1 && windows.get(0).maxRemoteStreams() == maxRemoteStreams)
+                return;
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(maxRemoteStreams), tuner.getConnectionWindows().stream().map(HTTP2Tuner.ConnectionWindow::maxRemoteStreams).toList());
+    }
+
+    private static class PressureTuner extends HTTP2Tuner
+    {
+        private volatile boolean pressure;
+
+        @Override
+        protected boolean isUnderPressure()
+        {
+            return pressure;
+        }
+    }
+
+    private static class ContentHandler extends Handler.Abstract
+    {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            response.write(true, ByteBuffer.allocate(CONTENT_LENGTH), callback);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.http2;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+
+/**
+ * A Jetty server with a clear-text HTTP/2 connector whose max concurrent streams are tuned by a {@link HTTP2Tuner}.
+ */
+public class TunedHTTP2Server
+{
+    /**
+     * @param port the port of the connector, or 0 for an ephemeral port
+     * @param tuner the tuner of the HTTP/2 sessions, that is managed by the server
+     * @return a new, not yet started, server without handler
+     */
+    public static Server newServer(int port, HTTP2Tuner tuner)
+    {
+        Server server = new Server();
+        // The tuner checks the pressure on the threads of the server.
+        tuner.setThreadPool(server.getThreadPool());
+        server.addBean(tuner);
+
+        HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(new HttpConfiguration());
+        h2c.setMaxConcurrentStreams(tuner.getMaxConcurrentStreams());
+
+        ServerConnector connector = new ServerConnector(server, h2c);
+        connector.setPort(port);
+        // The tuner knows the sessions of the connector.
+        connector.addEventListener(tuner);
+        server.addConnector(connector);
+        return server;
+    }
+}
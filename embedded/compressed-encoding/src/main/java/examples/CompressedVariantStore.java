@@ -0,0 +1,678 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.EtagUtils;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HttpContent.Factory} that compresses each static resource once per encoding,
+ * and serves the compressed bytes from memory, rather than having the
+ * {@link org.eclipse.jetty.server.handler.gzip.GzipHandler} compress every response.
+ * <p>
+ * The contents it returns advertise the configured {@link Codec}s as pre-compressed formats,
+ * so the {@link org.eclipse.jetty.server.ResourceService} of a {@code DefaultServlet} or a
+ * {@code ResourceHandler} negotiates the encoding from the {@code Accept-Encoding} header,
+ * and then asks for the {@code path + extension} variant, which this factory creates lazily.
+ * Responses that already have a {@code Content-Encoding} are not compressed again by the {@code GzipHandler}.
+ * </p>
+ * <p>
+ * Variants are keyed by resource path, ETag and encoding, so a changed resource gets new variants,
+ * which replace the variants of its previous version.
+ * They can also be created eagerly at startup for a whole base resource, see {@link #setWarmUpResource(Resource)}.
+ * The CPU time spent creating each variant is measured, and every response served from a variant
+ * is counted as saving that much CPU time, as that is what compressing the response would have cost.
+ * </p>
+ */
+public class CompressedVariantStore extends AbstractLifeCycle implements HttpContent.Factory
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedVariantStore.class);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final HttpContent.Factory _authority;
+    private final List<Codec> _codecs;
+    private final Set<CompressedContentFormat> _formats;
+    private final Map<String, Variants> _variants = new ConcurrentHashMap<>();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _cpuNanosSaved = new LongAdder();
+    private final LongAdder _bytesSaved = new LongAdder();
+    private Set<String> _compressibleMimeTypes = Set.of("text/plain", "text/css", "text/html", "application/javascript");
+    private int _minCompressSize = 256;
+    private Resource _warmUpResource;
+
+    /**
+     * @param authority the factory of the uncompressed content
+     * @param codecs the encodings to offer, in order of preference of the server
+     */
+    public CompressedVariantStore(HttpContent.Factory authority, List<Codec> codecs)
+    {
+        _authority = authority;
+        _codecs = List.copyOf(codecs);
+        Set<CompressedContentFormat> formats = new LinkedHashSet<>();
+        for (Codec codec : codecs)
+        {
+            formats.add(codec.getFormat());
+        }
+        _formats = Collections.unmodifiableSet(formats);
+    }
+
+    /**
+     * @return the codecs for the gzip, deflate and, if available, brotli encodings
+     */
+    public static List<Codec> defaultCodecs()
+    {
+        List<Codec> codecs = new ArrayList<>();
+        Codec brotli = Codec.brotli();
+        if (brotli != null)
+            codecs.add(brotli);
+        codecs.add(Codec.gzip(Deflater.DEFAULT_COMPRESSION));
+        codecs.add(Codec.deflate(Deflater.DEFAULT_COMPRESSION));
+        return codecs;
+    }
+
+    public Set<String> getCompressibleMimeTypes()
+    {
+        return _compressibleMimeTypes;
+    }
+
+    /**
+     * @param mimeTypes the mime types (without charset) of the content to compress
+     */
+    public void setCompressibleMimeTypes(String... mimeTypes)
+    {
+        _compressibleMimeTypes = Set.of(mimeTypes);
+    }
+
+    public int getMinCompressSize()
+    {
+        return _minCompressSize;
+    }
+
+    /**
+     * @param minCompressSize the minimum size of the content to compress
+     */
+    public void setMinCompressSize(int minCompressSize)
+    {
+        _minCompressSize = minCompressSize;
+    }
+
+    public Resource getWarmUpResource()
+    {
+        return _warmUpResource;
+    }
+
+    /**
+     * @param warmUpResource the base resource, whose files are all compressed when this store is started,
+     * or null to only compress the files when they are first requested
+     */
+    public void setWarmUpResource(Resource warmUpResource)
+    {
+        _warmUpResource = warmUpResource;
+    }
+
+    public List<Codec> getCodecs()
+    {
+        return _codecs;
+    }
+
+    /**
+     * @return the number of variants created, including the ones that were not smaller than the original
+     */
+    public int getVariantCount()
+    {
+        return _variants.values().stream().mapToInt(variants -> variants.byEncoding().size()).sum();
+    }
+
+    /**
+     * @return the number of responses served from a variant
+     */
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the CPU time that compressing the responses served from a variant would have taken
+     */
+    public Duration getCpuTimeSaved()
+    {
+        return Duration.ofNanos(_cpuNanosSaved.sum());
+    }
+
+    /**
+     * @return the number of bytes not sent thanks to the responses served from a variant
+     */
+    public long getBytesSaved()
+    {
+        return _bytesSaved.sum();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_warmUpResource != null)
+            warmUp(_warmUpResource);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        LOG.info("Served {} responses from {} compressed variants, saving {} bytes and {} ms of CPU time",
+            getHits(), getVariantCount(), getBytesSaved(), "%.3f".formatted(getCpuTimeSaved().toNanos() / 1_000_000D));
+    }
+
+    private void warmUp(Resource baseResource) throws IOException
+    {
+        long start = System.nanoTime();
+        for (Resource resource : baseResource.getAllResources())
+        {
+            if (resource.isDirectory())
+                continue;
+            Path relative = baseResource.getPathTo(resource);
+            if (relative == null)
+                continue;
+            StringBuilder pathInContext = new StringBuilder();
+            for (Path name : relative)
+            {
+                pathInContext.append('/').append(name);
+            }
+            String path = URIUtil.encodePath(pathInContext.toString());
+            HttpContent content = _authority.getContent(path);
+            if (content == null)
+                continue;
+            try
+            {
+                if (isCompressible(content))
+                {
+                    for (Codec codec : _codecs)
+                    {
+                        getVariant(path, content, codec);
+                    }
+                }
+            }
+            finally
+            {
+                content.release();
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Created {} variants of {} in {} ms", getVariantCount(), baseResource, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    @Override
+    public HttpContent getContent(String path) throws IOException
+    {
+        HttpContent content = _authority.getContent(path);
+        if (content != null)
+        {
+            if (isCompressible(content))
+                return new CompressibleHttpContent(content, _formats);
+            // Tell the ResourceService that there are no variants to look for.
+            return new CompressibleHttpContent(content, Set.of());
+        }
+
+        for (Codec codec : _codecs)
+        {
+            String extension = codec.getFormat().getExtension();
+            if (!path.endsWith(extension))
+                continue;
+
+            String basePath = path.substring(0, path.length() - extension.length());
+            HttpContent baseContent = _authority.getContent(basePath);
+            if (baseContent == null)
+                return null;
+            try
+            {
+                if (!isCompressible(baseContent))
+                    return null;
+                Variant variant = getVariant(basePath, baseContent, codec);
+                if (variant.bytes() == null)
+                    return null;
+                return new VariantHttpContent(baseContent, variant, codec);
+            }
+            finally
+            {
+                baseContent.release();
+            }
+        }
+        return null;
+    }
+
+    private boolean isCompressible(HttpContent content)
+    {
+        if (content.getContentEncoding() != null || content.getResource() == null || content.getResource().isDirectory())
+            return false;
+        if (content.getContentLengthValue() < _minCompressSize)
+            return false;
+        String contentType = content.getContentTypeValue();
+        if (contentType == null)
+            return false;
+        int semicolon = contentType.indexOf(';');
+        return _compressibleMimeTypes.contains(semicolon < 0 ? contentType : contentType.substring(0, semicolon).trim());
+    }
+
+    private Variant getVariant(String path, HttpContent content, Codec codec)
+    {
+        String etag = content.getETagValue();
+        String encoding = codec.getFormat().getEncoding();
+        Variants variants = _variants.get(path);
+        if (variants == null || !Objects.equals(variants.etag(), etag))
+        {
+            // The resource changed, so the variants of its previous version are replaced.
+            variants = _variants.compute(path, (p, v) -> v != null && Objects.equals(v.etag(), etag) ? v : new Variants(etag, new ConcurrentHashMap<>()));
+        }
+        Variant variant = variants.byEncoding().get(encoding);
+        if (variant != null)
+            return variant;
+
+        // Compress outside of the map, so that other variants are not blocked meanwhile.
+        // Concurrent requests for the same new variant may each compress it, and the first one is kept.
+        try
+        {
+            byte[] original;
+            try (InputStream in = content.getResource().newInputStream())
+            {
+                original = IO.readBytes(in);
+            }
+            long cpuStart = cpuTime();
+            byte[] compressed = codec.compress(original);
+            long cpuNanos = cpuTime() - cpuStart;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Compressed {} with {}: {} -> {} bytes in {} ns", path, codec, original.length, compressed.length, cpuNanos);
+            // Not worth a variant, the original is served instead.
+            variant = new Variant(compressed.length >= original.length ? null : compressed, cpuNanos);
+        }
+        catch (IOException x)
+        {
+            throw new UncheckedIOException(x);
+        }
+
+        Variant existing = variants.byEncoding().putIfAbsent(encoding, variant);
+        return existing != null ? existing : variant;
+    }
+
+    private static long cpuTime()
+    {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[variants=%d,hits=%d,cpuSaved=%s]".formatted(getClass().getSimpleName(), hashCode(), getVariantCount(), getHits(), getCpuTimeSaved());
+    }
+
+    /**
+     * The variants of one version of a resource, by encoding.
+     */
+    private record Variants(String etag, Map<String, Variant> byEncoding)
+    {
+    }
+
+    private record Variant(byte[] bytes, long cpuNanos)
+    {
+    }
+
+    /**
+     * A content encoding, and the way to compress content with it.
+     */
+    public abstract static class Codec
+    {
+        private final CompressedContentFormat _format;
+
+        protected Codec(CompressedContentFormat format)
+        {
+            _format = format;
+        }
+
+        public CompressedContentFormat getFormat()
+        {
+            return _format;
+        }
+
+        public abstract byte[] compress(byte[] bytes) throws IOException;
+
+        @Override
+        public String toString()
+        {
+            return _format.getEncoding();
+        }
+
+        public static Codec gzip(int level)
+        {
+            return new StreamCodec(CompressedContentFormat.GZIP, out -> new GZIPOutputStream(out)
+            {
+                {
+                    def.setLevel(level);
+                }
+            });
+        }
+
+        /**
+         * @param level the compression level
+         * @return a codec for the {@code deflate} encoding, which is the zlib format (RFC 1950) of the deflate algorithm
+         */
+        public static Codec deflate(int level)
+        {
+            return new StreamCodec(new CompressedContentFormat("deflate", ".zz"), out -> new DeflaterOutputStream(out, new Deflater(level))
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    super.close();
+                    def.end();
+                }
+            });
+        }
+
+        /**
+         * @return a codec for the {@code br} encoding if
+         * <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a> is on the classpath, null otherwise
+         */
+        public static Codec brotli()
+        {
+            try
+            {
+                Class<?> loader = Class.forName("com.aayushatharva.brotli4j.Brotli4jLoader");
+                if (!(Boolean)loader.getMethod("isAvailable").invoke(null))
+                    return null;
+                Class<?> encoder = Class.forName("com.aayushatharva.brotli4j.encoder.Encoder");
+                MethodHandle compress = MethodHandles.publicLookup().findStatic(encoder, "compress", MethodType.methodType(byte[].class, byte[].class));
+                return new Codec(CompressedContentFormat.BR)
+                {
+                    @Override
+                    public byte[] compress(byte[] bytes) throws IOException
+                    {
+                        try
+                        {
+                            return (byte[])compress.invokeExact(bytes);
+                        }
+                        catch (IOException | RuntimeException | Error x)
+                        {
+                            throw x;
+                        }
+                        catch (Throwable x)
+                        {
+                            throw new IOException(x);
+                        }
+                    }
+                };
+            }
+            catch (Throwable x)
+            {
+                LOG.debug("Brotli is not available", x);
+                return null;
+            }
+        }
+    }
+
+    private interface CompressingStreamFactory
+    {
+        OutputStream newOutputStream(OutputStream out) throws IOException;
+    }
+
+    private static class StreamCodec extends Codec
+    {
+        private final CompressingStreamFactory _factory;
+
+        private StreamCodec(CompressedContentFormat format, CompressingStreamFactory factory)
+        {
+            super(format);
+            _factory = factory;
+        }
+
+        @Override
+        public byte[] compress(byte[] bytes) throws IOException
+        {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+            try (OutputStream out = _factory.newOutputStream(compressed))
+            {
+                out.write(bytes);
+            }
+            return compressed.toByteArray();
+        }
+    }
+
+    /**
+     * Content that advertises the variants that can be created for it.
+     */
+    private static class CompressibleHttpContent extends HttpContent.Wrapper
+    {
+        private final Set<CompressedContentFormat> _formats;
+
+        private CompressibleHttpContent(HttpContent content, Set<CompressedContentFormat> formats)
+        {
+            super(content);
+            _formats = formats;
+        }
+
+        @Override
+        public Set<CompressedContentFormat> getPreCompressedContentFormats()
+        {
+            return _formats;
+        }
+    }
+
+    /**
+     * A compressed variant, served from memory.
+     */
+    private class VariantHttpContent extends HttpContent.Wrapper
+    {
+        private final Variant _variant;
+        private final Codec _codec;
+        private final HttpField _contentLength;
+        private final HttpField _etag;
+        private final Resource _resource;
+
+        private VariantHttpContent(HttpContent content, Variant variant, Codec codec)
+        {
+            super(content);
+            _variant = variant;
+            _codec = codec;
+            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Integer.toString(variant.bytes().length));
+            // A variant is another representation, so its ETag differs from the original, as in PreCompressedHttpContent.
+            String etag = content.getETagValue();
+            _etag = etag == null ? null : new HttpField(HttpHeader.ETAG, EtagUtils.rewriteWithSuffix(etag, codec.getFormat().getEtagSuffix()));
+            _resource = new VariantResource(content.getResource(), codec.getFormat().getExtension(), variant.bytes());
+        }
+
+        @Override
+        public HttpField getContentEncoding()
+        {
+            return _codec.getFormat().getContentEncoding();
+        }
+
+        @Override
+        public String getContentEncodingValue()
+        {
+            return _codec.getFormat().getEncoding();
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            return _etag;
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            return _etag == null ? null : _etag.getValue();
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _variant.bytes().length;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer()
+        {
+            // Called once for each complete response written from this content.
+            _hits.increment();
+            _cpuNanosSaved.add(_variant.cpuNanos());
+            _bytesSaved.add(getWrapped().getContentLengthValue() - _variant.bytes().length);
+            return ByteBuffer.wrap(_variant.bytes()).asReadOnlyBuffer();
+        }
+
+        @Override
+        public Resource getResource()
+        {
+            return _resource;
+        }
+
+        @Override
+        public long getBytesOccupied()
+        {
+            return _variant.bytes().length;
+        }
+    }
+
+    /**
+     * The bytes of a variant as a {@link Resource}, for the range requests that are served from a {@link Resource}.
+     */
+    private static class VariantResource extends Resource
+    {
+        private final Resource _original;
+        private final URI _uri;
+        private final byte[] _bytes;
+
+        private VariantResource(Resource original, String extension, byte[] bytes)
+        {
+            _original = original;
+            _uri = URI.create(original.getURI() + extension);
+            _bytes = bytes;
+        }
+
+        @Override
+        public Path getPath()
+        {
+            return null;
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isReadable()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean exists()
+        {
+            return true;
+        }
+
+        @Override
+        public URI getURI()
+        {
+            return _uri;
+        }
+
+        @Override
+        public String getName()
+        {
+            return _uri.toASCIIString();
+        }
+
+        @Override
+        public String getFileName()
+        {
+            return _original.getFileName();
+        }
+
+        @Override
+        public Instant lastModified()
+        {
+            return _original.lastModified();
+        }
+
+        @Override
+        public long length()
+        {
+            return _bytes.length;
+        }
+
+        @Override
+        public InputStream newInputStream()
+        {
+            return new ByteArrayInputStream(_bytes);
+        }
+
+        @Override
+        public Resource resolve(String subUriPath)
+        {
+            return null;
+        }
+
+        @Override
+        public boolean isAlias()
+        {
+            return false;
+        }
+    }
+}
@@ -18,26 +18,44 @@ import java.net.URL;
 
 import org.eclipse.jetty.ee10.servlet.DefaultServlet;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.http.content.ResourceHttpContentFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 
 public class GzipRequestResponseExample
 {
     public static void main(String[] args) throws Exception
+    {
+        Server server = GzipRequestResponseExample.newServer(8080);
+        server.start();
+        server.join();
+    }
+
+    public static Server newServer(int port) throws Exception
     {
         Server server = new Server();
         ServerConnector connector = new ServerConnector(server);
-        connector.setPort(8080);
+        connector.setPort(port);
         server.addConnector(connector);
 
+        // Inflate gzip'ed request bodies as they are read, with a bounded pool of Inflaters,
+        // and limits on the inflated size and ratio, rather than with the GzipHandler.
+        InflatingHandler inflating = new InflatingHandler();
+        inflating.setMaxInflatedSize(4 * 1024 * 1024);
+        inflating.setMaxInflateRatio(100);
+        server.setHandler(inflating);
+
         GzipHandler gzip = new GzipHandler();
         gzip.setIncludedMethods("GET", "POST");
-        gzip.setMinGzipSize(245); // Enable Request Decompression
+        gzip.setMinGzipSize(245);
+        gzip.setInflateBufferSize(-1); // Request Decompression is done by the InflatingHandler
         gzip.setIncludedMimeTypes("text/plain", "text/css", "text/html",
             "application/javascript");
-        server.setHandler(gzip);
+        inflating.setHandler(gzip);
 
         ClassLoader cl = GzipRequestResponseExample.class.getClassLoader();
         // We look for a file, as ClassLoader.getResource() is not
@@ -56,13 +74,23 @@ public class GzipRequestResponseExample
         gzip.setHandler(context);
 
         context.setContextPath("/");
-        context.setBaseResource(ResourceFactory.of(context).newResource(webRootUri));
+        Resource baseResource = ResourceFactory.of(context).newResource(webRootUri);
+        context.setBaseResource(baseResource);
         context.setWelcomeFiles(new String[]{"index.html"});
 
+        // The static content never changes, so rather than having the GzipHandler compress it
+        // for every response, compress it once per encoding, when the server starts.
+        // The DefaultServlet uses the HttpContent.Factory found in this context attribute.
+        ResourceHttpContentFactory resourceContentFactory = new ResourceHttpContentFactory(baseResource, context.getMimeTypes());
+        CompressedVariantStore variantStore = new CompressedVariantStore(resourceContentFactory, CompressedVariantStore.defaultCodecs());
+        variantStore.setCompressibleMimeTypes(gzip.getIncludedMimeTypes());
+        variantStore.setWarmUpResource(baseResource);
+        context.setAttribute(HttpContent.Factory.class.getName(), variantStore);
+        server.addBean(variantStore);
+
         // Adding Servlets
         context.addServlet(DefaultServlet.class, "/"); // always last, always on "/"
 
-        server.start();
-        server.join();
+        return server;
     }
 }
@@ -0,0 +1,347 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.BadMessageException;
+import org.eclipse.jetty.http.GZIPContentDecoder;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.io.content.ContentSourceTransformer;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.compression.InflaterPool;
+
+/**
+ * A {@link Handler.Wrapper} that inflates request bodies sent with {@code Content-Encoding: gzip}.
+ * <p>
+ * The body is inflated as the downstream handler reads it, one buffer at a time,
+ * so that the whole body is never held in memory, and the inflaters are taken from a
+ * {@link MeteredInflaterPool} sized by number of cores.
+ * </p>
+ * <p>
+ * To protect against zip bombs, reading the body fails with a {@code 413 Payload Too Large}
+ * when the inflated body exceeds {@link #getMaxInflatedSize()} bytes, or when it is more than
+ * {@link #getMaxInflateRatio()} times larger than the compressed bytes received so far.
+ * </p>
+ */
+public class InflatingHandler extends Handler.Wrapper
+{
+    // Small bodies of repeated bytes legitimately have a high ratio.
+    private static final int RATIO_CHECK_THRESHOLD = 64 * 1024;
+
+    private final MeteredInflaterPool _inflaterPool;
+    private int _inflatersPerCore = 4;
+    private int _inflateBufferSize = 8 * 1024;
+    private long _maxInflatedSize = 16 * 1024 * 1024;
+    private int _maxInflateRatio = 100;
+    private final LongAdder _inflatedRequests = new LongAdder();
+    private final LongAdder _rejectedRequests = new LongAdder();
+
+    public InflatingHandler()
+    {
+        this(null);
+    }
+
+    public InflatingHandler(Handler handler)
+    {
+        super(handler);
+        _inflaterPool = new MeteredInflaterPool(_inflatersPerCore * ProcessorUtils.availableProcessors(), true);
+        addBean(_inflaterPool);
+    }
+
+    public MeteredInflaterPool getInflaterPool()
+    {
+        return _inflaterPool;
+    }
+
+    public int getInflatersPerCore()
+    {
+        return _inflatersPerCore;
+    }
+
+    /**
+     * @param inflatersPerCore the number of pooled inflaters for each core, must be set before starting
+     */
+    public void setInflatersPerCore(int inflatersPerCore)
+    {
+        _inflatersPerCore = inflatersPerCore;
+        _inflaterPool.setCapacity(inflatersPerCore * ProcessorUtils.availableProcessors());
+    }
+
+    public int getInflateBufferSize()
+    {
+        return _inflateBufferSize;
+    }
+
+    /**
+     * @param inflateBufferSize the size of the buffers of inflated content given to the downstream handler
+     */
+    public void setInflateBufferSize(int inflateBufferSize)
+    {
+        _inflateBufferSize = inflateBufferSize;
+    }
+
+    public long getMaxInflatedSize()
+    {
+        return _maxInflatedSize;
+    }
+
+    /**
+     * @param maxInflatedSize the maximum size of an inflated request body
+     */
+    public void setMaxInflatedSize(long maxInflatedSize)
+    {
+        _maxInflatedSize = maxInflatedSize;
+    }
+
+    public int getMaxInflateRatio()
+    {
+        return _maxInflateRatio;
+    }
+
+    /**
+     * @param maxInflateRatio the maximum ratio between the inflated size and the compressed size of a request body
+     */
+    public void setMaxInflateRatio(int maxInflateRatio)
+    {
+        _maxInflateRatio = maxInflateRatio;
+    }
+
+    /**
+     * @return the number of requests with an inflated body
+     */
+    public long getInflatedRequests()
+    {
+        return _inflatedRequests.sum();
+    }
+
+    /**
+     * @return the number of request bodies that exceeded the inflated size or ratio limits
+     */
+    public long getRejectedRequests()
+    {
+        return _rejectedRequests.sum();
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception
+    {
+        Handler next = getHandler();
+        if (next == null)
+            return false;
+
+        // Only a body that is just gzip'ed is inflated, other encodings are left to the application.
+        String contentEncoding = request.getHeaders().get(HttpHeader.CONTENT_ENCODING);
+        if (contentEncoding == null || !contentEncoding.trim().equalsIgnoreCase("gzip"))
+            return next.handle(request, response, callback);
+
+        _inflatedRequests.increment();
+        InflatingRequest inflatingRequest = new InflatingRequest(request);
+        if (next.handle(inflatingRequest, response, Callback.from(inflatingRequest::destroy, callback)))
+            return true;
+        inflatingRequest.destroy();
+        return false;
+    }
+
+    private class InflatingRequest extends Request.Wrapper
+    {
+        private final HttpFields _headers;
+        private final InflatingTransformer _transformer;
+
+        private InflatingRequest(Request request)
+        {
+            super(request);
+            // The length of the inflated body is not known.
+            _headers = HttpFields.build(request.getHeaders(), EnumSet.of(HttpHeader.CONTENT_ENCODING, HttpHeader.CONTENT_LENGTH)).asImmutable();
+            Decoder decoder = new Decoder(_inflaterPool, request.getComponents().getByteBufferPool(), _inflateBufferSize);
+            _transformer = new InflatingTransformer(request, decoder);
+        }
+
+        @Override
+        public HttpFields getHeaders()
+        {
+            return _headers;
+        }
+
+        @Override
+        public long getLength()
+        {
+            return -1;
+        }
+
+        @Override
+        public Content.Chunk read()
+        {
+            return _transformer.read();
+        }
+
+        @Override
+        public void demand(Runnable demandCallback)
+        {
+            _transformer.demand(demandCallback);
+        }
+
+        private void destroy()
+        {
+            _transformer.destroy();
+        }
+    }
+
+    private class InflatingTransformer extends ContentSourceTransformer
+    {
+        private Decoder _decoder;
+        private Content.Chunk _chunk;
+        private long _compressed;
+        private long _inflated;
+
+        private InflatingTransformer(Content.Source source, Decoder decoder)
+        {
+            super(source);
+            _decoder = decoder;
+        }
+
+        @Override
+        protected Content.Chunk transform(Content.Chunk inputChunk)
+        {
+            boolean retain = _chunk == null;
+            if (_chunk == null)
+                _chunk = inputChunk;
+            if (_chunk == null)
+                return null;
+            if (Content.Chunk.isFailure(_chunk))
+            {
+                Content.Chunk failure = _chunk;
+                _chunk = Content.Chunk.next(failure);
+                return failure;
+            }
+            if (_chunk.isLast() && !_chunk.hasRemaining())
+            {
+                destroy();
+                return Content.Chunk.EOF;
+            }
+
+            // Retain the input chunk because its ByteBuffer is referenced by the Inflater.
+            if (retain)
+            {
+                _chunk.retain();
+                _compressed += _chunk.remaining();
+            }
+            RetainableByteBuffer decoded;
+            try
+            {
+                decoded = _decoder.decode(_chunk);
+            }
+            catch (RuntimeException x)
+            {
+                destroy();
+                return Content.Chunk.from(new BadMessageException("Invalid gzip body", x), true);
+            }
+
+            if (decoded != null && decoded.hasRemaining())
+            {
+                _inflated += decoded.remaining();
+                String reason = null;
+                if (_inflated > _maxInflatedSize)
+                    reason = "Inflated body larger than " + _maxInflatedSize;
+                else if (_inflated > RATIO_CHECK_THRESHOLD && _inflated > _compressed * _maxInflateRatio)
+                    reason = "Inflated body more than " + _maxInflateRatio + " times larger than compressed body";
+                if (reason != null)
+                {
+                    decoded.release();
+                    destroy();
+                    _rejectedRequests.increment();
+                    return Content.Chunk.from(new BadMessageException(HttpStatus.PAYLOAD_TOO_LARGE_413, reason), true);
+                }
+
+                // The decoded buffer is a transformed copy of the compressed one, with its own reference count.
+                boolean last = _chunk.isLast() && !_chunk.hasRemaining();
+                if (last)
+                    destroy();
+                return Content.Chunk.from(decoded.getByteBuffer(), last, decoded::release);
+            }
+
+            if (decoded != null)
+                decoded.release();
+            // Could not decode more from this chunk, release it.
+            if (_chunk.isLast())
+            {
+                destroy();
+                return Content.Chunk.EOF;
+            }
+            _chunk.release();
+            _chunk = null;
+            return null;
+        }
+
+        /**
+         * Releases the compressed chunk and returns the inflater to the pool,
+         * as soon as the body is fully read or failed, or when the request completes.
+         */
+        private void destroy()
+        {
+            if (_chunk != null)
+                _chunk.release();
+            _chunk = null;
+            if (_decoder != null)
+                _decoder.destroy();
+            _decoder = null;
+        }
+    }
+
+    private static class Decoder extends GZIPContentDecoder
+    {
+        private RetainableByteBuffer _decoded;
+
+        private Decoder(InflaterPool inflaterPool, ByteBufferPool bufferPool, int bufferSize)
+        {
+            super(inflaterPool, bufferPool, bufferSize);
+        }
+
+        private RetainableByteBuffer decode(Content.Chunk chunk)
+        {
+            decodeChunks(chunk.getByteBuffer());
+            RetainableByteBuffer decoded = _decoded;
+            _decoded = null;
+            return decoded;
+        }
+
+        @Override
+        protected boolean decodedChunk(RetainableByteBuffer decoded)
+        {
+            // Retain the buffer as it is returned after decodeChunks() returns,
+            // and stop decoding so that at most one buffer is inflated at a time.
+            decoded.retain();
+            _decoded = decoded;
+            return true;
+        }
+
+        @Override
+        public void decodeChunks(ByteBuffer compressed)
+        {
+            _decoded = null;
+            super.decodeChunks(compressed);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Inflater;
+
+import org.eclipse.jetty.util.compression.InflaterPool;
+
+/**
+ * An {@link InflaterPool} that counts how often all of its pooled {@link Inflater}s are in use.
+ * <p>
+ * The pool holds at most {@link #getCapacity()} inflaters, and its entries are searched starting
+ * from an index derived from the thread id, so that threads running on different cores rarely
+ * contend for the same entry.
+ * When all the pooled inflaters are in use, a new inflater is created, used once and ended,
+ * which is counted as a {@link #getContendedAcquires() contended acquire}.
+ * A growing rate of contended acquires means the capacity of the pool is too small for the load.
+ * </p>
+ */
+public class MeteredInflaterPool extends InflaterPool
+{
+    private final AtomicInteger _inUse = new AtomicInteger();
+    private final AtomicInteger _maxInUse = new AtomicInteger();
+    private final LongAdder _acquires = new LongAdder();
+    private final LongAdder _contendedAcquires = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of pooled inflaters
+     * @param nowrap whether the inflaters are for the raw deflate format, as used by gzip
+     */
+    public MeteredInflaterPool(int capacity, boolean nowrap)
+    {
+        super(capacity, nowrap);
+    }
+
+    @Override
+    public Entry acquire()
+    {
+        int inUse = _inUse.incrementAndGet();
+        _maxInUse.accumulateAndGet(inUse, Math::max);
+        _acquires.increment();
+        if (inUse > getCapacity())
+            _contendedAcquires.increment();
+        return super.acquire();
+    }
+
+    @Override
+    protected void reset(Inflater inflater)
+    {
+        // Called when every entry, pooled or not, is released.
+        super.reset(inflater);
+        _inUse.decrementAndGet();
+    }
+
+    /**
+     * @return the number of inflaters acquired
+     */
+    public long getAcquires()
+    {
+        return _acquires.sum();
+    }
+
+    /**
+     * @return the number of inflaters acquired while all the pooled ones were in use
+     */
+    public long getContendedAcquires()
+    {
+        return _contendedAcquires.sum();
+    }
+
+    /**
+     * @return the number of inflaters currently in use
+     */
+    public int getInUse()
+    {
+        return _inUse.get();
+    }
+
+    /**
+     * @return the maximum number of inflaters that have been in use at the same time
+     */
+    public int getMaxInUse()
+    {
+        return _maxInUse.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s[inUse=%d,maxInUse=%d,acquires=%d,contended=%d]".formatted(super.toString(), getInUse(), getMaxInUse(), getAcquires(), getContendedAcquires());
+    }
+}
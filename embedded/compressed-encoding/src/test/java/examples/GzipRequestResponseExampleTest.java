@@ -0,0 +1,179 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.EtagUtils;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.http.content.ResourceHttpContentFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class GzipRequestResponseExampleTest
+{
+    private Server server;
+    private CompressedVariantStore variantStore;
+    private String styleCss;
+
+    @BeforeEach
+    public void startServer() throws Exception
+    {
+        server = GzipRequestResponseExample.newServer(0);
+        server.start();
+        variantStore = server.getBean(CompressedVariantStore.class);
+        try (InputStream in = GzipRequestResponseExample.class.getClassLoader().getResourceAsStream("static-root/style.css"))
+        {
+            styleCss = IO.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    @AfterEach
+    public void stopServer()
+    {
+        LifeCycle.stop(server);
+    }
+
+    private HttpURLConnection GET(String path, String acceptEncoding) throws Exception
+    {
+        URI uri = server.getURI().resolve(path);
+        HttpURLConnection http = (HttpURLConnection)uri.toURL().openConnection();
+        if (acceptEncoding != null)
+            http.setRequestProperty("Accept-Encoding", acceptEncoding);
+        assertEquals(HttpURLConnection.HTTP_OK, http.getResponseCode());
+        return http;
+    }
+
+    @Test
+    public void testWarmUp()
+    {
+        // One variant per codec for style.css, hello.html is too small to be compressed.
+        assertEquals(variantStore.getCodecs().size(), variantStore.getVariantCount());
+        assertEquals(0, variantStore.getHits());
+    }
+
+    @Test
+    public void testGzipVariant() throws Exception
+    {
+        HttpURLConnection http = GET("/style.css", "gzip");
+        assertEquals("gzip", http.getHeaderField("Content-Encoding"));
+        assertThat(http.getHeaderField("Vary"), containsString("Accept-Encoding"));
+        assertThat(Integer.parseInt(http.getHeaderField("Content-Length")), lessThan(styleCss.length()));
+        try (InputStream in = new GZIPInputStream(http.getInputStream()))
+        {
+            assertEquals(styleCss, IO.toString(in, StandardCharsets.UTF_8));
+        }
+
+        GET("/style.css", "gzip").getInputStream().close();
+        assertEquals(2, variantStore.getHits());
+        assertThat(variantStore.getCpuTimeSaved().toNanos(), greaterThan(0L));
+        assertThat(variantStore.getBytesSaved(), greaterThan(0L));
+    }
+
+    @Test
+    public void testDeflateVariant() throws Exception
+    {
+        HttpURLConnection http = GET("/style.css", "deflate");
+        assertEquals("deflate", http.getHeaderField("Content-Encoding"));
+        try (InputStream in = new InflaterInputStream(http.getInputStream()))
+        {
+            assertEquals(styleCss, IO.toString(in, StandardCharsets.UTF_8));
+        }
+        assertEquals(1, variantStore.getHits());
+    }
+
+    @Test
+    public void testIdentity() throws Exception
+    {
+        HttpURLConnection http = GET("/style.css", "identity");
+        assertNull(http.getHeaderField("Content-Encoding"));
+        assertEquals(styleCss, IO.toString(http.getInputStream(), StandardCharsets.UTF_8));
+        assertEquals(0, variantStore.getHits());
+    }
+
+    @Test
+    public void testTooSmallToCompress() throws Exception
+    {
+        HttpURLConnection http = GET("/hello.html", "gzip, deflate");
+        assertNull(http.getHeaderField("Content-Encoding"));
+        assertThat(IO.toString(http.getInputStream(), StandardCharsets.UTF_8), containsString("Hello from"));
+        assertEquals(0, variantStore.getHits());
+    }
+
+    @Test
+    public void testChangedResourceReplacesVariants(@TempDir Path dir) throws Exception
+    {
+        Path file = Files.writeString(dir.resolve("app.css"), "body { color: red; }\n".repeat(100));
+        ResourceHttpContentFactory authority = new ResourceHttpContentFactory(ResourceFactory.root().newResource(dir), MimeTypes.DEFAULTS);
+        CompressedVariantStore store = new CompressedVariantStore(authority, CompressedVariantStore.defaultCodecs());
+        String gzipPath = "/app.css" + store.getCodecs().get(0).getFormat().getExtension();
+
+        HttpContent first = store.getContent(gzipPath);
+        assertNotNull(first);
+        String firstETag = first.getETagValue();
+        assertEquals(1, store.getVariantCount());
+
+        Files.writeString(file, "body { color: blue; }\n".repeat(100));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        HttpContent second = store.getContent(gzipPath);
+        assertNotNull(second);
+        assertNotEquals(firstETag, second.getETagValue());
+        assertEquals(1, store.getVariantCount());
+    }
+
+    @Test
+    public void testVariantETag(@TempDir Path dir) throws Exception
+    {
+        Files.writeString(dir.resolve("app.css"), "body { color: red; }\n".repeat(100));
+        ResourceHttpContentFactory authority = new ResourceHttpContentFactory(ResourceFactory.root().newResource(dir), MimeTypes.DEFAULTS);
+        CompressedVariantStore store = new CompressedVariantStore(authority, CompressedVariantStore.defaultCodecs());
+
+        // Each variant is a distinct representation, so it must not share the ETag of the identity content.
+        String identityETag = authority.getContent("/app.css").getETagValue();
+        for (CompressedVariantStore.Codec codec : store.getCodecs())
+        {
+            CompressedContentFormat format = codec.getFormat();
+            HttpContent variant = store.getContent("/app.css" + format.getExtension());
+            assertNotNull(variant);
+            assertEquals(EtagUtils.rewriteWithSuffix(identityETag, format.getEtagSuffix()), variant.getETagValue());
+            assertEquals(variant.getETagValue(), variant.getETag().getValue());
+        }
+        assertEquals(store.getCodecs().size(), store.getVariantCount());
+    }
+}
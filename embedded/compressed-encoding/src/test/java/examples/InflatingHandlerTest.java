@@ -0,0 +1,192 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class InflatingHandlerTest
+{
+    private Server server;
+    private InflatingHandler inflatingHandler;
+
+    @BeforeEach
+    public void startServer() throws Exception
+    {
+        server = new Server(0);
+        inflatingHandler = new InflatingHandler(new BodyInfoHandler());
+        inflatingHandler.setMaxInflatedSize(1024 * 1024);
+        inflatingHandler.setMaxInflateRatio(100);
+        server.setHandler(inflatingHandler);
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer()
+    {
+        LifeCycle.stop(server);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+        {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Text that does not compress much better than real world content.
+     */
+    private static byte[] text(int size)
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < size; i++)
+        {
+            text.append(Integer.toHexString(i * 0x9E3779B9)).append(' ');
+        }
+        return text.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private HttpURLConnection POST(byte[] body, String contentEncoding) throws Exception
+    {
+        HttpURLConnection http = (HttpURLConnection)server.getURI().toURL().openConnection();
+        http.setRequestMethod("POST");
+        http.setDoOutput(true);
+        if (contentEncoding != null)
+            http.setRequestProperty("Content-Encoding", contentEncoding);
+        try (OutputStream out = http.getOutputStream())
+        {
+            out.write(body);
+        }
+        return http;
+    }
+
+    @Test
+    public void testInflate() throws Exception
+    {
+        byte[] text = text(200_000);
+        HttpURLConnection http = POST(gzip(text), "gzip");
+        assertEquals(HttpURLConnection.HTTP_OK, http.getResponseCode());
+        // The handler sees the inflated body, without Content-Encoding or Content-Length.
+        assertEquals("length=-1 encoding=null read=" + text.length + " hash=" + ByteBuffer.wrap(text).hashCode(),
+            IO.toString(http.getInputStream()));
+
+        assertEquals(1, inflatingHandler.getInflatedRequests());
+        assertEquals(0, inflatingHandler.getRejectedRequests());
+        MeteredInflaterPool pool = inflatingHandler.getInflaterPool();
+        assertEquals(1, pool.getAcquires());
+        assertEquals(0, pool.getContendedAcquires());
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test
+    public void testNotCompressed() throws Exception
+    {
+        byte[] text = text(1000);
+        HttpURLConnection http = POST(text, null);
+        assertEquals(HttpURLConnection.HTTP_OK, http.getResponseCode());
+        assertEquals("length=1000 encoding=null read=1000 hash=" + ByteBuffer.wrap(text).hashCode(),
+            IO.toString(http.getInputStream()));
+        assertEquals(0, inflatingHandler.getInflatedRequests());
+        assertEquals(0, inflatingHandler.getInflaterPool().getAcquires());
+    }
+
+    @Test
+    public void testMaxInflatedSize() throws Exception
+    {
+        HttpURLConnection http = POST(gzip(text(2 * 1024 * 1024)), "gzip");
+        assertEquals(413, http.getResponseCode());
+        assertEquals(1, inflatingHandler.getRejectedRequests());
+        assertEquals(0, inflatingHandler.getInflaterPool().getInUse());
+    }
+
+    @Test
+    public void testZipBomb() throws Exception
+    {
+        // 1 MiB of zeros compresses to about 1 KiB.
+        byte[] bomb = gzip(new byte[1024 * 1024]);
+        assertThat(1024 * 1024 / bomb.length, greaterThan(100));
+        HttpURLConnection http = POST(bomb, "gzip");
+        assertEquals(413, http.getResponseCode());
+        assertEquals(1, inflatingHandler.getRejectedRequests());
+        assertEquals(0, inflatingHandler.getInflaterPool().getInUse());
+    }
+
+    @Test
+    public void testInvalidGzip() throws Exception
+    {
+        HttpURLConnection http = POST(text(1000), "gzip");
+        assertEquals(400, http.getResponseCode());
+        assertEquals(0, inflatingHandler.getInflaterPool().getInUse());
+    }
+
+    /**
+     * Reads the whole request body, one chunk at a time, and answers with what it has seen.
+     */
+    private static class BodyInfoHandler extends Handler.Abstract
+    {
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            long length = request.getLength();
+            String encoding = request.getHeaders().get("Content-Encoding");
+            ByteBuffer body = ByteBuffer.allocate(4 * 1024 * 1024);
+            while (true)
+            {
+                Content.Chunk chunk = request.read();
+                if (chunk == null)
+                {
+                    request.demand(() -> handle(request, response, callback));
+                    return true;
+                }
+                if (Content.Chunk.isFailure(chunk))
+                {
+                    Response.writeError(request, response, callback, chunk.getFailure());
+                    return true;
+                }
+                body.put(chunk.getByteBuffer());
+                chunk.release();
+                if (chunk.isLast())
+                    break;
+            }
+            body.flip();
+            String info = "length=%d encoding=%s read=%d hash=%d".formatted(length, encoding, body.remaining(), body.hashCode());
+            response.write(true, ByteBuffer.wrap(info.getBytes(StandardCharsets.UTF_8)), callback);
+            return true;
+        }
+    }
+}
@@ -11,6 +11,9 @@ package examples;//
 // ========================================================================
 //
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -19,6 +22,7 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.eclipse.jetty.util.resource.Resources;
@@ -98,14 +102,32 @@ public class ManyConnectors
         https.setPort(8443);
         https.setIdleTimeout(500000);
 
+        // Unix-Domain connector
+        // Local clients, such as a sidecar or a reverse proxy on the same host,
+        // can talk to the server over a Unix-Domain socket rather than over
+        // loopback TCP, which avoids the TCP stack altogether. It takes the same
+        // http configuration as the http connector, and is bound to a socket file
+        // rather than to a port. The socket file is the jetty.unixdomain.path system
+        // property, or is in a new temporary directory, as a file left at a fixed path,
+        // by a previous run or by another server, would fail the bind.
+        String unixDomainPath = System.getProperty("jetty.unixdomain.path");
+        Path socketPath = unixDomainPath != null
+            ? Path.of(unixDomainPath)
+            : Files.createTempDirectory("jetty").resolve("jetty.sock");
+        UnixDomainServerConnector unixDomain = new UnixDomainServerConnector(server,
+            new HttpConnectionFactory(http_config));
+        unixDomain.setUnixDomainPath(socketPath);
+        unixDomain.setIdleTimeout(30000);
+
         // Here you see the server having multiple connectors registered with
         // it, now requests can flow into the server from both http and https
-        // urls to their respective ports and be processed accordingly by jetty.
+        // urls to their respective ports, and from the Unix-Domain socket, and
+        // be processed accordingly by jetty.
         // A simple handler is also registered with the server so the example
         // has something to pass requests off to.
 
         // Set the connectors
-        server.setConnectors(new Connector[]{http, https});
+        server.setConnectors(new Connector[]{http, https, unixDomain});
 
         // Set a handler
         server.setHandler(new HelloHandler("Many Connectors"));
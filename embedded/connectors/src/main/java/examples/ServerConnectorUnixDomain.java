@@ -0,0 +1,76 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
+
+/**
+ * A Jetty server that accepts the same requests over loopback TCP and over a Unix-Domain socket.
+ * <p>
+ * Both connectors share the same {@link HttpConfiguration}, so that the requests are handled
+ * the same way whatever the transport they come from.
+ * Clients on the same host, like a sidecar or a local reverse proxy, connect to the socket file,
+ * as {@link UnixDomainClient} does, and skip the TCP stack of the kernel.
+ * </p>
+ */
+public class ServerConnectorUnixDomain
+{
+    public static void main(String[] args) throws Exception
+    {
+        // The socket file is in a new temporary directory, unless given, as a file left at a fixed path,
+        // by a previous run or by another server, would fail the bind, and must not be deleted.
+        Path socketPath = args.length > 0 ? Path.of(args[0]) : Files.createTempDirectory("jetty").resolve("jetty.sock");
+        if (Files.exists(socketPath))
+        {
+            System.err.println("The socket file " + socketPath + " already exists, another server may be bound to it");
+            System.exit(1);
+        }
+        Server server = newServer(8080, socketPath);
+        server.start();
+        System.out.println("Unix-Domain socket: " + socketPath);
+        System.out.println("Run: java " + UnixDomainClient.class.getName() + " " + socketPath);
+        server.join();
+    }
+
+    /**
+     * @param port the loopback TCP port, or 0 for an ephemeral port
+     * @param socketPath the path of the Unix-Domain socket file, which must not exist
+     * @return a new, not yet started, server
+     */
+    public static Server newServer(int port, Path socketPath)
+    {
+        Server server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+
+        ServerConnector tcp = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+        tcp.setHost("localhost");
+        tcp.setPort(port);
+
+        UnixDomainServerConnector unixDomain = new UnixDomainServerConnector(server, new HttpConnectionFactory(httpConfig));
+        unixDomain.setUnixDomainPath(socketPath);
+
+        server.setConnectors(new Connector[]{tcp, unixDomain});
+        server.setHandler(new HelloHandler("Hello over TCP and Unix-Domain"));
+        return server;
+    }
+}
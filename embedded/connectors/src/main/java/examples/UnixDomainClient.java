@@ -0,0 +1,61 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.io.Transport;
+
+/**
+ * Example of a Jetty {@link HttpClient} that sends its requests over a Unix-Domain socket,
+ * to a server like {@link ServerConnectorUnixDomain}.
+ * <p>
+ * The request URI still has a scheme and a host, used for the {@code Host} header, but the
+ * connections are opened to the socket file of the {@link Transport.TCPUnix} transport of the
+ * request, and they are pooled apart from the TCP connections to the same host.
+ * </p>
+ */
+public class UnixDomainClient
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: java " + UnixDomainClient.class.getName() + " <socket-path>");
+            System.exit(1);
+        }
+        // The socket file printed by ServerConnectorUnixDomain.
+        Transport transport = new Transport.TCPUnix(Path.of(args[0]));
+
+        HttpClient client = new HttpClient();
+        try
+        {
+            client.start();
+            ContentResponse response = client.newRequest("http://localhost/")
+                .transport(transport)
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            System.out.printf("response status: %d%n", response.getStatus());
+            System.out.printf("response body: %s", response.getContentAsString());
+        }
+        finally
+        {
+            client.stop();
+        }
+    }
+}
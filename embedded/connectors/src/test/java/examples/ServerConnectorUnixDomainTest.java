@@ -0,0 +1,71 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Transport;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+public class ServerConnectorUnixDomainTest
+{
+    private Server server;
+    private HttpClient client;
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testSameResponseOverTCPAndUnixDomain(@TempDir Path tempDir) throws Exception
+    {
+        Path socketPath = tempDir.resolve("jetty.sock");
+        server = ServerConnectorUnixDomain.newServer(0, socketPath);
+        server.start();
+        int port = ((ServerConnector)server.getConnectors()[0]).getLocalPort();
+        client = new HttpClient();
+        client.start();
+
+        ContentResponse tcp = client.newRequest("localhost", port)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        ContentResponse unixDomain = client.newRequest("localhost", port)
+            .transport(new Transport.TCPUnix(socketPath))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+
+        assertThat(tcp.getStatus(), is(HttpStatus.OK_200));
+        assertThat(tcp.getContentAsString(), containsString("Hello over TCP and Unix-Domain"));
+        assertThat(unixDomain.getStatus(), is(tcp.getStatus()));
+        assertThat(unixDomain.getMediaType(), is(tcp.getMediaType()));
+        assertThat(unixDomain.getContentAsString(), is(tcp.getContentAsString()));
+    }
+}
@@ -16,15 +16,25 @@ package examples.annotated;
 import java.net.URL;
 import java.util.Objects;
 
+import examples.batching.AutoFlushPolicy;
+import examples.pubsub.PubSubHub;
 import org.eclipse.jetty.ee10.servlet.DefaultServlet;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
 import org.eclipse.jetty.ee10.websocket.jakarta.server.config.JakartaWebSocketServletContainerInitializer;
 import jakarta.websocket.server.ServerEndpointConfig;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.Container;
 
 public class EchoServer
 {
+    // Each WebSocket session holds an HTTP/2 stream open for as long as it lives.
+    private static final int MAX_WEBSOCKETS_PER_CONNECTION = 1024;
+
     public static void main(String[] args) throws Exception
     {
         Server server = new Server(8080);
@@ -34,11 +44,46 @@ public class EchoServer
 
     public static Server newServer(int port)
     {
-        Server server = new Server(port);
+        return newServer(port, null);
+    }
+
+    /**
+     * @param port the port to listen on
+     * @param autoFlushPolicy the policy to batch the echoed messages, or null to send each message on its own
+     * @return a new server
+     */
+    public static Server newServer(int port, AutoFlushPolicy autoFlushPolicy)
+    {
+        return newServer(port, autoFlushPolicy, null);
+    }
+
+    /**
+     * @param port the port to listen on
+     * @param autoFlushPolicy the policy to batch the echoed messages, or null to send each message on its own
+     * @param pubSubHub the hub of the topics the endpoints subscribe and publish to, or null to only echo messages
+     * @return a new server, whose connector accepts WebSocket upgrades over HTTP/1.1 and
+     * WebSocket extended CONNECT requests (RFC 8441) over clear-text HTTP/2
+     */
+    public static Server newServer(int port, AutoFlushPolicy autoFlushPolicy, PubSubHub pubSubHub)
+    {
+        Server server = new Server();
+        // Over HTTP/2, the sessions of a client are multiplexed over a single connection.
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(httpConfig);
+        h2c.setConnectProtocolEnabled(true);
+        h2c.setMaxConcurrentStreams(MAX_WEBSOCKETS_PER_CONNECTION);
+        ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig), h2c);
+        connector.setPort(port);
+        server.addConnector(connector);
 
         ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
         servletContextHandler.setContextPath("/");
         server.setHandler(servletContextHandler);
+        // The policy is started and stopped with the server.
+        if (autoFlushPolicy != null)
+            server.addBean(autoFlushPolicy);
+        if (pubSubHub != null)
+            server.addBean(pubSubHub);
 
         // Add javax.websocket support
         JakartaWebSocketServletContainerInitializer.configure(servletContextHandler, (context, container) ->
@@ -46,6 +91,11 @@ public class EchoServer
             // Add echo endpoint to server container
             ServerEndpointConfig echoConfig = ServerEndpointConfig.Builder.create(EchoServerEndpoint.class, "/echo").build();
             container.addEndpoint(echoConfig);
+            // The endpoints look up the policy and the hub in their container.
+            if (autoFlushPolicy != null)
+                ((Container)container).addBean(autoFlushPolicy, false);
+            if (pubSubHub != null)
+                ((Container)container).addBean(pubSubHub, false);
         });
 
         // Add default servlet (to serve the html/css/js)
@@ -13,6 +13,11 @@
 
 package examples.annotated;
 
+import java.io.IOException;
+
+import examples.batching.AutoFlushPolicy;
+import examples.batching.AutoFlushingSender;
+import examples.pubsub.PubSubHub;
 import jakarta.websocket.CloseReason;
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnError;
@@ -31,22 +36,33 @@ public class EchoServerEndpoint
     private static final Logger LOG = LoggerFactory.getLogger(EchoServerEndpoint.class);
     private Session session;
     private RemoteEndpoint.Async remote;
+    private AutoFlushingSender sender;
+    private PubSubHub pubSubHub;
 
     @OnClose
     public void onWebSocketClose(CloseReason close)
     {
+        if (this.sender != null)
+            this.sender.close();
+        if (this.pubSubHub != null)
+            this.pubSubHub.unsubscribeAll(session);
         this.session = null;
         this.remote = null;
-        LOG.info("WebSocket Close: {} - {}",close.getCloseCode(),close.getReasonPhrase());
+        LOG.info("WebSocket Close: {} - {} {}",close.getCloseCode(),close.getReasonPhrase(),sender);
     }
 
     @OnOpen
-    public void onWebSocketOpen(Session session)
+    public void onWebSocketOpen(Session session) throws IOException
     {
         this.session = session;
         this.remote = this.session.getAsyncRemote();
+        // Batch the echoed messages if an AutoFlushPolicy is configured.
+        AutoFlushPolicy autoFlushPolicy = AutoFlushPolicy.from(session);
+        if (autoFlushPolicy != null)
+            this.sender = autoFlushPolicy.newSender(session);
+        this.pubSubHub = PubSubHub.from(session);
         LOG.info("WebSocket Connect: {}",session);
-        this.remote.sendText("You are now connected to " + this.getClass().getName());
+        sendText("You are now connected to " + this.getClass().getName());
     }
 
     @OnError
@@ -56,11 +72,22 @@ public class EchoServerEndpoint
     }
 
     @OnMessage
-    public String onWebSocketText(String message)
+    public void onWebSocketText(String message)
     {
+        // The publish/subscribe commands are not echoed.
+        if (this.pubSubHub != null && this.pubSubHub.onMessage(this.session, message))
+            return;
         LOG.info("Echoing back text message [{}]",message);
-        // Using shortcut approach to sending messages.
-        // You could use a void method and use remote.sendText()
-        return message;
+        // Not using the shortcut approach of returning the message,
+        // so that it can be sent in a batch.
+        sendText(message);
+    }
+
+    private void sendText(String message)
+    {
+        if (this.sender != null)
+            this.sender.sendText(message);
+        else
+            this.remote.sendText(message);
     }
 }
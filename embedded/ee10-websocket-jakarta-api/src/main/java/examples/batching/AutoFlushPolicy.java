@@ -0,0 +1,186 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.batching;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.websocket.Session;
+import org.eclipse.jetty.util.component.Container;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * An opt-in policy to batch the messages sent by the Jakarta async remote endpoints,
+ * with {@link jakarta.websocket.RemoteEndpoint#setBatchingAllowed(boolean) batching allowed},
+ * and to flush the batch automatically.
+ * <p>
+ * A batch is flushed when its bytes reach {@link #getMaxBatchBytes()}, or {@link #getMaxFlushDelay()}
+ * microseconds after its first message, whichever comes first, so that many small messages sent back
+ * to back are written with one write, and one TLS record, instead of one write per message.
+ * </p>
+ * <p>
+ * The policy is added as a bean of the {@link jakarta.websocket.server.ServerContainer}, where the
+ * endpoints find it with {@link #from(Session)}, and it schedules the delayed flushes of all the sessions.
+ * It also sums the counters of all its {@link AutoFlushingSender}s, to report the
+ * {@link #getEstimatedFramesPerWrite() average number of frames per write}, an estimate
+ * as explained in {@link AutoFlushingSender}.
+ * </p>
+ */
+public class AutoFlushPolicy extends ContainerLifeCycle
+{
+    private final Scheduler _scheduler;
+    private int _maxBatchBytes = 4096;
+    private long _maxFlushDelay = 500;
+    private final LongAdder _frames = new LongAdder();
+    private final LongAdder _estimatedWrites = new LongAdder();
+    private final LongAdder _sizeFlushes = new LongAdder();
+    private final LongAdder _delayFlushes = new LongAdder();
+
+    public AutoFlushPolicy()
+    {
+        this(new ScheduledExecutorScheduler("auto-flush", true));
+    }
+
+    public AutoFlushPolicy(Scheduler scheduler)
+    {
+        _scheduler = scheduler;
+        addBean(_scheduler);
+    }
+
+    /**
+     * @param session the session of an endpoint
+     * @return the policy added as a bean of the container of the session, or null if batching is not enabled
+     */
+    public static AutoFlushPolicy from(Session session)
+    {
+        if (session.getContainer() instanceof Container container)
+            return container.getBean(AutoFlushPolicy.class);
+        return null;
+    }
+
+    /**
+     * @param session the session to send to
+     * @return a new sender that batches the messages sent to the session with this policy
+     * @throws IOException if batching cannot be allowed on the session
+     */
+    public AutoFlushingSender newSender(Session session) throws IOException
+    {
+        return new AutoFlushingSender(session, this);
+    }
+
+    public Scheduler getScheduler()
+    {
+        return _scheduler;
+    }
+
+    public int getMaxBatchBytes()
+    {
+        return _maxBatchBytes;
+    }
+
+    /**
+     * <p>The batch is also written when the next frame would not fit in the output buffer of the session,
+     * so a value larger than the output buffer size has no effect.</p>
+     *
+     * @param maxBatchBytes the number of bytes of a batch that trigger its flush
+     */
+    public void setMaxBatchBytes(int maxBatchBytes)
+    {
+        _maxBatchBytes = maxBatchBytes;
+    }
+
+    public long getMaxFlushDelay()
+    {
+        return _maxFlushDelay;
+    }
+
+    /**
+     * @param maxFlushDelay the delay in microseconds after the first message of a batch, after which the batch is flushed
+     */
+    public void setMaxFlushDelay(long maxFlushDelay)
+    {
+        _maxFlushDelay = maxFlushDelay;
+    }
+
+    /**
+     * @return the number of frames sent
+     */
+    public long getFrames()
+    {
+        return _frames.sum();
+    }
+
+    /**
+     * @return the estimated number of writes of the frames sent
+     */
+    public long getEstimatedWrites()
+    {
+        return _estimatedWrites.sum();
+    }
+
+    /**
+     * @return the number of batches flushed because they reached {@link #getMaxBatchBytes()}
+     */
+    public long getSizeFlushes()
+    {
+        return _sizeFlushes.sum();
+    }
+
+    /**
+     * @return the number of batches flushed after {@link #getMaxFlushDelay()}
+     */
+    public long getDelayFlushes()
+    {
+        return _delayFlushes.sum();
+    }
+
+    /**
+     * @return the average number of frames per estimated write, 1 when each frame is written on its own
+     */
+    public double getEstimatedFramesPerWrite()
+    {
+        long writes = getEstimatedWrites();
+        return writes == 0 ? 0 : (double)getFrames() / writes;
+    }
+
+    void onFrame()
+    {
+        _frames.increment();
+    }
+
+    void onEstimatedWrite()
+    {
+        _estimatedWrites.increment();
+    }
+
+    void onSizeFlush()
+    {
+        _sizeFlushes.increment();
+    }
+
+    void onDelayFlush()
+    {
+        _delayFlushes.increment();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[maxBatchBytes=%d,maxFlushDelay=%dus,frames=%d,estimatedWrites=%d,estimatedFramesPerWrite=%.2f]".formatted(
+            getClass().getSimpleName(), hashCode(), getMaxBatchBytes(), getMaxFlushDelay(), getFrames(), getEstimatedWrites(), getEstimatedFramesPerWrite());
+    }
+}
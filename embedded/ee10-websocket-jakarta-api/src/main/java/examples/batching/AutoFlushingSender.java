@@ -0,0 +1,318 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.batching;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketSession;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.websocket.core.Behavior;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the text messages of a session as a batch of frames, flushed with an {@link AutoFlushPolicy}.
+ * <p>
+ * The messages are sent with the {@link RemoteEndpoint.Async} of the session, with batching allowed,
+ * so that their frames are aggregated in the output buffer of the session until a flush.
+ * The sender accounts for the bytes of the frames in the batch, and flushes it without blocking
+ * when they reach {@link AutoFlushPolicy#getMaxBatchBytes()}, or when
+ * {@link AutoFlushPolicy#getMaxFlushDelay()} has elapsed since the first frame of the batch.
+ * </p>
+ * <p>
+ * The flushes are real, but the writes are estimated: the session also writes the batch, without a flush,
+ * when the next frame does not fit in its output buffer, or is too large to be aggregated, and the sender
+ * cannot observe those writes. It counts them by mirroring the aggregation rules of the Jetty 12.0
+ * {@code FrameFlusher}, where a frame smaller than a quarter of the output buffer is aggregated if the
+ * buffer still has room for it and for the largest frame header.
+ * The sender accounts for the frames before extensions, so when an extension such as
+ * {@code permessage-deflate} is negotiated, the batches are smaller on the wire than accounted for,
+ * and {@link #getEstimatedWrites()} overestimates the writes.
+ * </p>
+ */
+public class AutoFlushingSender
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AutoFlushingSender.class);
+    // Mirrors FrameFlusher: the space that the output buffer must have left for the header of a frame to aggregate.
+    private static final int MAX_HEADER_SPACE = 28;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final AutoFlushPolicy _policy;
+    private final RemoteEndpoint.Async _remote;
+    private final CoreSession _coreSession;
+    private final int _bufferSize;
+    private final int _maskLength;
+    private long _batch;
+    private int _batchBytes;
+    private int _batchFrames;
+    private Scheduler.Task _flushTask;
+    private long _frames;
+    private long _estimatedWrites;
+    private boolean _closed;
+
+    AutoFlushingSender(Session session, AutoFlushPolicy policy) throws IOException
+    {
+        if (!(session instanceof JakartaWebSocketSession jakartaSession))
+            throw new IllegalArgumentException("Not a Jetty session: " + session);
+        _policy = policy;
+        _coreSession = jakartaSession.getCoreSession();
+        _bufferSize = _coreSession.getOutputBufferSize();
+        _maskLength = _coreSession.getBehavior() == Behavior.CLIENT ? 4 : 0;
+        _remote = session.getAsyncRemote();
+        _remote.setBatchingAllowed(true);
+    }
+
+    /**
+     * @return the number of frames sent
+     */
+    public long getFrames()
+    {
+        _lock.lock();
+        try
+        {
+            return _frames;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the estimated number of writes of the frames sent, see the class documentation
+     */
+    public long getEstimatedWrites()
+    {
+        _lock.lock();
+        try
+        {
+            return _estimatedWrites;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the average number of frames per {@link #getEstimatedWrites() estimated write}
+     */
+    public double getEstimatedFramesPerWrite()
+    {
+        _lock.lock();
+        try
+        {
+            return _estimatedWrites == 0 ? 0 : (double)_frames / _estimatedWrites;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Sends a text message, logging a failure to send it.
+     *
+     * @param text the text message
+     */
+    public void sendText(String text)
+    {
+        sendText(text, result ->
+        {
+            if (!result.isOK() && LOG.isDebugEnabled())
+                LOG.debug("Unable to send text message", result.getException());
+        });
+    }
+
+    /**
+     * Sends a text message as one frame of the current batch.
+     * <p>
+     * The handler is notified once the frame is aggregated in the output buffer,
+     * or once it is written if it is written with the batch.
+     * </p>
+     *
+     * @param text the text message
+     * @param handler the handler notified of the result of the send
+     */
+    public void sendText(String text, SendHandler handler)
+    {
+        int length = utf8Length(text);
+        // Mirrors FrameFlusher: too large to be aggregated, the frame is written right away with the batch.
+        boolean aggregated = length < _bufferSize / 4;
+        boolean closed;
+        _lock.lock();
+        try
+        {
+            closed = _closed;
+            if (!closed)
+            {
+                _frames++;
+                _policy.onFrame();
+                // The batch is written first if the frame does not fit in the output buffer.
+                if (!aggregated || _batchBytes + MAX_HEADER_SPACE + length > _bufferSize)
+                    written();
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if (closed)
+        {
+            handler.onResult(new SendResult(new IOException("Closed")));
+            return;
+        }
+
+        // The remote and the session are called without holding the lock,
+        // as the handler may be notified synchronously, and send the next message.
+        _remote.sendText(text, handler);
+        if (!aggregated)
+            return;
+
+        // The frame is accounted for once it is in the output buffer,
+        // so that it is always covered by a flush, either by size or after a delay.
+        boolean flush = false;
+        _lock.lock();
+        try
+        {
+            if (_closed)
+                return;
+            _batchBytes += headerLength(length) + length;
+            if (_batchFrames++ == 0)
+            {
+                long batch = _batch;
+                _flushTask = _policy.getScheduler().schedule(() -> flushAfterDelay(batch), _policy.getMaxFlushDelay(), TimeUnit.MICROSECONDS);
+            }
+            if (_batchBytes >= _policy.getMaxBatchBytes())
+            {
+                _policy.onSizeFlush();
+                written();
+                flush = true;
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if (flush)
+            flush();
+    }
+
+    private void flushAfterDelay(long batch)
+    {
+        _lock.lock();
+        try
+        {
+            // The batch may have been written in the meantime.
+            if (batch != _batch || _closed)
+                return;
+            _policy.onDelayFlush();
+            written();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        flush();
+    }
+
+    private void flush()
+    {
+        _coreSession.flush(Callback.from(() -> {}, x ->
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to flush {}", this, x);
+        }));
+    }
+
+    private void written()
+    {
+        assert _lock.isHeldByCurrentThread();
+        _estimatedWrites++;
+        _policy.onEstimatedWrite();
+        _batch++;
+        _batchBytes = 0;
+        _batchFrames = 0;
+        Scheduler.Task task = _flushTask;
+        _flushTask = null;
+        if (task != null)
+            task.cancel();
+    }
+
+    /**
+     * Stops flushing the batch of the session, when it is closed.
+     */
+    public void close()
+    {
+        _lock.lock();
+        try
+        {
+            _closed = true;
+            Scheduler.Task task = _flushTask;
+            _flushTask = null;
+            if (task != null)
+                task.cancel();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private int headerLength(int payloadLength)
+    {
+        int length = payloadLength <= 125 ? 2 : payloadLength <= 0xFFFF ? 4 : 10;
+        return length + _maskLength;
+    }
+
+    private static int utf8Length(String text)
+    {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c < 0x80)
+                length += 1;
+            else if (c < 0x800 || Character.isSurrogate(c))
+                length += 2;
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+    @Override
+    public String toString()
+    {
+        _lock.lock();
+        try
+        {
+            return "%s@%x[frames=%d,estimatedWrites=%d,batchFrames=%d,batchBytes=%d]".formatted(
+                getClass().getSimpleName(), hashCode(), _frames, _estimatedWrites, _batchFrames, _batchBytes);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+}
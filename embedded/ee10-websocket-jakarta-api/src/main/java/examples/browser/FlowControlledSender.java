@@ -0,0 +1,421 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.browser;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import examples.batching.AutoFlushingSender;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.eclipse.jetty.util.IteratingCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A per-session queue of outgoing text messages, with flow control.
+ * <p>
+ * Messages are sent one at a time with {@link jakarta.websocket.RemoteEndpoint.Async#sendText(String, SendHandler)},
+ * and the queue accounts for the bytes of the messages that are queued or being sent.
+ * When a new message would take the queued bytes above the {@link #getHighWatermark() high watermark},
+ * the producers are paused, and the {@link OverflowPolicy} decides what happens to the message.
+ * Producers are resumed once the queued bytes fall back to the {@link #getLowWatermark() low watermark}.
+ * </p>
+ * <p>
+ * Without such a queue, a producer that is faster than the remote peer makes the
+ * outgoing frames accumulate on the server heap without any bound.
+ * </p>
+ */
+public class FlowControlledSender
+{
+    private static final Logger LOG = LoggerFactory.getLogger(FlowControlledSender.class);
+
+    /**
+     * What to do with a message sent while the producers are paused.
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * The producer blocks until the producers are resumed, or the session is closed.
+         */
+        BLOCK,
+        /**
+         * The message is queued, and the oldest queued messages are dropped to stay below the high watermark.
+         */
+        DROP_OLDEST,
+        /**
+         * The session is closed with {@link CloseReason.CloseCodes#VIOLATED_POLICY 1008}.
+         */
+        CLOSE
+    }
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _resumed = _lock.newCondition();
+    private final ArrayDeque<Message> _queue = new ArrayDeque<>();
+    private final Flusher _flusher = new Flusher();
+    private final Session _session;
+    private final long _highWatermark;
+    private final long _lowWatermark;
+    private final OverflowPolicy _overflowPolicy;
+    private AutoFlushingSender _autoFlushingSender;
+    private long _queuedBytes;
+    private long _maxQueuedBytes;
+    private boolean _paused;
+    private boolean _closed;
+    private final LongAdder _sentMessages = new LongAdder();
+    private final LongAdder _droppedMessages = new LongAdder();
+    private final LongAdder _pauses = new LongAdder();
+
+    /**
+     * @param session the session to send messages to
+     * @param highWatermark the queued bytes above which producers are paused
+     * @param lowWatermark the queued bytes at or below which producers are resumed
+     * @param overflowPolicy what to do with messages sent while producers are paused
+     */
+    public FlowControlledSender(Session session, long highWatermark, long lowWatermark, OverflowPolicy overflowPolicy)
+    {
+        if (lowWatermark > highWatermark)
+            throw new IllegalArgumentException("Low watermark " + lowWatermark + " is above high watermark " + highWatermark);
+        _session = session;
+        _highWatermark = highWatermark;
+        _lowWatermark = lowWatermark;
+        _overflowPolicy = overflowPolicy;
+    }
+
+    public AutoFlushingSender getAutoFlushingSender()
+    {
+        return _autoFlushingSender;
+    }
+
+    /**
+     * @param autoFlushingSender the sender used to batch the messages, or null to send each message on its own
+     */
+    public void setAutoFlushingSender(AutoFlushingSender autoFlushingSender)
+    {
+        _autoFlushingSender = autoFlushingSender;
+    }
+
+    public long getHighWatermark()
+    {
+        return _highWatermark;
+    }
+
+    public long getLowWatermark()
+    {
+        return _lowWatermark;
+    }
+
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return _overflowPolicy;
+    }
+
+    /**
+     * @return the bytes of the messages queued or being sent
+     */
+    public long getQueuedBytes()
+    {
+        _lock.lock();
+        try
+        {
+            return _queuedBytes;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages queued, not including the one being sent
+     */
+    public int getQueuedMessages()
+    {
+        _lock.lock();
+        try
+        {
+            return _queue.size();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    public long getMaxQueuedBytes()
+    {
+        _lock.lock();
+        try
+        {
+            return _maxQueuedBytes;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    public boolean isPaused()
+    {
+        _lock.lock();
+        try
+        {
+            return _paused;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    public long getSentMessages()
+    {
+        return _sentMessages.sum();
+    }
+
+    public long getDroppedMessages()
+    {
+        return _droppedMessages.sum();
+    }
+
+    /**
+     * @return the number of times the producers have been paused
+     */
+    public long getPauses()
+    {
+        return _pauses.sum();
+    }
+
+    /**
+     * <p>Queues a text message to be sent.</p>
+     *
+     * @param text the message to send
+     * @return whether the message was queued, false if it was rejected because the sender is closed,
+     * or because the producer was interrupted while blocked
+     */
+    public boolean sendText(String text)
+    {
+        Message message = new Message(text, utf8Length(text));
+        boolean close = false;
+        _lock.lock();
+        try
+        {
+            if (_closed)
+                return false;
+
+            // A message larger than the high watermark is accepted when nothing else is queued.
+            if (_queuedBytes > 0 && (_paused || _queuedBytes + message.bytes > _highWatermark))
+            {
+                if (!_paused)
+                {
+                    _paused = true;
+                    _pauses.increment();
+                }
+
+                switch (_overflowPolicy)
+                {
+                    case BLOCK ->
+                    {
+                        while (_paused && !_closed)
+                        {
+                            _resumed.await();
+                        }
+                        if (_closed)
+                            return false;
+                    }
+                    case DROP_OLDEST ->
+                    {
+                        while (!_queue.isEmpty() && _queuedBytes + message.bytes > _highWatermark)
+                        {
+                            Message dropped = _queue.poll();
+                            _queuedBytes -= dropped.bytes;
+                            _droppedMessages.increment();
+                        }
+                    }
+                    case CLOSE ->
+                    {
+                        close = true;
+                        closeQueue();
+                    }
+                }
+            }
+
+            if (!close)
+            {
+                _queue.offer(message);
+                _queuedBytes += message.bytes;
+                _maxQueuedBytes = Math.max(_maxQueuedBytes, _queuedBytes);
+            }
+        }
+        catch (InterruptedException x)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        if (close)
+        {
+            try
+            {
+                _session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Send queue overflow"));
+            }
+            catch (IOException x)
+            {
+                LOG.warn("Unable to close {}", _session, x);
+            }
+            return false;
+        }
+
+        _flusher.iterate();
+        return true;
+    }
+
+    /**
+     * <p>Closes the sender, discarding the queued messages and waking up the blocked producers.</p>
+     * <p>To be called when the session is closed.</p>
+     */
+    public void close()
+    {
+        _lock.lock();
+        try
+        {
+            closeQueue();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void closeQueue()
+    {
+        _closed = true;
+        _droppedMessages.add(_queue.size());
+        _queue.clear();
+        _queuedBytes = 0;
+        _resumed.signalAll();
+    }
+
+    private static long utf8Length(String text)
+    {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c < 0x80)
+                length += 1;
+            else if (c < 0x800 || Character.isSurrogate(c))
+                length += 2;
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+    @Override
+    public String toString()
+    {
+        _lock.lock();
+        try
+        {
+            return "%s@%x[queued=%d/%dB,paused=%b,sent=%d,dropped=%d]".formatted(
+                getClass().getSimpleName(), hashCode(), _queue.size(), _queuedBytes, _paused, getSentMessages(), getDroppedMessages());
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private record Message(String text, long bytes)
+    {
+    }
+
+    /**
+     * Sends the queued messages one at a time, without recursion when sends complete immediately.
+     */
+    private class Flusher extends IteratingCallback implements SendHandler
+    {
+        private Message _sending;
+
+        @Override
+        protected Action process()
+        {
+            Message message;
+            _lock.lock();
+            try
+            {
+                if (_sending != null)
+                {
+                    // The previous message has been sent.
+                    if (!_closed)
+                        _queuedBytes -= _sending.bytes;
+                    _sending = null;
+                    if (_paused && _queuedBytes <= _lowWatermark)
+                    {
+                        _paused = false;
+                        _resumed.signalAll();
+                    }
+                }
+                message = _queue.poll();
+                if (message == null)
+                    return Action.IDLE;
+                _sending = message;
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+
+            AutoFlushingSender autoFlushingSender = _autoFlushingSender;
+            if (autoFlushingSender == null)
+                _session.getAsyncRemote().sendText(message.text, this);
+            else
+                autoFlushingSender.sendText(message.text, this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        public void onResult(SendResult result)
+        {
+            if (result.isOK())
+            {
+                _sentMessages.increment();
+                succeeded();
+            }
+            else
+            {
+                failed(result.getException());
+            }
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable cause)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to send to {}", _session, cause);
+            FlowControlledSender.this.close();
+        }
+    }
+}
@@ -16,13 +16,36 @@ package examples.browser;
 import java.util.Collections;
 import java.util.List;
 
+import examples.deflate.PerMessageDeflatePolicy;
 import jakarta.websocket.Extension;
 import jakarta.websocket.HandshakeResponse;
 import jakarta.websocket.server.HandshakeRequest;
 import jakarta.websocket.server.ServerEndpointConfig;
 
+/**
+ * Records the headers of the handshake request for {@link JakartaBrowserSocket}, and
+ * negotiates {@code permessage-deflate} with a {@link PerMessageDeflatePolicy}, if any.
+ */
 public class JakartaBrowserConfigurator extends ServerEndpointConfig.Configurator
 {
+    private final PerMessageDeflatePolicy deflatePolicy;
+
+    /**
+     * A configurator that negotiates no extension.
+     */
+    public JakartaBrowserConfigurator()
+    {
+        this(null);
+    }
+
+    /**
+     * @param deflatePolicy the policy to negotiate {@code permessage-deflate} with, or null to negotiate no extension
+     */
+    public JakartaBrowserConfigurator(PerMessageDeflatePolicy deflatePolicy)
+    {
+        this.deflatePolicy = deflatePolicy;
+    }
+
     @Override
     public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response)
     {
@@ -42,6 +65,8 @@ public class JakartaBrowserConfigurator extends ServerEndpointConfig.Configurato
     @Override
     public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested)
     {
-        return Collections.emptyList();
+        if (deflatePolicy == null)
+            return Collections.emptyList();
+        return deflatePolicy.negotiate(installed, requested);
     }
 }
@@ -17,7 +17,11 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.List;
 
+import examples.batching.AutoFlushPolicy;
+import examples.deflate.PerMessageDeflatePolicy;
+import jakarta.websocket.server.ServerEndpointConfig;
 import org.eclipse.jetty.ee10.servlet.DefaultServlet;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
@@ -28,10 +32,12 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.component.Container;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.eclipse.jetty.util.resource.Resources;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.websocket.core.server.WebSocketServerComponents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +52,8 @@ public class JakartaBrowserMain
     {
         int port = 8080;
         int sslPort = 8443;
+        AutoFlushPolicy autoFlushPolicy = null;
+        PerMessageDeflatePolicy deflatePolicy = null;
 
         for (int i = 0; i < args.length; i++)
         {
@@ -58,14 +66,45 @@ public class JakartaBrowserMain
             {
                 sslPort = Integer.parseInt(args[++i]);
             }
+            if ("--batch".equals(a))
+            {
+                autoFlushPolicy = new AutoFlushPolicy();
+            }
+            if ("--deflate".equals(a))
+            {
+                deflatePolicy = new PerMessageDeflatePolicy();
+            }
         }
 
-        Server server = newServer(port, sslPort);
+        Server server = newServer(port, sslPort, autoFlushPolicy, deflatePolicy);
         server.start();
         server.join();
     }
 
     public static Server newServer(int port, int sslPort) throws MalformedURLException, URISyntaxException
+    {
+        return newServer(port, sslPort, null);
+    }
+
+    /**
+     * @param port the http port
+     * @param sslPort the https port
+     * @param autoFlushPolicy the policy to batch the messages sent by the sockets, or null to send each message on its own
+     * @return a new server
+     */
+    public static Server newServer(int port, int sslPort, AutoFlushPolicy autoFlushPolicy) throws MalformedURLException, URISyntaxException
+    {
+        return newServer(port, sslPort, autoFlushPolicy, null);
+    }
+
+    /**
+     * @param port the http port
+     * @param sslPort the https port
+     * @param autoFlushPolicy the policy to batch the messages sent by the sockets, or null to send each message on its own
+     * @param deflatePolicy the policy to compress the messages of the sockets, or null to negotiate no extension
+     * @return a new server
+     */
+    public static Server newServer(int port, int sslPort, AutoFlushPolicy autoFlushPolicy, PerMessageDeflatePolicy deflatePolicy) throws MalformedURLException, URISyntaxException
     {
         Server server = new Server();
 
@@ -118,9 +157,30 @@ public class JakartaBrowserMain
         ServletHolder holder = context.addServlet(DefaultServlet.class, "/");
         holder.setInitParameter("dirAllowed", "true");
         server.setHandler(context);
+        // The policy is started and stopped with the server.
+        if (autoFlushPolicy != null)
+            server.addBean(autoFlushPolicy);
+        if (deflatePolicy != null)
+        {
+            server.addBean(deflatePolicy);
+            // All the sessions of the context share the bounded pools of the policy.
+            context.setAttribute(WebSocketServerComponents.WEBSOCKET_DEFLATER_POOL_ATTRIBUTE, deflatePolicy.getDeflaterPool());
+            context.setAttribute(WebSocketServerComponents.WEBSOCKET_INFLATER_POOL_ATTRIBUTE, deflatePolicy.getInflaterPool());
+        }
 
-        JakartaWebSocketServletContainerInitializer.configure(context,
-            (servletContext, wsContainer) -> wsContainer.addEndpoint(JakartaBrowserSocket.class));
+        JakartaWebSocketServletContainerInitializer.configure(context, (servletContext, wsContainer) ->
+        {
+            // The sockets look up the policy in their container.
+            if (autoFlushPolicy != null)
+                ((Container)wsContainer).addBean(autoFlushPolicy, false);
+            // Compression is enabled per endpoint, by its configurator.
+            if (deflatePolicy != null)
+                deflatePolicy.install(wsContainer);
+            wsContainer.addEndpoint(ServerEndpointConfig.Builder.create(JakartaBrowserSocket.class, "/")
+                .subprotocols(List.of("tool"))
+                .configurator(new JakartaBrowserConfigurator(deflatePolicy))
+                .build());
+        });
 
         LOG.info("{} setup on (http) port {} and (https) port {}", JakartaBrowserMain.class.getName(), port, sslPort);
 
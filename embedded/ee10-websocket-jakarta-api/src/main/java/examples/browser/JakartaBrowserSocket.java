@@ -13,35 +13,44 @@
 
 package examples.browser;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.stream.Collectors;
 
+import examples.batching.AutoFlushPolicy;
+import examples.batching.AutoFlushingSender;
 import jakarta.websocket.CloseReason;
+import jakarta.websocket.Extension;
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
-import jakarta.websocket.RemoteEndpoint.Async;
 import jakarta.websocket.Session;
 import jakarta.websocket.server.ServerEndpoint;
 import org.eclipse.jetty.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@ServerEndpoint(value = "/", subprotocols = {"tool"}, configurator = JakartaBrowserConfigurator.class)
+/**
+ * The socket of the tool page, deployed by {@link JakartaBrowserMain} with a {@link JakartaBrowserConfigurator},
+ * as the configurator of the annotation would take precedence over the one of the endpoint config.
+ */
+@ServerEndpoint(value = "/", subprotocols = {"tool"})
 public class JakartaBrowserSocket
 {
     private static class WriteMany implements Runnable
     {
-        private final Async remote;
+        private final FlowControlledSender sender;
         private final int size;
         private final int count;
 
-        public WriteMany(Async remote, int size, int count)
+        public WriteMany(FlowControlledSender sender, int size, int count)
         {
-            this.remote = remote;
+            this.sender = sender;
             this.size = size;
             this.count = count;
         }
@@ -63,23 +72,35 @@ public class JakartaBrowserSocket
                     randomText[i] = letters[rand.nextInt(lettersLen)];
                 }
                 msg = String.format("ManyThreads [%s]", String.valueOf(randomText));
-                remote.sendText(msg);
+                if (!sender.sendText(msg))
+                    return;
             }
         }
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(JakartaBrowserSocket.class);
+    // Producers block when more than 1 MiB is queued for a slow browser, until it is down to 256 KiB.
+    private static final long SEND_HIGH_WATERMARK = 1024 * 1024;
+    private static final long SEND_LOW_WATERMARK = 256 * 1024;
     private Session session;
-    private Async remote;
+    private FlowControlledSender sender;
+    private AutoFlushingSender autoFlushingSender;
     private String userAgent;
     private String requestedExtensions;
 
     @OnOpen
-    public void onOpen(Session session)
+    public void onOpen(Session session) throws IOException
     {
         LOG.info("Open: {}", session);
         this.session = session;
-        this.remote = session.getAsyncRemote();
+        this.sender = new FlowControlledSender(session, SEND_HIGH_WATERMARK, SEND_LOW_WATERMARK, FlowControlledSender.OverflowPolicy.BLOCK);
+        // Batch the messages if an AutoFlushPolicy is configured.
+        AutoFlushPolicy autoFlushPolicy = AutoFlushPolicy.from(session);
+        if (autoFlushPolicy != null)
+        {
+            this.autoFlushingSender = autoFlushPolicy.newSender(session);
+            this.sender.setAutoFlushingSender(autoFlushingSender);
+        }
         this.userAgent = (String)session.getUserProperties().get("userAgent");
         this.requestedExtensions = (String)session.getUserProperties().get("requestedExtensions");
     }
@@ -87,7 +108,10 @@ public class JakartaBrowserSocket
     @OnClose
     public void onClose(CloseReason close)
     {
-        LOG.info("Close: {}: {}", close.getCloseCode(), close.getReasonPhrase());
+        LOG.info("Close: {}: {} {} {}", close.getCloseCode(), close.getReasonPhrase(), sender, autoFlushingSender);
+        this.sender.close();
+        if (this.autoFlushingSender != null)
+            this.autoFlushingSender.close();
         this.session = null;
     }
 
@@ -123,6 +147,16 @@ public class JakartaBrowserSocket
                     {
                         writeMessage("Client Sec-WebSocket-Extensions: " + this.requestedExtensions);
                     }
+
+                    List<Extension> negotiated = session.getNegotiatedExtensions();
+                    if (negotiated.isEmpty())
+                    {
+                        writeMessage("Server negotiated no Sec-WebSocket-Extensions");
+                    }
+                    else
+                    {
+                        writeMessage("Server Sec-WebSocket-Extensions: " + negotiated.stream().map(Extension::getName).collect(Collectors.joining(", ")));
+                    }
                     break;
                 }
                 case "many":
@@ -146,7 +180,7 @@ public class JakartaBrowserSocket
                     // Setup threads
                     for (int n = 0; n < threadCount; n++)
                     {
-                        threads[n] = new Thread(new WriteMany(remote, size, count), "WriteMany[" + n + "]");
+                        threads[n] = new Thread(new WriteMany(sender, size, count), "WriteMany[" + n + "]");
                     }
 
                     // Execute threads
@@ -158,6 +192,12 @@ public class JakartaBrowserSocket
                     // Drop out of this thread
                     break;
                 }
+                case "sender":
+                {
+                    writeMessage("Send queue max %d bytes, paused %d times, dropped %d messages",
+                        sender.getMaxQueuedBytes(), sender.getPauses(), sender.getDroppedMessages());
+                    break;
+                }
                 case "time":
                 {
                     Calendar now = Calendar.getInstance();
@@ -212,8 +252,8 @@ public class JakartaBrowserSocket
             return;
         }
 
-        // Async write
-        remote.sendText(message);
+        // Async write, flow controlled
+        sender.sendText(message);
     }
 
     private void writeMessage(String format, Object... args)
@@ -0,0 +1,420 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.deflate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+import jakarta.websocket.Extension;
+import jakarta.websocket.server.ServerContainer;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketContainer;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketExtension;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+
+/**
+ * A policy to negotiate the {@code permessage-deflate} extension (RFC 7692) and to compress
+ * the messages sent by the endpoints that opt in to it.
+ * <p>
+ * The policy is installed in a {@link ServerContainer} with {@link #install(ServerContainer)}, which
+ * replaces the default {@code permessage-deflate} extension with a {@link PolicyDeflateExtension},
+ * but it is only negotiated for the endpoints whose configurator calls
+ * {@link #negotiate(List, List)}, so compression is enabled or disabled per endpoint.
+ * </p>
+ * <p>
+ * The {@link Deflater}s and {@link java.util.zip.Inflater}s are taken from {@link #getDeflaterPool()}
+ * and {@link #getInflaterPool()}, that must be set as the
+ * {@link org.eclipse.jetty.websocket.core.server.WebSocketServerComponents#WEBSOCKET_DEFLATER_POOL_ATTRIBUTE}
+ * and {@link org.eclipse.jetty.websocket.core.server.WebSocketServerComponents#WEBSOCKET_INFLATER_POOL_ATTRIBUTE}
+ * attributes of the context before it starts, so that they are shared by all the sessions.
+ * Without {@link #setContextTakeover(boolean) context takeover}, a session only holds a deflater
+ * while it sends a message, so the pools hold at most {@link #getPoolCapacity()} of them for any
+ * number of sessions, instead of one 256 KiB deflater per session.
+ * </p>
+ * <p>
+ * Messages smaller than {@link #getMinCompressSize()} are sent uncompressed, and the policy sums what
+ * compression saves, {@link #getBytesSaved()}, against what it costs, {@link #getDeflateTime(TimeUnit)}.
+ * </p>
+ */
+public class PerMessageDeflatePolicy extends ContainerLifeCycle
+{
+    public static final String NAME = "permessage-deflate";
+    // java.util.zip always deflates with a 32 KiB window.
+    private static final int MAX_WINDOW_BITS = 15;
+    private static final Pattern WINDOW_BITS = Pattern.compile("[89]|1[0-5]");
+
+    private final MeteredDeflaterPool _deflaterPool;
+    private final InflaterPool _inflaterPool;
+    private boolean _enabled = true;
+    private boolean _contextTakeover = true;
+    private int _maxClientWindowBits = MAX_WINDOW_BITS;
+    private int _minCompressSize = 256;
+    private final LongAdder _compressedMessages = new LongAdder();
+    private final LongAdder _skippedMessages = new LongAdder();
+    private final LongAdder _bytesIn = new LongAdder();
+    private final LongAdder _bytesOut = new LongAdder();
+    private final LongAdder _skippedBytes = new LongAdder();
+    private final LongAdder _deflateNanos = new LongAdder();
+
+    public PerMessageDeflatePolicy()
+    {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compressionLevel the compression level of the deflaters, from 0 to 9
+     */
+    public PerMessageDeflatePolicy(int compressionLevel)
+    {
+        _deflaterPool = new MeteredDeflaterPool(CompressionPool.DEFAULT_CAPACITY, compressionLevel);
+        _inflaterPool = new InflaterPool(CompressionPool.DEFAULT_CAPACITY, true);
+        addBean(_deflaterPool);
+        addBean(_inflaterPool);
+    }
+
+    /**
+     * @param container the container to install the policy in
+     */
+    public void install(ServerContainer container)
+    {
+        JakartaWebSocketContainer wsContainer = (JakartaWebSocketContainer)container;
+        wsContainer.getExtensionRegistry().register(NAME, PolicyDeflateExtension.class);
+        // The extensions find the policy in the components given to their init().
+        wsContainer.getWebSocketComponents().addBean(this, false);
+    }
+
+    /**
+     * @param components the components of a container
+     * @return the policy installed in the container, or null
+     */
+    public static PerMessageDeflatePolicy from(WebSocketComponents components)
+    {
+        return components.getBean(PerMessageDeflatePolicy.class);
+    }
+
+    /**
+     * <p>Accepts the first {@code permessage-deflate} offer of the client that this policy supports.</p>
+     *
+     * @param installed the extensions installed in the container
+     * @param requested the extensions requested by the client, in order of preference
+     * @return the negotiated extensions, empty if compression is disabled or no offer is acceptable
+     * @see jakarta.websocket.server.ServerEndpointConfig.Configurator#getNegotiatedExtensions(List, List)
+     */
+    public List<Extension> negotiate(List<Extension> installed, List<Extension> requested)
+    {
+        if (!isEnabled() || installed.stream().noneMatch(extension -> NAME.equals(extension.getName())))
+            return List.of();
+        for (Extension offer : requested)
+        {
+            if (!NAME.equals(offer.getName()))
+                continue;
+            ExtensionConfig accepted = accept(offer);
+            if (accepted != null)
+                return List.of(new JakartaWebSocketExtension(accepted));
+        }
+        return List.of();
+    }
+
+    private ExtensionConfig accept(Extension offer)
+    {
+        ExtensionConfig response = new ExtensionConfig(NAME);
+        for (Extension.Parameter parameter : offer.getParameters())
+        {
+            String name = parameter.getName();
+            String value = parameter.getValue();
+            switch (name)
+            {
+                case "server_max_window_bits":
+                {
+                    // The window of the deflater cannot be reduced, decline the offer.
+                    if (!String.valueOf(MAX_WINDOW_BITS).equals(value))
+                        return null;
+                    response.setParameter(name, MAX_WINDOW_BITS);
+                    break;
+                }
+                case "client_max_window_bits":
+                {
+                    // The client supports a smaller window for the messages it sends.
+                    int bits = value == null ? MAX_WINDOW_BITS : parseWindowBits(value);
+                    // An invalid value makes the whole offer invalid, decline it (RFC 7692 section 7.1.2.2).
+                    if (bits < 0)
+                        return null;
+                    bits = Math.min(bits, getMaxClientWindowBits());
+                    if (bits < MAX_WINDOW_BITS)
+                        response.setParameter(name, bits);
+                    break;
+                }
+                case "server_no_context_takeover", "client_no_context_takeover":
+                {
+                    response.setParameter(name);
+                    break;
+                }
+                default:
+                {
+                    // An unknown parameter cannot be accepted.
+                    return null;
+                }
+            }
+        }
+        if (!isContextTakeover())
+        {
+            response.setParameter("server_no_context_takeover");
+            response.setParameter("client_no_context_takeover");
+        }
+        return response;
+    }
+
+    /**
+     * @param value the value of a window bits parameter
+     * @return the window bits, from 8 to 15, or -1 if the value is not a valid window bits value
+     */
+    private static int parseWindowBits(String value)
+    {
+        // Only the decimal digits of 8 to 15, without sign or leading zeros (RFC 7692 section 7.1.2.1).
+        if (!WINDOW_BITS.matcher(value).matches())
+            return -1;
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * @return the pool of the deflaters used to compress the messages sent
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    /**
+     * @return the pool of the inflaters used to decompress the messages received
+     */
+    public InflaterPool getInflaterPool()
+    {
+        return _inflaterPool;
+    }
+
+    public int getPoolCapacity()
+    {
+        return _deflaterPool.getCapacity();
+    }
+
+    /**
+     * @param poolCapacity the maximum number of pooled deflaters, and of pooled inflaters, must be set before starting
+     */
+    public void setPoolCapacity(int poolCapacity)
+    {
+        _deflaterPool.setCapacity(poolCapacity);
+        _inflaterPool.setCapacity(poolCapacity);
+    }
+
+    public boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /**
+     * @param enabled whether compression is negotiated for new sessions
+     */
+    public void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    public boolean isContextTakeover()
+    {
+        return _contextTakeover;
+    }
+
+    /**
+     * <p>Without context takeover, each message is compressed on its own, which compresses
+     * small similar messages less but releases the deflater after each message.</p>
+     *
+     * @param contextTakeover whether the compression context is kept from one message to the next
+     */
+    public void setContextTakeover(boolean contextTakeover)
+    {
+        _contextTakeover = contextTakeover;
+    }
+
+    public int getMaxClientWindowBits()
+    {
+        return _maxClientWindowBits;
+    }
+
+    /**
+     * <p>The window of the messages sent by the server cannot be capped, as {@link Deflater}
+     * always uses a 32 KiB window, so offers that require a smaller server window are declined.</p>
+     *
+     * @param maxClientWindowBits the maximum window bits, from 8 to 15, negotiated for the messages sent by
+     * clients that support it
+     */
+    public void setMaxClientWindowBits(int maxClientWindowBits)
+    {
+        if (maxClientWindowBits < 8 || maxClientWindowBits > MAX_WINDOW_BITS)
+            throw new IllegalArgumentException("Invalid window bits " + maxClientWindowBits);
+        _maxClientWindowBits = maxClientWindowBits;
+    }
+
+    public int getMinCompressSize()
+    {
+        return _minCompressSize;
+    }
+
+    /**
+     * @param minCompressSize the payload size below which a message is sent uncompressed
+     */
+    public void setMinCompressSize(int minCompressSize)
+    {
+        _minCompressSize = minCompressSize;
+    }
+
+    /**
+     * @return the number of messages sent compressed
+     */
+    public long getCompressedMessages()
+    {
+        return _compressedMessages.sum();
+    }
+
+    /**
+     * @return the number of messages sent uncompressed because they were smaller than {@link #getMinCompressSize()}
+     */
+    public long getSkippedMessages()
+    {
+        return _skippedMessages.sum();
+    }
+
+    /**
+     * @return the payload bytes of the compressed messages, before compression
+     */
+    public long getBytesIn()
+    {
+        return _bytesIn.sum();
+    }
+
+    /**
+     * @return the payload bytes of the compressed messages, after compression
+     */
+    public long getBytesOut()
+    {
+        return _bytesOut.sum();
+    }
+
+    /**
+     * @return the payload bytes of the messages sent uncompressed
+     */
+    public long getSkippedBytes()
+    {
+        return _skippedBytes.sum();
+    }
+
+    /**
+     * @return the payload bytes that compression did not send, negative if compression made messages larger
+     */
+    public long getBytesSaved()
+    {
+        return getBytesIn() - getBytesOut();
+    }
+
+    /**
+     * @param unit the unit of the time
+     * @return the time spent deflating the messages sent
+     */
+    public long getDeflateTime(TimeUnit unit)
+    {
+        return unit.convert(_deflateNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the bytes saved for each millisecond spent deflating
+     */
+    public double getBytesSavedPerDeflateMs()
+    {
+        long nanos = _deflateNanos.sum();
+        return nanos == 0 ? 0 : getBytesSaved() * 1_000_000D / nanos;
+    }
+
+    void onCompressedMessage()
+    {
+        _compressedMessages.increment();
+    }
+
+    void onCompressedPayload(long bytes)
+    {
+        _bytesIn.add(bytes);
+    }
+
+    void onCompressedFrame(long bytes)
+    {
+        _bytesOut.add(bytes);
+    }
+
+    void onSkippedMessage(long bytes)
+    {
+        _skippedMessages.increment();
+        _skippedBytes.add(bytes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[enabled=%b,minCompressSize=%d,compressed=%d,skipped=%d,in=%d,out=%d,saved=%d,deflate=%dms]".formatted(
+            getClass().getSimpleName(), hashCode(), isEnabled(), getMinCompressSize(), getCompressedMessages(), getSkippedMessages(),
+            getBytesIn(), getBytesOut(), getBytesSaved(), getDeflateTime(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * A {@link DeflaterPool} of deflaters that time their compression.
+     */
+    private class MeteredDeflaterPool extends DeflaterPool
+    {
+        private final int _compressionLevel;
+
+        private MeteredDeflaterPool(int capacity, int compressionLevel)
+        {
+            super(capacity, compressionLevel, true);
+            _compressionLevel = compressionLevel;
+        }
+
+        @Override
+        protected Deflater newPooled()
+        {
+            return new Deflater(_compressionLevel, true)
+            {
+                // The method used by the permessage-deflate extension.
+                @Override
+                public int deflate(byte[] output, int off, int len, int flush)
+                {
+                    long begin = NanoTime.now();
+                    try
+                    {
+                        return super.deflate(output, off, len, flush);
+                    }
+                    finally
+                    {
+                        _deflateNanos.add(NanoTime.since(begin));
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,145 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.deflate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+
+/**
+ * The {@code permessage-deflate} extension installed by a {@link PerMessageDeflatePolicy}.
+ * <p>
+ * A whole message smaller than {@link PerMessageDeflatePolicy#getMinCompressSize()} is sent without
+ * compression, which RFC 7692 allows for any message, unless a compressed message is still being
+ * sent, as the uncompressed message would then overtake it.
+ * The sizes of the messages before and after compression are reported to the policy.
+ * </p>
+ * <p>
+ * Jetty has no public API to extend or wrap its {@code permessage-deflate} implementation,
+ * so this class extends {@link PerMessageDeflateExtension}, which is in an internal package of
+ * {@code jetty-websocket-core-common}. It relies on {@link #sendFrame(Frame, Callback, boolean)}
+ * queueing the frame to be compressed, and on {@link #nextOutgoingFrame(Frame, Callback, boolean)}
+ * forwarding the compressed frames, and it may need changes when Jetty is upgraded.
+ * </p>
+ */
+public class PolicyDeflateExtension extends PerMessageDeflateExtension
+{
+    private final ReentrantLock _lock = new ReentrantLock();
+    // The compressed frames not yet written.
+    private final AtomicInteger _pending = new AtomicInteger();
+    private final Map<String, String> _windowBits = new HashMap<>();
+    private PerMessageDeflatePolicy _policy;
+
+    @Override
+    public void init(ExtensionConfig config, WebSocketComponents components)
+    {
+        _policy = PerMessageDeflatePolicy.from(components);
+        // The default extension drops the window bits parameters, which must be in the response when negotiated.
+        for (String name : config.getParameterKeys())
+        {
+            if (name.endsWith("_max_window_bits"))
+                _windowBits.put(name, config.getParameter(name, (String)null));
+        }
+        super.init(config, components);
+    }
+
+    @Override
+    public ExtensionConfig getConfig()
+    {
+        ExtensionConfig config = super.getConfig();
+        if (_windowBits.isEmpty())
+            return config;
+        ExtensionConfig negotiated = new ExtensionConfig(config);
+        _windowBits.forEach(negotiated::setParameter);
+        return negotiated;
+    }
+
+    @Override
+    public void sendFrame(Frame frame, Callback callback, boolean batch)
+    {
+        if (_policy == null || frame.isControlFrame())
+        {
+            super.sendFrame(frame, callback, batch);
+            return;
+        }
+
+        // Only the decision is made under the lock, the frame is forwarded after releasing it,
+        // as the callback may be completed synchronously, and the next frame sent from it.
+        boolean skip;
+        _lock.lock();
+        try
+        {
+            // A message is sent uncompressed only if it has a single frame.
+            boolean first = frame.getOpCode() != OpCode.CONTINUATION;
+            skip = first && frame.isFin() && frame.getPayloadLength() < _policy.getMinCompressSize() && _pending.get() == 0;
+            if (skip)
+            {
+                _policy.onSkippedMessage(frame.getPayloadLength());
+            }
+            else
+            {
+                if (first)
+                    _policy.onCompressedMessage();
+                _policy.onCompressedPayload(frame.getPayloadLength());
+                // Counted before the lock is released, so that no later message overtakes this one.
+                _pending.incrementAndGet();
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
+        if (skip)
+        {
+            // Forward the frame as is, without the RSV1 bit.
+            super.nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        super.sendFrame(frame, new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _pending.decrementAndGet();
+                super.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                _pending.decrementAndGet();
+                super.failed(x);
+            }
+        }, batch);
+    }
+
+    @Override
+    protected void nextOutgoingFrame(Frame frame, Callback callback, boolean batch)
+    {
+        // Only the compressed frames are forwarded with this method.
+        if (_policy != null && !frame.isControlFrame())
+            _policy.onCompressedFrame(frame.getPayloadLength());
+        super.nextOutgoingFrame(frame, callback, batch);
+    }
+}
@@ -15,6 +15,9 @@ package examples.endpoint;
 
 import java.net.URL;
 import java.util.Objects;
+
+import examples.batching.AutoFlushPolicy;
+import examples.pubsub.PubSubHub;
 import jakarta.websocket.server.ServerEndpointConfig;
 
 import org.eclipse.jetty.ee10.servlet.DefaultServlet;
@@ -22,6 +25,7 @@ import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
 import org.eclipse.jetty.ee10.websocket.jakarta.server.config.JakartaWebSocketServletContainerInitializer;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.Container;
 
 public class EchoServer
 {
@@ -33,12 +37,38 @@ public class EchoServer
     }
 
     public static Server newServer(int port)
+    {
+        return newServer(port, null);
+    }
+
+    /**
+     * @param port the port to listen on
+     * @param autoFlushPolicy the policy to batch the echoed messages, or null to send each message on its own
+     * @return a new server
+     */
+    public static Server newServer(int port, AutoFlushPolicy autoFlushPolicy)
+    {
+        return newServer(port, autoFlushPolicy, null);
+    }
+
+    /**
+     * @param port the port to listen on
+     * @param autoFlushPolicy the policy to batch the echoed messages, or null to send each message on its own
+     * @param pubSubHub the hub of the topics the endpoints subscribe and publish to, or null to only echo messages
+     * @return a new server
+     */
+    public static Server newServer(int port, AutoFlushPolicy autoFlushPolicy, PubSubHub pubSubHub)
     {
         Server server = new Server(port);
 
         ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
         servletContextHandler.setContextPath("/");
         server.setHandler(servletContextHandler);
+        // The policy is started and stopped with the server.
+        if (autoFlushPolicy != null)
+            server.addBean(autoFlushPolicy);
+        if (pubSubHub != null)
+            server.addBean(pubSubHub);
 
         // Add jakarta.websocket support
         JakartaWebSocketServletContainerInitializer.configure(servletContextHandler, (context, container) ->
@@ -46,6 +76,11 @@ public class EchoServer
             // Add echo endpoint to server container
             ServerEndpointConfig echoConfig = ServerEndpointConfig.Builder.create(EchoServerEndpoint.class, "/echo").build();
             container.addEndpoint(echoConfig);
+            // The endpoints look up the policy and the hub in their container.
+            if (autoFlushPolicy != null)
+                ((Container)container).addBean(autoFlushPolicy, false);
+            if (pubSubHub != null)
+                ((Container)container).addBean(pubSubHub, false);
         });
 
         // Add default servlet (to serve the html/css/js)
@@ -13,6 +13,11 @@
 
 package examples.endpoint;
 
+import java.io.IOException;
+
+import examples.batching.AutoFlushPolicy;
+import examples.batching.AutoFlushingSender;
+import examples.pubsub.PubSubHub;
 import jakarta.websocket.CloseReason;
 import jakarta.websocket.Endpoint;
 import jakarta.websocket.EndpointConfig;
@@ -28,14 +33,20 @@ public class EchoServerEndpoint extends Endpoint implements MessageHandler.Whole
     private static final Logger LOG = LoggerFactory.getLogger(EchoServerEndpoint.class);
     private Session session;
     private RemoteEndpoint.Async remote;
+    private AutoFlushingSender sender;
+    private PubSubHub pubSubHub;
 
     @Override
     public void onClose(Session session, CloseReason close)
     {
         super.onClose(session, close);
+        if (this.sender != null)
+            this.sender.close();
+        if (this.pubSubHub != null)
+            this.pubSubHub.unsubscribeAll(session);
         this.session = null;
         this.remote = null;
-        LOG.info("WebSocket Close: {} - {}", close.getCloseCode(), close.getReasonPhrase());
+        LOG.info("WebSocket Close: {} - {} {}", close.getCloseCode(), close.getReasonPhrase(), sender);
     }
 
     @Override
@@ -43,10 +54,24 @@ public class EchoServerEndpoint extends Endpoint implements MessageHandler.Whole
     {
         this.session = session;
         this.remote = this.session.getAsyncRemote();
+        // Batch the echoed messages if an AutoFlushPolicy is configured.
+        AutoFlushPolicy autoFlushPolicy = AutoFlushPolicy.from(session);
+        if (autoFlushPolicy != null)
+        {
+            try
+            {
+                this.sender = autoFlushPolicy.newSender(session);
+            }
+            catch (IOException x)
+            {
+                LOG.warn("Unable to batch messages of {}", session, x);
+            }
+        }
+        this.pubSubHub = PubSubHub.from(session);
         LOG.info("WebSocket Open: {}", session);
         // attach echo message handler
         session.addMessageHandler(this);
-        this.remote.sendText("You are now connected to " + this.getClass().getName());
+        sendText("You are now connected to " + this.getClass().getName());
     }
 
     @Override
@@ -59,7 +84,18 @@ public class EchoServerEndpoint extends Endpoint implements MessageHandler.Whole
     @Override
     public void onMessage(String message)
     {
+        // The publish/subscribe commands are not echoed.
+        if (this.pubSubHub != null && this.pubSubHub.onMessage(this.session, message))
+            return;
         LOG.info("Echoing back text message [{}]", message);
-        this.remote.sendText(message);
+        sendText(message);
+    }
+
+    private void sendText(String message)
+    {
+        if (this.sender != null)
+            this.sender.sendText(message);
+        else
+            this.remote.sendText(message);
     }
 }
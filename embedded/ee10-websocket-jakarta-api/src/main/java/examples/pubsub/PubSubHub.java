@@ -0,0 +1,539 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.pubsub;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.websocket.Session;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketSession;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.Container;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.websocket.core.CloseStatus;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-process publish/subscribe hub, that fans out the messages published to a topic to the sessions subscribed to it.
+ * <p>
+ * A published message is encoded once, in a direct buffer, and each subscriber is sent a frame with a slice of that
+ * buffer, so that the cost of a publication per subscriber is only the one of writing the frame.
+ * The subscribers of a topic are held in a copy-on-write array, so that publications iterate a snapshot of the
+ * subscribers without locking, while sessions subscribe and unsubscribe.
+ * The subscribers are split into chunks of {@link #getFanOutChunk()}, all but the first chunk being sent by
+ * the executor of the hub, so that a large fan-out is spread across cores.
+ * </p>
+ * <p>
+ * A subscriber with {@link #getMaxPendingMessages()} messages not yet written, because it does not read them
+ * fast enough, is evicted: it is unsubscribed from all its topics and its session is closed with
+ * {@link CloseStatus#TRY_AGAIN_LATER}, so that it does not hold the memory of the publications.
+ * A topic exists only while sessions are subscribed to it, so its metrics start again when it is re-created.
+ * </p>
+ * <p>
+ * The hub is added as a bean of the {@link jakarta.websocket.server.ServerContainer}, where the endpoints find it
+ * with {@link #from(Session)}, and they pass the text messages they receive to {@link #onMessage(Session, String)},
+ * which handles the {@code subscribe:<topic>}, {@code unsubscribe:<topic>} and {@code publish:<topic>:<message>}
+ * commands.
+ * </p>
+ */
+public class PubSubHub extends ContainerLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PubSubHub.class);
+    private static final Subscriber[] NO_SUBSCRIBERS = new Subscriber[0];
+
+    private final ConcurrentMap<String, Topic> _topics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Session, Subscriber> _subscribers = new ConcurrentHashMap<>();
+    private final Executor _executor;
+    private int _fanOutChunk = 256;
+    private int _maxPendingMessages = 1024;
+    private final LongAdder _evictions = new LongAdder();
+
+    public PubSubHub()
+    {
+        this(newThreadPool());
+        addBean(_executor);
+    }
+
+    /**
+     * @param executor the executor of the fan-out of large topics, not managed by the hub
+     */
+    public PubSubHub(Executor executor)
+    {
+        _executor = executor;
+    }
+
+    private static QueuedThreadPool newThreadPool()
+    {
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("pubsub");
+        return threadPool;
+    }
+
+    /**
+     * @param session the session of an endpoint
+     * @return the hub added as a bean of the container of the session, or null if publish/subscribe is not enabled
+     */
+    public static PubSubHub from(Session session)
+    {
+        if (session.getContainer() instanceof Container container)
+            return container.getBean(PubSubHub.class);
+        return null;
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    public int getFanOutChunk()
+    {
+        return _fanOutChunk;
+    }
+
+    /**
+     * @param fanOutChunk the number of subscribers sent a publication by the same thread
+     */
+    public void setFanOutChunk(int fanOutChunk)
+    {
+        _fanOutChunk = fanOutChunk;
+    }
+
+    public int getMaxPendingMessages()
+    {
+        return _maxPendingMessages;
+    }
+
+    /**
+     * @param maxPendingMessages the number of messages not yet written to a subscriber at which it is evicted
+     */
+    public void setMaxPendingMessages(int maxPendingMessages)
+    {
+        _maxPendingMessages = maxPendingMessages;
+    }
+
+    /**
+     * @param name the name of a topic
+     * @return the topic, or null if no session is subscribed to it
+     */
+    public Topic getTopic(String name)
+    {
+        return _topics.get(name);
+    }
+
+    /**
+     * @return the topics that sessions are subscribed to
+     */
+    public Collection<Topic> getTopics()
+    {
+        return _topics.values();
+    }
+
+    /**
+     * @return the number of subscribers evicted from all the topics
+     */
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    /**
+     * Handles the publish/subscribe commands received by an endpoint.
+     *
+     * @param session the session that received the message
+     * @param message the text message received
+     * @return whether the message was a publish/subscribe command
+     */
+    public boolean onMessage(Session session, String message)
+    {
+        if (message.startsWith("subscribe:"))
+        {
+            subscribe(message.substring("subscribe:".length()), session);
+            return true;
+        }
+        if (message.startsWith("unsubscribe:"))
+        {
+            unsubscribe(message.substring("unsubscribe:".length()), session);
+            return true;
+        }
+        if (message.startsWith("publish:"))
+        {
+            int colon = message.indexOf(':', "publish:".length());
+            if (colon < 0)
+                return false;
+            publish(message.substring("publish:".length(), colon), message.substring(colon + 1));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param topic the name of the topic
+     * @param session the session to send the messages of the topic to
+     */
+    public void subscribe(String topic, Session session)
+    {
+        Subscriber subscriber = _subscribers.computeIfAbsent(session, Subscriber::new);
+        subscriber._topics.add(topic);
+        // The subscribers of a topic are only changed within compute(), so that a topic
+        // is never removed because it is empty while a session subscribes to it.
+        _topics.compute(topic, (name, t) ->
+        {
+            if (t == null)
+                t = new Topic(name);
+            t.add(subscriber);
+            return t;
+        });
+    }
+
+    /**
+     * @param topic the name of the topic
+     * @param session the session to no longer send the messages of the topic to
+     */
+    public void unsubscribe(String topic, Session session)
+    {
+        Subscriber subscriber = _subscribers.get(session);
+        if (subscriber == null)
+            return;
+        subscriber._topics.remove(topic);
+        remove(topic, subscriber);
+    }
+
+    /**
+     * Unsubscribes a session from all its topics, typically when it is closed.
+     *
+     * @param session the session to unsubscribe
+     */
+    public void unsubscribeAll(Session session)
+    {
+        Subscriber subscriber = _subscribers.get(session);
+        if (subscriber != null)
+            unsubscribeAll(subscriber);
+    }
+
+    private void unsubscribeAll(Subscriber subscriber)
+    {
+        _subscribers.remove(subscriber._session, subscriber);
+        for (String topic : subscriber._topics)
+        {
+            remove(topic, subscriber);
+        }
+    }
+
+    private void remove(String topic, Subscriber subscriber)
+    {
+        // A topic is removed with its last subscriber, so that the topics
+        // named by clients do not accumulate.
+        _topics.computeIfPresent(topic, (name, t) ->
+        {
+            t.remove(subscriber);
+            return t.getSubscriberCount() == 0 ? null : t;
+        });
+    }
+
+    /**
+     * @param topic the name of the topic
+     * @param message the message to send to the subscribers of the topic
+     * @return the number of subscribers the message is sent to
+     */
+    public int publish(String topic, String message)
+    {
+        Topic t = _topics.get(topic);
+        if (t == null)
+            return 0;
+        return t.publish(message);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[topics=%d,subscribers=%d,evictions=%d]".formatted(
+            getClass().getSimpleName(), hashCode(), _topics.size(), _subscribers.size(), getEvictions());
+    }
+
+    /**
+     * A topic, with its subscribers and the metrics of its publications.
+     */
+    public class Topic
+    {
+        private final String _name;
+        private final AtomicReference<Subscriber[]> _subscribers = new AtomicReference<>(NO_SUBSCRIBERS);
+        private final LongAdder _publications = new LongAdder();
+        private final LongAdder _deliveries = new LongAdder();
+        private final LongAdder _evictions = new LongAdder();
+        private final LongAdder _fanOuts = new LongAdder();
+        private final LongAdder _fanOutNanos = new LongAdder();
+        private final AtomicLong _maxFanOutNanos = new AtomicLong();
+
+        private Topic(String name)
+        {
+            _name = name;
+        }
+
+        public String getName()
+        {
+            return _name;
+        }
+
+        /**
+         * @return the number of sessions subscribed to the topic
+         */
+        public int getSubscriberCount()
+        {
+            return _subscribers.get().length;
+        }
+
+        /**
+         * @return the number of messages published to the topic
+         */
+        public long getPublications()
+        {
+            return _publications.sum();
+        }
+
+        /**
+         * @return the number of messages written to subscribers
+         */
+        public long getDeliveries()
+        {
+            return _deliveries.sum();
+        }
+
+        /**
+         * @return the number of subscribers evicted while a message of the topic was sent to them
+         */
+        public long getEvictions()
+        {
+            return _evictions.sum();
+        }
+
+        /**
+         * @param unit the unit of the latency
+         * @return the average time from the publication of a message until it is written to all the subscribers
+         */
+        public long getAverageFanOutLatency(TimeUnit unit)
+        {
+            long fanOuts = _fanOuts.sum();
+            return fanOuts == 0 ? 0 : unit.convert(_fanOutNanos.sum() / fanOuts, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param unit the unit of the latency
+         * @return the maximum time from the publication of a message until it is written to all the subscribers
+         */
+        public long getMaxFanOutLatency(TimeUnit unit)
+        {
+            return unit.convert(_maxFanOutNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        private void add(Subscriber subscriber)
+        {
+            _subscribers.getAndUpdate(subscribers ->
+            {
+                for (Subscriber s : subscribers)
+                {
+                    if (s == subscriber)
+                        return subscribers;
+                }
+                Subscriber[] added = Arrays.copyOf(subscribers, subscribers.length + 1);
+                added[subscribers.length] = subscriber;
+                return added;
+            });
+        }
+
+        private void remove(Subscriber subscriber)
+        {
+            _subscribers.getAndUpdate(subscribers ->
+            {
+                for (int i = 0; i < subscribers.length; i++)
+                {
+                    if (subscribers[i] == subscriber)
+                    {
+                        Subscriber[] removed = Arrays.copyOf(subscribers, subscribers.length - 1);
+                        System.arraycopy(subscribers, i + 1, removed, i, subscribers.length - i - 1);
+                        return removed;
+                    }
+                }
+                return subscribers;
+            });
+        }
+
+        private int publish(String message)
+        {
+            _publications.increment();
+            Subscriber[] subscribers = _subscribers.get();
+            if (subscribers.length == 0)
+                return 0;
+
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer payload = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+            Publication publication = new Publication(this, subscribers.length);
+            int chunk = Math.max(1, getFanOutChunk());
+            for (int from = chunk; from < subscribers.length; from += chunk)
+            {
+                int begin = from;
+                int end = Math.min(from + chunk, subscribers.length);
+                _executor.execute(() -> publication.fanOut(subscribers, begin, end, payload));
+            }
+            publication.fanOut(subscribers, 0, Math.min(chunk, subscribers.length), payload);
+            return subscribers.length;
+        }
+
+        private void onFanOut(long nanos)
+        {
+            _fanOuts.increment();
+            _fanOutNanos.add(nanos);
+            _maxFanOutNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s[subscribers=%d,publications=%d,deliveries=%d,evictions=%d,fanOut=%dus/%dus]".formatted(
+                _name, getSubscriberCount(), getPublications(), getDeliveries(), getEvictions(),
+                getAverageFanOutLatency(TimeUnit.MICROSECONDS), getMaxFanOutLatency(TimeUnit.MICROSECONDS));
+        }
+    }
+
+    /**
+     * The fan-out of a message to the subscribers of a topic, complete when the message is written to all of them.
+     */
+    private class Publication
+    {
+        private final long _begin = NanoTime.now();
+        private final Topic _topic;
+        private final AtomicInteger _remaining;
+
+        private Publication(Topic topic, int subscribers)
+        {
+            _topic = topic;
+            _remaining = new AtomicInteger(subscribers);
+        }
+
+        private void fanOut(Subscriber[] subscribers, int from, int to, ByteBuffer payload)
+        {
+            for (int i = from; i < to; i++)
+            {
+                Subscriber subscriber = subscribers[i];
+                if (subscriber.send(payload.slice(), this))
+                    continue;
+                _topic._evictions.increment();
+                completed();
+            }
+        }
+
+        private void delivered()
+        {
+            _topic._deliveries.increment();
+            completed();
+        }
+
+        private void completed()
+        {
+            if (_remaining.decrementAndGet() == 0)
+                _topic.onFanOut(NanoTime.since(_begin));
+        }
+    }
+
+    private class Subscriber
+    {
+        private final Session _session;
+        private final CoreSession _coreSession;
+        private final Set<String> _topics = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger _pending = new AtomicInteger();
+        private final AtomicBoolean _evicted = new AtomicBoolean();
+
+        private Subscriber(Session session)
+        {
+            if (!(session instanceof JakartaWebSocketSession jakartaSession))
+                throw new IllegalArgumentException("Not a Jetty session: " + session);
+            _session = session;
+            _coreSession = jakartaSession.getCoreSession();
+        }
+
+        /**
+         * @return whether the frame is sent, false if the subscriber is evicted
+         */
+        private boolean send(ByteBuffer payload, Publication publication)
+        {
+            if (_pending.incrementAndGet() > getMaxPendingMessages())
+            {
+                _pending.decrementAndGet();
+                evict();
+                return false;
+            }
+            _coreSession.sendFrame(new Frame(OpCode.TEXT, true, payload), new Delivery(this, publication), false);
+            return true;
+        }
+
+        private void evict()
+        {
+            if (!_evicted.compareAndSet(false, true))
+                return;
+            _evictions.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicting slow subscriber {} with {} pending messages", _session, _pending.get());
+            unsubscribeAll(this);
+            _coreSession.close(CloseStatus.TRY_AGAIN_LATER, "Slow subscriber", Callback.NOOP);
+        }
+    }
+
+    private class Delivery implements Callback
+    {
+        private final Subscriber _subscriber;
+        private final Publication _publication;
+
+        private Delivery(Subscriber subscriber, Publication publication)
+        {
+            _subscriber = subscriber;
+            _publication = publication;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            _subscriber._pending.decrementAndGet();
+            _publication.delivered();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            _subscriber._pending.decrementAndGet();
+            _publication.completed();
+            // The session is closed, it will not receive any other message.
+            if (LOG.isDebugEnabled())
+                LOG.debug("Failed to send to subscriber {}", _subscriber._session, x);
+            unsubscribeAll(_subscriber);
+        }
+    }
+}
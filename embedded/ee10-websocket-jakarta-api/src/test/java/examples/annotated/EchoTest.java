@@ -13,12 +13,29 @@
 
 package examples.annotated;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import jakarta.websocket.ClientEndpoint;
+import jakarta.websocket.CloseReason;
 import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.Session;
 import jakarta.websocket.WebSocketContainer;
+import jakarta.websocket.server.ServerContainer;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.websocket.jakarta.client.JakartaWebSocketClientContainer;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketContainer;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -26,6 +43,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class EchoTest
 {
@@ -56,4 +74,76 @@ public class EchoTest
         };
         assertThat(msgs, contains(expected));
     }
+
+    @Test
+    public void testEchoOverHTTP2() throws Exception
+    {
+        // Clear-text HTTP/2 with prior knowledge.
+        HttpClient httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+        JakartaWebSocketClientContainer http2Client = new JakartaWebSocketClientContainer(httpClient);
+        http2Client.addManaged(httpClient);
+        http2Client.start();
+        try
+        {
+            URI uri = new URI("ws", server.getURI().getAuthority(), "/echo", null, null);
+            assertEchoAndClose(http2Client, uri);
+            assertEchoAndClose(http2Client, uri);
+            // Both sessions were opened with extended CONNECT requests over the same connection,
+            // which stays open once their streams are closed.
+            assertEquals(1, server.getBean(ServerConnector.class).getConnectedEndPoints().size());
+        }
+        finally
+        {
+            LifeCycle.stop(http2Client);
+        }
+    }
+
+    /**
+     * Closes the sessions from the server side, so that the close handshake completes on the client
+     * before the server ends the stream.
+     * When the client closes the session over HTTP/2, the server resets the stream as soon as it has
+     * sent its close frame, and the client may process the reset before the close frame.
+     */
+    private void closeServerSessions() throws IOException
+    {
+        ServletContextHandler context = server.getDescendant(ServletContextHandler.class);
+        JakartaWebSocketContainer container = (JakartaWebSocketContainer)context.getServletContext().getAttribute(ServerContainer.class.getName());
+        for (Session session : container.getOpenSessions())
+        {
+            session.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Goodbye"));
+        }
+    }
+
+    private void assertEchoAndClose(WebSocketContainer client, URI uri) throws Exception
+    {
+        CloseTrackingEndpoint endpoint = new CloseTrackingEndpoint();
+        Session session = client.connectToServer(endpoint, uri);
+        assertEquals("You are now connected to " + EchoServerEndpoint.class.getName(), endpoint.messages.poll(5, TimeUnit.SECONDS));
+        session.getBasicRemote().sendText("Hello");
+        assertEquals("Hello", endpoint.messages.poll(5, TimeUnit.SECONDS));
+
+        // Wait until the close handshake is complete, before the next session is opened.
+        closeServerSessions();
+        CloseReason closeReason = endpoint.closed.get(5, TimeUnit.SECONDS);
+        assertEquals(CloseReason.CloseCodes.NORMAL_CLOSURE, closeReason.getCloseCode());
+    }
+
+    @ClientEndpoint
+    public static class CloseTrackingEndpoint
+    {
+        private final LinkedBlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        private final CompletableFuture<CloseReason> closed = new CompletableFuture<>();
+
+        @OnMessage
+        public void onText(String message)
+        {
+            messages.offer(message);
+        }
+
+        @OnClose
+        public void onClose(CloseReason closeReason)
+        {
+            closed.complete(closeReason);
+        }
+    }
 }
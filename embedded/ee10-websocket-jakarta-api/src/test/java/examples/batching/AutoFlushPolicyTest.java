@@ -0,0 +1,154 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.batching;
+
+import java.net.URI;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import examples.browser.JakartaBrowserMain;
+import jakarta.websocket.ClientEndpoint;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import org.eclipse.jetty.ee10.websocket.jakarta.client.JakartaWebSocketClientContainer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AutoFlushPolicyTest
+{
+    private Server server;
+    private AutoFlushPolicy autoFlushPolicy;
+    private WebSocketContainer wsClient;
+    private URI wsURI;
+
+    @BeforeEach
+    public void startServerAndClient() throws Exception
+    {
+        autoFlushPolicy = new AutoFlushPolicy();
+        autoFlushPolicy.setMaxBatchBytes(2048);
+        // Long enough to never flush a batch of "many" before it is full.
+        autoFlushPolicy.setMaxFlushDelay(TimeUnit.SECONDS.toMicros(1));
+        server = JakartaBrowserMain.newServer(0, 0, autoFlushPolicy);
+        server.start();
+
+        ServerConnector connector = server.getBeans(ServerConnector.class).stream()
+            .filter(c -> c.getConnectionFactory(SslConnectionFactory.class) == null)
+            .findFirst()
+            .orElseThrow();
+        wsURI = new URI("ws", null, "localhost", connector.getLocalPort(), "/", null, null);
+
+        wsClient = new JakartaWebSocketClientContainer();
+        LifeCycle.start(wsClient);
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(wsClient);
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testStarted()
+    {
+        // The policy is started with the server.
+        assertThat(autoFlushPolicy.isStarted(), is(true));
+        assertThat(autoFlushPolicy.getScheduler().isStarted(), is(true));
+    }
+
+    @Test
+    public void testFlushAfterDelay() throws Exception
+    {
+        ToolEndpoint toolEndpoint = new ToolEndpoint();
+        try (Session session = wsClient.connectToServer(toolEndpoint, wsURI))
+        {
+            long start = System.nanoTime();
+            session.getBasicRemote().sendText("info:");
+            assertThat(toolEndpoint.messages.poll(5, TimeUnit.SECONDS), is("Using jakarta.websocket"));
+            assertThat(toolEndpoint.messages.poll(5, TimeUnit.SECONDS), startsWith("Client User-Agent: "));
+            assertThat(toolEndpoint.messages.poll(5, TimeUnit.SECONDS), startsWith("Client requested no Sec-WebSocket-Extensions"));
+            assertThat(toolEndpoint.messages.poll(5, TimeUnit.SECONDS), is("Server negotiated no Sec-WebSocket-Extensions"));
+            // The 4 small messages are written at once, after the max flush delay.
+            assertThat(System.nanoTime() - start, greaterThan(TimeUnit.MICROSECONDS.toNanos(autoFlushPolicy.getMaxFlushDelay())));
+            assertEquals(4, autoFlushPolicy.getFrames());
+            assertEquals(1, autoFlushPolicy.getEstimatedWrites());
+            assertEquals(1, autoFlushPolicy.getDelayFlushes());
+            assertEquals(4.0, autoFlushPolicy.getEstimatedFramesPerWrite());
+        }
+    }
+
+    @Test
+    public void testFlushAtMaxBatchBytes() throws Exception
+    {
+        ToolEndpoint toolEndpoint = new ToolEndpoint();
+        try (Session session = wsClient.connectToServer(toolEndpoint, wsURI))
+        {
+            // Each message is 100 + 8 bytes of text, plus 2 bytes of frame header.
+            session.getBasicRemote().sendText("many:100,1900");
+            for (int i = 0; i < 1900; i++)
+            {
+                assertThat(toolEndpoint.messages.poll(5, TimeUnit.SECONDS), startsWith("Many ["));
+            }
+            // 19 frames of 110 bytes reach the 2048 max batch bytes.
+            assertEquals(1900, autoFlushPolicy.getFrames());
+            assertEquals(100, autoFlushPolicy.getSizeFlushes());
+            assertEquals(100, autoFlushPolicy.getEstimatedWrites());
+            assertEquals(19.0, autoFlushPolicy.getEstimatedFramesPerWrite());
+        }
+    }
+
+    @Test
+    public void testLargeMessagesNotBatched() throws Exception
+    {
+        ToolEndpoint toolEndpoint = new ToolEndpoint();
+        try (Session session = wsClient.connectToServer(toolEndpoint, wsURI))
+        {
+            // Messages of more than a quarter of the output buffer are written on their own.
+            session.getBasicRemote().sendText("many:2000,10");
+            for (int i = 0; i < 10; i++)
+            {
+                assertThat(toolEndpoint.messages.poll(5, TimeUnit.SECONDS), startsWith("Many ["));
+            }
+            assertEquals(10, autoFlushPolicy.getFrames());
+            assertEquals(10, autoFlushPolicy.getEstimatedWrites());
+            assertEquals(0, autoFlushPolicy.getSizeFlushes());
+            assertEquals(0, autoFlushPolicy.getDelayFlushes());
+        }
+    }
+
+    @ClientEndpoint(subprotocols = "tool")
+    public static class ToolEndpoint
+    {
+        private final LinkedBlockingDeque<String> messages = new LinkedBlockingDeque<>();
+
+        @OnMessage
+        public void onMessage(String message)
+        {
+            messages.offer(message);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples.browser;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import jakarta.websocket.ClientEndpoint;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.transport.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.websocket.jakarta.client.JakartaWebSocketClientContainer;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketSession;
+import org.eclipse.jetty.ee10.websocket.jakarta.server.config.JakartaWebSocketServletContainerInitializer;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the {@link FlowControlledSender} of a server session, whose client stops reading,
+ * so that the network buffers fill up and the sends of the server remain pending.
+ */
+public class FlowControlledSenderTest
+{
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MESSAGE_SIZE = 1000;
+    private static final int MESSAGES = 200;
+    private static final long HIGH_WATERMARK = 10 * MESSAGE_SIZE;
+    private static final long LOW_WATERMARK = 3 * MESSAGE_SIZE;
+
+    private final CompletableFuture<FlowControlledSender> serverSender = new CompletableFuture<>();
+    private final CountDownLatch serverClosed = new CountDownLatch(1);
+    private final SlowClientEndpoint clientEndpoint = new SlowClientEndpoint();
+    private Server server;
+    private HttpClient httpClient;
+    private JakartaWebSocketClientContainer wsClient;
+    private Session clientSession;
+
+    @AfterEach
+    public void stopAll()
+    {
+        clientEndpoint.gate.countDown();
+        LifeCycle.stop(wsClient);
+        LifeCycle.stop(httpClient);
+        LifeCycle.stop(server);
+    }
+
+    private static String message(int i)
+    {
+        String prefix = i + ":";
+        return prefix + "x".repeat(MESSAGE_SIZE - prefix.length());
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception
+    {
+        FlowControlledSender sender = startSlowClient(FlowControlledSender.OverflowPolicy.BLOCK);
+
+        // Far more than the network buffers and the high watermark, so the producer blocks.
+        CompletableFuture<Integer> producer = CompletableFuture.supplyAsync(() -> produce(sender));
+        assertThrows(TimeoutException.class, () -> producer.get(500, TimeUnit.MILLISECONDS));
+        assertTrue(sender.isPaused());
+
+        // Once the client reads again, the producer is resumed, and all the messages are received in order.
+        clientEndpoint.gate.countDown();
+        assertEquals(MESSAGES, producer.get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            assertEquals(message(i), clientEndpoint.messages.poll(5, TimeUnit.SECONDS));
+        }
+
+        assertThat(sender.getPauses(), greaterThan(0L));
+        assertThat(sender.getMaxQueuedBytes(), lessThanOrEqualTo(HIGH_WATERMARK));
+        assertEquals(0, sender.getDroppedMessages());
+    }
+
+    @Test
+    public void testCloseWakesBlockedProducer() throws Exception
+    {
+        FlowControlledSender sender = startSlowClient(FlowControlledSender.OverflowPolicy.BLOCK);
+
+        CompletableFuture<Integer> producer = CompletableFuture.supplyAsync(() -> produce(sender));
+        assertThrows(TimeoutException.class, () -> producer.get(500, TimeUnit.MILLISECONDS));
+        sender.close();
+        assertThat(producer.get(5, TimeUnit.SECONDS), lessThan(MESSAGES));
+        assertFalse(sender.sendText(message(MESSAGES)));
+    }
+
+    @Test
+    public void testDropOldest() throws Exception
+    {
+        FlowControlledSender sender = startSlowClient(FlowControlledSender.OverflowPolicy.DROP_OLDEST);
+
+        assertEquals(MESSAGES, produce(sender));
+        long dropped = sender.getDroppedMessages();
+        assertThat(dropped, greaterThan(0L));
+        assertThat(sender.getQueuedBytes(), lessThanOrEqualTo(HIGH_WATERMARK));
+
+        // The client receives the messages that were not dropped, in order, ending with the newest.
+        clientEndpoint.gate.countDown();
+        int previous = -1;
+        for (long i = 0; i < MESSAGES - dropped; i++)
+        {
+            String message = clientEndpoint.messages.poll(5, TimeUnit.SECONDS);
+            int index = Integer.parseInt(message.substring(0, message.indexOf(':')));
+            assertThat(previous, lessThan(index));
+            previous = index;
+        }
+        assertEquals(MESSAGES - 1, previous);
+        assertNull(clientEndpoint.messages.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testCloseOnOverflow() throws Exception
+    {
+        FlowControlledSender sender = startSlowClient(FlowControlledSender.OverflowPolicy.CLOSE);
+
+        assertThat(produce(sender), lessThan(MESSAGES));
+        assertFalse(sender.sendText(message(MESSAGES)));
+
+        // The close frame follows the messages that were already sent.
+        clientEndpoint.gate.countDown();
+        CloseReason closeReason = clientEndpoint.closeReason.get(5, TimeUnit.SECONDS);
+        assertEquals(CloseReason.CloseCodes.VIOLATED_POLICY, closeReason.getCloseCode());
+    }
+
+    @Test
+    public void testAbortedClientClosesSender() throws Exception
+    {
+        FlowControlledSender sender = startSlowClient(FlowControlledSender.OverflowPolicy.DROP_OLDEST);
+        assertEquals(MESSAGES, produce(sender));
+
+        // The pending send fails, or the server reads the end of the stream, whichever happens first.
+        ((JakartaWebSocketSession)clientSession).abort();
+        assertTrue(serverClosed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, sender.getQueuedBytes());
+        assertFalse(sender.sendText(message(MESSAGES)));
+    }
+
+    /**
+     * @return the number of messages queued before one was rejected
+     */
+    private static int produce(FlowControlledSender sender)
+    {
+        for (int i = 0; i < MESSAGES; i++)
+        {
+            if (!sender.sendText(message(i)))
+                return i;
+        }
+        return MESSAGES;
+    }
+
+    /**
+     * Starts a server, with small send buffers, and a client, with small receive buffers,
+     * that stops reading at the first message, until its gate is opened.
+     *
+     * @return the sender of the server session
+     */
+    private FlowControlledSender startSlowClient(FlowControlledSender.OverflowPolicy policy) throws Exception
+    {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setAcceptedSendBufferSize(BUFFER_SIZE);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler();
+        server.setHandler(context);
+        SenderEndpoint serverEndpoint = new SenderEndpoint(policy);
+        ServerEndpointConfig config = ServerEndpointConfig.Builder.create(SenderEndpoint.class, "/slow")
+            .configurator(new ServerEndpointConfig.Configurator()
+            {
+                @Override
+                public <T> T getEndpointInstance(Class<T> endpointClass)
+                {
+                    return endpointClass.cast(serverEndpoint);
+                }
+            })
+            .build();
+        JakartaWebSocketServletContainerInitializer.configure(context, (servletContext, container) -> container.addEndpoint(config));
+        server.start();
+
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setReceiveBufferSize(BUFFER_SIZE);
+        httpClient = new HttpClient(new HttpClientTransportOverHTTP(clientConnector));
+        httpClient.start();
+        wsClient = new JakartaWebSocketClientContainer(httpClient);
+        wsClient.start();
+
+        URI uri = URI.create("ws://localhost:" + connector.getLocalPort() + "/slow");
+        clientSession = wsClient.connectToServer(clientEndpoint, uri);
+        return serverSender.get(5, TimeUnit.SECONDS);
+    }
+
+    public class SenderEndpoint extends Endpoint
+    {
+        private final FlowControlledSender.OverflowPolicy policy;
+        private FlowControlledSender sender;
+
+        public SenderEndpoint(FlowControlledSender.OverflowPolicy policy)
+        {
+            this.policy = policy;
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config)
+        {
+            sender = new FlowControlledSender(session, HIGH_WATERMARK, LOW_WATERMARK, policy);
+            serverSender.complete(sender);
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason)
+        {
+            sender.close();
+            serverClosed.countDown();
+        }
+    }
+
+    @ClientEndpoint
+    public static class SlowClientEndpoint
+    {
+        private final LinkedBlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        private final CompletableFuture<CloseReason> closeReason = new CompletableFuture<>();
+        // The first message is not returned from until the gate opens, so the client stops reading.
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @OnMessage
+        public void onMessage(String message) throws InterruptedException
+        {
+            messages.offer(message);
+            gate.await(30, TimeUnit.SECONDS);
+        }
+
+        @OnClose
+        public void onClose(CloseReason closeReason)
+        {
+            this.closeReason.complete(closeReason);
+        }
+    }
+}
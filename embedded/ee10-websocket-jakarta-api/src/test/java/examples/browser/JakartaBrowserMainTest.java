@@ -17,6 +17,8 @@ import java.net.URI;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import jakarta.websocket.ClientEndpoint;
 import jakarta.websocket.CloseReason;
@@ -39,14 +41,18 @@ import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class JakartaBrowserMainTest
@@ -125,18 +131,54 @@ public class JakartaBrowserMainTest
             assertThat(msg, startsWith("Client User-Agent: Jetty/"));
             msg = echoSocket.messageQueue.poll(5, TimeUnit.SECONDS);
             assertThat(msg, startsWith("Client requested no Sec-WebSocket-Extensions"));
+            msg = echoSocket.messageQueue.poll(5, TimeUnit.SECONDS);
+            assertThat(msg, is("Server negotiated no Sec-WebSocket-Extensions"));
 
             session.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Goodbye"));
             assertTrue(echoSocket.closeLatch.await(5, TimeUnit.SECONDS));
         }
     }
 
+    @Test
+    public void testMany() throws Exception
+    {
+        ToolEndpoint echoSocket = new ToolEndpoint();
+        echoSocket.gate = new CountDownLatch(1);
+        URI wsURI = new URI("ws", httpURI.getAuthority(), "/", null, null);
+
+        try (Session session = wsClient.connectToServer(echoSocket, wsURI))
+        {
+            // Far more than the high watermark of the send queue, and than the TCP buffers
+            // can hold while the client does not read.
+            session.getBasicRemote().sendText("many:1000,10000");
+            Thread.sleep(1000);
+            echoSocket.gate.countDown();
+
+            for (int i = 0; i < 10000; i++)
+            {
+                String msg = echoSocket.messageQueue.poll(5, TimeUnit.SECONDS);
+                assertThat(msg, startsWith("Many ["));
+            }
+
+            // The producer was paused, rather than queueing everything.
+            session.getBasicRemote().sendText("sender:");
+            String msg = echoSocket.messageQueue.poll(5, TimeUnit.SECONDS);
+            assertNotNull(msg);
+            Matcher matcher = Pattern.compile("Send queue max (\\d+) bytes, paused (\\d+) times, dropped 0 messages").matcher(msg);
+            assertTrue(matcher.matches(), msg);
+            assertThat(Long.parseLong(matcher.group(1)), lessThan(2L * 1024 * 1024));
+            assertThat(Long.parseLong(matcher.group(2)), greaterThan(0L));
+        }
+    }
+
     @ClientEndpoint(subprotocols = "tool")
     public static class ToolEndpoint
     {
         private static final Logger LOG = LoggerFactory.getLogger(ToolEndpoint.class);
         private final LinkedBlockingDeque<String> messageQueue = new LinkedBlockingDeque<>();
         private final CountDownLatch closeLatch = new CountDownLatch(1);
+        // When set, the first message is not returned from until the gate opens, so the client stops reading.
+        private volatile CountDownLatch gate;
 
         @OnClose
         public void onClose(Session session, CloseReason closeReason)
@@ -158,10 +200,13 @@ public class JakartaBrowserMainTest
         }
 
         @OnMessage
-        public void onMessage(String message)
+        public void onMessage(String message) throws InterruptedException
         {
-            LOG.info("Text Message [{}]", message);
+            LOG.debug("Text Message [{}]", message);
             messageQueue.offer(message);
+            CountDownLatch gate = this.gate;
+            if (gate != null)
+                assertTrue(gate.await(30, TimeUnit.SECONDS));
         }
     }
 }
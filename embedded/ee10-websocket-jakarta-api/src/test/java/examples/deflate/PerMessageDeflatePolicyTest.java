@@ -0,0 +1,207 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.deflate;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import examples.browser.JakartaBrowserMain;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.HandshakeResponse;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import org.eclipse.jetty.ee10.websocket.jakarta.client.JakartaWebSocketClientContainer;
+import org.eclipse.jetty.ee10.websocket.jakarta.common.JakartaWebSocketExtension;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PerMessageDeflatePolicyTest
+{
+    private Server server;
+    private PerMessageDeflatePolicy policy;
+    private URI wsURI;
+    private JakartaWebSocketClientContainer wsClient;
+
+    @BeforeEach
+    public void startServerAndClient() throws Exception
+    {
+        policy = new PerMessageDeflatePolicy();
+        policy.setPoolCapacity(4);
+        policy.setContextTakeover(false);
+        policy.setMaxClientWindowBits(10);
+        policy.setMinCompressSize(256);
+        server = JakartaBrowserMain.newServer(0, 0, null, policy);
+        server.start();
+
+        int port = server.getBeans(ServerConnector.class).stream()
+            .filter(connector -> connector.getConnectionFactory(SslConnectionFactory.class) == null)
+            .findFirst().orElseThrow().getLocalPort();
+        wsURI = URI.create("ws://localhost:" + port + "/");
+
+        wsClient = new JakartaWebSocketClientContainer();
+        wsClient.start();
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(wsClient);
+        LifeCycle.stop(server);
+    }
+
+    private Session connect(ToolEndpoint endpoint, String offer) throws Exception
+    {
+        ClientEndpointConfig config = ClientEndpointConfig.Builder.create()
+            .preferredSubprotocols(List.of("tool"))
+            .extensions(List.of(new JakartaWebSocketExtension(ExtensionConfig.parse(offer))))
+            .configurator(endpoint.configurator)
+            .build();
+        return wsClient.connectToServer(endpoint, config, wsURI);
+    }
+
+    @Test
+    public void testNegotiate() throws Exception
+    {
+        ToolEndpoint endpoint = new ToolEndpoint();
+        try (Session session = connect(endpoint, "permessage-deflate; client_max_window_bits"))
+        {
+            assertEquals(1, session.getNegotiatedExtensions().size());
+            ExtensionConfig config = ExtensionConfig.parse(endpoint.negotiatedExtensions);
+            assertEquals("permessage-deflate", config.getName());
+            assertEquals(10, config.getParameter("client_max_window_bits", -1));
+            assertTrue(config.getParameterKeys().contains("server_no_context_takeover"));
+            assertTrue(config.getParameterKeys().contains("client_no_context_takeover"));
+
+            session.getBasicRemote().sendText("info:");
+            assertThat(endpoint.poll(), is("Using jakarta.websocket"));
+            assertThat(endpoint.poll(), startsWith("Client User-Agent: "));
+            assertThat(endpoint.poll(), startsWith("Client Sec-WebSocket-Extensions: permessage-deflate"));
+            assertThat(endpoint.poll(), is("Server Sec-WebSocket-Extensions: permessage-deflate"));
+        }
+    }
+
+    @Test
+    public void testCompressLargeMessagesOnly() throws Exception
+    {
+        ToolEndpoint endpoint = new ToolEndpoint();
+        try (Session session = connect(endpoint, "permessage-deflate"))
+        {
+            session.getBasicRemote().sendText("many:1000,20");
+            for (int i = 0; i < 20; i++)
+            {
+                String message = endpoint.poll();
+                assertThat(message, startsWith("Many ["));
+                assertEquals(1000 + "Many []".length(), message.length());
+            }
+            session.getBasicRemote().sendText("time:");
+            assertThat(endpoint.poll(), startsWith("Server time: "));
+        }
+
+        assertEquals(20, policy.getCompressedMessages());
+        assertEquals(20 * 1007, policy.getBytesIn());
+        // The random letters take 6 of the 8 bits of each byte.
+        assertThat(policy.getBytesSaved(), greaterThan(20 * 1007 / 8L));
+        assertThat(policy.getDeflateTime(TimeUnit.NANOSECONDS), greaterThan(0L));
+        assertEquals(1, policy.getSkippedMessages());
+    }
+
+    @Test
+    public void testDeclineSmallServerWindow() throws Exception
+    {
+        ToolEndpoint endpoint = new ToolEndpoint();
+        try (Session session = connect(endpoint, "permessage-deflate; server_max_window_bits=10"))
+        {
+            assertTrue(session.getNegotiatedExtensions().isEmpty());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"abc", "", "7", "16", "+9", "09", "99999999999"})
+    public void testDeclineInvalidClientWindow(String bits) throws Exception
+    {
+        ToolEndpoint endpoint = new ToolEndpoint();
+        try (Session session = connect(endpoint, "permessage-deflate; client_max_window_bits=" + bits))
+        {
+            assertTrue(session.getNegotiatedExtensions().isEmpty());
+            session.getBasicRemote().sendText("time:");
+            assertThat(endpoint.poll(), startsWith("Server time: "));
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception
+    {
+        policy.setEnabled(false);
+        ToolEndpoint endpoint = new ToolEndpoint();
+        try (Session session = connect(endpoint, "permessage-deflate"))
+        {
+            assertTrue(session.getNegotiatedExtensions().isEmpty());
+            session.getBasicRemote().sendText("many:1000,1");
+            assertThat(endpoint.poll(), startsWith("Many ["));
+        }
+        assertEquals(0, policy.getCompressedMessages());
+    }
+
+    public static class ToolEndpoint extends Endpoint implements MessageHandler.Whole<String>
+    {
+        private final LinkedBlockingDeque<String> messages = new LinkedBlockingDeque<>();
+        private final ClientEndpointConfig.Configurator configurator = new ClientEndpointConfig.Configurator()
+        {
+            @Override
+            public void afterResponse(HandshakeResponse response)
+            {
+                negotiatedExtensions = String.join(", ", response.getHeaders().getOrDefault(HttpHeader.SEC_WEBSOCKET_EXTENSIONS.asString(), List.of()));
+            }
+        };
+        private volatile String negotiatedExtensions;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config)
+        {
+            session.addMessageHandler(this);
+        }
+
+        @Override
+        public void onMessage(String message)
+        {
+            messages.offer(message);
+        }
+
+        private String poll() throws InterruptedException
+        {
+            return messages.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -16,6 +16,7 @@ package examples.endpoint;
 import java.net.URI;
 import java.util.List;
 
+import examples.batching.AutoFlushPolicy;
 import jakarta.websocket.ContainerProvider;
 import jakarta.websocket.WebSocketContainer;
 import org.eclipse.jetty.server.Server;
@@ -26,6 +27,8 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class EchoTest
 {
@@ -56,4 +59,23 @@ public class EchoTest
         };
         assertThat(msgs, contains(expected));
     }
+
+    @Test
+    public void testEchoBatched() throws Exception
+    {
+        LifeCycle.stop(server);
+        AutoFlushPolicy autoFlushPolicy = new AutoFlushPolicy();
+        server = EchoServer.newServer(0, autoFlushPolicy);
+        server.start();
+
+        URI uri = new URI("ws", server.getURI().getAuthority(), "/echo", null, null);
+        List<String> msgs = EchoClient.performEcho(wsClient, uri);
+        String[] expected = {
+            "You are now connected to " + EchoServerEndpoint.class.getName()
+        };
+        assertThat(msgs, contains(expected));
+        // The greeting is too small to reach the max batch bytes, it is flushed after the max flush delay.
+        assertThat(autoFlushPolicy.getDelayFlushes(), greaterThanOrEqualTo(1L));
+        assertEquals(0, autoFlushPolicy.getSizeFlushes());
+    }
 }
@@ -0,0 +1,219 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.pubsub;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import examples.endpoint.EchoServer;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PubSubHubTest
+{
+    private Server server;
+    private PubSubHub hub;
+    private WebSocketContainer wsClient;
+    private URI wsURI;
+
+    @BeforeEach
+    public void startServerAndClient() throws Exception
+    {
+        hub = new PubSubHub();
+        server = EchoServer.newServer(0, null, hub);
+        server.start();
+        wsClient = ContainerProvider.getWebSocketContainer();
+        wsURI = new URI("ws", server.getURI().getAuthority(), "/echo", null, null);
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(server);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean())
+        {
+            assertTrue(System.nanoTime() < end, "Timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    private TopicClient connect(TopicClient endpoint) throws Exception
+    {
+        Session session = wsClient.connectToServer(endpoint, ClientEndpointConfig.Builder.create().build(), wsURI);
+        endpoint.session = session;
+        assertThat(endpoint.poll(), startsWith("You are now connected to "));
+        return endpoint;
+    }
+
+    @Test
+    public void testFanOut() throws Exception
+    {
+        // Spread the fan-out across 3 threads.
+        hub.setFanOutChunk(2);
+        List<TopicClient> subscribers = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            TopicClient subscriber = connect(new TopicClient());
+            subscriber.session.getBasicRemote().sendText("subscribe:news");
+            subscribers.add(subscriber);
+        }
+        await(() -> hub.getTopic("news") != null && hub.getTopic("news").getSubscriberCount() == 5);
+
+        TopicClient publisher = connect(new TopicClient());
+        publisher.session.getBasicRemote().sendText("publish:news:hello: world");
+        for (TopicClient subscriber : subscribers)
+        {
+            assertEquals("hello: world", subscriber.poll());
+        }
+        // The command is not echoed, and the publisher is not a subscriber.
+        assertNull(publisher.messages.poll(100, TimeUnit.MILLISECONDS));
+
+        PubSubHub.Topic topic = hub.getTopic("news");
+        await(() -> topic.getDeliveries() == 5);
+        assertEquals(1, topic.getPublications());
+        assertEquals(0, topic.getEvictions());
+        assertThat(topic.getMaxFanOutLatency(TimeUnit.NANOSECONDS), greaterThan(0L));
+
+        // Messages that are not commands are still echoed.
+        publisher.session.getBasicRemote().sendText("echo");
+        assertEquals("echo", publisher.poll());
+    }
+
+    @Test
+    public void testUnsubscribe() throws Exception
+    {
+        TopicClient subscriber1 = connect(new TopicClient());
+        TopicClient subscriber2 = connect(new TopicClient());
+        subscriber1.session.getBasicRemote().sendText("subscribe:news");
+        subscriber2.session.getBasicRemote().sendText("subscribe:news");
+        await(() -> hub.getTopic("news") != null && hub.getTopic("news").getSubscriberCount() == 2);
+
+        subscriber1.session.getBasicRemote().sendText("unsubscribe:news");
+        subscriber2.session.close();
+        // The topic is removed with its last subscriber.
+        await(() -> hub.getTopic("news") == null);
+        assertTrue(hub.getTopics().isEmpty());
+        assertEquals(0, hub.publish("news", "nobody"));
+    }
+
+    @Test
+    public void testEvictSlowSubscriber() throws Exception
+    {
+        hub.setMaxPendingMessages(8);
+        TopicClient fast = connect(new TopicClient());
+        SlowTopicClient slow = new SlowTopicClient();
+        connect(slow);
+        fast.session.getBasicRemote().sendText("subscribe:news");
+        slow.session.getBasicRemote().sendText("subscribe:news");
+        await(() -> hub.getTopic("news") != null && hub.getTopic("news").getSubscriberCount() == 2);
+
+        // The slow subscriber blocks in its first message, so the messages queue up until it is evicted.
+        PubSubHub.Topic topic = hub.getTopic("news");
+        String message = "x".repeat(32 * 1024);
+        for (int i = 0; i < 10_000 && topic.getEvictions() == 0; i++)
+        {
+            hub.publish("news", message);
+            assertEquals(message, fast.poll());
+        }
+        assertEquals(1, topic.getEvictions());
+        assertEquals(1, hub.getEvictions());
+        assertEquals(1, topic.getSubscriberCount());
+
+        slow.resume.countDown();
+        CloseReason closeReason = slow.closed.get(5, TimeUnit.SECONDS);
+        assertEquals(CloseReason.CloseCodes.TRY_AGAIN_LATER, closeReason.getCloseCode());
+    }
+
+    public static class TopicClient extends Endpoint implements MessageHandler.Whole<String>
+    {
+        protected final LinkedBlockingDeque<String> messages = new LinkedBlockingDeque<>();
+        protected final CompletableFuture<CloseReason> closed = new CompletableFuture<>();
+        protected Session session;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config)
+        {
+            session.addMessageHandler(this);
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason)
+        {
+            closed.complete(closeReason);
+        }
+
+        @Override
+        public void onMessage(String message)
+        {
+            messages.offer(message);
+        }
+
+        protected String poll() throws InterruptedException
+        {
+            return messages.poll(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class SlowTopicClient extends TopicClient
+    {
+        private final CountDownLatch resume = new CountDownLatch(1);
+
+        @Override
+        public void onMessage(String message)
+        {
+            super.onMessage(message);
+            if (message.startsWith("x"))
+            {
+                try
+                {
+                    resume.await();
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            }
+        }
+    }
+}
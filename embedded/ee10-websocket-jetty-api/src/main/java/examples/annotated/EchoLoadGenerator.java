@@ -0,0 +1,329 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.annotated;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.api.util.WSURI;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A load generator for an echo WebSocket endpoint, such as the one of {@link EchoServer}.
+ * <p>
+ * Unlike {@link EchoClient#performEcho(WebSocketClient, URI)}, which sends one message and waits for its echo,
+ * the load generator opens many sessions, and sends messages at a {@link #getRate() target rate} without
+ * waiting for their echoes, round robin over the sessions.
+ * The send time of each message is scheduled in advance, and it is carried in the message, so that the
+ * round trip latency is measured from the scheduled send time to the reception of the echo.
+ * If the sends fall behind the schedule, because the server or the client are not keeping up, the delay
+ * is counted in the latency of the late messages, instead of being hidden by sending them later,
+ * which is known as coordinated omission.
+ * </p>
+ */
+public class EchoLoadGenerator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(EchoLoadGenerator.class);
+    private static final String PREFIX = "load:";
+
+    private final WebSocketClient client;
+    private final URI uri;
+    private int connections = 100;
+    private int maxConcurrentConnects = 256;
+    private int rate = 1000;
+    private long duration = 10_000;
+    private long warmup = 0;
+    private int messageSize = 64;
+    private long drainTimeout = 5_000;
+
+    public EchoLoadGenerator(WebSocketClient client, URI uri)
+    {
+        this.client = client;
+        this.uri = uri;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        URI uri = URI.create("ws://localhost:8080/echo");
+        if (args.length > 0)
+            uri = WSURI.toWebsocket(new URI(args[0]));
+
+        WebSocketClient client = new WebSocketClient();
+        client.start();
+        try
+        {
+            EchoLoadGenerator loadGenerator = new EchoLoadGenerator(client, uri);
+            if (args.length > 1)
+                loadGenerator.setConnections(Integer.parseInt(args[1]));
+            if (args.length > 2)
+                loadGenerator.setRate(Integer.parseInt(args[2]));
+            if (args.length > 3)
+                loadGenerator.setDuration(TimeUnit.SECONDS.toMillis(Long.parseLong(args[3])));
+            if (args.length > 4)
+                loadGenerator.setWarmup(TimeUnit.SECONDS.toMillis(Long.parseLong(args[4])));
+            System.out.println(loadGenerator.run());
+        }
+        finally
+        {
+            client.stop();
+        }
+    }
+
+    public int getConnections()
+    {
+        return connections;
+    }
+
+    /**
+     * @param connections the number of sessions to open
+     */
+    public void setConnections(int connections)
+    {
+        this.connections = connections;
+    }
+
+    public int getMaxConcurrentConnects()
+    {
+        return maxConcurrentConnects;
+    }
+
+    /**
+     * @param maxConcurrentConnects the maximum number of sessions being opened at the same time,
+     * which must not be more than the requests that the {@link WebSocketClient} can queue
+     */
+    public void setMaxConcurrentConnects(int maxConcurrentConnects)
+    {
+        this.maxConcurrentConnects = maxConcurrentConnects;
+    }
+
+    public int getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * @param rate the number of messages sent per second, over all the sessions
+     */
+    public void setRate(int rate)
+    {
+        this.rate = rate;
+    }
+
+    public long getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * @param duration the duration in milliseconds of the sends
+     */
+    public void setDuration(long duration)
+    {
+        this.duration = duration;
+    }
+
+    public long getWarmup()
+    {
+        return warmup;
+    }
+
+    /**
+     * @param warmup the time in milliseconds, from the start of the sends, during which the latencies are not recorded
+     */
+    public void setWarmup(long warmup)
+    {
+        this.warmup = warmup;
+    }
+
+    public int getMessageSize()
+    {
+        return messageSize;
+    }
+
+    /**
+     * @param messageSize the minimum size in characters of the messages
+     */
+    public void setMessageSize(int messageSize)
+    {
+        this.messageSize = messageSize;
+    }
+
+    public long getDrainTimeout()
+    {
+        return drainTimeout;
+    }
+
+    /**
+     * @param drainTimeout the time in milliseconds to wait for the echoes, after the last send
+     */
+    public void setDrainTimeout(long drainTimeout)
+    {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Opens the sessions, sends the messages on schedule, waits for their echoes and closes the sessions.
+     *
+     * @return the report of the run
+     * @throws Exception if no session can be opened
+     */
+    public Report run() throws Exception
+    {
+        LoadWebSocket socket = new LoadWebSocket();
+        List<Session> sessions = connect(socket);
+        try
+        {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long count = rate * duration / 1000;
+            String padding = "x".repeat(messageSize);
+            LongAdder failed = new LongAdder();
+            Callback callback = Callback.from(() -> {}, x -> failed.increment());
+
+            long start = NanoTime.now();
+            socket.recordFrom = start + TimeUnit.MILLISECONDS.toNanos(warmup);
+            for (long i = 0; i < count; i++)
+            {
+                // The scheduled send time never depends on when the previous messages were sent or echoed.
+                long scheduled = start + i * intervalNanos;
+                long delay = NanoTime.until(scheduled);
+                if (delay > 0)
+                    LockSupport.parkNanos(delay);
+                Session session = sessions.get((int)(i % sessions.size()));
+                session.sendText(PREFIX + scheduled + ":" + padding, callback);
+            }
+
+            long deadline = NanoTime.now() + TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+            while (socket.getReceived() + failed.sum() < count && NanoTime.isBefore(NanoTime.now(), deadline))
+            {
+                Thread.sleep(10);
+            }
+            long elapsed = NanoTime.since(start);
+            return new Report(sessions.size(), count, socket.getReceived(), failed.sum(), elapsed, socket.histogram);
+        }
+        finally
+        {
+            for (Session session : sessions)
+            {
+                session.close(StatusCode.NORMAL, "Done", Callback.NOOP);
+            }
+        }
+    }
+
+    private List<Session> connect(Object socket) throws Exception
+    {
+        Semaphore connects = new Semaphore(maxConcurrentConnects);
+        List<CompletableFuture<Session>> futures = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++)
+        {
+            connects.acquire();
+            CompletableFuture<Session> future = client.connect(socket, uri);
+            future.whenComplete((session, failure) -> connects.release());
+            futures.add(future);
+        }
+
+        List<Session> sessions = new ArrayList<>(connections);
+        for (CompletableFuture<Session> future : futures)
+        {
+            try
+            {
+                sessions.add(future.get(client.getConnectTimeout() + 5000, TimeUnit.MILLISECONDS));
+            }
+            catch (Exception x)
+            {
+                LOG.warn("Unable to connect to {}", uri, x);
+            }
+        }
+        if (sessions.isEmpty())
+            throw new IOException("Unable to connect to " + uri);
+        return sessions;
+    }
+
+    /**
+     * The socket of all the sessions, that records the latency of the echoed messages.
+     */
+    @WebSocket
+    public static class LoadWebSocket
+    {
+        // Latencies are recorded with 3 significant digits, from 1 ns up to any value.
+        private final Histogram histogram = new ConcurrentHistogram(3);
+        private final LongAdder warmupReceived = new LongAdder();
+        private volatile long recordFrom;
+
+        private long getReceived()
+        {
+            return histogram.getTotalCount() + warmupReceived.sum();
+        }
+
+        @OnWebSocketMessage
+        public void onText(String message)
+        {
+            // Other messages, such as the greeting of the server, are ignored.
+            if (!message.startsWith(PREFIX))
+                return;
+            long scheduled = Long.parseLong(message, PREFIX.length(), message.indexOf(':', PREFIX.length()), 10);
+            if (NanoTime.isBefore(scheduled, recordFrom))
+                warmupReceived.increment();
+            else
+                histogram.recordValue(Math.max(0, NanoTime.since(scheduled)));
+        }
+    }
+
+    /**
+     * @param connections the number of sessions opened
+     * @param sent the number of messages sent
+     * @param received the number of echoes received
+     * @param failed the number of messages that failed to be sent
+     * @param elapsed the time in nanoseconds from the first send until all the echoes are received, or until the drain timeout
+     * @param latencies the round trip latencies in nanoseconds, after the warmup
+     */
+    public record Report(int connections, long sent, long received, long failed, long elapsed, Histogram latencies)
+    {
+        /**
+         * @return the number of echoes received per second
+         */
+        public double getThroughput()
+        {
+            return elapsed == 0 ? 0 : received * 1_000_000_000D / elapsed;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "connections=%d sent=%d received=%d failed=%d throughput=%.1f/s latency(us) p50=%d p99=%d p99.9=%d max=%d".formatted(
+                connections, sent, received, failed, getThroughput(),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getValueAtPercentile(50)),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getValueAtPercentile(99)),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getValueAtPercentile(99.9)),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getMaxValue()));
+        }
+    }
+}
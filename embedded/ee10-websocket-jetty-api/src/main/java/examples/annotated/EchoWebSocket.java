@@ -13,6 +13,8 @@
 
 package examples.annotated;
 
+import java.nio.ByteBuffer;
+
 import org.eclipse.jetty.websocket.api.Callback;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
@@ -23,6 +25,14 @@ import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Echoes back the messages it receives.
+ * <p>
+ * Text messages are echoed whole, after being decoded to a {@code String} and encoded again.
+ * Binary messages are echoed frame by frame, each received payload being sent back as is,
+ * so that binary messages of any size are echoed without copying or buffering them.
+ * </p>
+ */
 @WebSocket
 public class EchoWebSocket
 {
@@ -53,7 +63,25 @@ public class EchoWebSocket
     @OnWebSocketMessage
     public void onWebSocketText(String message)
     {
-        LOG.info("Echoing back text message [{}]", message);
+        // Not logged at INFO level, to not slow down the echo of many messages.
+        if (LOG.isDebugEnabled())
+            LOG.debug("Echoing back text message [{}]", message);
         this.session.sendText(message, Callback.NOOP);
     }
+
+    /**
+     * <p>The payload is in a pooled buffer that is released, and the next frame demanded, when the
+     * callback completes, so the callback is only completed when the payload has been sent back.</p>
+     *
+     * @param payload the payload of a frame of a binary message
+     * @param last whether the frame is the last one of the message
+     * @param callback the callback to complete when the payload is no longer used
+     */
+    @OnWebSocketMessage
+    public void onWebSocketBinary(ByteBuffer payload, boolean last, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Echoing back binary frame of {} bytes, last={}", payload.remaining(), last);
+        this.session.sendPartialBinary(payload, last, callback);
+    }
 }
@@ -0,0 +1,305 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.time;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Broadcasts the current time to all the subscribed {@link Session}s, once per {@link #getPeriod() period}.
+ * <p>
+ * A single scheduled task formats the time once per tick, and encodes it once into a read-only buffer
+ * that is the payload of the TEXT frame sent to every session, so that the cost of a tick does not
+ * depend on the number of subscribers, other than for the send itself.
+ * </p>
+ * <p>
+ * Sends never block the tick: a session that has not completed the send of the previous tick is a
+ * slow consumer, and its new tick is either dropped or coalesced, depending on the {@link SlowConsumerPolicy}.
+ * </p>
+ */
+public class TimeBroadcaster extends ContainerLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TimeBroadcaster.class);
+
+    /**
+     * What to do with a tick for a session that is still sending a previous tick.
+     */
+    public enum SlowConsumerPolicy
+    {
+        /**
+         * The tick is not sent to the session.
+         */
+        DROP,
+        /**
+         * The tick replaces any other tick waiting to be sent, and is sent as soon as the pending send completes,
+         * so that a slow consumer always receives the latest time.
+         */
+        COALESCE
+    }
+
+    private final DateTimeFormatter _formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ").withZone(ZoneOffset.UTC);
+    private final Map<Session, Subscriber> _subscribers = new ConcurrentHashMap<>();
+    private final Scheduler _scheduler;
+    private long _period = 1000;
+    private SlowConsumerPolicy _slowConsumerPolicy = SlowConsumerPolicy.COALESCE;
+    private final LongAdder _ticks = new LongAdder();
+    private final LongAdder _sent = new LongAdder();
+    private final LongAdder _dropped = new LongAdder();
+    private final LongAdder _coalesced = new LongAdder();
+    private Scheduler.Task _task;
+
+    public TimeBroadcaster()
+    {
+        this(new ScheduledExecutorScheduler("time-broadcaster", true));
+    }
+
+    public TimeBroadcaster(Scheduler scheduler)
+    {
+        _scheduler = scheduler;
+        addBean(_scheduler);
+    }
+
+    public long getPeriod()
+    {
+        return _period;
+    }
+
+    /**
+     * @param period the period in milliseconds between two ticks, that are aligned on multiples of the period
+     */
+    public void setPeriod(long period)
+    {
+        _period = period;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy()
+    {
+        return _slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy)
+    {
+        _slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public int getSubscribers()
+    {
+        return _subscribers.size();
+    }
+
+    public long getTicks()
+    {
+        return _ticks.sum();
+    }
+
+    /**
+     * @return the number of ticks sent to sessions
+     */
+    public long getSent()
+    {
+        return _sent.sum();
+    }
+
+    /**
+     * @return the number of ticks not sent to slow sessions, with the {@link SlowConsumerPolicy#DROP} policy
+     */
+    public long getDropped()
+    {
+        return _dropped.sum();
+    }
+
+    /**
+     * @return the number of ticks replaced by a later tick before being sent, with the {@link SlowConsumerPolicy#COALESCE} policy
+     */
+    public long getCoalesced()
+    {
+        return _coalesced.sum();
+    }
+
+    public void subscribe(Session session)
+    {
+        _subscribers.put(session, new Subscriber(session));
+    }
+
+    public void unsubscribe(Session session)
+    {
+        _subscribers.remove(session);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        schedule();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Scheduler.Task task = _task;
+        if (task != null)
+            task.cancel();
+        super.doStop();
+    }
+
+    private void schedule()
+    {
+        long now = System.currentTimeMillis();
+        _task = _scheduler.schedule(this::tick, _period - now % _period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the current time to all the subscribers.
+     */
+    public void tick()
+    {
+        try
+        {
+            if (!isRunning())
+                return;
+            _ticks.increment();
+            String text = _formatter.format(Instant.now());
+            ByteBuffer payload = BufferUtil.toBuffer(text, StandardCharsets.UTF_8).asReadOnlyBuffer();
+            Tick tick = new Tick(text, payload);
+            for (Subscriber subscriber : _subscribers.values())
+            {
+                subscriber.offer(tick);
+            }
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Unable to broadcast tick", x);
+        }
+        finally
+        {
+            if (isRunning())
+                schedule();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[subscribers=%d,ticks=%d,sent=%d,dropped=%d,coalesced=%d]".formatted(
+            getClass().getSimpleName(), hashCode(), getSubscribers(), getTicks(), getSent(), getDropped(), getCoalesced());
+    }
+
+    /**
+     * The time of a tick, and the shared payload of its frame.
+     */
+    private record Tick(String text, ByteBuffer payload)
+    {
+    }
+
+    /**
+     * A subscribed session, that has at most one send in progress.
+     */
+    private class Subscriber implements Callback
+    {
+        private final Session _session;
+        private final CoreSession _coreSession;
+        private final org.eclipse.jetty.util.Callback _frameCallback = org.eclipse.jetty.util.Callback.from(this::succeed, this::fail);
+        private final AtomicBoolean _sending = new AtomicBoolean();
+        private final AtomicReference<Tick> _pending = new AtomicReference<>();
+
+        private Subscriber(Session session)
+        {
+            _session = session;
+            // Send the shared payload directly as a frame, rather than having
+            // the Session encode the text again for every subscriber.
+            _coreSession = session instanceof WebSocketSession webSocketSession ? webSocketSession.getCoreSession() : null;
+        }
+
+        private void offer(Tick tick)
+        {
+            if (_sending.compareAndSet(false, true))
+            {
+                send(tick);
+                return;
+            }
+
+            if (_slowConsumerPolicy == SlowConsumerPolicy.DROP)
+            {
+                _dropped.increment();
+                return;
+            }
+
+            if (_pending.getAndSet(tick) != null)
+                _coalesced.increment();
+            // The pending send may have completed before the tick was set.
+            sendPending();
+        }
+
+        private void sendPending()
+        {
+            while (_pending.get() != null && _sending.compareAndSet(false, true))
+            {
+                Tick tick = _pending.getAndSet(null);
+                if (tick != null)
+                {
+                    send(tick);
+                    return;
+                }
+                _sending.set(false);
+            }
+        }
+
+        private void send(Tick tick)
+        {
+            if (_coreSession != null)
+                _coreSession.sendFrame(new Frame(OpCode.TEXT, true, tick.payload().slice()), _frameCallback, false);
+            else
+                _session.sendText(tick.text(), this);
+        }
+
+        @Override
+        public void succeed()
+        {
+            _sent.increment();
+            _sending.set(false);
+            sendPending();
+        }
+
+        @Override
+        public void fail(Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to send tick to {}", _session, x);
+            unsubscribe(_session);
+        }
+    }
+}
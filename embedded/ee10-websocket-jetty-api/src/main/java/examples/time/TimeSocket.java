@@ -13,58 +13,36 @@
 
 package examples.time;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
-
-import org.eclipse.jetty.websocket.api.Callback;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketOpen;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * Sends the current time every second, from the {@link TimeBroadcaster} shared by all the sockets.
+ */
 @WebSocket
-public class TimeSocket implements Runnable
+public class TimeSocket
 {
-    private static final Logger LOG = LoggerFactory.getLogger(TimeSocket.class);
-    private TimeZone timezone;
+    private final TimeBroadcaster broadcaster;
     private Session session;
 
+    public TimeSocket(TimeBroadcaster broadcaster)
+    {
+        this.broadcaster = broadcaster;
+    }
+
     @OnWebSocketOpen
     public void onOpen(Session session)
     {
         this.session = session;
-        this.timezone = TimeZone.getTimeZone("UTC");
-        new Thread(this).start();
+        broadcaster.subscribe(session);
     }
 
     @OnWebSocketClose
     public void onClose(int closeCode, String closeReasonPhrase)
     {
+        broadcaster.unsubscribe(session);
         this.session = null;
     }
-
-    @Override
-    public void run()
-    {
-        while (this.session != null)
-        {
-            try
-            {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
-                dateFormat.setTimeZone(timezone);
-
-                String timestamp = dateFormat.format(new Date());
-                this.session.sendText(timestamp, Callback.NOOP);
-                TimeUnit.SECONDS.sleep(1);
-            }
-            catch (InterruptedException e)
-            {
-                LOG.warn("Send of TEXT message interrupted", e);
-            }
-        }
-    }
 }
@@ -19,11 +19,9 @@ import java.net.URL;
 import jakarta.servlet.ServletException;
 
 import org.eclipse.jetty.server.HttpConfiguration;
-import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
-import org.eclipse.jetty.server.SslConnectionFactory;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.eclipse.jetty.util.resource.Resources;
@@ -88,10 +86,8 @@ public class WebSocketSecureTimeServer extends WebSocketTimeServer
         secureRequestCustomizer.setSniHostCheck(false);
         httpsConf.addCustomizer(secureRequestCustomizer); // adds ssl info to request object
 
-        // Establish the Secure ServerConnector
-        ServerConnector httpsConnector = new ServerConnector(server,
-            new SslConnectionFactory(sslContextFactory, "http/1.1"),
-            new HttpConnectionFactory(httpsConf));
+        // Establish the Secure ServerConnector, that negotiates HTTP/2 or HTTP/1.1 with ALPN
+        ServerConnector httpsConnector = newSecureConnector(server, sslContextFactory, httpsConf);
         httpsConnector.setPort(httpsPort);
 
         server.addConnector(httpsConnector);
@@ -20,6 +20,7 @@ import java.net.URL;
 import java.time.Duration;
 import jakarta.servlet.ServletException;
 
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.ee10.servlet.DefaultServlet;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
@@ -27,6 +28,9 @@ import org.eclipse.jetty.ee10.websocket.server.JettyServerUpgradeRequest;
 import org.eclipse.jetty.ee10.websocket.server.JettyServerUpgradeResponse;
 import org.eclipse.jetty.ee10.websocket.server.JettyWebSocketCreator;
 import org.eclipse.jetty.ee10.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
@@ -40,12 +44,22 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
 
 public class WebSocketTimeServer
 {
+    // Each WebSocket session holds an HTTP/2 stream open for as long as it lives.
+    private static final int MAX_WEBSOCKETS_PER_CONNECTION = 1024;
+
     public static class TimeSocketCreator implements JettyWebSocketCreator
     {
+        private final TimeBroadcaster broadcaster;
+
+        public TimeSocketCreator(TimeBroadcaster broadcaster)
+        {
+            this.broadcaster = broadcaster;
+        }
+
         @Override
         public Object createWebSocket(JettyServerUpgradeRequest jettyServerUpgradeRequest, JettyServerUpgradeResponse jettyServerUpgradeResponse)
         {
-            return new TimeSocket();
+            return new TimeSocket(broadcaster);
         }
     }
 
@@ -56,10 +70,21 @@ public class WebSocketTimeServer
         server.join();
     }
 
+    /**
+     * Creates a server with a clear-text connector that accepts WebSocket upgrades over HTTP/1.1,
+     * and WebSocket extended CONNECT requests (RFC 8441) over HTTP/2, so that many WebSocket
+     * sessions can be multiplexed over a single connection.
+     *
+     * @param port the port to listen on
+     * @return a new server
+     */
     public static Server newServer(int port) throws MalformedURLException, URISyntaxException, ServletException
     {
         Server server = newServerNoConnector();
-        ServerConnector connector = new ServerConnector(server);
+        HttpConfiguration httpConf = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(server,
+            new HttpConnectionFactory(httpConf),
+            newHTTP2CServerConnectionFactory(httpConf));
         connector.setPort(port);
         server.addConnector(connector);
         return server;
@@ -84,15 +109,54 @@ public class WebSocketTimeServer
         httpsConf.addCustomizer(new SecureRequestCustomizer()); // adds ssl info to request object
 
         // Establish the Secure ServerConnector
-        ServerConnector httpsConnector = new ServerConnector(server,
-            new SslConnectionFactory(sslContextFactory, "http/1.1"),
-            new HttpConnectionFactory(httpsConf));
+        ServerConnector httpsConnector = newSecureConnector(server, sslContextFactory, httpsConf);
         httpsConnector.setPort(httpsPort);
 
         server.addConnector(httpsConnector);
         return server;
     }
 
+    /**
+     * Creates a secure connector that negotiates with ALPN either HTTP/2, where WebSockets are opened
+     * with extended CONNECT requests (RFC 8441), or HTTP/1.1, where WebSockets are opened with upgrades.
+     *
+     * @param server the server of the connector
+     * @param sslContextFactory the TLS configuration
+     * @param httpsConf the HTTP configuration shared by both protocols
+     * @return a new connector, whose port is not set
+     */
+    protected static ServerConnector newSecureConnector(Server server, SslContextFactory.Server sslContextFactory, HttpConfiguration httpsConf)
+    {
+        // HTTP/2 forbids the cipher suites of its blacklist, prefer the others.
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+
+        HttpConnectionFactory http11 = new HttpConnectionFactory(httpsConf);
+        HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpsConf);
+        h2.setConnectProtocolEnabled(true);
+        h2.setMaxConcurrentStreams(MAX_WEBSOCKETS_PER_CONNECTION);
+        // Clients that do not support ALPN speak HTTP/1.1.
+        ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory(h2.getProtocol(), http11.getProtocol());
+        alpn.setDefaultProtocol(http11.getProtocol());
+
+        return new ServerConnector(server,
+            new SslConnectionFactory(sslContextFactory, alpn.getProtocol()),
+            alpn, h2, http11);
+    }
+
+    /**
+     * @param httpConf the HTTP configuration shared with HTTP/1.1
+     * @return a factory of clear-text HTTP/2 connections (h2c), either with prior knowledge or upgraded from HTTP/1.1,
+     * that advertises the support of extended CONNECT requests in its SETTINGS frame
+     */
+    protected static HTTP2CServerConnectionFactory newHTTP2CServerConnectionFactory(HttpConfiguration httpConf)
+    {
+        HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(httpConf);
+        // Enabled by default, but this is what allows WebSockets over HTTP/2.
+        h2c.setConnectProtocolEnabled(true);
+        h2c.setMaxConcurrentStreams(MAX_WEBSOCKETS_PER_CONNECTION);
+        return h2c;
+    }
+
     protected static Server newServerNoConnector() throws URISyntaxException, MalformedURLException, ServletException
     {
         Server server = new Server();
@@ -116,11 +180,15 @@ public class WebSocketTimeServer
         contextHandler.setWelcomeFiles(new String[]{"index.html"});
         server.setHandler(contextHandler);
 
+        // A single broadcaster sends the time to all the websocket sessions
+        TimeBroadcaster broadcaster = new TimeBroadcaster();
+        server.addBean(broadcaster);
+
         // Add the websocket filter
         JettyWebSocketServletContainerInitializer.configure(contextHandler, (context, configurator) ->
         {
             configurator.setIdleTimeout(Duration.ofMillis(5000));
-            configurator.addMapping("/time/", new TimeSocketCreator());
+            configurator.addMapping("/time/", new TimeSocketCreator(broadcaster));
         });
 
         // Add time servlet
@@ -0,0 +1,79 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.annotated;
+
+import java.net.URI;
+
+import org.HdrHistogram.Histogram;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.api.util.WSURI;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EchoLoadGeneratorTest
+{
+    private Server server;
+    private WebSocketClient wsClient;
+
+    @BeforeEach
+    public void startServerAndClient() throws Exception
+    {
+        server = EchoServer.newServer(0);
+        server.start();
+        wsClient = new WebSocketClient();
+        wsClient.start();
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(wsClient);
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testLoad() throws Exception
+    {
+        URI uri = WSURI.toWebsocket(server.getURI().resolve("/echo"));
+        EchoLoadGenerator loadGenerator = new EchoLoadGenerator(wsClient, uri);
+        loadGenerator.setConnections(500);
+        loadGenerator.setRate(5000);
+        loadGenerator.setDuration(2000);
+        loadGenerator.setWarmup(1000);
+
+        EchoLoadGenerator.Report report = loadGenerator.run();
+
+        assertEquals(500, report.connections());
+        assertEquals(10000, report.sent());
+        assertEquals(0, report.failed());
+        assertEquals(10000, report.received());
+        // The latencies of the messages sent during the warmup are not recorded.
+        Histogram latencies = report.latencies();
+        assertEquals(5000, latencies.getTotalCount());
+        assertThat(latencies.getValueAtPercentile(50), greaterThan(0L));
+        assertThat(latencies.getValueAtPercentile(99), greaterThanOrEqualTo(latencies.getValueAtPercentile(50)));
+        assertThat(latencies.getValueAtPercentile(99.9), lessThanOrEqualTo(latencies.getMaxValue()));
+        assertThat(report.getThroughput(), greaterThan(0D));
+    }
+}
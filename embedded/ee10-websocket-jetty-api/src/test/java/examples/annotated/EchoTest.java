@@ -13,11 +13,21 @@
 
 package examples.annotated;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.api.Callback;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 import org.eclipse.jetty.websocket.api.util.WSURI;
 import org.eclipse.jetty.websocket.client.WebSocketClient;
 import org.junit.jupiter.api.AfterEach;
@@ -26,6 +36,8 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 public class EchoTest
 {
@@ -58,4 +70,54 @@ public class EchoTest
         };
         assertThat(msgs, contains(expected));
     }
+
+    @Test
+    public void testBinaryEcho() throws Exception
+    {
+        byte[] bytes = new byte[1024 * 1024];
+        new Random(42).nextBytes(bytes);
+
+        URI uri = WSURI.toWebsocket(server.getURI().resolve("/echo"));
+        BinaryClientSocket clientSocket = new BinaryClientSocket();
+        Session session = wsClient.connect(clientSocket, uri).get(5, TimeUnit.SECONDS);
+
+        // Stream the message in chunks, each one sent when the previous one is.
+        int chunk = 48 * 1024;
+        for (int offset = 0; offset < bytes.length; offset += chunk)
+        {
+            int length = Math.min(chunk, bytes.length - offset);
+            CompletableFuture<Void> sent = new CompletableFuture<>();
+            session.sendPartialBinary(ByteBuffer.wrap(bytes, offset, length), offset + length == bytes.length,
+                Callback.from(() -> sent.complete(null), sent::completeExceptionally));
+            sent.get(5, TimeUnit.SECONDS);
+        }
+
+        assertArrayEquals(bytes, clientSocket.message.get(5, TimeUnit.SECONDS));
+        // The message was echoed frame by frame.
+        assertThat(clientSocket.frames, greaterThan(1));
+        session.close();
+    }
+
+    @WebSocket
+    public static class BinaryClientSocket
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> message = new CompletableFuture<>();
+        private int frames;
+
+        @OnWebSocketMessage
+        public void onText(String text)
+        {
+        }
+
+        @OnWebSocketMessage
+        public void onBinary(ByteBuffer payload, boolean last, Callback callback)
+        {
+            frames++;
+            bytes.writeBytes(BufferUtil.toArray(payload));
+            callback.succeed();
+            if (last)
+                message.complete(bytes.toByteArray());
+        }
+    }
 }
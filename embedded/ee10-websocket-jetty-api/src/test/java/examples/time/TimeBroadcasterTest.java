@@ -0,0 +1,262 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.time;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.transport.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketOpen;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.eclipse.jetty.websocket.api.util.WSURI;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeBroadcasterTest
+{
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_TICKS = 100_000;
+    private static final String TIME_PATTERN = "\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\+0000";
+
+    private Server server;
+    private WebSocketClient wsClient;
+    private TimeBroadcaster broadcaster;
+    private SlowClientSocket slowSocket;
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+    private final CountDownLatch unsubscribed = new CountDownLatch(1);
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(wsClient);
+        LifeCycle.stop(server);
+        LifeCycle.stop(broadcaster);
+    }
+
+    @Test
+    public void testBroadcast() throws Exception
+    {
+        server = WebSocketTimeServer.newServer(0);
+        server.start();
+        broadcaster = server.getBean(TimeBroadcaster.class);
+        wsClient = new WebSocketClient();
+        wsClient.start();
+
+        URI uri = WSURI.toWebsocket(server.getURI().resolve("/time/"));
+        List<TimeClientSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            TimeClientSocket socket = new TimeClientSocket();
+            wsClient.connect(socket, uri).get(5, TimeUnit.SECONDS);
+            sockets.add(socket);
+        }
+
+        for (TimeClientSocket socket : sockets)
+        {
+            for (int i = 0; i < 2; i++)
+            {
+                String time = socket.messages.poll(5, TimeUnit.SECONDS);
+                assertNotNull(time);
+                assertThat(time, matchesPattern(TIME_PATTERN));
+            }
+        }
+        assertEquals(20, broadcaster.getSubscribers());
+        assertEquals(0, broadcaster.getDropped());
+
+        wsClient.stop();
+        server.stop();
+        assertEquals(0, broadcaster.getSubscribers());
+    }
+
+    @Test
+    public void testSlowConsumerCoalesce() throws Exception
+    {
+        startSlowConsumer(TimeBroadcaster.SlowConsumerPolicy.COALESCE);
+
+        // Tick until the client, that does not read, has filled the network buffers,
+        // and the send of a tick is pending, so that the next ticks are coalesced.
+        int ticks = tickUntil(() -> broadcaster.getCoalesced() > 1);
+        long coalesced = broadcaster.getCoalesced();
+        assertEquals(0, broadcaster.getDropped());
+
+        // Once the client reads again, it receives all the ticks that were not coalesced, and the last one.
+        slowSocket.resume();
+        assertReceived(ticks - coalesced);
+    }
+
+    @Test
+    public void testSlowConsumerDrop() throws Exception
+    {
+        startSlowConsumer(TimeBroadcaster.SlowConsumerPolicy.DROP);
+
+        int ticks = tickUntil(() -> broadcaster.getDropped() > 1);
+        long dropped = broadcaster.getDropped();
+        assertEquals(0, broadcaster.getCoalesced());
+
+        slowSocket.resume();
+        assertReceived(ticks - dropped);
+    }
+
+    @Test
+    public void testDisconnectedSlowConsumerUnsubscribes() throws Exception
+    {
+        startSlowConsumer(TimeBroadcaster.SlowConsumerPolicy.COALESCE);
+        tickUntil(() -> broadcaster.getCoalesced() > 0);
+
+        // The pending send fails, or the server reads the end of the stream, whichever happens first.
+        slowSocket.session.disconnect();
+        assertTrue(unsubscribed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, broadcaster.getSubscribers());
+    }
+
+    /**
+     * Starts a server, with small send buffers, and a client, with small receive buffers, connected to the
+     * {@link TimeSocket} of the server, that does not read until {@link SlowClientSocket#resume() resumed}.
+     */
+    private void startSlowConsumer(TimeBroadcaster.SlowConsumerPolicy policy) throws Exception
+    {
+        broadcaster = new TimeBroadcaster()
+        {
+            @Override
+            public void subscribe(Session session)
+            {
+                super.subscribe(session);
+                subscribed.countDown();
+            }
+
+            @Override
+            public void unsubscribe(Session session)
+            {
+                super.unsubscribe(session);
+                unsubscribed.countDown();
+            }
+        };
+        // Ticks are only triggered by the test.
+        broadcaster.setPeriod(TimeUnit.HOURS.toMillis(1));
+        broadcaster.setSlowConsumerPolicy(policy);
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setAcceptedSendBufferSize(BUFFER_SIZE);
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler();
+        server.setHandler(context);
+        server.addBean(broadcaster);
+        JettyWebSocketServletContainerInitializer.configure(context, (servletContext, configurator) ->
+            configurator.addMapping("/time/", new WebSocketTimeServer.TimeSocketCreator(broadcaster)));
+        server.start();
+
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setReceiveBufferSize(BUFFER_SIZE);
+        HttpClient httpClient = new HttpClient(new HttpClientTransportOverHTTP(clientConnector));
+        wsClient = new WebSocketClient(httpClient);
+        wsClient.addManaged(httpClient);
+        wsClient.start();
+
+        slowSocket = new SlowClientSocket();
+        wsClient.connect(slowSocket, WSURI.toWebsocket(server.getURI().resolve("/time/"))).get(5, TimeUnit.SECONDS);
+        // The client may be connected before the server socket is opened.
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+    }
+
+    private int tickUntil(BooleanSupplier condition)
+    {
+        int ticks = 0;
+        while (!condition.getAsBoolean())
+        {
+            assertThat("The client does not apply backpressure", ticks, lessThan(MAX_TICKS));
+            broadcaster.tick();
+            ++ticks;
+        }
+        return ticks;
+    }
+
+    private void assertReceived(long expected) throws InterruptedException
+    {
+        for (long i = 0; i < expected; i++)
+        {
+            String time = slowSocket.messages.poll(5, TimeUnit.SECONDS);
+            assertNotNull(time, "tick " + i + " of " + expected);
+            assertThat(time, matchesPattern(TIME_PATTERN));
+        }
+        // No more ticks than those not coalesced or dropped.
+        assertNull(slowSocket.messages.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @WebSocket
+    public static class TimeClientSocket
+    {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        @OnWebSocketMessage
+        public void onText(String message)
+        {
+            messages.offer(message);
+        }
+    }
+
+    /**
+     * A client socket that reads nothing until it is resumed, so that the frames sent by
+     * the server fill the network buffers.
+     */
+    @WebSocket(autoDemand = false)
+    public static class SlowClientSocket
+    {
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        volatile Session session;
+
+        @OnWebSocketOpen
+        public void onOpen(Session session)
+        {
+            this.session = session;
+        }
+
+        @OnWebSocketMessage
+        public void onText(String message)
+        {
+            messages.offer(message);
+            session.demand();
+        }
+
+        void resume()
+        {
+            session.demand();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.time;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import examples.time.TimeBroadcasterTest.TimeClientSocket;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.websocket.api.util.WSURI;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class WebSocketOverHTTP2Test
+{
+    private static final int SESSIONS = 10;
+
+    private Server server;
+    private WebSocketClient wsClient;
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(wsClient);
+        LifeCycle.stop(server);
+    }
+
+    private static WebSocketClient newHTTP2WebSocketClient(SslContextFactory.Client sslContextFactory) throws Exception
+    {
+        ClientConnector clientConnector = new ClientConnector();
+        clientConnector.setSslContextFactory(sslContextFactory);
+        HttpClient httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client(clientConnector)));
+        WebSocketClient wsClient = new WebSocketClient(httpClient);
+        // The HttpClient is not managed by the WebSocketClient when given to it.
+        wsClient.addManaged(httpClient);
+        wsClient.start();
+        return wsClient;
+    }
+
+    private void assertTimeReceived(URI uri) throws Exception
+    {
+        List<TimeClientSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++)
+        {
+            TimeClientSocket socket = new TimeClientSocket();
+            wsClient.connect(socket, uri).get(5, TimeUnit.SECONDS);
+            sockets.add(socket);
+        }
+        for (TimeClientSocket socket : sockets)
+        {
+            String time = socket.messages.poll(5, TimeUnit.SECONDS);
+            assertNotNull(time);
+            assertThat(time, matchesPattern("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\+0000"));
+        }
+    }
+
+    private int getConnectedEndPoints()
+    {
+        return server.getBean(ServerConnector.class).getConnectedEndPoints().size();
+    }
+
+    @Test
+    public void testHTTP11OneConnectionPerSession() throws Exception
+    {
+        server = WebSocketTimeServer.newServer(0);
+        server.start();
+        wsClient = new WebSocketClient();
+        wsClient.start();
+
+        assertTimeReceived(WSURI.toWebsocket(server.getURI().resolve("/time/")));
+        assertEquals(SESSIONS, getConnectedEndPoints());
+    }
+
+    @Test
+    public void testHTTP2SessionsMultiplexed() throws Exception
+    {
+        server = WebSocketTimeServer.newServer(0);
+        server.start();
+        // Clear-text HTTP/2 with prior knowledge.
+        wsClient = newHTTP2WebSocketClient(null);
+
+        assertTimeReceived(WSURI.toWebsocket(server.getURI().resolve("/time/")));
+        assertEquals(1, getConnectedEndPoints());
+    }
+
+    @Test
+    public void testSecureHTTP2SessionsMultiplexed() throws Exception
+    {
+        server = WebSocketSecureTimeServer.newServer(0);
+        server.start();
+        // HTTP/2 negotiated with ALPN, trusting the self-signed certificate of the server.
+        wsClient = newHTTP2WebSocketClient(new SslContextFactory.Client(true));
+
+        int port = server.getBean(ServerConnector.class).getLocalPort();
+        assertTimeReceived(URI.create("wss://localhost:" + port + "/time/"));
+        assertEquals(1, getConnectedEndPoints());
+    }
+}
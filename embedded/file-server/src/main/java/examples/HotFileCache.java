@@ -0,0 +1,925 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HttpContent.Factory} that keeps small, frequently requested files in memory.
+ * <p>
+ * The bytes of a cached file are held in a direct {@link ByteBuffer}, and every request
+ * is given a read-only view of that buffer, so the file is neither opened nor stat'ed again,
+ * and the bytes are written to the network without being copied.
+ * </p>
+ * <p>
+ * The cache is bounded by a total number of bytes and uses a W-TinyLFU style policy.
+ * New entries go into a small LRU admission window.
+ * An entry leaving the window only enters the main region if it has been requested more often
+ * than the entry it would replace, as estimated by a {@link FrequencySketch}.
+ * The main region is a segmented LRU, where entries hit a second time are protected from
+ * eviction by entries that have only been hit once.
+ * This keeps a skewed working set in the cache, even when it is scanned by requests for
+ * files that are only requested once.
+ * </p>
+ * <p>
+ * Entries are invalidated when their file (or a pre-compressed variant of it) is modified
+ * or deleted, as reported by a {@link WatchService}, rather than being validated on every request.
+ * A single {@link WatchService} and thread are shared by all the started caches, however many there are.
+ * Resources that are not on the default file system, such as those in a jar, are treated as immutable.
+ * </p>
+ */
+public class HotFileCache extends AbstractLifeCycle implements HttpContent.Factory
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HotFileCache.class);
+
+    private final HttpContent.Factory _authority;
+    private final List<CompressedContentFormat> _precompressedFormats;
+    private final long _maxCacheSize;
+    private final int _maxCachedFileSize;
+    private final long _maxWindowSize;
+    private final long _maxProtectedSize;
+    private final Map<String, Entry> _cache = new ConcurrentHashMap<>();
+    private final Set<Path> _watchedDirs = ConcurrentHashMap.newKeySet();
+    private final AtomicLong _generation = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _invalidations = new LongAdder();
+    // The fields below are guarded by _lock.
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> _window = new LinkedHashMap<>(16, 0.75F, true);
+    private final LinkedHashMap<String, Entry> _probation = new LinkedHashMap<>(16, 0.75F, true);
+    private final LinkedHashMap<String, Entry> _protected = new LinkedHashMap<>(16, 0.75F, true);
+    private final FrequencySketch _sketch;
+    private long _windowSize;
+    private long _probationSize;
+    private long _protectedSize;
+    private Watcher _watcher;
+
+    /**
+     * @param authority the factory of the content to cache
+     * @param maxCacheSize the maximum total number of bytes of cached content
+     * @param maxCachedFileSize the maximum size of a file to cache
+     * @param precompressedFormats the formats of the pre-compressed variants served with a file,
+     * whose changes also invalidate the file
+     */
+    public HotFileCache(HttpContent.Factory authority, long maxCacheSize, int maxCachedFileSize, CompressedContentFormat... precompressedFormats)
+    {
+        _authority = authority;
+        _precompressedFormats = List.of(precompressedFormats);
+        _maxCacheSize = maxCacheSize;
+        _maxCachedFileSize = maxCachedFileSize;
+        // Same proportions as W-TinyLFU: a 1% window, and a main region that is 80% protected.
+        _maxWindowSize = maxCacheSize / 100;
+        _maxProtectedSize = (maxCacheSize - _maxWindowSize) * 80 / 100;
+        // Assume an average file size of 4 KiB to size the sketch.
+        _sketch = new FrequencySketch((int)Math.min(1 << 20, Math.max(256, maxCacheSize / 4096)));
+    }
+
+    public long getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    public int getMaxCachedFileSize()
+    {
+        return _maxCachedFileSize;
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the number of requests for which the content was not in the cache
+     */
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the byte budget
+     */
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    /**
+     * @return the number of entries removed because their file changed
+     */
+    public long getInvalidations()
+    {
+        return _invalidations.sum();
+    }
+
+    public int getCachedFiles()
+    {
+        return _cache.size();
+    }
+
+    public long getCachedSize()
+    {
+        _lock.lock();
+        try
+        {
+            return _windowSize + _probationSize + _protectedSize;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @param path the path in context of the content
+     * @return whether the content for the path is currently cached
+     */
+    public boolean isCached(String path)
+    {
+        return _cache.containsKey(path);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _watcher = Watcher.acquire();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        _watcher.unwatch(this);
+        Watcher.release();
+        _watcher = null;
+        _watchedDirs.clear();
+        _lock.lock();
+        try
+        {
+            _cache.clear();
+            _window.clear();
+            _probation.clear();
+            _protected.clear();
+            _windowSize = 0;
+            _probationSize = 0;
+            _protectedSize = 0;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public HttpContent getContent(String path) throws IOException
+    {
+        Entry entry = _cache.get(path);
+        if (entry != null)
+        {
+            _hits.increment();
+            onHit(entry);
+            return entry._content;
+        }
+
+        _misses.increment();
+        if (!isRunning())
+            return _authority.getContent(path);
+
+        // Any change seen by the watcher after this point prevents the entry from being added.
+        long generation = _generation.get();
+        HttpContent content = _authority.getContent(path);
+        if (!isCacheable(content))
+            return content;
+
+        // Changes that happened before a directory is watched cannot be seen,
+        // so files are only cached from the second request in a new directory.
+        Path file = content.getResource().getPath();
+        if (!watch(file))
+            return content;
+
+        ByteBuffer buffer;
+        try
+        {
+            buffer = read(content);
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to cache {}", content.getResource(), x);
+            return content;
+        }
+        if (buffer == null)
+            return content;
+
+        // The snapshot no longer delegates to the content, so it can be released now.
+        CachedHttpContent cached = new CachedHttpContent(content, buffer);
+        content.release();
+        Entry newEntry = new Entry(path, isWatchable(file) ? file : null, names(file), cached);
+        return add(newEntry, generation);
+    }
+
+    private boolean isCacheable(HttpContent content)
+    {
+        if (content == null)
+            return false;
+        Resource resource = content.getResource();
+        if (resource == null || resource.isDirectory())
+            return false;
+        long length = content.getContentLengthValue();
+        return length >= 0 && length <= _maxCachedFileSize && length <= _maxCacheSize;
+    }
+
+    /**
+     * @param file the file of an entry
+     * @return the names of the file and of its pre-compressed variants, whose changes invalidate the entry
+     */
+    private Set<String> names(Path file)
+    {
+        if (file == null || file.getFileName() == null)
+            return Set.of();
+        String name = file.getFileName().toString();
+        Set<String> names = new HashSet<>();
+        names.add(name);
+        _precompressedFormats.forEach(format -> names.add(name + format.getExtension()));
+        return names;
+    }
+
+    private static boolean isWatchable(Path file)
+    {
+        return file != null && file.getFileSystem() == FileSystems.getDefault();
+    }
+
+    private ByteBuffer read(HttpContent content) throws IOException
+    {
+        int length = (int)content.getContentLengthValue();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        ByteBuffer inMemory = content.getByteBuffer();
+        if (inMemory != null)
+        {
+            buffer.put(inMemory);
+        }
+        else
+        {
+            Resource resource = content.getResource();
+            Path path = resource.getPath();
+            try (ReadableByteChannel channel = path != null ? Files.newByteChannel(path) : Channels.newChannel(resource.newInputStream()))
+            {
+                while (buffer.hasRemaining())
+                {
+                    if (channel.read(buffer) < 0)
+                        break;
+                }
+            }
+        }
+        // The file was truncated after its length was read.
+        if (buffer.hasRemaining())
+            return null;
+        return buffer.flip();
+    }
+
+    private HttpContent add(Entry entry, long generation)
+    {
+        _lock.lock();
+        try
+        {
+            _sketch.increment(entry._key.hashCode());
+            if (generation != _generation.get())
+                return entry._content;
+            Entry existing = _cache.putIfAbsent(entry._key, entry);
+            if (existing != null)
+                return existing._content;
+
+            entry._region = Region.WINDOW;
+            _window.put(entry._key, entry);
+            _windowSize += entry._size;
+
+            Iterator<Entry> candidates = _window.values().iterator();
+            while (_windowSize > _maxWindowSize && candidates.hasNext())
+            {
+                Entry candidate = candidates.next();
+                candidates.remove();
+                _windowSize -= candidate._size;
+                candidate._region = null;
+                admit(candidate);
+            }
+            return entry._content;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void admit(Entry candidate)
+    {
+        // Find the victims that make room for the candidate, and only evict them
+        // if the candidate is requested more often than every one of them.
+        long excess = _probationSize + _protectedSize + candidate._size - (_maxCacheSize - _maxWindowSize);
+        List<Entry> victims = new ArrayList<>();
+        int candidateFrequency = _sketch.frequency(candidate._key.hashCode());
+        Iterator<Entry> eldest = Stream.concat(_probation.values().stream(), _protected.values().stream()).iterator();
+        while (excess > 0)
+        {
+            Entry victim = eldest.hasNext() ? eldest.next() : null;
+            if (victim == null || candidateFrequency <= _sketch.frequency(victim._key.hashCode()))
+            {
+                _cache.remove(candidate._key, candidate);
+                _evictions.increment();
+                return;
+            }
+            victims.add(victim);
+            excess -= victim._size;
+        }
+        for (Entry victim : victims)
+        {
+            remove(victim);
+            _evictions.increment();
+        }
+        candidate._region = Region.PROBATION;
+        _probation.put(candidate._key, candidate);
+        _probationSize += candidate._size;
+    }
+
+    private void onHit(Entry entry)
+    {
+        // Under contention the hit is not recorded, rather than making requests queue on the lock.
+        if (!_lock.tryLock())
+            return;
+        try
+        {
+            _sketch.increment(entry._key.hashCode());
+            if (entry._region == null)
+                return;
+            switch (entry._region)
+            {
+                case WINDOW -> _window.get(entry._key);
+                case PROTECTED -> _protected.get(entry._key);
+                case PROBATION ->
+                {
+                    _probation.remove(entry._key);
+                    _probationSize -= entry._size;
+                    entry._region = Region.PROTECTED;
+                    _protected.put(entry._key, entry);
+                    _protectedSize += entry._size;
+                    while (_protectedSize > _maxProtectedSize && _protected.size() > 1)
+                    {
+                        Entry demoted = eldest(_protected);
+                        _protected.remove(demoted._key);
+                        _protectedSize -= demoted._size;
+                        demoted._region = Region.PROBATION;
+                        _probation.put(demoted._key, demoted);
+                        _probationSize += demoted._size;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private static Entry eldest(LinkedHashMap<String, Entry> region)
+    {
+        Iterator<Entry> entries = region.values().iterator();
+        return entries.hasNext() ? entries.next() : null;
+    }
+
+    private void remove(Entry entry)
+    {
+        _cache.remove(entry._key, entry);
+        if (entry._region == null)
+            return;
+        switch (entry._region)
+        {
+            case WINDOW ->
+            {
+                _window.remove(entry._key);
+                _windowSize -= entry._size;
+            }
+            case PROBATION ->
+            {
+                _probation.remove(entry._key);
+                _probationSize -= entry._size;
+            }
+            case PROTECTED ->
+            {
+                _protected.remove(entry._key);
+                _protectedSize -= entry._size;
+            }
+        }
+        entry._region = null;
+    }
+
+    /**
+     * @param file the file to watch
+     * @return true if changes to the file are already being watched, or the file is immutable
+     */
+    private boolean watch(Path file)
+    {
+        if (!isWatchable(file))
+            return true;
+        Path dir = file.getParent();
+        if (_watchedDirs.contains(dir))
+            return true;
+        try
+        {
+            _watcher.watch(this, dir);
+            _watchedDirs.add(dir);
+        }
+        catch (IOException | ClosedWatchServiceException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to watch {}", dir, x);
+        }
+        return false;
+    }
+
+    private void onWatchEvents(Path dir, List<String> names, boolean valid)
+    {
+        _generation.incrementAndGet();
+        names.forEach(name -> invalidate(dir, name));
+        if (!valid)
+        {
+            _watchedDirs.remove(dir);
+            invalidate(dir, "");
+        }
+    }
+
+    private void invalidate(Path dir, String name)
+    {
+        _lock.lock();
+        try
+        {
+            for (Entry entry : _cache.values())
+            {
+                // A change to "file.css.gz" also invalidates the pre-compressed formats of "file.css".
+                if (entry._file != null && dir.equals(entry._file.getParent()) &&
+                    (name.isEmpty() || entry._names.contains(name)))
+                {
+                    remove(entry);
+                    _invalidations.increment();
+                }
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[hits=%d,misses=%d,files=%d,%s]".formatted(getClass().getSimpleName(), hashCode(), getHits(), getMisses(), getCachedFiles(), _authority);
+    }
+
+    private enum Region
+    {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static class Entry
+    {
+        private final String _key;
+        private final Path _file;
+        private final Set<String> _names;
+        private final CachedHttpContent _content;
+        private final long _size;
+        private Region _region;
+
+        private Entry(String key, Path file, Set<String> names, CachedHttpContent content)
+        {
+            _key = key;
+            _file = file;
+            _names = names;
+            _content = content;
+            _size = content.getContentLengthValue();
+        }
+    }
+
+    /**
+     * The {@link WatchService} of the default file system and its thread, shared by the started caches.
+     * The events of a directory are dispatched to the caches that watch it.
+     */
+    private static class Watcher
+    {
+        private static final ReentrantLock __lock = new ReentrantLock();
+        private static Watcher __watcher;
+        private static int __users;
+
+        private final ReentrantLock _lock = new ReentrantLock();
+        private final Map<Path, WatchKey> _keys = new HashMap<>();
+        private final Map<Path, Set<HotFileCache>> _caches = new ConcurrentHashMap<>();
+        private final WatchService _watchService;
+        private final Thread _thread;
+
+        private static Watcher acquire() throws IOException
+        {
+            __lock.lock();
+            try
+            {
+                if (__watcher == null)
+                    __watcher = new Watcher();
+                __users++;
+                return __watcher;
+            }
+            finally
+            {
+                __lock.unlock();
+            }
+        }
+
+        private static void release() throws InterruptedException
+        {
+            Watcher watcher = null;
+            __lock.lock();
+            try
+            {
+                if (--__users == 0)
+                {
+                    watcher = __watcher;
+                    __watcher = null;
+                }
+            }
+            finally
+            {
+                __lock.unlock();
+            }
+            if (watcher != null)
+                watcher.close();
+        }
+
+        private Watcher() throws IOException
+        {
+            _watchService = FileSystems.getDefault().newWatchService();
+            _thread = new Thread(this::run, "HotFileCache-watcher");
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        private void watch(HotFileCache cache, Path dir) throws IOException
+        {
+            _lock.lock();
+            try
+            {
+                if (!_keys.containsKey(dir))
+                {
+                    _keys.put(dir, dir.register(_watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+                }
+                _caches.computeIfAbsent(dir, d -> ConcurrentHashMap.newKeySet()).add(cache);
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+
+        private void unwatch(HotFileCache cache)
+        {
+            _lock.lock();
+            try
+            {
+                for (Iterator<Map.Entry<Path, Set<HotFileCache>>> iterator = _caches.entrySet().iterator(); iterator.hasNext(); )
+                {
+                    Map.Entry<Path, Set<HotFileCache>> entry = iterator.next();
+                    if (entry.getValue().remove(cache) && entry.getValue().isEmpty())
+                    {
+                        iterator.remove();
+                        WatchKey key = _keys.remove(entry.getKey());
+                        if (key != null)
+                            key.cancel();
+                    }
+                }
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+
+        private void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    WatchKey key = _watchService.take();
+                    Path dir = (Path)key.watchable();
+                    List<String> names = new ArrayList<>();
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        // An overflow invalidates the whole directory.
+                        names.add(event.kind() == StandardWatchEventKinds.OVERFLOW ? "" : event.context().toString());
+                    }
+                    boolean valid = key.reset();
+                    Set<HotFileCache> caches = _caches.getOrDefault(dir, Set.of());
+                    if (!valid)
+                    {
+                        _lock.lock();
+                        try
+                        {
+                            _keys.remove(dir, key);
+                            _caches.remove(dir);
+                        }
+                        finally
+                        {
+                            _lock.unlock();
+                        }
+                    }
+                    caches.forEach(cache -> cache.onWatchEvents(dir, names, valid));
+                }
+            }
+            catch (ClosedWatchServiceException | InterruptedException x)
+            {
+                LOG.debug("Stopped watching", x);
+            }
+        }
+
+        private void close() throws InterruptedException
+        {
+            try
+            {
+                _watchService.close();
+            }
+            catch (IOException x)
+            {
+                LOG.debug("Unable to close {}", _watchService, x);
+            }
+            _thread.join();
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters, that estimates how often a key has been seen
+     * in the recent past, using a fixed amount of memory.
+     * All the counters are halved periodically, so that the estimates follow changes in popularity.
+     */
+    private static class FrequencySketch
+    {
+        private static final int[] SEEDS = {0x97CB3127, 0xB1A72C6B, 0x8DF3C9E3, 0xC3A5C85D};
+
+        private final byte[] _table;
+        private final int _width;
+        private final int _sampleSize;
+        private int _additions;
+
+        private FrequencySketch(int expectedEntries)
+        {
+            _width = Integer.highestOneBit(expectedEntries - 1) << 1;
+            _table = new byte[SEEDS.length * _width];
+            _sampleSize = 10 * _width;
+        }
+
+        private int index(int hash, int row)
+        {
+            int h = (hash + SEEDS[row]) * 0x9E3779B9;
+            h ^= h >>> 16;
+            return row * _width + (h & (_width - 1));
+        }
+
+        private void increment(int hash)
+        {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++)
+            {
+                int index = index(hash, row);
+                if (_table[index] < 15)
+                {
+                    _table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++_additions == _sampleSize)
+            {
+                for (int i = 0; i < _table.length; i++)
+                {
+                    _table[i] >>= 1;
+                }
+                _additions /= 2;
+            }
+        }
+
+        private int frequency(int hash)
+        {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++)
+            {
+                frequency = Math.min(frequency, _table[index(hash, row)]);
+            }
+            return frequency;
+        }
+    }
+
+    /**
+     * A snapshot of the content and metadata of a file, that does not access the file system.
+     * Every method is overridden, so that the wrapped content is never used after it is released.
+     */
+    private static class CachedHttpContent extends HttpContent.Wrapper
+    {
+        private final ByteBuffer _buffer;
+        private final Resource _resource;
+        private final HttpField _contentType;
+        private final HttpField _contentEncoding;
+        private final HttpField _contentLength;
+        private final HttpField _lastModified;
+        private final Instant _lastModifiedInstant;
+        private final HttpField _etag;
+        private final String _characterEncoding;
+        private final MimeTypes.Type _mimeType;
+        private final Set<CompressedContentFormat> _preCompressedContentFormats;
+
+        private CachedHttpContent(HttpContent content, ByteBuffer buffer)
+        {
+            super(content);
+            _buffer = buffer;
+            _resource = content.getResource();
+            _contentType = preEncode(HttpHeader.CONTENT_TYPE, content.getContentTypeValue());
+            _contentEncoding = preEncode(HttpHeader.CONTENT_ENCODING, content.getContentEncodingValue());
+            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(buffer.remaining()));
+            _lastModified = preEncode(HttpHeader.LAST_MODIFIED, content.getLastModifiedValue());
+            _lastModifiedInstant = content.getLastModifiedInstant();
+            _etag = preEncode(HttpHeader.ETAG, content.getETagValue());
+            _characterEncoding = content.getCharacterEncoding();
+            _mimeType = content.getMimeType();
+            _preCompressedContentFormats = content.getPreCompressedContentFormats();
+        }
+
+        private static HttpField preEncode(HttpHeader header, String value)
+        {
+            return value == null ? null : new PreEncodedHttpField(header, value);
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer()
+        {
+            // Each request consumes its own view of the shared buffer.
+            return _buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public HttpField getContentType()
+        {
+            return _contentType;
+        }
+
+        @Override
+        public String getContentTypeValue()
+        {
+            return _contentType == null ? null : _contentType.getValue();
+        }
+
+        @Override
+        public HttpField getContentEncoding()
+        {
+            return _contentEncoding;
+        }
+
+        @Override
+        public String getContentEncodingValue()
+        {
+            return _contentEncoding == null ? null : _contentEncoding.getValue();
+        }
+
+        @Override
+        public Resource getResource()
+        {
+            return _resource;
+        }
+
+        @Override
+        public String getCharacterEncoding()
+        {
+            return _characterEncoding;
+        }
+
+        @Override
+        public MimeTypes.Type getMimeType()
+        {
+            return _mimeType;
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public HttpField getLastModified()
+        {
+            return _lastModified;
+        }
+
+        @Override
+        public String getLastModifiedValue()
+        {
+            return _lastModified == null ? null : _lastModified.getValue();
+        }
+
+        @Override
+        public Instant getLastModifiedInstant()
+        {
+            return _lastModifiedInstant;
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            return _etag;
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            return _etag == null ? null : _etag.getValue();
+        }
+
+        @Override
+        public long getBytesOccupied()
+        {
+            return _buffer.capacity();
+        }
+
+        @Override
+        public Set<CompressedContentFormat> getPreCompressedContentFormats()
+        {
+            return _preCompressedContentFormats;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s@%x[%s]".formatted(getClass().getSimpleName(), hashCode(), _resource);
+        }
+
+        @Override
+        public void release()
+        {
+            // The buffer belongs to the cache, and is reclaimed by the GC once evicted and no longer written.
+        }
+    }
+}
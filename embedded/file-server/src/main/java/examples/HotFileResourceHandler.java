@@ -0,0 +1,85 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.content.FileMappingHttpContentFactory;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.http.content.PreCompressedHttpContentFactory;
+import org.eclipse.jetty.http.content.ResourceHttpContentFactory;
+import org.eclipse.jetty.http.content.VirtualHttpContentFactory;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+
+/**
+ * A {@link ResourceHandler} that serves its hot files from a {@link HotFileCache},
+ * in place of the default cache of {@link ResourceHandler}, which validates
+ * its entries against the file system once per second.
+ */
+public class HotFileResourceHandler extends ResourceHandler
+{
+    private long _maxCacheSize = 32 * 1024 * 1024;
+    private int _maxCachedFileSize = 256 * 1024;
+    private HotFileCache _hotFileCache;
+
+    public long getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    /**
+     * @param maxCacheSize the maximum total number of bytes of cached files
+     */
+    public void setMaxCacheSize(long maxCacheSize)
+    {
+        _maxCacheSize = maxCacheSize;
+    }
+
+    public int getMaxCachedFileSize()
+    {
+        return _maxCachedFileSize;
+    }
+
+    /**
+     * @param maxCachedFileSize the maximum size of a file to cache, larger files are always read from the file system
+     */
+    public void setMaxCachedFileSize(int maxCachedFileSize)
+    {
+        _maxCachedFileSize = maxCachedFileSize;
+    }
+
+    /**
+     * @return the cache of the started handler, or null if the handler was never started
+     */
+    public HotFileCache getHotFileCache()
+    {
+        return _hotFileCache;
+    }
+
+    @Override
+    protected HttpContent.Factory newHttpContentFactory()
+    {
+        HttpContent.Factory contentFactory = new ResourceHttpContentFactory(getBaseResource(), getMimeTypes());
+        if (isUseFileMapping())
+            contentFactory = new FileMappingHttpContentFactory(contentFactory);
+        contentFactory = new VirtualHttpContentFactory(contentFactory, getStyleSheet(), "text/css");
+        contentFactory = new PreCompressedHttpContentFactory(contentFactory, getPrecompressedFormats());
+
+        // Managed as a bean, so that it watches its files only while this handler is started.
+        HotFileCache hotFileCache = new HotFileCache(contentFactory, getMaxCacheSize(), getMaxCachedFileSize(),
+            getPrecompressedFormats().toArray(CompressedContentFormat[]::new));
+        updateBean(_hotFileCache, hotFileCache, true);
+        _hotFileCache = hotFileCache;
+        return hotFileCache;
+    }
+}
@@ -0,0 +1,312 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.http.content.ResourceHttpContentFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import static examples.StaticFileGen.KB;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HotFileCacheTest
+{
+    private Path resourcesRoot;
+    private HotFileCache cache;
+
+    @BeforeEach
+    public void setup(TestInfo testInfo)
+    {
+        resourcesRoot = MavenTestingUtils.getTargetTestingPath(testInfo);
+        FS.ensureEmpty(resourcesRoot);
+    }
+
+    @AfterEach
+    public void teardown()
+    {
+        LifeCycle.stop(cache);
+    }
+
+    private void startCache(long maxCacheSize, int maxCachedFileSize) throws Exception
+    {
+        ResourceHttpContentFactory authority = new ResourceHttpContentFactory(ResourceFactory.root().newResource(resourcesRoot), MimeTypes.DEFAULTS);
+        cache = new HotFileCache(authority, maxCacheSize, maxCachedFileSize);
+        cache.start();
+    }
+
+    private Path newFile(String name, int size) throws Exception
+    {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte)name.charAt(0));
+        return Files.write(resourcesRoot.resolve(name), bytes);
+    }
+
+    private String get(String path) throws Exception
+    {
+        HttpContent content = cache.getContent(path);
+        try
+        {
+            ByteBuffer buffer = content.getByteBuffer();
+            if (buffer == null)
+                return IO.toString(content.getResource().newInputStream(), StandardCharsets.UTF_8);
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+        finally
+        {
+            content.release();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (!condition.getAsBoolean())
+        {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testHit() throws Exception
+    {
+        startCache(64 * KB, (int)(4 * KB));
+        newFile("a.txt", 100);
+
+        // The first request watches the directory, the second caches the file.
+        assertEquals("a".repeat(100), get("/a.txt"));
+        assertEquals("a".repeat(100), get("/a.txt"));
+        assertTrue(cache.isCached("/a.txt"));
+        assertEquals(2, cache.getMisses());
+
+        HttpContent content = cache.getContent("/a.txt");
+        assertTrue(content.getByteBuffer().isDirect());
+        assertEquals(100, content.getContentLengthValue());
+        assertEquals("text/plain", content.getContentTypeValue());
+        assertEquals(1, cache.getHits());
+
+        // Every request has its own view of the cached bytes.
+        assertEquals("a".repeat(100), get("/a.txt"));
+        assertEquals(2, cache.getHits());
+        assertEquals(100, cache.getCachedSize());
+    }
+
+    @Test
+    public void testLargeFileNotCached() throws Exception
+    {
+        startCache(64 * KB, (int)(4 * KB));
+        newFile("large.bin", (int)(8 * KB));
+
+        for (int i = 0; i < 3; i++)
+        {
+            get("/large.bin");
+        }
+        assertFalse(cache.isCached("/large.bin"));
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getCachedSize());
+    }
+
+    @Test
+    public void testInvalidatedOnModify() throws Exception
+    {
+        startCache(64 * KB, (int)(4 * KB));
+        Path file = newFile("b.txt", 10);
+        get("/b.txt");
+        get("/b.txt");
+        assertTrue(cache.isCached("/b.txt"));
+
+        Files.writeString(file, "modified");
+        await(() -> !cache.isCached("/b.txt"));
+        assertEquals(1, cache.getInvalidations());
+        assertEquals("modified", get("/b.txt"));
+    }
+
+    @Test
+    public void testInvalidatedOnDelete() throws Exception
+    {
+        startCache(64 * KB, (int)(4 * KB));
+        Path file = newFile("c.txt", 10);
+        get("/c.txt");
+        get("/c.txt");
+        assertTrue(cache.isCached("/c.txt"));
+
+        Files.delete(file);
+        await(() -> !cache.isCached("/c.txt"));
+        assertNull(cache.getContent("/c.txt"));
+    }
+
+    @Test
+    public void testOnlySameNameInvalidates() throws Exception
+    {
+        startCache(64 * KB, (int)(4 * KB));
+        newFile("app.js", 10);
+        Path json = newFile("app.json", 10);
+        get("/app.js");
+        get("/app.js");
+        assertTrue(cache.isCached("/app.js"));
+
+        // The watcher reports the change of app.json, that must not invalidate app.js.
+        Files.writeString(json, "modified");
+        Thread.sleep(1000);
+        assertTrue(cache.isCached("/app.js"));
+        assertEquals(0, cache.getInvalidations());
+    }
+
+    @Test
+    public void testPrecompressedVariantInvalidates() throws Exception
+    {
+        ResourceHttpContentFactory authority = new ResourceHttpContentFactory(ResourceFactory.root().newResource(resourcesRoot), MimeTypes.DEFAULTS);
+        cache = new HotFileCache(authority, 64 * KB, (int)(4 * KB), CompressedContentFormat.GZIP);
+        cache.start();
+        newFile("e.txt", 10);
+        get("/e.txt");
+        get("/e.txt");
+        assertTrue(cache.isCached("/e.txt"));
+
+        newFile("e.txt.gz", 10);
+        await(() -> !cache.isCached("/e.txt"));
+    }
+
+    @Test
+    public void testWatcherIsShared() throws Exception
+    {
+        startCache(64 * KB, (int)(4 * KB));
+        HotFileCache other = new HotFileCache(cache, 64 * KB, (int)(4 * KB));
+        other.start();
+        try
+        {
+            assertEquals(1, countWatcherThreads());
+        }
+        finally
+        {
+            other.stop();
+        }
+        assertEquals(1, countWatcherThreads());
+        cache.stop();
+        assertEquals(0, countWatcherThreads());
+    }
+
+    private static long countWatcherThreads()
+    {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().equals("HotFileCache-watcher"))
+            .count();
+    }
+
+    @Test
+    public void testHotFileSurvivesScan() throws Exception
+    {
+        int fileSize = (int)KB;
+        newFile("hot.txt", fileSize);
+        // Created before the directory is watched, as any change seen by the watcher prevents caching.
+        for (int i = 0; i < 100; i++)
+        {
+            newFile("cold-" + i + ".txt", fileSize);
+        }
+        startCache(16 * KB, fileSize);
+        for (int i = 0; i < 20; i++)
+        {
+            get("/hot.txt");
+        }
+        assertTrue(cache.isCached("/hot.txt"));
+
+        // A scan of files requested only once, more than the cache can hold.
+        for (int i = 0; i < 100; i++)
+        {
+            get("/cold-" + i + ".txt");
+            assertThat(cache.getCachedSize(), lessThanOrEqualTo(16 * KB));
+        }
+
+        assertTrue(cache.isCached("/hot.txt"));
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    public void testRejectedCandidateEvictsNothing() throws Exception
+    {
+        newFile("cold.txt", 1000);
+        newFile("hot.txt", 2500);
+        newFile("new.txt", 2000);
+        startCache(4000, 4000);
+        get("/cold.txt");
+        get("/cold.txt");
+        for (int i = 0; i < 5; i++)
+        {
+            get("/hot.txt");
+        }
+        assertTrue(cache.isCached("/cold.txt"));
+        assertTrue(cache.isCached("/hot.txt"));
+
+        // Making room for the new file would evict both the cold and the hot file,
+        // and as the hot file is requested more often, nothing is evicted.
+        get("/new.txt");
+        get("/new.txt");
+        assertFalse(cache.isCached("/new.txt"));
+        assertTrue(cache.isCached("/cold.txt"));
+        assertTrue(cache.isCached("/hot.txt"));
+        assertEquals(3500, cache.getCachedSize());
+    }
+
+    @Test
+    public void testServedByHotFileServer() throws Exception
+    {
+        newFile("d.txt", 10);
+        Server server = HotFileServer.newServer(0, resourcesRoot);
+        server.start();
+        try
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                HttpURLConnection http = (HttpURLConnection)server.getURI().resolve("/d.txt").toURL().openConnection();
+                assertEquals(HttpURLConnection.HTTP_OK, http.getResponseCode());
+                assertEquals("10", http.getHeaderField("Content-Length"));
+                assertEquals("d".repeat(10), IO.toString(http.getInputStream()));
+            }
+
+            HotFileResourceHandler handler = (HotFileResourceHandler)server.getHandler();
+            cache = handler.getHotFileCache();
+            assertTrue(cache.isCached("/d.txt"));
+            assertEquals(1, cache.getHits());
+        }
+        finally
+        {
+            LifeCycle.stop(server);
+        }
+    }
+}
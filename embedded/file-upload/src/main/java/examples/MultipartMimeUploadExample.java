@@ -13,14 +13,18 @@
 
 package examples;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
@@ -128,6 +132,7 @@ public class MultipartMimeUploadExample
         if (enableSSL && forceSSL)
             handlers.addHandler(new SecuredRedirectHandler());
         handlers.addHandler(newUploadHandler(outputDir));
+        handlers.addHandler(newStreamingUploadHandler(outputDir));
         handlers.addHandler(newServletUploadHandler(multipartConfig, outputDir));
         handlers.addHandler(newResourceHandler(resourceFactory));
         handlers.addHandler(new DefaultHandler());
@@ -153,6 +158,14 @@ public class MultipartMimeUploadExample
         return new UploadHandler("/handler/upload", outputDir);
     }
 
+    private static Handler newStreamingUploadHandler(Path outputDir) throws IOException
+    {
+        StreamingUploadHandler handler = new StreamingUploadHandler("/handler/streaming-upload", outputDir);
+        handler.setMaxFileSize(10 * 1024 * 1024); // 10 MB
+        handler.setMaxLength(10 * 1024 * 1024); // 10 MB
+        return handler;
+    }
+
     private static ServletContextHandler newServletUploadHandler(MultipartConfigElement multipartConfig, Path outputDir) throws IOException
     {
         ServletContextHandler context = new ServletContextHandler();
@@ -316,4 +329,182 @@ public class MultipartMimeUploadExample
             return body.toString();
         }
     }
+
+    /**
+     * A non-blocking version of {@link UploadHandler}.
+     * <p>
+     * The multipart parser is configured to stream the content of each file part
+     * to a temporary file in the output directory as it arrives, so that the
+     * final save is a rename of that file rather than a second copy.
+     * No thread is held while waiting for the form content to arrive, and the
+     * {@link Callback} is only completed once every saved file has been forced
+     * to the storage device.
+     * </p>
+     * <p>
+     * Uploads larger than {@link #setMaxFileSize(long) the max file size} or
+     * {@link #setMaxLength(long) the max length} are rejected with a {@code 413} response,
+     * and the parser deletes the temporary files of the rejected upload.
+     * </p>
+     */
+    public static class StreamingUploadHandler extends Handler.Abstract
+    {
+        private final String contextPath;
+        private final Path outputDir;
+        private long maxFileSize = -1;
+        private long maxLength = -1;
+
+        public StreamingUploadHandler(String contextPath, Path outputDir) throws IOException
+        {
+            super();
+            this.contextPath = contextPath;
+            this.outputDir = outputDir.resolve("streaming");
+            ensureDirExists(this.outputDir);
+        }
+
+        public Path getOutputDir()
+        {
+            return outputDir;
+        }
+
+        /**
+         * @param maxFileSize the maximum size in bytes of a part, or -1 for unlimited
+         */
+        public void setMaxFileSize(long maxFileSize)
+        {
+            this.maxFileSize = maxFileSize;
+        }
+
+        /**
+         * @param maxLength the maximum length in bytes of the whole multipart content, or -1 for unlimited
+         */
+        public void setMaxLength(long maxLength)
+        {
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public boolean handle(Request request, Response response, Callback callback) throws Exception
+        {
+            if (!request.getHttpURI().getPath().startsWith(contextPath))
+            {
+                // not meant for us, skip it.
+                return false;
+            }
+
+            if (!request.getMethod().equalsIgnoreCase("POST"))
+            {
+                // Not a POST method
+                Response.writeError(request, response, callback, HttpStatus.METHOD_NOT_ALLOWED_405);
+                return true;
+            }
+
+            String contentType = request.getHeaders().get(HttpHeader.CONTENT_TYPE);
+            if (!HttpField.getValueParameters(contentType, null).equals("multipart/form-data"))
+            {
+                // Not a content-type supporting multi-part
+                Response.writeError(request, response, callback, HttpStatus.NOT_ACCEPTABLE_406);
+                return true;
+            }
+
+            String boundary = MultiPart.extractBoundary(contentType);
+            MultiPartFormData.Parser formData = new MultiPartFormData.Parser(boundary);
+            // Temporary files are created in the output directory itself,
+            // so that moving them to their final name is a simple rename.
+            formData.setFilesDirectory(outputDir);
+            // Only hold small parts in memory, larger parts are written to disk as they arrive.
+            formData.setMaxMemoryFileSize(8 * 1024);
+            formData.setMaxFileSize(maxFileSize);
+            formData.setMaxLength(maxLength);
+
+            // Does not block, the parts are delivered once all the content has been parsed.
+            formData.parse(request).whenComplete((parts, failure) ->
+            {
+                if (failure != null)
+                {
+                    // The parser fails with IllegalStateException when a limit is exceeded,
+                    // with EOFException when the content ends before the last boundary,
+                    // and with BadMessageException when the content is malformed.
+                    if (failure instanceof IllegalStateException)
+                        Response.writeError(request, response, callback, HttpStatus.PAYLOAD_TOO_LARGE_413, "Upload too large");
+                    else if (failure instanceof EOFException)
+                        Response.writeError(request, response, callback, HttpStatus.BAD_REQUEST_400, "Truncated upload");
+                    else
+                        Response.writeError(request, response, callback, failure);
+                    return;
+                }
+
+                try (parts)
+                {
+                    String responseBody = process(parts);
+                    response.setStatus(HttpStatus.OK_200);
+                    response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain;charset=utf-8");
+                    response.write(true, BufferUtil.toBuffer(responseBody, StandardCharsets.UTF_8), callback);
+                }
+                catch (Throwable x)
+                {
+                    Response.writeError(request, response, callback, x);
+                }
+            });
+            return true;
+        }
+
+        private String process(MultiPartFormData.Parts parts) throws IOException
+        {
+            StringWriter body = new StringWriter();
+            PrintWriter out = new PrintWriter(body);
+
+            for (MultiPart.Part part : parts)
+            {
+                out.printf("Got Part[%s].length=%s%n", part.getName(), part.getLength());
+                out.printf("Got Part[%s].fileName=%s%n", part.getName(), part.getFileName());
+                String filename = part.getFileName();
+                if (StringUtil.isNotBlank(filename))
+                {
+                    // ensure we don't have "/" and ".." in the raw form.
+                    filename = URLEncoder.encode(filename, StandardCharsets.UTF_8);
+
+                    Path outputFile = outputDir.resolve(filename);
+                    save(part, outputFile);
+                    out.printf("Saved Part[%s] to %s%n", part.getName(), outputFile);
+                }
+            }
+
+            // Make the new directory entries durable too.
+            force(outputDir, StandardOpenOption.READ);
+
+            return body.toString();
+        }
+
+        private void save(MultiPart.Part part, Path outputFile) throws IOException
+        {
+            if (part instanceof MultiPart.PathPart)
+            {
+                // The content is already on disk, in the same directory, just rename it.
+                part.writeTo(outputFile);
+            }
+            else
+            {
+                // Small parts are kept in memory by the parser, write them out in one go.
+                try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+                {
+                    channel.transferFrom(Channels.newChannel(Content.Source.asInputStream(part.getContentSource())), 0, Long.MAX_VALUE);
+                }
+            }
+            force(outputFile, StandardOpenOption.WRITE);
+        }
+
+        private static void force(Path path, OpenOption... options) throws IOException
+        {
+            try (FileChannel channel = FileChannel.open(path, options))
+            {
+                channel.force(true);
+            }
+            catch (IOException x)
+            {
+                // Some operating systems (eg: Windows) do not allow directories to be opened.
+                if (!Files.isDirectory(path))
+                    throw x;
+            }
+        }
+    }
 }
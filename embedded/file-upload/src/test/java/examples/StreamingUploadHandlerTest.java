@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.client.BytesRequestContent;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.MultiPartRequestContent;
+import org.eclipse.jetty.client.StringRequestContent;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.MultiPart;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class StreamingUploadHandlerTest
+{
+    private Server server;
+    private HttpClient client;
+    private MultipartMimeUploadExample.StreamingUploadHandler handler;
+    private String uri;
+
+    @BeforeEach
+    public void startAll(@TempDir Path outputDir) throws Exception
+    {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        handler = new MultipartMimeUploadExample.StreamingUploadHandler("/upload", outputDir);
+        handler.setMaxFileSize(64 * 1024);
+        server.setHandler(handler);
+        server.start();
+        uri = "http://localhost:" + connector.getLocalPort() + "/upload";
+        client = new HttpClient();
+        client.start();
+    }
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(client);
+        LifeCycle.stop(server);
+    }
+
+    private static byte[] newBytes(int size)
+    {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private ContentResponse upload(String fileName, byte[] bytes) throws Exception
+    {
+        MultiPartRequestContent content = new MultiPartRequestContent();
+        content.addPart(new MultiPart.ByteBufferPart("file", fileName, null, ByteBuffer.wrap(bytes)));
+        content.close();
+        return client.newRequest(uri)
+            .method(HttpMethod.POST)
+            .body(content)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    private List<Path> listOutputDir() throws Exception
+    {
+        try (Stream<Path> files = Files.list(handler.getOutputDir()))
+        {
+            return files.toList();
+        }
+    }
+
+    @Test
+    public void testUploadIsSaved() throws Exception
+    {
+        // One part is small enough to be kept in memory, the other is streamed to a file.
+        byte[] small = newBytes(1024);
+        byte[] large = newBytes(48 * 1024);
+
+        ContentResponse response = upload("small.bin", small);
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertThat(response.getContentAsString(), containsString("Saved Part[file]"));
+        response = upload("large.bin", large);
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+
+        assertArrayEquals(small, Files.readAllBytes(handler.getOutputDir().resolve("small.bin")));
+        assertArrayEquals(large, Files.readAllBytes(handler.getOutputDir().resolve("large.bin")));
+        // The temporary file of the large part was renamed, not copied.
+        assertThat(listOutputDir().size(), is(2));
+    }
+
+    @Test
+    public void testTooLargeUploadIsRejected() throws Exception
+    {
+        ContentResponse response = upload("huge.bin", newBytes(128 * 1024));
+        assertThat(response.getStatus(), is(HttpStatus.PAYLOAD_TOO_LARGE_413));
+        // Nothing is saved, and the temporary file is deleted.
+        assertThat(listOutputDir(), is(empty()));
+    }
+
+    @Test
+    public void testMalformedUploadIsRejected() throws Exception
+    {
+        ContentResponse response = client.newRequest(uri)
+            .method(HttpMethod.POST)
+            .body(new BytesRequestContent("multipart/form-data; boundary=XYZ", "not a multipart body".getBytes()))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertThat(response.getStatus(), is(HttpStatus.BAD_REQUEST_400));
+        assertThat(listOutputDir(), is(empty()));
+    }
+
+    @Test
+    public void testNotMultipartIsRejected() throws Exception
+    {
+        ContentResponse response = client.newRequest(uri)
+            .method(HttpMethod.POST)
+            .body(new StringRequestContent("text/plain", "hello"))
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertThat(response.getStatus(), is(HttpStatus.NOT_ACCEPTABLE_406));
+
+        response = client.newRequest(uri)
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertThat(response.getStatus(), is(HttpStatus.METHOD_NOT_ALLOWED_405));
+    }
+}
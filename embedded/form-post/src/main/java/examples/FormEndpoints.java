@@ -14,20 +14,29 @@
 package examples;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CoderResult;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.http.BadMessageException;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.MultiPart;
+import org.eclipse.jetty.http.MultiPartConfig;
 import org.eclipse.jetty.http.MultiPartFormData;
 import org.eclipse.jetty.http.pathmap.PathSpec;
 import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.server.FormFields;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
@@ -38,6 +47,7 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.DefaultHandler;
 import org.eclipse.jetty.server.handler.PathMappingsHandler;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.Fields;
 import org.eclipse.jetty.util.StringUtil;
@@ -104,11 +114,19 @@ public class FormEndpoints
 
     /**
      * Example of how to process an HTTP form send with application/x-www-form-urlencoded
+     * <p>
+     * Only the {@code Member} field is needed, so rather than decoding the whole form
+     * into a {@link Fields} instance (see {@link FormFields}), the content is scanned
+     * with a {@link SelectiveFormFields} that only decodes the value of that field.
+     * The reply is written from a pooled buffer.
+     * </p>
      */
     public static class UrlEncodedFormHandler extends Handler.Abstract
     {
-        private static final int MAX_KEYS = 100;
         private static final int MAX_CONTENT_SIZE = 10000;
+        private static final byte[] MEMBER = "Member".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] REPLY_PREFIX = "Got (UrlEncodedFormHandler) Member [".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] REPLY_SUFFIX = "]\n".getBytes(StandardCharsets.UTF_8);
 
         @Override
         public boolean handle(Request request, Response response, Callback callback) throws Exception
@@ -121,33 +139,112 @@ public class FormEndpoints
                 return true;
             }
 
-            Fields form = FormFields.from(request, StandardCharsets.UTF_8, MAX_KEYS, MAX_CONTENT_SIZE).get();
+            SelectiveFormFields.from(request, StandardCharsets.UTF_8, MAX_CONTENT_SIZE, MEMBER).whenComplete((values, failure) ->
+            {
+                try
+                {
+                    if (failure != null)
+                    {
+                        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                        // The form too large is reported with a 413 by SelectiveFormFields.
+                        int status = cause instanceof BadMessageException bad ? bad.getCode() : HttpStatus.BAD_REQUEST_400;
+                        Response.writeError(request, response, callback, status, "Form not valid");
+                        return;
+                    }
+                    reply(request, response, callback, values[0]);
+                }
+                catch (Throwable x)
+                {
+                    // Otherwise the callback would never complete, and the request would hang until the idle timeout.
+                    callback.failed(x);
+                }
+            });
+            return true;
+        }
 
-            String member = form.getValue("Member");
+        private void reply(Request request, Response response, Callback callback, String member) throws CharacterCodingException
+        {
             if (member == null)
             {
                 Response.writeError(request, response, callback, HttpStatus.NOT_ACCEPTABLE_406, "Form not valid");
-                return true;
+                return;
             }
 
             response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain;charset=utf-8");
 
-            String msg = String.format("Got (UrlEncodedFormHandler) Member [%s]%n", member);
-            Content.Sink.write(response, true, msg, callback);
-            return true;
+            // A UTF-8 character is at most 3 bytes per UTF-16 char.
+            int size = REPLY_PREFIX.length + member.length() * 3 + REPLY_SUFFIX.length;
+            RetainableByteBuffer reply = request.getComponents().getByteBufferPool().acquire(size, false);
+            try
+            {
+                ByteBuffer byteBuffer = reply.getByteBuffer();
+                int pos = BufferUtil.flipToFill(byteBuffer);
+                byteBuffer.put(REPLY_PREFIX);
+                CoderResult result = StandardCharsets.UTF_8.newEncoder().encode(CharBuffer.wrap(member), byteBuffer, true);
+                if (result.isError())
+                    result.throwException();
+                byteBuffer.put(REPLY_SUFFIX);
+                BufferUtil.flipToFlush(byteBuffer, pos);
+            }
+            catch (Throwable x)
+            {
+                reply.release();
+                throw x;
+            }
+            response.write(true, reply.getByteBuffer(), Callback.from(callback, reply::release));
         }
     }
 
     /**
      * Example of how to process an HTTP form sent with multipart/form-data
+     * <p>
+     * The parsing of the form is bounded by a {@link MultiPartConfig}:
+     * parts larger than the {@code maxMemoryPartSize} are spilled to files
+     * in the work directory, while the {@code maxPartSize} and {@code maxSize}
+     * budgets reject forms that are too large with a {@code 413} response.
+     * </p>
      */
     public static class MultipartFormHandler extends Handler.Abstract
     {
-        private Path workDir;
+        private static final int MAX_PARTS = 100;
+        private static final long MAX_CONTENT_SIZE = 1024 * 1024; // 1 MB
+        private static final long MAX_PART_SIZE = 64 * 1024; // 64 KB
+        private static final long MAX_MEMORY_PART_SIZE = 8 * 1024; // 8 KB
+
+        private final MultiPartConfig config;
+        private final LongAdder totalBytesInMemory = new LongAdder();
+        private final LongAdder totalBytesOnDisk = new LongAdder();
 
         public MultipartFormHandler(Path workDir)
         {
-            this.workDir = workDir;
+            this(new MultiPartConfig.Builder()
+                .location(workDir)
+                .maxParts(MAX_PARTS)
+                .maxSize(MAX_CONTENT_SIZE)
+                .maxPartSize(MAX_PART_SIZE)
+                .maxMemoryPartSize(MAX_MEMORY_PART_SIZE)
+                .build());
+        }
+
+        public MultipartFormHandler(MultiPartConfig config)
+        {
+            this.config = config;
+        }
+
+        /**
+         * @return the total number of bytes of the parts that were held in memory
+         */
+        public long getTotalBytesInMemory()
+        {
+            return totalBytesInMemory.sum();
+        }
+
+        /**
+         * @return the total number of bytes of the parts that were spilled to files in the work directory
+         */
+        public long getTotalBytesOnDisk()
+        {
+            return totalBytesOnDisk.sum();
         }
 
         @Override
@@ -161,44 +258,76 @@ public class FormEndpoints
                 return true;
             }
 
-            Map<String, String> form = extractMultiPartForm(request, contentType);
+            String boundary = MultiPart.extractBoundary(contentType);
+            MultiPartFormData.Parser formData = new MultiPartFormData.Parser(boundary);
+            formData.configure(config);
 
-            String member = form.get("Member");
-            if (member == null)
+            // Does not block, the parts are delivered once all the content has been parsed.
+            formData.parse(request).whenComplete((parts, failure) ->
             {
-                Response.writeError(request, response, callback, HttpStatus.NOT_ACCEPTABLE_406, "Form not valid");
-                return true;
-            }
-
-            response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain;charset=utf-8");
+                if (failure != null)
+                {
+                    onFailure(request, response, callback, failure);
+                    return;
+                }
 
-            String msg = String.format("Got (UrlEncodedFormHandler) Member [%s]%n", member);
-            Content.Sink.write(response, true, msg, callback);
+                try (parts)
+                {
+                    String member = extractMember(parts);
+                    if (member == null)
+                    {
+                        Response.writeError(request, response, callback, HttpStatus.NOT_ACCEPTABLE_406, "Form not valid");
+                        return;
+                    }
+
+                    response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain;charset=utf-8");
+
+                    String msg = String.format("Got (UrlEncodedFormHandler) Member [%s]%n", member);
+                    Content.Sink.write(response, true, msg, callback);
+                }
+                catch (Throwable x)
+                {
+                    onFailure(request, response, callback, x);
+                }
+            });
             return true;
         }
 
-        private Map<String, String> extractMultiPartForm(Request request, String contentType)
+        private String extractMember(MultiPartFormData.Parts parts)
         {
-            String boundary = MultiPart.extractBoundary(contentType);
-            MultiPartFormData.Parser formData = new MultiPartFormData.Parser(boundary);
-            formData.setFilesDirectory(workDir);
-
             // we are assuming a simple form with no binary data (like a file upload)
             Map<String, String> form = new HashMap<>();
-
-            // May block waiting for multipart form data.
-            try (MultiPartFormData.Parts parts = formData.parse(request).join())
+            parts.forEach(part ->
             {
-                parts.forEach(part ->
-                {
-                    if (StringUtil.isNotBlank(part.getFileName()))
-                        return; // skip files
+                if (part instanceof MultiPart.PathPart)
+                    totalBytesOnDisk.add(part.getLength());
+                else
+                    totalBytesInMemory.add(part.getLength());
+
+                if (StringUtil.isNotBlank(part.getFileName()))
+                    return; // skip files
+
+                String value = part.getContentAsString(StandardCharsets.UTF_8);
+                form.put(part.getName(), value);
+            });
+            return form.get("Member");
+        }
 
-                    String value = part.getContentAsString(StandardCharsets.UTF_8);
-                    form.put(part.getName(), value);
-                });
-            }
-            return form;
+        /**
+         * The parser fails with an {@link IllegalStateException} when one of the limits
+         * of the {@link MultiPartConfig} is exceeded, and with a {@link BadMessageException}
+         * when the form is malformed.
+         */
+        private static void onFailure(Request request, Response response, Callback callback, Throwable failure)
+        {
+            if (failure instanceof CompletionException)
+                failure = failure.getCause();
+            if (failure instanceof IllegalStateException)
+                Response.writeError(request, response, callback, HttpStatus.PAYLOAD_TOO_LARGE_413, "Form too large");
+            else if (failure instanceof BadMessageException bad)
+                Response.writeError(request, response, callback, bad.getCode(), "Form not valid");
+            else
+                Response.writeError(request, response, callback, HttpStatus.BAD_REQUEST_400, "Form not valid");
         }
     }
 }
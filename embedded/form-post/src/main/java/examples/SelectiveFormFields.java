@@ -0,0 +1,207 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jetty.http.BadMessageException;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.content.ContentSourceCompletableFuture;
+import org.eclipse.jetty.util.CharsetStringBuilder;
+
+import static org.eclipse.jetty.util.UrlEncoded.decodeHexByte;
+
+/**
+ * A selective {@code application/x-www-form-urlencoded} decoder.
+ * <p>
+ * Unlike {@link org.eclipse.jetty.server.FormFields}, which decodes every name and value
+ * into a {@link org.eclipse.jetty.util.Fields} instance, this decoder scans the raw content
+ * for a known set of names and only decodes the values of those names into {@link String}s.
+ * All other values are skipped without being decoded.
+ * </p>
+ * <p>
+ * The result is an array of values in the same order as the requested names,
+ * with {@code null} for names that are not present in the form.
+ * As with {@link org.eclipse.jetty.util.Fields#getValue(String)}, the first value wins
+ * when a name is present multiple times.
+ * Once all the requested names have been found, the remaining content is not scanned.
+ * </p>
+ */
+public class SelectiveFormFields extends ContentSourceCompletableFuture<String[]>
+{
+    /**
+     * Selectively decode form fields from a {@link Content.Source}.
+     *
+     * @param source the source of the {@code application/x-www-form-urlencoded} content
+     * @param charset the charset of the form content
+     * @param maxLength the maximum length of the form content to scan, or -1 for no limit
+     * @param names the names of the fields to decode
+     * @return a {@link CompletableFuture} that will provide the values of the requested fields
+     */
+    public static CompletableFuture<String[]> from(Content.Source source, Charset charset, int maxLength, byte[]... names)
+    {
+        SelectiveFormFields formFields = new SelectiveFormFields(source, charset, maxLength, names);
+        formFields.parse();
+        return formFields;
+    }
+
+    private final byte[][] names;
+    private final String[] values;
+    private final CharsetStringBuilder builder;
+    private final byte[] name;
+    private final int maxLength;
+    private int length;
+    private int nameLength;
+    private int found;
+    private boolean inValue;
+    private int index = -1;
+    private int percent;
+    private byte percentCode;
+
+    /**
+     * @param source the source of the {@code application/x-www-form-urlencoded} content
+     * @param charset the charset of the form content
+     * @param maxLength the maximum length of the form content to scan, or -1 for no limit
+     * @param names the names of the fields to decode, as bytes in the charset of the form
+     */
+    public SelectiveFormFields(Content.Source source, Charset charset, int maxLength, byte[]... names)
+    {
+        super(source);
+        this.names = names;
+        this.values = new String[names.length];
+        this.builder = CharsetStringBuilder.forCharset(charset);
+        this.maxLength = maxLength;
+        int maxNameLength = 0;
+        for (byte[] name : names)
+        {
+            maxNameLength = Math.max(maxNameLength, name.length);
+        }
+        // One more byte than the longest name, so that longer names never match.
+        this.name = new byte[maxNameLength + 1];
+    }
+
+    @Override
+    protected String[] parse(Content.Chunk chunk) throws CharacterCodingException
+    {
+        ByteBuffer buffer = chunk.getByteBuffer();
+
+        length += buffer.remaining();
+        if (maxLength >= 0 && length > maxLength)
+            throw new BadMessageException(HttpStatus.PAYLOAD_TOO_LARGE_413, "form too large > " + maxLength);
+
+        while (buffer.hasRemaining())
+        {
+            byte b = buffer.get();
+
+            if (inValue && index < 0)
+            {
+                // Not a requested field, skip the value without decoding it.
+                if (b == '&')
+                    onFieldEnd();
+                continue;
+            }
+
+            switch (percent)
+            {
+                case 1 ->
+                {
+                    percentCode = b;
+                    percent++;
+                    continue;
+                }
+                case 2 ->
+                {
+                    percent = 0;
+                    onByte(decodeHexByte((char)percentCode, (char)b));
+                    continue;
+                }
+            }
+
+            switch (b)
+            {
+                case '&' ->
+                {
+                    if (!inValue)
+                        onNameEnd();
+                    onFieldEnd();
+                    if (found == names.length)
+                        return values;
+                }
+                case '=' ->
+                {
+                    if (inValue)
+                        onByte(b);
+                    else
+                        onNameEnd();
+                }
+                case '+' -> onByte((byte)' ');
+                case '%' -> percent++;
+                default -> onByte(b);
+            }
+        }
+
+        if (!chunk.isLast())
+            return null;
+
+        if (percent > 0)
+            throw new BadMessageException("invalid percent encoding");
+        if (!inValue)
+            onNameEnd();
+        onFieldEnd();
+        return values;
+    }
+
+    private void onByte(byte b)
+    {
+        if (inValue)
+        {
+            builder.append(b);
+        }
+        else if (nameLength < name.length)
+        {
+            name[nameLength++] = b;
+        }
+    }
+
+    private void onNameEnd()
+    {
+        inValue = true;
+        index = -1;
+        for (int i = 0; i < names.length; i++)
+        {
+            if (values[i] == null && Arrays.equals(name, 0, nameLength, names[i], 0, names[i].length))
+            {
+                index = i;
+                break;
+            }
+        }
+    }
+
+    private void onFieldEnd() throws CharacterCodingException
+    {
+        if (index >= 0)
+        {
+            values[index] = builder.build();
+            found++;
+        }
+        inValue = false;
+        index = -1;
+        nameLength = 0;
+    }
+}
@@ -23,6 +23,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -125,6 +126,7 @@ public class FormEndpointsTest
             HttpResponse<String> response = client.send(request,
                 HttpResponse.BodyHandlers.ofString(UTF_8));
             assertThat(response.statusCode(), is(200));
+            assertThat(response.body(), is("Got (UrlEncodedFormHandler) Member [Álvar Núñez Cabeza de Vaca]\n"));
         }
         catch (IOException | InterruptedException e)
         {
@@ -132,6 +134,81 @@ public class FormEndpointsTest
         }
     }
 
+    @Test
+    public void testAsUrlEncodedManyFields()
+    {
+        HttpClient client = HttpClient.newBuilder().build();
+        URI destURI = server.getURI().resolve("/form/urlencoded");
+
+        Map<String, String> form = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++)
+        {
+            form.put("Field" + i, "Value %d & more=" + i);
+        }
+        form.put("MemberOf", "Expedition of Pánfilo de Narváez");
+        form.put("Member", "Álvar Núñez Cabeza de Vaca");
+        form.put("Ship", "La Florida");
+
+        try
+        {
+            String urlEncoded = form.entrySet()
+                .stream()
+                .map(e -> URLEncoder.encode(e.getKey(), UTF_8) + "=" + URLEncoder.encode(e.getValue(), UTF_8))
+                .collect(Collectors.joining("&"));
+
+            HttpRequest request = HttpRequest
+                .newBuilder(destURI)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(urlEncoded, UTF_8))
+                .build();
+
+            HttpResponse<String> response = client.send(request,
+                HttpResponse.BodyHandlers.ofString(UTF_8));
+            assertThat(response.statusCode(), is(200));
+            assertThat(response.body(), is("Got (UrlEncodedFormHandler) Member [Álvar Núñez Cabeza de Vaca]\n"));
+        }
+        catch (IOException | InterruptedException e)
+        {
+            Assertions.fail("Unable to submitFormUrlEncoded(" + destURI + ")", e);
+        }
+    }
+
+    @Test
+    public void testAsUrlEncodedTooLarge() throws Exception
+    {
+        HttpClient client = HttpClient.newBuilder().build();
+        URI destURI = server.getURI().resolve("/form/urlencoded");
+
+        // The Member field comes after more than the 10000 bytes allowed.
+        String urlEncoded = "Notes=" + "x".repeat(20000) + "&Member=Estevanico";
+        HttpRequest request = HttpRequest
+            .newBuilder(destURI)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(urlEncoded, UTF_8))
+            .build();
+
+        HttpResponse<String> response = client.send(request,
+            HttpResponse.BodyHandlers.ofString(UTF_8));
+        assertThat(response.statusCode(), is(413));
+    }
+
+    @Test
+    public void testAsUrlEncodedInvalid() throws Exception
+    {
+        HttpClient client = HttpClient.newBuilder().build();
+        URI destURI = server.getURI().resolve("/form/urlencoded");
+
+        HttpRequest request = HttpRequest
+            .newBuilder(destURI)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString("Member=Estevanico%2", UTF_8))
+            .build();
+
+        HttpResponse<String> response = client.send(request,
+            HttpResponse.BodyHandlers.ofString(UTF_8));
+        assertThat(response.statusCode(), is(400));
+    }
+
     @Test
     public void testAsMultiPart()
     {
@@ -174,6 +251,69 @@ public class FormEndpointsTest
         }
     }
 
+    @Test
+    public void testAsMultiPartTooLarge()
+    {
+        HttpClient client = HttpClient.newBuilder().build();
+        URI destURI = server.getURI().resolve("/form/multipart");
+
+        try
+        {
+            // Build multipart form with a part larger than the allowed maxPartSize
+            MultipartEntityBuilder multipartBuilder = MultipartEntityBuilder.create();
+            multipartBuilder.addPart("Member", new StringBody("Estevanico", ContentType.TEXT_PLAIN));
+            multipartBuilder.addPart("Notes", new StringBody("x".repeat(100 * 1024), ContentType.TEXT_PLAIN));
+
+            HttpEntity multipartForm = multipartBuilder.build();
+
+            byte[] multipartFormBytes = toByteArray(multipartForm);
+
+            // Send Request
+            HttpRequest request = HttpRequest
+                .newBuilder(destURI)
+                .header("Content-Type", multipartForm.getContentType().getValue())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipartFormBytes))
+                .build();
+
+            HttpResponse<String> response = client.send(request,
+                HttpResponse.BodyHandlers.ofString(UTF_8));
+            assertThat(response.statusCode(), is(413));
+        }
+        catch (IOException | InterruptedException e)
+        {
+            Assertions.fail("Unable to submitFormMultipart(" + destURI + ")", e);
+        }
+    }
+
+    @Test
+    public void testAsMultiPartSpilledToDisk() throws Exception
+    {
+        HttpClient client = HttpClient.newBuilder().build();
+        URI destURI = server.getURI().resolve("/form/multipart");
+
+        // One part small enough to be held in memory, and one larger than maxMemoryPartSize.
+        String member = "Andrés Dorantes de Carranza";
+        String notes = "x".repeat(20 * 1024);
+        MultipartEntityBuilder multipartBuilder = MultipartEntityBuilder.create();
+        multipartBuilder.addPart("Member", new StringBody(member, ContentType.create("text/plain", StandardCharsets.UTF_8)));
+        multipartBuilder.addPart("Notes", new StringBody(notes, ContentType.TEXT_PLAIN));
+        HttpEntity multipartForm = multipartBuilder.build();
+
+        HttpRequest request = HttpRequest
+            .newBuilder(destURI)
+            .header("Content-Type", multipartForm.getContentType().getValue())
+            .POST(HttpRequest.BodyPublishers.ofByteArray(toByteArray(multipartForm)))
+            .build();
+
+        HttpResponse<String> response = client.send(request,
+            HttpResponse.BodyHandlers.ofString(UTF_8));
+        assertThat(response.statusCode(), is(200));
+
+        FormEndpoints.MultipartFormHandler handler = server.getDescendant(FormEndpoints.MultipartFormHandler.class);
+        assertThat(handler.getTotalBytesInMemory(), is((long)member.getBytes(UTF_8).length));
+        assertThat(handler.getTotalBytesOnDisk(), is((long)notes.length()));
+    }
+
     private byte[] toByteArray(HttpEntity multipartForm) throws IOException
     {
         try (ByteArrayOutputStream out = new ByteArrayOutputStream())
@@ -46,6 +46,11 @@ public class PathMappingServer
     }
 
     public static Server newServer(int port) throws IOException
+    {
+        return newServer(port, Path.of("extras"));
+    }
+
+    public static Server newServer(int port, Path extrasDir) throws IOException
     {
         Server server = new Server(port);
 
@@ -62,7 +67,7 @@ public class PathMappingServer
         rootResourceHandler.setDirAllowed(false);
         rootResourceHandler.setWelcomeFiles("index.html");
 
-        Path extrasDir = Path.of("extras").toAbsolutePath();
+        extrasDir = extrasDir.toAbsolutePath();
         if (!Files.isDirectory(extrasDir))
             throw new FileNotFoundException("Unable to find /extras/ directory on disk: " + extrasDir);
         if (!Files.isReadable(extrasDir))
@@ -116,7 +121,7 @@ public class PathMappingServer
         return server;
     }
 
-    private static Resource findMetaInfResources(ResourceFactory resourceFactory, ClassLoader classLoader) throws IOException
+    static Resource findMetaInfResources(ResourceFactory resourceFactory, ClassLoader classLoader) throws IOException
     {
         List<URL> hits = Collections.list(classLoader.getResources("META-INF/resources"));
         List<Resource> resources = new ArrayList<>();
@@ -133,7 +138,7 @@ public class PathMappingServer
         return ResourceFactory.combine(resources);
     }
 
-    private static class StripContextPath extends PathNameWrapper
+    public static class StripContextPath extends PathNameWrapper
     {
         public StripContextPath(String contextPath, Handler handler)
         {
@@ -146,7 +151,7 @@ public class PathMappingServer
         }
     }
 
-    private static class PathNameWrapper extends Handler.Wrapper
+    public static class PathNameWrapper extends Handler.Wrapper
     {
         private final Function<String, String> nameFunction;
 
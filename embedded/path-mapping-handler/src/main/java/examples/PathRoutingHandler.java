@@ -0,0 +1,261 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Index;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/**
+ * A routing {@link Handler} compiled from a fixed set of servlet style path specs.
+ * <p>
+ * Supported path specs are: exact ({@code /foo}), prefix ({@code /foo/*}),
+ * suffix ({@code *.png}) and default ({@code /}), with the usual servlet precedence
+ * of exact, then longest prefix, then suffix, then default.
+ * </p>
+ * <p>
+ * When the handler is started, the mappings are compiled into immutable {@link Index} tries:
+ * one for the exact paths, one for the prefixes and one for the suffixes.
+ * A request is then routed with at most one lookup in each trie, and the path
+ * to use for the target handler (eg: with the prefix stripped) is computed in the
+ * same pass, without creating a new {@link HttpURI} or wrapping the request.
+ * </p>
+ * <p>
+ * Target handlers that implement {@link PathHandler} are given that rewritten path directly.
+ * Other target handlers see it via a wrapped request with a rewritten {@link HttpURI},
+ * as would be done with a {@link org.eclipse.jetty.server.handler.PathMappingsHandler}.
+ * </p>
+ */
+public class PathRoutingHandler extends Handler.AbstractContainer
+{
+    /**
+     * A {@link Handler} that can be given the path to handle,
+     * instead of obtaining it from the {@link Request}.
+     */
+    public interface PathHandler extends Handler
+    {
+        /**
+         * @param request the request
+         * @param response the response
+         * @param callback the callback
+         * @param pathInContext the (possibly rewritten) path to handle
+         * @return true if the request has been handled
+         * @throws Exception if unable to handle the request
+         * @see Handler#handle(Request, Response, Callback)
+         */
+        boolean handle(Request request, Response response, Callback callback, String pathInContext) throws Exception;
+    }
+
+    private final List<Route> routes = new ArrayList<>();
+    private Index<Route> exactRoutes;
+    private Index<Route> prefixRoutes;
+    private Index<Route> suffixRoutes;
+    private Route defaultRoute;
+
+    public PathRoutingHandler()
+    {
+        super(false);
+    }
+
+    @Override
+    public List<Handler> getHandlers()
+    {
+        return routes.stream().map(Route::handler).distinct().toList();
+    }
+
+    /**
+     * @param pathSpec the path spec to map
+     * @param handler the handler to route the matching requests to
+     */
+    public void addMapping(String pathSpec, Handler handler)
+    {
+        addMapping(pathSpec, null, handler);
+    }
+
+    /**
+     * <p>Maps a path spec to a handler, rewriting the path of the matching requests.</p>
+     * <p>For a prefix path spec, the prefix is replaced with the {@code replacement},
+     * so that an empty replacement strips the prefix: with {@code /extras/*},
+     * the path {@code /extras/foo.css} becomes {@code /foo.css}.</p>
+     * <p>For a suffix path spec, the directory of the path is replaced with the {@code replacement}:
+     * with {@code *.png} and a replacement of {@code /images}, the path
+     * {@code /deep/path/logo.png} becomes {@code /images/logo.png}.</p>
+     *
+     * @param pathSpec the path spec to map
+     * @param replacement the replacement for the matched portion of the path, or null to not rewrite the path
+     * @param handler the handler to route the matching requests to
+     */
+    public void addMapping(String pathSpec, String replacement, Handler handler)
+    {
+        Objects.requireNonNull(pathSpec, "PathSpec cannot be null");
+        Objects.requireNonNull(handler, "Handler cannot be null");
+
+        if (isStarted())
+            throw new IllegalStateException("Cannot add mapping: " + this);
+
+        // Check that self isn't present.
+        if (handler == this)
+            throw new IllegalStateException("Unable to addHandler of self: " + handler);
+
+        // Check for loops.
+        if (handler instanceof Handler.Container container && container.getDescendants().contains(this))
+            throw new IllegalStateException("loop detected: " + handler);
+
+        routes.add(Route.from(pathSpec, replacement, handler));
+        if (getServer() != null)
+            handler.setServer(getServer());
+        addBean(handler);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        Map<String, Route> exact = new HashMap<>();
+        Map<String, Route> prefix = new HashMap<>();
+        Map<String, Route> suffix = new HashMap<>();
+        defaultRoute = null;
+
+        for (Route route : routes)
+        {
+            switch (route.type())
+            {
+                case EXACT -> exact.put(route.key(), route);
+                case PREFIX ->
+                {
+                    // The prefix itself, without a trailing slash, is also a match,
+                    // unless there is an exact mapping for that path.
+                    exact.putIfAbsent(route.key(), route);
+                    prefix.put(route.key() + "/", route);
+                }
+                case SUFFIX -> suffix.put(route.key(), route);
+                case DEFAULT -> defaultRoute = route;
+            }
+        }
+
+        exactRoutes = new Index.Builder<Route>().caseSensitive(true).withAll(() -> exact).build();
+        prefixRoutes = new Index.Builder<Route>().caseSensitive(true).withAll(() -> prefix).build();
+        suffixRoutes = new Index.Builder<Route>().caseSensitive(true).withAll(() -> suffix).build();
+
+        super.doStart();
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception
+    {
+        String path = Request.getPathInContext(request);
+
+        String pathInContext = null;
+        Route route = exactRoutes.get(path);
+        if (route == null)
+            route = prefixRoutes.getBest(path);
+        if (route != null)
+        {
+            if (route.replacement() != null)
+            {
+                String remaining = path.substring(Math.min(path.length(), route.key().length()));
+                pathInContext = route.replacement() + remaining;
+            }
+        }
+        else
+        {
+            int slash = path.lastIndexOf('/');
+            int dot = path.lastIndexOf('.');
+            if (dot > slash)
+                route = suffixRoutes.get(path, dot + 1, path.length() - dot - 1);
+            if (route != null)
+            {
+                if (route.replacement() != null)
+                    pathInContext = route.replacement() + path.substring(slash);
+            }
+            else
+            {
+                route = defaultRoute;
+                if (route == null)
+                    return false;
+            }
+        }
+
+        if (pathInContext == null)
+            pathInContext = path;
+        else if (pathInContext.isEmpty())
+            pathInContext = "/";
+
+        Handler handler = route.handler();
+        if (handler instanceof PathHandler pathHandler)
+            return pathHandler.handle(request, response, callback, pathInContext);
+
+        if (pathInContext == path)
+            return handler.handle(request, response, callback);
+
+        // The handler can only obtain the path from the request, so rewrite it.
+        HttpURI newURI = HttpURI.build(request.getHttpURI()).path(URIUtil.addPaths(request.getContext().getContextPath(), pathInContext));
+        Request wrappedRequest = new Request.Wrapper(request)
+        {
+            @Override
+            public HttpURI getHttpURI()
+            {
+                return newURI;
+            }
+        };
+        return handler.handle(wrappedRequest, response, callback);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this, routes);
+    }
+
+    private enum Type
+    {
+        EXACT, PREFIX, SUFFIX, DEFAULT
+    }
+
+    private record Route(String pathSpec, Type type, String key, String replacement, Handler handler)
+    {
+        static Route from(String pathSpec, String replacement, Handler handler)
+        {
+            if (pathSpec.equals("/"))
+                return new Route(pathSpec, Type.DEFAULT, "", replacement, handler);
+            if (pathSpec.startsWith("*."))
+                return new Route(pathSpec, Type.SUFFIX, pathSpec.substring(2), replacement, handler);
+            if (pathSpec.startsWith("/"))
+            {
+                if (pathSpec.endsWith("/*"))
+                    return new Route(pathSpec, Type.PREFIX, pathSpec.substring(0, pathSpec.length() - 2), replacement, handler);
+                if (!pathSpec.contains("*"))
+                    return new Route(pathSpec, Type.EXACT, pathSpec, replacement, handler);
+            }
+            throw new IllegalArgumentException("Unsupported path spec: " + pathSpec);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "%s->%s".formatted(pathSpec, handler);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.resource.Resources;
+
+/**
+ * The same server as {@link PathMappingServer}, but using a {@link PathRoutingHandler}
+ * and {@link RoutedResourceHandler}s, so that the rewriting of the paths
+ * does not need to wrap the request.
+ */
+public class PathRoutingServer
+{
+    public static void main(String[] args) throws Exception
+    {
+        Server server = PathRoutingServer.newServer(8080);
+        server.start();
+        server.join();
+    }
+
+    public static Server newServer(int port) throws IOException
+    {
+        return newServer(port, Path.of("extras"));
+    }
+
+    public static Server newServer(int port, Path extrasDir) throws IOException
+    {
+        Server server = new Server(port);
+
+        ResourceFactory resourceFactory = ResourceFactory.of(server);
+
+        PathRoutingHandler pathRoutingHandler = new PathRoutingHandler();
+
+        Resource rootResourceDir = resourceFactory.newClassLoaderResource("/static-root/");
+        if (!Resources.isReadableDirectory(rootResourceDir))
+            throw new FileNotFoundException("Unable to find /static-root/ classloader directory");
+
+        RoutedResourceHandler rootResourceHandler = new RoutedResourceHandler();
+        rootResourceHandler.setBaseResource(rootResourceDir);
+        rootResourceHandler.setDirAllowed(false);
+        rootResourceHandler.setWelcomeFiles("index.html");
+
+        extrasDir = extrasDir.toAbsolutePath();
+        if (!Files.isDirectory(extrasDir))
+            throw new FileNotFoundException("Unable to find /extras/ directory on disk: " + extrasDir);
+        if (!Files.isReadable(extrasDir))
+            throw new FileNotFoundException("Unable to read directory (permissions?): " + extrasDir);
+
+        RoutedResourceHandler extraResourceHandler = new RoutedResourceHandler();
+        extraResourceHandler.setBaseResource(resourceFactory.newResource(extrasDir));
+        extraResourceHandler.setDirAllowed(true);
+
+        RoutedResourceHandler metaInfResourceHandler = new RoutedResourceHandler();
+        metaInfResourceHandler.setBaseResource(PathMappingServer.findMetaInfResources(resourceFactory, PathRoutingServer.class.getClassLoader()));
+        metaInfResourceHandler.setDirAllowed(false);
+
+        // The routes are compiled when the server starts.
+        // The replacement (2nd argument) is what the matched portion of the path is replaced
+        // with before the path is given to the handler: the prefix for the "/foo/*" mappings
+        // and the directory for the "*.ext" mappings.
+        pathRoutingHandler.addMapping("/", rootResourceHandler);
+        pathRoutingHandler.addMapping("/extras/*", "", extraResourceHandler);
+        pathRoutingHandler.addMapping("/jars/*", "", metaInfResourceHandler);
+        // Example of a mapping to an extension.
+        pathRoutingHandler.addMapping("*.png", "/images", extraResourceHandler);
+        pathRoutingHandler.addMapping("/hello/*", new HelloHandler("Routes"));
+
+        server.setHandler(pathRoutingHandler);
+        return server;
+    }
+}
@@ -0,0 +1,51 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.ResourceService;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * A {@link ResourceHandler} that can serve the path given by a {@link PathRoutingHandler},
+ * rather than the path of the request.
+ */
+public class RoutedResourceHandler extends ResourceHandler implements PathRoutingHandler.PathHandler
+{
+    @Override
+    public boolean handle(Request request, Response response, Callback callback, String pathInContext) throws Exception
+    {
+        if (!HttpMethod.GET.is(request.getMethod()) && !HttpMethod.HEAD.is(request.getMethod()))
+        {
+            // try another handler
+            return false;
+        }
+
+        ResourceService resourceService = getResourceService();
+        HttpContent content = resourceService.getContent(pathInContext, request);
+        if (content == null)
+        {
+            // No content at the routed path; the unrouted path of the
+            // request must not be tried, as it may be another resource.
+            return false;
+        }
+
+        resourceService.doGet(request, response, callback, content);
+        return true;
+    }
+}
@@ -39,10 +39,15 @@ public class PathMappingServerTest
 {
     private Server server;
 
+    protected Server newServer() throws IOException
+    {
+        return PathMappingServer.newServer(0);
+    }
+
     @BeforeEach
     public void startServer() throws Exception
     {
-        server = PathMappingServer.newServer(0);
+        server = newServer();
         server.start();
     }
 
@@ -0,0 +1,73 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package examples;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * The same tests as {@link PathMappingServerTest}, against the {@link PathRoutingServer}.
+ */
+public class PathRoutingServerTest extends PathMappingServerTest
+{
+    @Override
+    protected Server newServer() throws IOException
+    {
+        return PathRoutingServer.newServer(0);
+    }
+
+    @Test
+    public void testRoutedMissDoesNotServeUnroutedPath(@TempDir Path extrasDir) throws Exception
+    {
+        // The "*.png" route serves from /images, the same file at the root must not be served.
+        Files.write(extrasDir.resolve("stray.png"), new byte[]{1, 2, 3});
+        Files.createDirectories(extrasDir.resolve("images"));
+        Files.write(extrasDir.resolve("images/routed.png"), new byte[]{1, 2, 3});
+        Server server = PathRoutingServer.newServer(0, extrasDir);
+        server.start();
+        try
+        {
+            HttpClient client = HttpClient.newBuilder().build();
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(server.getURI().resolve("/stray.png"))
+                .GET()
+                .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            assertThat(response.statusCode(), is(404));
+
+            request = HttpRequest.newBuilder()
+                .uri(server.getURI().resolve("/routed.png"))
+                .GET()
+                .build();
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            assertThat(response.statusCode(), is(200));
+        }
+        finally
+        {
+            LifeCycle.stop(server);
+        }
+    }
+}
@@ -0,0 +1,642 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RequestLog} that writes a compact, fixed schema, binary log to rolling segment files.
+ * <p>
+ * Records are accumulated in blocks of up to {@link #getBlockSize()} records, and each block is
+ * stored column by column, so that a query only reads the {@link Column}s it needs:
+ * </p>
+ * <ul>
+ *   <li>numbers are stored as variable length integers, with timestamps as deltas from the previous record;</li>
+ *   <li>methods, statuses, paths and user agents are dictionary encoded: the first occurrence of a value
+ *   in a segment defines it inline, and the following ones only store its index.
+ *   Once a dictionary has {@link #getMaxDictionarySize()} entries, new values are stored as literals.</li>
+ * </ul>
+ * <p>
+ * A segment file is rolled once it is larger than {@link #getMaxSegmentSize()}, and each segment starts
+ * with empty dictionaries, so that segments can be read, copied or deleted independently.
+ * Blocks are written by a background thread, and flushed at least every {@link #getFlushInterval()}
+ * milliseconds; when the disk cannot keep up, whole blocks are dropped and counted in {@link #getDroppedRecords()}.
+ * </p>
+ * <p>
+ * The format of a segment file is:
+ * </p>
+ * <pre>
+ * segment := MAGIC block*
+ * block   := records:int32 baseTimestamp:int64 columnLength:int32[COLUMNS] column[COLUMNS]
+ * </pre>
+ * <p>
+ * Segments are read by {@link BinaryRequestLogReader}.
+ * </p>
+ */
+public class BinaryRequestLog extends AbstractLifeCycle implements RequestLog
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryRequestLog.class);
+
+    /**
+     * The first bytes of a segment file, "JRL" followed by the version of the format.
+     */
+    public static final int MAGIC = 0x4A524C01;
+    public static final String SEGMENT_PREFIX = "requests-";
+    public static final String SEGMENT_SUFFIX = ".jrl";
+
+    /**
+     * The columns of a record, in the order in which they are stored in a block.
+     */
+    public enum Column
+    {
+        /**
+         * The time the request was received, in milliseconds since the epoch, as a zigzag encoded delta.
+         */
+        TIMESTAMP,
+        /**
+         * The time to handle the request, in microseconds.
+         */
+        LATENCY,
+        METHOD,
+        STATUS,
+        /**
+         * The path of the request, without query.
+         */
+        PATH,
+        USER_AGENT,
+        /**
+         * The number of bytes of the response content.
+         */
+        BYTES
+    }
+
+    public static final int COLUMNS = Column.values().length;
+    public static final int BLOCK_HEADER_SIZE = 4 + 8 + 4 * COLUMNS;
+
+    private final Path _directory;
+    private final ReentrantLock _lock = new ReentrantLock();
+    private int _blockSize = 4096;
+    private int _maxDictionarySize = 4096;
+    private long _maxSegmentSize = 64 * 1024 * 1024;
+    private long _flushInterval = 1000;
+    private int _maxPendingBlocks = 16;
+    private ScheduledExecutorService _executor;
+    private final AtomicInteger _pendingBlocks = new AtomicInteger();
+    private final LongAdder _droppedRecords = new LongAdder();
+    private final LongAdder _writtenRecords = new LongAdder();
+    private Block _block;
+    // Only accessed by the executor thread.
+    private FileChannel _segment;
+    private long _segmentSize;
+    private int _segmentSequence;
+    private Dictionaries _dictionaries;
+    private final LongAdder _segments = new LongAdder();
+
+    public BinaryRequestLog(Path directory)
+    {
+        _directory = directory;
+    }
+
+    public Path getDirectory()
+    {
+        return _directory;
+    }
+
+    public int getBlockSize()
+    {
+        return _blockSize;
+    }
+
+    /**
+     * @param blockSize the maximum number of records in a block
+     */
+    public void setBlockSize(int blockSize)
+    {
+        _blockSize = blockSize;
+    }
+
+    public int getMaxDictionarySize()
+    {
+        return _maxDictionarySize;
+    }
+
+    /**
+     * @param maxDictionarySize the maximum number of values of a dictionary of a segment
+     */
+    public void setMaxDictionarySize(int maxDictionarySize)
+    {
+        _maxDictionarySize = maxDictionarySize;
+    }
+
+    public long getMaxSegmentSize()
+    {
+        return _maxSegmentSize;
+    }
+
+    /**
+     * @param maxSegmentSize the size in bytes above which a new segment file is started
+     */
+    public void setMaxSegmentSize(long maxSegmentSize)
+    {
+        _maxSegmentSize = maxSegmentSize;
+    }
+
+    public long getFlushInterval()
+    {
+        return _flushInterval;
+    }
+
+    /**
+     * @param flushInterval the maximum time in milliseconds a record waits before being written
+     */
+    public void setFlushInterval(long flushInterval)
+    {
+        _flushInterval = flushInterval;
+    }
+
+    public int getMaxPendingBlocks()
+    {
+        return _maxPendingBlocks;
+    }
+
+    /**
+     * @param maxPendingBlocks the maximum number of blocks waiting to be written, before blocks are dropped
+     */
+    public void setMaxPendingBlocks(int maxPendingBlocks)
+    {
+        _maxPendingBlocks = maxPendingBlocks;
+    }
+
+    /**
+     * @return the number of records written to segment files
+     */
+    public long getWrittenRecords()
+    {
+        return _writtenRecords.sum();
+    }
+
+    /**
+     * @return the number of records dropped because too many blocks were waiting to be written,
+     * because they could not be written, or because they were appended while the log was not running
+     */
+    public long getDroppedRecords()
+    {
+        return _droppedRecords.sum();
+    }
+
+    /**
+     * @return the number of segment files started
+     */
+    public long getSegments()
+    {
+        return _segments.sum();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        Files.createDirectories(_directory);
+        // Continue the sequence of the existing segments.
+        try (Stream<Path> files = Files.list(_directory))
+        {
+            _segmentSequence = files
+                .map(BinaryRequestLog::segmentSequence)
+                .filter(sequence -> sequence >= 0)
+                .max(Integer::compare)
+                .orElse(-1) + 1;
+        }
+        _block = new Block(_blockSize);
+        _executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "requestlog-" + _directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        _executor.scheduleWithFixedDelay(this::flush, _flushInterval, _flushInterval, TimeUnit.MILLISECONDS);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        // From now on appended records are rejected, so none is appended after the last block.
+        Block last;
+        _lock.lock();
+        try
+        {
+            last = _block;
+            _block = null;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if (last != null && last._records > 0)
+            submit(last);
+        super.doStop();
+        _executor.shutdown();
+        if (!_executor.awaitTermination(5, TimeUnit.SECONDS))
+            LOG.warn("Unable to write all the blocks of {}", this);
+        _executor = null;
+        closeSegment();
+    }
+
+    @Override
+    public void log(Request request, Response response)
+    {
+        long latency = TimeUnit.NANOSECONDS.toMicros(NanoTime.since(request.getBeginNanoTime()));
+        append(Request.getTimeStamp(request), latency, request.getMethod(), response.getStatus(),
+            request.getHttpURI().getPath(), request.getHeaders().get("User-Agent"), Response.getContentBytesWritten(response));
+    }
+
+    /**
+     * <p>Appends a record to the log.</p>
+     *
+     * @param timestamp the time the request was received, in milliseconds since the epoch
+     * @param latency the time to handle the request, in microseconds
+     * @param method the method of the request
+     * @param status the status of the response
+     * @param path the path of the request
+     * @param userAgent the user agent of the request, or null
+     * @param bytes the number of bytes of the response content
+     */
+    public void append(long timestamp, long latency, String method, int status, String path, String userAgent, long bytes)
+    {
+        Block full = null;
+        _lock.lock();
+        try
+        {
+            Block block = _block;
+            if (block == null)
+            {
+                // Not started, or stopping.
+                _droppedRecords.increment();
+                return;
+            }
+            block.append(timestamp, latency, method, status, path, userAgent, bytes);
+            if (block.isFull())
+            {
+                full = block;
+                _block = new Block(_blockSize);
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if (full != null)
+            submit(full);
+    }
+
+    private void flush()
+    {
+        Block block;
+        _lock.lock();
+        try
+        {
+            block = _block;
+            if (block == null || block._records == 0)
+                return;
+            _block = new Block(_blockSize);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        submit(block);
+    }
+
+    private void submit(Block block)
+    {
+        if (_pendingBlocks.incrementAndGet() > _maxPendingBlocks)
+        {
+            _pendingBlocks.decrementAndGet();
+            _droppedRecords.add(block._records);
+            return;
+        }
+        try
+        {
+            _executor.execute(() ->
+            {
+                try
+                {
+                    write(block);
+                }
+                finally
+                {
+                    _pendingBlocks.decrementAndGet();
+                }
+            });
+        }
+        catch (Throwable x)
+        {
+            _pendingBlocks.decrementAndGet();
+            _droppedRecords.add(block._records);
+        }
+    }
+
+    private void write(Block block)
+    {
+        try
+        {
+            if (_segment == null || _segmentSize >= _maxSegmentSize)
+                rollSegment();
+
+            // Records are encoded with the dictionaries of the segment they are written to.
+            ByteBuffer buffer = block.encode(_dictionaries, _maxDictionarySize);
+            int length = buffer.remaining();
+            while (buffer.hasRemaining())
+            {
+                _segment.write(buffer);
+            }
+            _segmentSize += length;
+            _writtenRecords.add(block._records);
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Unable to write {} records to {}", block._records, _directory, x);
+            _droppedRecords.add(block._records);
+            closeSegment();
+        }
+    }
+
+    private void rollSegment() throws IOException
+    {
+        closeSegment();
+        Path file = _directory.resolve(segmentName(_segmentSequence++));
+        _segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer magic = ByteBuffer.allocate(4).putInt(0, MAGIC);
+        while (magic.hasRemaining())
+        {
+            _segment.write(magic);
+        }
+        _segmentSize = 4;
+        _dictionaries = new Dictionaries();
+        _segments.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Started segment {}", file);
+    }
+
+    private void closeSegment()
+    {
+        try
+        {
+            if (_segment != null)
+                _segment.close();
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Unable to close segment of {}", _directory, x);
+        }
+        _segment = null;
+    }
+
+    public static String segmentName(int sequence)
+    {
+        return "%s%08d%s".formatted(SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @param file a file of a segment directory
+     * @return the sequence number of the segment, or -1 if the file is not a segment
+     */
+    public static int segmentSequence(Path file)
+    {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX))
+            return -1;
+        try
+        {
+            return Integer.parseInt(name, SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length(), 10);
+        }
+        catch (NumberFormatException x)
+        {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[%s,segments=%d,written=%d,dropped=%d]".formatted(
+            getClass().getSimpleName(), hashCode(), _directory, getSegments(), getWrittenRecords(), getDroppedRecords());
+    }
+
+    /**
+     * The records of a block, not yet encoded, as the dictionaries are only known when the block is written.
+     */
+    private static class Block
+    {
+        private final long[] _timestamps;
+        private final long[] _latencies;
+        private final String[] _methods;
+        private final int[] _statuses;
+        private final String[] _paths;
+        private final String[] _userAgents;
+        private final long[] _bytes;
+        private int _records;
+
+        private Block(int size)
+        {
+            _timestamps = new long[size];
+            _latencies = new long[size];
+            _methods = new String[size];
+            _statuses = new int[size];
+            _paths = new String[size];
+            _userAgents = new String[size];
+            _bytes = new long[size];
+        }
+
+        private void append(long timestamp, long latency, String method, int status, String path, String userAgent, long bytes)
+        {
+            int i = _records++;
+            _timestamps[i] = timestamp;
+            _latencies[i] = latency;
+            _methods[i] = method;
+            _statuses[i] = status;
+            _paths[i] = path;
+            _userAgents[i] = userAgent;
+            _bytes[i] = bytes;
+        }
+
+        private boolean isFull()
+        {
+            return _records == _timestamps.length;
+        }
+
+        private ByteBuffer encode(Dictionaries dictionaries, int maxDictionarySize)
+        {
+            ColumnBuffer[] columns = new ColumnBuffer[COLUMNS];
+            for (int c = 0; c < COLUMNS; c++)
+            {
+                columns[c] = new ColumnBuffer(_records * 2);
+            }
+
+            long baseTimestamp = _timestamps[0];
+            long previous = baseTimestamp;
+            for (int i = 0; i < _records; i++)
+            {
+                // Records are not appended exactly in timestamp order, so deltas may be negative.
+                long delta = _timestamps[i] - previous;
+                columns[Column.TIMESTAMP.ordinal()].putVarLong((delta << 1) ^ (delta >> 63));
+                previous = _timestamps[i];
+                columns[Column.LATENCY.ordinal()].putVarLong(Math.max(0, _latencies[i]));
+                dictionaries._methods.put(columns[Column.METHOD.ordinal()], _methods[i], maxDictionarySize);
+                dictionaries._statuses.put(columns[Column.STATUS.ordinal()], _statuses[i], maxDictionarySize);
+                dictionaries._paths.put(columns[Column.PATH.ordinal()], _paths[i], maxDictionarySize);
+                dictionaries._userAgents.put(columns[Column.USER_AGENT.ordinal()], _userAgents[i], maxDictionarySize);
+                columns[Column.BYTES.ordinal()].putVarLong(Math.max(0, _bytes[i]));
+            }
+
+            int size = BLOCK_HEADER_SIZE;
+            for (ColumnBuffer column : columns)
+            {
+                size += column._length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(_records);
+            buffer.putLong(baseTimestamp);
+            for (ColumnBuffer column : columns)
+            {
+                buffer.putInt(column._length);
+            }
+            for (ColumnBuffer column : columns)
+            {
+                buffer.put(column._bytes, 0, column._length);
+            }
+            return buffer.flip();
+        }
+    }
+
+    private static class Dictionaries
+    {
+        private final Dictionary<String> _methods = new Dictionary<>(ColumnBuffer::putString);
+        private final Dictionary<Integer> _statuses = new Dictionary<>((column, status) -> column.putVarLong(status));
+        private final Dictionary<String> _paths = new Dictionary<>(ColumnBuffer::putString);
+        private final Dictionary<String> _userAgents = new Dictionary<>(ColumnBuffer::putString);
+    }
+
+    /**
+     * <p>The dictionary of a column of a segment.</p>
+     * <p>A value is encoded as a variable length integer {@code n}:</p>
+     * <ul>
+     *   <li>{@code 0} is followed by a literal value, that is not added to the dictionary;</li>
+     *   <li>{@code n} equal to the dictionary size plus one is followed by a new value, added to the dictionary;</li>
+     *   <li>any other {@code n} refers to the value defined with the same number.</li>
+     * </ul>
+     */
+    private static class Dictionary<V>
+    {
+        private final Map<V, Integer> _ids = new HashMap<>();
+        private final ValueWriter<V> _writer;
+
+        private Dictionary(ValueWriter<V> writer)
+        {
+            _writer = writer;
+        }
+
+        private void put(ColumnBuffer column, V value, int maxSize)
+        {
+            Integer id = _ids.get(value);
+            if (id != null)
+            {
+                column.putVarLong(id);
+            }
+            else if (_ids.size() < maxSize)
+            {
+                id = _ids.size() + 1;
+                _ids.put(value, id);
+                column.putVarLong(id);
+                _writer.write(column, value);
+            }
+            else
+            {
+                column.putVarLong(0);
+                _writer.write(column, value);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueWriter<V>
+    {
+        void write(ColumnBuffer column, V value);
+    }
+
+    private static class ColumnBuffer
+    {
+        private byte[] _bytes;
+        private int _length;
+
+        private ColumnBuffer(int capacity)
+        {
+            _bytes = new byte[Math.max(16, capacity)];
+        }
+
+        private void ensure(int space)
+        {
+            if (_length + space > _bytes.length)
+                _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _length + space));
+        }
+
+        private void putVarLong(long value)
+        {
+            ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                _bytes[_length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            _bytes[_length++] = (byte)value;
+        }
+
+        /**
+         * A null string is stored with length 0, the same as an empty string.
+         */
+        private void putString(String value)
+        {
+            byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, _bytes, _length, bytes.length);
+            _length += bytes.length;
+        }
+    }
+}
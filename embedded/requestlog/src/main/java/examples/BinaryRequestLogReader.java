@@ -0,0 +1,385 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.util.NanoTime;
+
+/**
+ * Reads the segment files written by a {@link BinaryRequestLog}.
+ * <p>
+ * Segments are memory mapped and scanned in parallel, and only the columns needed by a
+ * query are decoded: the others are skipped using the column lengths of each block header.
+ * </p>
+ * <p>
+ * It can be run from the command line to summarize a directory of segments:
+ * </p>
+ * <pre>
+ * java examples.BinaryRequestLogReader &lt;directory&gt; [--from &lt;instant&gt;] [--to &lt;instant&gt;]
+ * </pre>
+ */
+public class BinaryRequestLogReader
+{
+    private final List<Path> _segments;
+
+    public BinaryRequestLogReader(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            _segments = files
+                .filter(file -> BinaryRequestLog.segmentSequence(file) >= 0)
+                .sorted(Comparator.comparingInt(BinaryRequestLog::segmentSequence))
+                .toList();
+        }
+    }
+
+    public List<Path> getSegments()
+    {
+        return _segments;
+    }
+
+    /**
+     * @return the summary of all the records
+     * @throws IOException if a segment cannot be read
+     */
+    public Summary summarize() throws IOException
+    {
+        return summarize(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param from the minimum timestamp, inclusive, of the records to summarize, in milliseconds since the epoch
+     * @param to the maximum timestamp, exclusive, of the records to summarize, in milliseconds since the epoch
+     * @return the summary of the records in the given time range
+     * @throws IOException if a segment cannot be read
+     */
+    public Summary summarize(long from, long to) throws IOException
+    {
+        try
+        {
+            return _segments.parallelStream()
+                .map(segment -> scan(segment, from, to))
+                .reduce(new Summary(), Summary::merge);
+        }
+        catch (UncheckedIOException x)
+        {
+            throw x.getCause();
+        }
+    }
+
+    private Summary scan(Path segment, long from, long to)
+    {
+        Summary summary = new Summary();
+        boolean filter = from != Long.MIN_VALUE || to != Long.MAX_VALUE;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 4 || buffer.getInt() != BinaryRequestLog.MAGIC)
+                throw new IOException("Not a request log segment: " + segment);
+            summary._bytes += buffer.limit();
+
+            // The dictionary of the status column, that has to be decoded even for records out of range.
+            int[] statuses = new int[16];
+            int dictionarySize = 0;
+            int[] lengths = new int[BinaryRequestLog.COLUMNS];
+            while (buffer.remaining() >= BinaryRequestLog.BLOCK_HEADER_SIZE)
+            {
+                int records = buffer.getInt();
+                long timestamp = buffer.getLong();
+                long blockLength = 0;
+                for (int c = 0; c < lengths.length; c++)
+                {
+                    lengths[c] = buffer.getInt();
+                    blockLength += lengths[c];
+                }
+                // The last block may be incomplete, if the server was not stopped cleanly.
+                if (blockLength > buffer.remaining())
+                    break;
+
+                ByteBuffer timestamps = column(buffer, lengths, BinaryRequestLog.Column.TIMESTAMP);
+                ByteBuffer latencies = column(buffer, lengths, BinaryRequestLog.Column.LATENCY);
+                ByteBuffer statusIds = column(buffer, lengths, BinaryRequestLog.Column.STATUS);
+                for (int i = 0; i < records; i++)
+                {
+                    int status;
+                    int id = (int)getVarLong(statusIds);
+                    if (id == 0)
+                    {
+                        status = (int)getVarLong(statusIds);
+                    }
+                    else if (id == dictionarySize + 1)
+                    {
+                        status = (int)getVarLong(statusIds);
+                        if (dictionarySize == statuses.length)
+                            statuses = Arrays.copyOf(statuses, dictionarySize * 2);
+                        statuses[dictionarySize++] = status;
+                    }
+                    else
+                    {
+                        status = statuses[id - 1];
+                    }
+                    long latency = getVarLong(latencies);
+
+                    if (filter)
+                    {
+                        long zigzag = getVarLong(timestamps);
+                        timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                        if (timestamp < from || timestamp >= to)
+                            continue;
+                    }
+                    summary.add(status, latency);
+                }
+                buffer.position(buffer.position() + (int)blockLength);
+            }
+            summary._segments++;
+            return summary;
+        }
+        catch (IOException x)
+        {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    private static ByteBuffer column(ByteBuffer block, int[] lengths, BinaryRequestLog.Column column)
+    {
+        int offset = 0;
+        for (int c = 0; c < column.ordinal(); c++)
+        {
+            offset += lengths[c];
+        }
+        return block.slice(block.position() + offset, lengths[column.ordinal()]);
+    }
+
+    private static long getVarLong(ByteBuffer buffer)
+    {
+        long value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            byte b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    /**
+     * The status counts and latency distribution of a set of records.
+     */
+    public static class Summary
+    {
+        private final long[] _statusCounts = new long[1000];
+        private final LatencyHistogram _latencies = new LatencyHistogram();
+        private long _records;
+        private long _segments;
+        private long _bytes;
+
+        private void add(int status, long latency)
+        {
+            _records++;
+            if (status >= 0 && status < _statusCounts.length)
+                _statusCounts[status]++;
+            _latencies.add(latency);
+        }
+
+        private Summary merge(Summary other)
+        {
+            Summary merged = new Summary();
+            for (Summary summary : List.of(this, other))
+            {
+                for (int s = 0; s < _statusCounts.length; s++)
+                {
+                    merged._statusCounts[s] += summary._statusCounts[s];
+                }
+                merged._latencies.add(summary._latencies);
+                merged._records += summary._records;
+                merged._segments += summary._segments;
+                merged._bytes += summary._bytes;
+            }
+            return merged;
+        }
+
+        public long getRecords()
+        {
+            return _records;
+        }
+
+        /**
+         * @return the number of segments scanned
+         */
+        public long getSegments()
+        {
+            return _segments;
+        }
+
+        /**
+         * @return the number of bytes of the segments scanned
+         */
+        public long getBytes()
+        {
+            return _bytes;
+        }
+
+        /**
+         * @return the number of records by response status
+         */
+        public Map<Integer, Long> getStatusCounts()
+        {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int s = 0; s < _statusCounts.length; s++)
+            {
+                if (_statusCounts[s] > 0)
+                    counts.put(s, _statusCounts[s]);
+            }
+            return counts;
+        }
+
+        public LatencyHistogram getLatencies()
+        {
+            return _latencies;
+        }
+    }
+
+    /**
+     * <p>A histogram of latencies with a bounded relative error.</p>
+     * <p>Values below 64 have their own bucket, and larger values are grouped in
+     * 32 buckets per power of 2, so that a percentile is within about 3% of the actual value.</p>
+     */
+    public static class LatencyHistogram
+    {
+        private static final int SUB_BUCKETS = 32;
+
+        private final long[] _counts = new long[64 * SUB_BUCKETS];
+        private long _count;
+        private long _max;
+
+        private static int index(long value)
+        {
+            if (value < 2 * SUB_BUCKETS)
+                return (int)value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - 5;
+            return exponent * SUB_BUCKETS + (int)(value >>> exponent);
+        }
+
+        private static long highestValue(int index)
+        {
+            if (index < 2 * SUB_BUCKETS)
+                return index;
+            int exponent = index / SUB_BUCKETS - 1;
+            long mantissa = index - exponent * SUB_BUCKETS;
+            return ((mantissa + 1) << exponent) - 1;
+        }
+
+        public void add(long value)
+        {
+            value = Math.max(0, value);
+            _counts[index(value)]++;
+            _count++;
+            _max = Math.max(_max, value);
+        }
+
+        public void add(LatencyHistogram other)
+        {
+            for (int i = 0; i < _counts.length; i++)
+            {
+                _counts[i] += other._counts[i];
+            }
+            _count += other._count;
+            _max = Math.max(_max, other._max);
+        }
+
+        public long getCount()
+        {
+            return _count;
+        }
+
+        public long getMax()
+        {
+            return _max;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the value below which the given percentile of the values fall, or 0 if there are no values
+         */
+        public long getValueAtPercentile(double percentile)
+        {
+            if (_count == 0)
+                return 0;
+            long rank = Math.max(1, (long)Math.ceil(percentile / 100 * _count));
+            long seen = 0;
+            for (int i = 0; i < _counts.length; i++)
+            {
+                seen += _counts[i];
+                if (seen >= rank)
+                    return Math.min(highestValue(i), _max);
+            }
+            return _max;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: java " + BinaryRequestLogReader.class.getName() + " <directory> [--from <instant>] [--to <instant>]");
+            System.exit(1);
+        }
+
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (int i = 1; i < args.length - 1; i += 2)
+        {
+            long millis = Instant.parse(args[i + 1]).toEpochMilli();
+            switch (args[i])
+            {
+                case "--from" -> from = millis;
+                case "--to" -> to = millis;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        long start = NanoTime.now();
+        BinaryRequestLogReader reader = new BinaryRequestLogReader(Path.of(args[0]));
+        Summary summary = reader.summarize(from, to);
+        long elapsed = NanoTime.millisSince(start);
+
+        System.out.printf("Scanned %d segments, %d bytes in %d ms%n", summary.getSegments(), summary.getBytes(), elapsed);
+        System.out.printf("%d records%n", summary.getRecords());
+        System.out.println("Status counts:");
+        summary.getStatusCounts().forEach((status, count) -> System.out.printf("  %d: %d%n", status, count));
+        LatencyHistogram latencies = summary.getLatencies();
+        System.out.println("Latency (us):");
+        for (double percentile : new double[]{50, 90, 99, 99.9})
+        {
+            System.out.printf("  p%s: %d%n", percentile, latencies.getValueAtPercentile(percentile));
+        }
+        System.out.printf("  max: %d%n", latencies.getMax());
+    }
+}
@@ -0,0 +1,81 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.security.Principal;
+import java.util.Locale;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.CustomRequestLog;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.DateCache;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+/**
+ * A {@link RequestLog} that logs in the {@link CustomRequestLog#EXTENDED_NCSA_FORMAT extended NCSA format}
+ * to a {@link GroupCommitRequestLogWriter}.
+ * <p>
+ * Unlike {@link CustomRequestLog}, that formats every entry to a new {@link String} before passing it to
+ * its {@link RequestLog.Writer}, the entry is formatted directly into a preallocated slab of the writer,
+ * so that logging a request does not allocate.
+ * </p>
+ */
+public class ExtendedNcsaRequestLog extends ContainerLifeCycle implements RequestLog
+{
+    private final GroupCommitRequestLogWriter _writer;
+    private final DateCache _dateCache = new DateCache(CustomRequestLog.DEFAULT_DATE_FORMAT, Locale.getDefault(), "GMT");
+
+    public ExtendedNcsaRequestLog(GroupCommitRequestLogWriter writer)
+    {
+        _writer = writer;
+        addBean(writer);
+    }
+
+    public GroupCommitRequestLogWriter getWriter()
+    {
+        return _writer;
+    }
+
+    @Override
+    public void log(Request request, Response response)
+    {
+        GroupCommitRequestLogWriter.Slab slab = _writer.claim();
+        if (slab == null)
+            return;
+        try
+        {
+            // %{client}a - %u %t "%r" %s %O "%{Referer}i" "%{User-Agent}i"
+            slab.append(Request.getRemoteAddr(request)).append(" - ");
+            Request.AuthenticationState authenticationState = Request.getAuthenticationState(request);
+            Principal userPrincipal = authenticationState == null ? null : authenticationState.getUserPrincipal();
+            slab.append(userPrincipal == null ? null : userPrincipal.getName()).append(" [");
+            // The formatted date is cached for a second.
+            slab.append(_dateCache.format(Request.getTimeStamp(request))).append("] \"");
+            slab.append(request.getMethod()).append(' ');
+            slab.append(request.getHttpURI().getPathQuery()).append(' ');
+            slab.append(request.getConnectionMetaData().getProtocol()).append("\" ");
+            slab.append(response.getStatus()).append(' ');
+            slab.append(Response.getContentBytesWritten(response)).append(" \"");
+            slab.append(request.getHeaders().get(HttpHeader.REFERER)).append("\" \"");
+            slab.append(request.getHeaders().get(HttpHeader.USER_AGENT)).append('"');
+        }
+        finally
+        {
+            _writer.publish(slab);
+        }
+    }
+}
@@ -0,0 +1,550 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RequestLog.Writer} that appends log entries to a file with few, large, sequential writes.
+ * <p>
+ * Request threads format their entries into {@link Slab}s, byte arrays that are preallocated
+ * in a ring buffer, and publish them without taking any lock.
+ * A single writer thread collects all the published slabs in a large buffer, and writes it to
+ * the file with a single {@link FileChannel#write(ByteBuffer)}, so that all the entries logged
+ * while the previous write was in progress are committed together.
+ * The file is {@link FileChannel#force(boolean) synced} at most once per {@link #getSyncInterval() sync interval}.
+ * </p>
+ * <p>
+ * Request threads never block: when the ring buffer is full, because the disk cannot keep up,
+ * the entry is dropped and counted in {@link #getDroppedEntries()}.
+ * An entry that does not fit in a slab is truncated, and counted in {@link #getTruncatedEntries()}.
+ * </p>
+ * <p>
+ * Unlike the {@link org.eclipse.jetty.server.RequestLogWriter}, the file is not rolled over by date,
+ * and old files are not deleted, so it must be rotated externally.
+ * </p>
+ */
+public class GroupCommitRequestLogWriter extends AbstractLifeCycle implements RequestLog.Writer
+{
+    private static final Logger LOG = LoggerFactory.getLogger(GroupCommitRequestLogWriter.class);
+
+    private final Path _file;
+    private boolean _append = true;
+    private int _capacity = 4096;
+    private int _slabSize = 1024;
+    private int _writeBufferSize = 256 * 1024;
+    private long _syncInterval = 1000;
+    private final AtomicLong _head = new AtomicLong();
+    private volatile long _tail;
+    private volatile boolean _sleeping;
+    private volatile boolean _stopping;
+    private Slab[] _ring;
+    private FileChannel _channel;
+    private Thread _thread;
+    private final LongAdder _droppedEntries = new LongAdder();
+    private final LongAdder _truncatedEntries = new LongAdder();
+    private volatile long _maxQueueDepth;
+    private volatile long _writtenEntries;
+    private volatile long _writtenBytes;
+    private volatile long _writes;
+    private volatile long _syncs;
+
+    public GroupCommitRequestLogWriter(Path file)
+    {
+        _file = file;
+    }
+
+    public Path getFile()
+    {
+        return _file;
+    }
+
+    public boolean isAppend()
+    {
+        return _append;
+    }
+
+    /**
+     * @param append whether to append to an existing file, or to truncate it
+     */
+    public void setAppend(boolean append)
+    {
+        _append = append;
+    }
+
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /**
+     * @param capacity the number of slabs in the ring buffer, rounded up to a power of 2
+     */
+    public void setCapacity(int capacity)
+    {
+        _capacity = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    public int getSlabSize()
+    {
+        return _slabSize;
+    }
+
+    /**
+     * @param slabSize the maximum size in bytes of a log entry, including its line terminator
+     */
+    public void setSlabSize(int slabSize)
+    {
+        _slabSize = slabSize;
+    }
+
+    public int getWriteBufferSize()
+    {
+        return _writeBufferSize;
+    }
+
+    /**
+     * @param writeBufferSize the maximum number of bytes written to the file at once
+     */
+    public void setWriteBufferSize(int writeBufferSize)
+    {
+        _writeBufferSize = writeBufferSize;
+    }
+
+    public long getSyncInterval()
+    {
+        return _syncInterval;
+    }
+
+    /**
+     * @param syncInterval the minimum interval in milliseconds between two syncs of the file,
+     * 0 to sync after every write, or a negative value to never sync and let the OS write the file at its own pace
+     */
+    public void setSyncInterval(long syncInterval)
+    {
+        _syncInterval = syncInterval;
+    }
+
+    /**
+     * @return the number of entries dropped because the ring buffer was full
+     */
+    public long getDroppedEntries()
+    {
+        return _droppedEntries.sum();
+    }
+
+    /**
+     * @return the number of entries truncated because they were larger than a slab
+     */
+    public long getTruncatedEntries()
+    {
+        return _truncatedEntries.sum();
+    }
+
+    /**
+     * @return the number of entries claimed, but not yet written to the file
+     */
+    public long getQueueDepth()
+    {
+        return _head.get() - _tail;
+    }
+
+    /**
+     * @return the maximum queue depth seen by the writer thread
+     */
+    public long getMaxQueueDepth()
+    {
+        return _maxQueueDepth;
+    }
+
+    /**
+     * @return the number of entries written to the file
+     */
+    public long getWrittenEntries()
+    {
+        return _writtenEntries;
+    }
+
+    /**
+     * @return the number of bytes written to the file
+     */
+    public long getWrittenBytes()
+    {
+        return _writtenBytes;
+    }
+
+    /**
+     * @return the number of writes to the file, each committing one or more entries
+     */
+    public long getWrites()
+    {
+        return _writes;
+    }
+
+    /**
+     * @return the number of syncs of the file
+     */
+    public long getSyncs()
+    {
+        return _syncs;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _ring = new Slab[_capacity];
+        for (int i = 0; i < _capacity; i++)
+        {
+            _ring[i] = new Slab(_slabSize);
+        }
+        _head.set(0);
+        _tail = 0;
+        _stopping = false;
+        _channel = _append
+            ? FileChannel.open(_file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+            : FileChannel.open(_file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        _thread = new Thread(this::run, "requestlog-" + _file.getFileName());
+        _thread.setDaemon(true);
+        _thread.start();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        // The writer thread writes all the published entries before exiting.
+        _stopping = true;
+        LockSupport.unpark(_thread);
+        _thread.join(TimeUnit.SECONDS.toMillis(5));
+        if (_thread.isAlive())
+        {
+            LOG.warn("Abandoning {} entries not published to {}", getQueueDepth(), _file);
+            _thread.interrupt();
+            _thread.join();
+        }
+        _thread = null;
+        _channel.close();
+        _channel = null;
+        _ring = null;
+    }
+
+    /**
+     * <p>Claims a slab to format a log entry into.</p>
+     * <p>The slab must then be {@link #publish(Slab) published}, even if the formatting fails.</p>
+     *
+     * @return an empty slab, or null if the entry must be dropped
+     */
+    public Slab claim()
+    {
+        Slab[] ring = _ring;
+        if (ring == null)
+        {
+            _droppedEntries.increment();
+            return null;
+        }
+        while (true)
+        {
+            long head = _head.get();
+            if (head - _tail >= ring.length)
+            {
+                _droppedEntries.increment();
+                return null;
+            }
+            if (_head.compareAndSet(head, head + 1))
+            {
+                Slab slab = ring[(int)(head & (ring.length - 1))];
+                slab.claim(head);
+                return slab;
+            }
+        }
+    }
+
+    /**
+     * <p>Publishes a slab, terminating its entry with a new line.</p>
+     *
+     * @param slab the slab returned by {@link #claim()}
+     */
+    public void publish(Slab slab)
+    {
+        if (slab._truncated)
+            _truncatedEntries.increment();
+        slab._bytes[slab._length++] = '\n';
+        slab._published = slab._sequence;
+        if (_sleeping)
+            LockSupport.unpark(_thread);
+    }
+
+    @Override
+    public void write(String requestEntry) throws IOException
+    {
+        Slab slab = claim();
+        if (slab == null)
+            return;
+        slab.append(requestEntry);
+        publish(slab);
+    }
+
+    private void run()
+    {
+        Slab[] ring = _ring;
+        int mask = ring.length - 1;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(_writeBufferSize, _slabSize));
+        long lastSync = NanoTime.now();
+        boolean unsynced = false;
+
+        while (true)
+        {
+            // Collect all the published slabs, in order, that fit in the buffer.
+            long tail = _tail;
+            long depth = _head.get() - tail;
+            if (depth > _maxQueueDepth)
+                _maxQueueDepth = depth;
+            int entries = 0;
+            while (true)
+            {
+                Slab slab = ring[(int)(tail & mask)];
+                if (slab._published != tail || buffer.remaining() < slab._length)
+                    break;
+                buffer.put(slab._bytes, 0, slab._length);
+                // Release the slab for producers.
+                _tail = ++tail;
+                ++entries;
+            }
+
+            if (entries > 0)
+            {
+                buffer.flip();
+                int bytes = buffer.remaining();
+                try
+                {
+                    while (buffer.hasRemaining())
+                    {
+                        _channel.write(buffer);
+                    }
+                    _writtenEntries += entries;
+                    _writtenBytes += bytes;
+                    _writes++;
+                    unsynced = true;
+                }
+                catch (IOException x)
+                {
+                    LOG.warn("Unable to write {} entries to {}", entries, _file, x);
+                }
+                buffer.clear();
+            }
+
+            if (unsynced && _syncInterval >= 0 && NanoTime.millisSince(lastSync) >= _syncInterval)
+            {
+                unsynced = !sync();
+                lastSync = NanoTime.now();
+            }
+
+            if (entries > 0)
+                continue;
+
+            if (_stopping)
+            {
+                // Wait for the slabs claimed before stopping to be published.
+                if (_head.get() == _tail || Thread.interrupted())
+                    break;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+
+            // Nothing was published, wait for a producer, or for the next sync.
+            _sleeping = true;
+            if (ring[(int)(_tail & mask)]._published != _tail && !_stopping)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(unsynced && _syncInterval > 0 ? _syncInterval : 100));
+            _sleeping = false;
+        }
+
+        if (unsynced && _syncInterval >= 0)
+            sync();
+    }
+
+    private boolean sync()
+    {
+        try
+        {
+            _channel.force(false);
+            _syncs++;
+            return true;
+        }
+        catch (IOException x)
+        {
+            LOG.warn("Unable to sync {}", _file, x);
+            return false;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[%s,depth=%d,dropped=%d,written=%d,writes=%d,syncs=%d]".formatted(
+            getClass().getSimpleName(), hashCode(), _file, getQueueDepth(), getDroppedEntries(), getWrittenEntries(), getWrites(), getSyncs());
+    }
+
+    /**
+     * <p>A preallocated buffer for a single log entry.</p>
+     * <p>Characters are encoded as UTF-8 directly into the slab, and the characters that
+     * do not fit are discarded.</p>
+     */
+    public static class Slab
+    {
+        private final byte[] _bytes;
+        private int _length;
+        private boolean _truncated;
+        private long _sequence;
+        private volatile long _published = -1;
+
+        private Slab(int size)
+        {
+            _bytes = new byte[size];
+        }
+
+        private void claim(long sequence)
+        {
+            _sequence = sequence;
+            _length = 0;
+            _truncated = false;
+        }
+
+        /**
+         * @return the number of bytes that can still be appended, keeping one byte for the line terminator
+         */
+        private int space()
+        {
+            return _bytes.length - 1 - _length;
+        }
+
+        /**
+         * @param c the character to append, or {@code ?} if it is a surrogate, as it cannot be encoded alone
+         * @return this slab
+         */
+        public Slab append(char c)
+        {
+            return appendCodePoint(Character.isSurrogate(c) ? '?' : c);
+        }
+
+        /**
+         * @param s the string to append, or {@code -} if it is null or empty
+         * @return this slab
+         */
+        public Slab append(String s)
+        {
+            if (s == null || s.isEmpty())
+                return append('-');
+            for (int i = 0; i < s.length() && !_truncated; )
+            {
+                int codePoint = s.codePointAt(i);
+                i += Character.charCount(codePoint);
+                // A lone surrogate is returned as is by codePointAt().
+                appendCodePoint(codePoint <= Character.MAX_VALUE && Character.isSurrogate((char)codePoint) ? '?' : codePoint);
+            }
+            return this;
+        }
+
+        private Slab appendCodePoint(int codePoint)
+        {
+            // Once a byte did not fit, the rest of the line is dropped, rather than just the parts that do not fit.
+            if (_truncated)
+                return this;
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (space() < size)
+            {
+                _truncated = true;
+                return this;
+            }
+            switch (size)
+            {
+                case 1 -> _bytes[_length++] = (byte)codePoint;
+                case 2 ->
+                {
+                    _bytes[_length++] = (byte)(0xC0 | (codePoint >> 6));
+                    _bytes[_length++] = (byte)(0x80 | (codePoint & 0x3F));
+                }
+                case 3 ->
+                {
+                    _bytes[_length++] = (byte)(0xE0 | (codePoint >> 12));
+                    _bytes[_length++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                    _bytes[_length++] = (byte)(0x80 | (codePoint & 0x3F));
+                }
+                default ->
+                {
+                    _bytes[_length++] = (byte)(0xF0 | (codePoint >> 18));
+                    _bytes[_length++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+                    _bytes[_length++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+                    _bytes[_length++] = (byte)(0x80 | (codePoint & 0x3F));
+                }
+            }
+            return this;
+        }
+
+        public Slab append(long value)
+        {
+            if (_truncated)
+                return this;
+            if (value < 0)
+            {
+                if (value == Long.MIN_VALUE)
+                    return append(Long.toString(value));
+                append('-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10)
+            {
+                digits++;
+            }
+            if (space() < digits)
+            {
+                _truncated = true;
+                return this;
+            }
+            for (int i = _length + digits - 1; i >= _length; i--)
+            {
+                _bytes[i] = (byte)('0' + (value % 10));
+                value /= 10;
+            }
+            _length += digits;
+            return this;
+        }
+
+        public int length()
+        {
+            return _length;
+        }
+
+        public boolean isTruncated()
+        {
+            return _truncated;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenPaths;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BinaryRequestLogTest
+{
+    private static final long START = 1_700_000_000_000L;
+    private static final int[] STATUSES = {200, 200, 200, 200, 304, 404, 500};
+    private static final List<String> METHODS = List.of("GET", "GET", "POST", "HEAD");
+
+    private Path logsDir;
+    private BinaryRequestLog requestLog;
+
+    @BeforeEach
+    public void prepare(TestInfo testInfo)
+    {
+        logsDir = MavenPaths.targetTestDir(BinaryRequestLogTest.class.getSimpleName() + "-" + testInfo.getTestMethod().orElseThrow().getName());
+        FS.ensureEmpty(logsDir);
+        requestLog = new BinaryRequestLog(logsDir);
+    }
+
+    @AfterEach
+    public void stopLog()
+    {
+        LifeCycle.stop(requestLog);
+    }
+
+    /**
+     * Appends records one millisecond apart, with latencies from 1 to 1000 microseconds.
+     */
+    private void append(int records)
+    {
+        for (int i = 0; i < records; i++)
+        {
+            requestLog.append(START + i, 1 + i % 1000, METHODS.get(i % METHODS.size()), STATUSES[i % STATUSES.length],
+                "/path/" + (i % 5000), "agent-" + (i % 3000), 1000 + i);
+        }
+    }
+
+    @Test
+    public void testSummary() throws Exception
+    {
+        int records = 70_000;
+        requestLog.setMaxDictionarySize(1000);
+        requestLog.setMaxSegmentSize(256 * 1024);
+        requestLog.setMaxPendingBlocks(Integer.MAX_VALUE);
+        requestLog.start();
+        append(records);
+        requestLog.stop();
+
+        assertEquals(records, requestLog.getWrittenRecords());
+        assertEquals(0, requestLog.getDroppedRecords());
+        BinaryRequestLogReader reader = new BinaryRequestLogReader(logsDir);
+        assertThat(reader.getSegments().size(), greaterThan(1));
+        assertEquals(requestLog.getSegments(), reader.getSegments().size());
+
+        BinaryRequestLogReader.Summary summary = reader.summarize();
+        assertEquals(records, summary.getRecords());
+        assertEquals(Map.of(200, 40_000L, 304, 10_000L, 404, 10_000L, 500, 10_000L), summary.getStatusCounts());
+        BinaryRequestLogReader.LatencyHistogram latencies = summary.getLatencies();
+        assertEquals(1000, latencies.getMax());
+        assertThat(latencies.getValueAtPercentile(50), allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(515L)));
+        assertThat(latencies.getValueAtPercentile(99), allOf(greaterThanOrEqualTo(990L), lessThanOrEqualTo(1000L)));
+        assertEquals(1, latencies.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testTimeRange() throws Exception
+    {
+        requestLog.setBlockSize(1000);
+        requestLog.start();
+        append(10_000);
+        requestLog.stop();
+
+        BinaryRequestLogReader.Summary summary = new BinaryRequestLogReader(logsDir).summarize(START + 7000, START + 7070);
+        assertEquals(70, summary.getRecords());
+        assertEquals(Map.of(200, 40L, 304, 10L, 404, 10L, 500, 10L), summary.getStatusCounts());
+    }
+
+    @Test
+    public void testCompact() throws Exception
+    {
+        requestLog.start();
+        for (int i = 0; i < 10_000; i++)
+        {
+            requestLog.append(START + i * 10, 250, "GET", 200, "/index.html", "Mozilla/5.0 (X11; Linux x86_64; rv:131.0) Gecko/20100101 Firefox/131.0", 1116);
+        }
+        requestLog.stop();
+
+        // Repeated values only take a byte or two per column, instead of about 180 bytes for an extended NCSA line.
+        long bytes = new BinaryRequestLogReader(logsDir).summarize().getBytes();
+        assertThat(bytes, lessThan(10_000L * 10));
+    }
+
+    @Test
+    public void testIncompleteBlock() throws Exception
+    {
+        requestLog.setBlockSize(100);
+        requestLog.start();
+        append(1000);
+        requestLog.stop();
+
+        Path segment = new BinaryRequestLogReader(logsDir).getSegments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE))
+        {
+            channel.truncate(channel.size() - 10);
+        }
+
+        // The incomplete last block is ignored.
+        assertThat(new BinaryRequestLogReader(logsDir).summarize().getRecords(), is(900L));
+    }
+
+    @Test
+    public void testRestart() throws Exception
+    {
+        requestLog.start();
+        append(10);
+        requestLog.stop();
+        requestLog.start();
+        append(10);
+        requestLog.stop();
+
+        BinaryRequestLogReader reader = new BinaryRequestLogReader(logsDir);
+        assertEquals(List.of(BinaryRequestLog.segmentName(0), BinaryRequestLog.segmentName(1)),
+            reader.getSegments().stream().map(path -> path.getFileName().toString()).toList());
+        assertEquals(20, reader.summarize().getRecords());
+    }
+
+    @Test
+    public void testAppendAfterStopIsDropped() throws Exception
+    {
+        requestLog.start();
+        append(10);
+        requestLog.stop();
+        append(5);
+
+        assertEquals(10, requestLog.getWrittenRecords());
+        assertEquals(5, requestLog.getDroppedRecords());
+        assertEquals(10, new BinaryRequestLogReader(logsDir).summarize().getRecords());
+    }
+}
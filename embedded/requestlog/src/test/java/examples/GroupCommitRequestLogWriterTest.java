@@ -0,0 +1,171 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenPaths;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GroupCommitRequestLogWriterTest
+{
+    private Path logFile;
+    private GroupCommitRequestLogWriter writer;
+
+    @BeforeEach
+    public void prepare(TestInfo testInfo)
+    {
+        Path logsDir = MavenPaths.targetTestDir(GroupCommitRequestLogWriterTest.class.getSimpleName() + "-" + testInfo.getTestMethod().orElseThrow().getName());
+        FS.ensureEmpty(logsDir);
+        logFile = logsDir.resolve("request.log");
+        writer = new GroupCommitRequestLogWriter(logFile);
+    }
+
+    @AfterEach
+    public void stopWriter()
+    {
+        LifeCycle.stop(writer);
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception
+    {
+        int threads = 8;
+        int entriesPerThread = 10_000;
+        writer.setCapacity(1024);
+        writer.setSyncInterval(10);
+        writer.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            int thread = t;
+            executor.execute(() ->
+            {
+                for (int i = 0; i < entriesPerThread; i++)
+                {
+                    GroupCommitRequestLogWriter.Slab slab = writer.claim();
+                    if (slab != null)
+                        writer.publish(slab.append("thread ").append(thread).append(" entry ").append(i));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        writer.stop();
+
+        List<String> lines = Files.readAllLines(logFile, UTF_8);
+        assertEquals(writer.getWrittenEntries(), lines.size());
+        assertEquals(threads * entriesPerThread, writer.getWrittenEntries() + writer.getDroppedEntries());
+        assertEquals(0, writer.getQueueDepth());
+        lines.forEach(line -> assertThat(line, startsWith("thread ")));
+        // Entries are grouped in fewer writes.
+        assertThat(writer.getWrites(), lessThan(writer.getWrittenEntries()));
+        assertThat(writer.getSyncs(), greaterThan(0L));
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception
+    {
+        writer.setCapacity(2);
+        writer.start();
+
+        // The writer thread cannot write the claimed slabs until they are published.
+        GroupCommitRequestLogWriter.Slab first = writer.claim();
+        GroupCommitRequestLogWriter.Slab second = writer.claim();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(writer.claim());
+        writer.write("dropped");
+        assertEquals(2, writer.getDroppedEntries());
+        assertEquals(2, writer.getQueueDepth());
+
+        writer.publish(second.append("second"));
+        writer.publish(first.append("first"));
+        writer.stop();
+
+        assertEquals(List.of("first", "second"), Files.readAllLines(logFile, UTF_8));
+    }
+
+    @Test
+    public void testTruncatedEntry() throws Exception
+    {
+        writer.setSlabSize(16);
+        writer.start();
+
+        writer.write("héllo wörld, this entry is too long");
+        writer.write("€ 1234567890");
+        writer.stop();
+
+        // Multi-byte characters are never split.
+        assertEquals(List.of("héllo wörld, ", "€ 1234567890"), Files.readAllLines(logFile, UTF_8));
+        assertEquals(1, writer.getTruncatedEntries());
+    }
+
+    @Test
+    public void testSupplementaryCharacters() throws Exception
+    {
+        writer.setSlabSize(24);
+        writer.start();
+
+        writer.write("GET /\uD83D\uDE00.html 200");
+        writer.write("GET /\uD83D.html 200");
+        // The emoji does not fit, so neither does anything after it.
+        writer.write("GET /0123456789abcdef\uD83D\uDE00c");
+        writer.stop();
+
+        // Reading fails unless the surrogate pair is a single 4 byte sequence, and the lone surrogate is replaced.
+        assertEquals(List.of("GET /\uD83D\uDE00.html 200", "GET /?.html 200", "GET /0123456789abcdef"), Files.readAllLines(logFile, UTF_8));
+        assertEquals(1, writer.getTruncatedEntries());
+    }
+
+    @Test
+    public void testAppend() throws Exception
+    {
+        writer.start();
+        writer.write("before restart");
+        writer.stop();
+        writer.start();
+        writer.write("after restart");
+        writer.stop();
+        assertEquals(List.of("before restart", "after restart"), Files.readAllLines(logFile, UTF_8));
+
+        writer.setAppend(false);
+        writer.start();
+        writer.write("truncated");
+        writer.stop();
+        assertEquals(List.of("truncated"), Files.readAllLines(logFile, UTF_8));
+    }
+}
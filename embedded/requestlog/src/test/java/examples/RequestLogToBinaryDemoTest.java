@@ -0,0 +1,105 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenPaths;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestLogToBinaryDemoTest
+{
+    private Server server;
+    private Path logsDir;
+    private BinaryRequestLog requestLog;
+    private CountDownLatch logged;
+
+    @BeforeEach
+    public void startServer() throws Exception
+    {
+        logsDir = MavenPaths.targetTestDir(RequestLogToBinaryDemoTest.class.getSimpleName());
+        FS.ensureEmpty(logsDir);
+
+        server = RequestLogToBinaryDemo.newServer(0, logsDir);
+        // The request log is called after the response is sent, so count the logged requests to wait for them.
+        requestLog = (BinaryRequestLog)server.getRequestLog();
+        logged = new CountDownLatch(8);
+        server.setRequestLog((request, response) ->
+        {
+            requestLog.log(request, response);
+            logged.countDown();
+        });
+        server.addBean(requestLog);
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer()
+    {
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testRequests() throws Exception
+    {
+        HttpClient client = HttpClient.newBuilder().build();
+        for (int i = 0; i < 5; i++)
+        {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(server.getURI().resolve("/interesting/dir"))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(UTF_8));
+            assertThat(response.statusCode(), is(200));
+        }
+        for (int i = 0; i < 3; i++)
+        {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(server.getURI().resolve("/bogus/path"))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(UTF_8));
+            assertThat(response.statusCode(), is(404));
+        }
+
+        assertTrue(logged.await(10, TimeUnit.SECONDS));
+        // Stopping the request log writes the last block.
+        server.stop();
+        assertThat(requestLog.getWrittenRecords(), is(8L));
+        assertThat(requestLog.getDroppedRecords(), is(0L));
+
+        BinaryRequestLogReader.Summary summary = new BinaryRequestLogReader(logsDir).summarize();
+        assertThat(summary.getRecords(), is(8L));
+        assertThat(summary.getStatusCounts(), is(Map.of(200, 5L, 404, 3L)));
+        assertThat(summary.getLatencies().getMax(), greaterThan(0L));
+    }
+}
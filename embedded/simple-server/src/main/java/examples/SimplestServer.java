@@ -19,12 +19,17 @@ public class SimplestServer
 {
     public static void main(String[] args) throws Exception
     {
-        Server server = new Server(9090);
-        // This has a connector listening on port 9090
-        // and no handlers, meaning all requests will result
-        // in a 404 response
+        Server server = SimplestServer.newServer(9090);
         server.start();
         System.err.println("Hint: Hit Ctrl+C to stop Jetty.");
         server.join();
     }
+
+    public static Server newServer(int port)
+    {
+        // This has a connector listening on the provided port
+        // and no handlers, meaning all requests will result
+        // in a 404 response
+        return new Server(port);
+    }
 }
@@ -0,0 +1,260 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sends a {@code 103 Early Hints} response with the {@link LinkHints} of a page,
+ * before the page itself, so that the browser starts loading the sub-resources of
+ * the page while the page is being generated and sent.
+ * <p>
+ * A request is for a page when it is a navigation ({@code Sec-Fetch-Dest: document}), or when
+ * it accepts {@code text/html}. Any other request with a same origin {@code Referer} is taken as
+ * a request of a sub-resource of the page in the {@code Referer}, from which the hints are learned.
+ * Only the pages and the sub-resources that were served successfully, with a {@code 2xx} or
+ * {@code 304} status, are learned, once their response is complete, including the asynchronous ones.
+ * The {@code Link} headers are also left on the page response, for clients that ignore {@code 103}.
+ * </p>
+ * <p>
+ * The init-params are:
+ * </p>
+ * <ul>
+ * <li>{@code manifest} - the path in the webapp of a properties file that maps each page to
+ * a comma separated list of sub-resources to always hint, for example
+ * {@code /http2.html = /style.css}</li>
+ * <li>{@code minObservations} - the number of requests of a sub-resource before it is hinted (default 2)</li>
+ * <li>{@code maxHints} - the maximum number of hints for a page (default 32)</li>
+ * <li>{@code maxPages} - the maximum number of pages that are hinted (default 256)</li>
+ * </ul>
+ * <p>
+ * The {@link LinkHints} are set as the context attribute named after the {@link LinkHints} class.
+ * </p>
+ */
+public class EarlyHintsFilter implements Filter
+{
+    // Jetty sends sendError(103) as an interim response with the current headers, see RFC 8297.
+    private static final int SC_EARLY_HINTS = 103;
+
+    private LinkHints linkHints;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException
+    {
+        linkHints = new LinkHints(
+            getInitParameter(config, "minObservations", 2),
+            getInitParameter(config, "maxHints", 32),
+            getInitParameter(config, "maxPages", 256));
+
+        String manifest = config.getInitParameter("manifest");
+        if (manifest != null)
+        {
+            Properties pages = new Properties();
+            try (InputStream input = config.getServletContext().getResourceAsStream(manifest))
+            {
+                if (input == null)
+                    throw new ServletException("Unable to find manifest " + manifest);
+                pages.load(input);
+            }
+            catch (IOException x)
+            {
+                throw new ServletException("Unable to load manifest " + manifest, x);
+            }
+            for (String page : pages.stringPropertyNames())
+            {
+                List<String> resources = Arrays.stream(pages.getProperty(page).split(","))
+                    .map(String::trim)
+                    .filter(resource -> !resource.isEmpty())
+                    .toList();
+                linkHints.setManifest(page, resources);
+            }
+        }
+
+        config.getServletContext().setAttribute(LinkHints.class.getName(), linkHints);
+    }
+
+    private static int getInitParameter(FilterConfig config, String name, int defaultValue)
+    {
+        String value = config.getInitParameter(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * @return the hints of the pages of this webapp
+     */
+    public LinkHints getLinkHints()
+    {
+        return linkHints;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException
+    {
+        HttpServletRequest request = (HttpServletRequest)req;
+        HttpServletResponse response = (HttpServletResponse)res;
+        String page = null;
+        String referer = null;
+        String path = null;
+        if ("GET".equals(request.getMethod()) && request.getDispatcherType() == DispatcherType.REQUEST)
+        {
+            path = getPathInContext(request);
+            if (isPage(request))
+            {
+                page = path;
+                List<LinkHints.Hint> hints = linkHints.onPage(path);
+                if (!hints.isEmpty())
+                {
+                    String contextPath = request.getContextPath();
+                    response.setHeader("Link", hints.stream()
+                        .map(hint -> hint.toLink(contextPath))
+                        .collect(Collectors.joining(", ")));
+                    // HTTP/1.0 clients do not expect interim responses, see RFC 9110 section 15.2.
+                    if (!"HTTP/1.0".equals(request.getProtocol()))
+                        response.sendError(SC_EARLY_HINTS);
+                }
+            }
+            else
+            {
+                referer = getRefererPage(request);
+            }
+        }
+        chain.doFilter(request, response);
+        if (page == null && referer == null)
+            return;
+
+        // The status is only final once the response is complete, which for an async request is after the filter returns.
+        ResponseListener listener = new ResponseListener(page, referer, path, response);
+        if (request.isAsyncStarted())
+            request.getAsyncContext().addListener(listener);
+        else
+            listener.onComplete();
+    }
+
+    private static String getPathInContext(HttpServletRequest request)
+    {
+        String pathInfo = request.getPathInfo();
+        return pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+    }
+
+    private static boolean isPage(HttpServletRequest request)
+    {
+        String dest = request.getHeader("Sec-Fetch-Dest");
+        if (dest != null)
+            return dest.equals("document");
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains("text/html");
+    }
+
+    private static String getRefererPage(HttpServletRequest request)
+    {
+        String referer = request.getHeader("Referer");
+        if (referer == null)
+            return null;
+        try
+        {
+            URI uri = URI.create(referer);
+            // Only the sub-resources of the pages of this webapp, at the same origin, are learned.
+            if (!request.getScheme().equalsIgnoreCase(uri.getScheme()) ||
+                !request.getServerName().equalsIgnoreCase(uri.getHost()) ||
+                request.getServerPort() != getPort(uri))
+                return null;
+            String path = uri.getPath();
+            String contextPath = request.getContextPath();
+            if (path == null || !path.startsWith(contextPath + "/"))
+                return null;
+            return path.substring(contextPath.length());
+        }
+        catch (IllegalArgumentException x)
+        {
+            return null;
+        }
+    }
+
+    private static int getPort(URI uri)
+    {
+        if (uri.getPort() >= 0)
+            return uri.getPort();
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    /**
+     * Learns the page or the sub-resource of a request once its response is complete.
+     */
+    private class ResponseListener implements AsyncListener
+    {
+        private final String page;
+        private final String referer;
+        private final String path;
+        private final HttpServletResponse response;
+
+        private ResponseListener(String page, String referer, String path, HttpServletResponse response)
+        {
+            this.page = page;
+            this.referer = referer;
+            this.path = path;
+            this.response = response;
+        }
+
+        private void onComplete()
+        {
+            int status = response.getStatus();
+            if (page != null)
+                linkHints.onPageResponse(page, status);
+            else if (status / 100 == 2 || status == HttpServletResponse.SC_NOT_MODIFIED)
+                linkHints.onSubResource(referer, path);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event)
+        {
+            onComplete();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event)
+        {
+        }
+
+        @Override
+        public void onError(AsyncEvent event)
+        {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event)
+        {
+            // A new async cycle needs this listener again.
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
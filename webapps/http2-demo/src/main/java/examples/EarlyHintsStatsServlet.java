@@ -0,0 +1,53 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Reports, for each page, the {@link LinkHints.PageStats} of the {@link EarlyHintsFilter}, one page per line.
+ */
+public class EarlyHintsStatsServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException
+    {
+        LinkHints linkHints = (LinkHints)getServletContext().getAttribute(LinkHints.class.getName());
+        if (linkHints == null)
+        {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "EarlyHintsFilter not configured");
+            return;
+        }
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("utf-8");
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter out = response.getWriter();
+        for (Map.Entry<String, LinkHints.PageStats> entry : linkHints.getPageStats().entrySet())
+        {
+            LinkHints.PageStats stats = entry.getValue();
+            out.printf("%s views=%d hints=%d hintsSent=%d hintsUsed=%d subResources=%d hitRate=%.2f coverage=%.2f%n",
+                entry.getKey(), stats.views(), stats.hints(), stats.hintsSent(), stats.hintsUsed(), stats.subResources(), stats.hitRate(), stats.coverage());
+        }
+    }
+}
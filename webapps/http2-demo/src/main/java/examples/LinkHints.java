@@ -0,0 +1,287 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The sub-resources to hint for each page, with {@code Link: rel=preload} headers.
+ * <p>
+ * The hints of a page come from a static manifest, see {@link #setManifest(String, List)},
+ * followed by the sub-resources learned from the requests that the clients make for that page,
+ * which are the requests whose {@code Referer} is the page, see {@link #onSubResource(String, String)}.
+ * A sub-resource is learned once it has been requested {@link #getMinObservations()} times,
+ * and a page has at most {@link #getMaxHints()} hints, the learned ones being ordered by the number
+ * of requests, then by path.
+ * The requests of a page are only counted for the {@code 4 * maxHints} sub-resources most recently
+ * requested, and the counts are halved every {@code 4 * maxHints * minObservations} requests,
+ * so that the sub-resources that the page no longer uses are unlearned.
+ * A page is known once it has been served successfully, see {@link #onPageResponse(String, int)},
+ * so that the requests of missing pages do not use up the {@link #getMaxPages()} pages.
+ * </p>
+ * <p>
+ * For each page, the {@link PageStats} tell how many of the hints sent were then requested
+ * (the hit rate) and how many of the requested sub-resources had been hinted (the coverage).
+ * </p>
+ */
+public class LinkHints
+{
+    private final Map<String, Page> _pages = new ConcurrentHashMap<>();
+    private final int _minObservations;
+    private final int _maxHints;
+    private final int _maxPages;
+
+    /**
+     * @param minObservations the number of requests of a sub-resource before it is hinted
+     * @param maxHints the maximum number of hints of a page
+     * @param maxPages the maximum number of pages, further pages are not hinted
+     */
+    public LinkHints(int minObservations, int maxHints, int maxPages)
+    {
+        _minObservations = minObservations;
+        _maxHints = maxHints;
+        _maxPages = maxPages;
+    }
+
+    public int getMinObservations()
+    {
+        return _minObservations;
+    }
+
+    public int getMaxHints()
+    {
+        return _maxHints;
+    }
+
+    public int getMaxPages()
+    {
+        return _maxPages;
+    }
+
+    /**
+     * @param page the path of a page in the context
+     * @param resources the paths of the sub-resources to always hint for the page, in order
+     */
+    public void setManifest(String page, List<String> resources)
+    {
+        Page p = _pages.computeIfAbsent(page, k -> new Page());
+        p.setManifest(resources.stream().map(Hint::of).toList());
+    }
+
+    /**
+     * Records a view of a known page, and returns the hints to send for it.
+     *
+     * @param page the path of the page in the context
+     * @return the hints to send for the page, possibly empty
+     */
+    public List<Hint> onPage(String page)
+    {
+        Page p = _pages.get(page);
+        if (p == null)
+            return List.of();
+        List<Hint> hints = p._hints;
+        p._views.increment();
+        p._hintsSent.add(hints.size());
+        return hints;
+    }
+
+    /**
+     * Records the response of a page, which makes the page known if it was served successfully.
+     *
+     * @param page the path of the page in the context
+     * @param status the status code of the response
+     */
+    public void onPageResponse(String page, int status)
+    {
+        boolean success = status / 100 == 2 || status == 304;
+        if (!success || _pages.containsKey(page) || _pages.size() >= _maxPages)
+            return;
+        Page p = new Page();
+        // The view of a page that was not known is recorded here, as it had no hints.
+        if (_pages.putIfAbsent(page, p) == null)
+            p._views.increment();
+    }
+
+    /**
+     * Records the request of a sub-resource by a page that has been viewed.
+     *
+     * @param page the path of the page in the context, from the {@code Referer} of the request
+     * @param resource the path of the sub-resource in the context
+     */
+    public void onSubResource(String page, String resource)
+    {
+        Page p = _pages.get(page);
+        if (p == null || page.equals(resource))
+            return;
+        p.observe(Hint.of(resource));
+    }
+
+    /**
+     * @return the statistics of each page, sorted by path
+     */
+    public Map<String, PageStats> getPageStats()
+    {
+        Map<String, PageStats> stats = new TreeMap<>();
+        _pages.forEach((path, page) -> stats.put(path, page.getStats()));
+        return stats;
+    }
+
+    /**
+     * @param page the path of a page in the context
+     * @return the hints of the page, possibly empty
+     */
+    public List<Hint> getHints(String page)
+    {
+        Page p = _pages.get(page);
+        return p == null ? List.of() : p._hints;
+    }
+
+    /**
+     * A sub-resource to preload.
+     *
+     * @param path the path of the sub-resource in the context
+     * @param as the destination of the sub-resource, as in the {@code as} attribute of {@code <link rel=preload>}
+     */
+    public record Hint(String path, String as)
+    {
+        public static Hint of(String path)
+        {
+            String name = path.toLowerCase(Locale.ENGLISH);
+            String extension = name.substring(name.lastIndexOf('.') + 1);
+            String as = switch (extension)
+            {
+                case "css" -> "style";
+                case "js", "mjs" -> "script";
+                case "woff", "woff2", "ttf", "otf" -> "font";
+                case "png", "jpg", "jpeg", "gif", "svg", "webp", "avif", "ico" -> "image";
+                default -> "fetch";
+            };
+            return new Hint(path, as);
+        }
+
+        /**
+         * @param contextPath the context path of the webapp
+         * @return the value of the {@code Link} header for this hint
+         */
+        public String toLink(String contextPath)
+        {
+            // Fonts and fetches are requested in CORS mode, and the preload must match.
+            String crossOrigin = as.equals("font") || as.equals("fetch") ? "; crossorigin" : "";
+            return "<" + contextPath + path + ">; rel=preload; as=" + as + crossOrigin;
+        }
+    }
+
+    /**
+     * @param views the number of views of the page
+     * @param hintsSent the number of hints sent for the page
+     * @param hintsUsed the number of requests for the page of a sub-resource that was hinted
+     * @param subResources the number of requests of sub-resources for the page
+     * @param hints the number of current hints of the page
+     */
+    public record PageStats(long views, long hintsSent, long hintsUsed, long subResources, int hints)
+    {
+        /**
+         * @return the ratio of hints sent that were then requested
+         */
+        public double hitRate()
+        {
+            return hintsSent == 0 ? 0 : Math.min(1.0, (double)hintsUsed / hintsSent);
+        }
+
+        /**
+         * @return the ratio of requested sub-resources that were hinted
+         */
+        public double coverage()
+        {
+            return subResources == 0 ? 0 : (double)hintsUsed / subResources;
+        }
+    }
+
+    private class Page
+    {
+        private final LongAdder _views = new LongAdder();
+        private final LongAdder _hintsSent = new LongAdder();
+        private final LongAdder _hintsUsed = new LongAdder();
+        private final LongAdder _subResources = new LongAdder();
+        // The counts of the most recently requested sub-resources, guarded by this page.
+        private final Map<Hint, Long> _observed = new LinkedHashMap<>(16, 0.75F, true);
+        private long _observations;
+        private List<Hint> _manifest = List.of();
+        private volatile List<Hint> _hints = List.of();
+
+        private synchronized void observe(Hint hint)
+        {
+            _subResources.increment();
+            if (_hints.contains(hint))
+                _hintsUsed.increment();
+
+            long count = _observed.merge(hint, 1L, Long::sum);
+            boolean changed = count == _minObservations;
+            // Bound the memory used by the sub-resources, forgetting the least recently requested.
+            if (_observed.size() > 4 * _maxHints)
+            {
+                Iterator<Long> eldest = _observed.values().iterator();
+                changed |= eldest.next() >= _minObservations;
+                eldest.remove();
+            }
+            // Decay the counts, so that the sub-resources no longer requested fall below the threshold.
+            if (++_observations % (4L * _maxHints * _minObservations) == 0)
+            {
+                _observed.replaceAll((h, c) -> c / 2);
+                _observed.values().removeIf(c -> c == 0);
+                changed = true;
+            }
+            if (changed)
+                update();
+        }
+
+        private synchronized void setManifest(List<Hint> manifest)
+        {
+            _manifest = manifest;
+            update();
+        }
+
+        private void update()
+        {
+            // The counts are copied, as looking them up would change the order of the recently requested.
+            List<Map.Entry<Hint, Long>> learned = new ArrayList<>();
+            _observed.forEach((hint, count) ->
+            {
+                if (count >= _minObservations)
+                    learned.add(Map.entry(hint, count));
+            });
+            learned.sort(Map.Entry.<Hint, Long>comparingByValue().reversed().thenComparing(entry -> entry.getKey().path()));
+
+            Set<Hint> hints = new LinkedHashSet<>(_manifest);
+            learned.forEach(entry -> hints.add(entry.getKey()));
+            _hints = List.copyOf(new ArrayList<>(hints).subList(0, Math.min(hints.size(), _maxHints)));
+        }
+
+        private PageStats getStats()
+        {
+            return new PageStats(_views.sum(), _hintsSent.sum(), _hintsUsed.sum(), _subResources.sum(), _hints.size());
+        }
+    }
+}
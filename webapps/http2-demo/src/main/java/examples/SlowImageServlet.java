@@ -11,34 +11,183 @@
 // ========================================================================
 //
 
+
 package examples;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+/**
+ * Serves the images of the demo, many of which are requested at once by the page,
+ * to show how they are multiplexed over a single HTTP/2 connection.
+ * <p>
+ * By default the images are written asynchronously: the request is put in async mode and a
+ * {@link WriteListener} reads the image through a {@link ByteBuffer} from a {@link FileChannel}
+ * (or from the resource stream when the webapp is not unpacked) and only writes when the output
+ * {@link ServletOutputStream#isReady() is ready}, so that no thread is held by a stream waiting for
+ * the client to consume its data.
+ * Setting the init-param {@code async} to {@code false} writes the images with blocking writes instead.
+ * </p>
+ * <p>
+ * The init-param {@code cacheControl}, if set, is sent with every image, for example to make the
+ * browser fetch all the images again when the page is reloaded.
+ * Otherwise the images have a {@code Last-Modified} header and conditional requests are honored.
+ * </p>
+ */
 public class SlowImageServlet extends HttpServlet
 {
+    private boolean async = true;
+    private int bufferSize = 16 * 1024;
+    private String cacheControl;
+
+    @Override
+    public void init()
+    {
+        String value = getInitParameter("async");
+        if (value != null)
+            async = Boolean.parseBoolean(value);
+        value = getInitParameter("bufferSize");
+        if (value != null)
+            bufferSize = Integer.parseInt(value);
+        cacheControl = getInitParameter("cacheControl");
+    }
+
+    @Override
+    protected long getLastModified(HttpServletRequest request)
+    {
+        if (cacheControl != null)
+            return -1;
+        String realPath = getServletContext().getRealPath(getPath(request));
+        if (realPath == null)
+            return -1;
+        try
+        {
+            // HTTP dates have a precision of a second.
+            return Files.getLastModifiedTime(Path.of(realPath)).toMillis() / 1000 * 1000;
+        }
+        catch (IOException x)
+        {
+            return -1;
+        }
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException
     {
-        response.addHeader("Cache-control", "no-store, no-cache, must-revalidate");
-        response.addDateHeader("Last-Modified", 0);
-        response.addDateHeader("Expires", 0);
+        String path = getPath(request);
+        ReadableByteChannel channel = open(path);
+        if (channel == null)
+        {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (cacheControl != null)
+        {
+            response.setHeader("Cache-Control", cacheControl);
+            response.setDateHeader("Expires", 0);
+        }
+        response.setContentType(getServletContext().getMimeType(path));
+        if (channel instanceof FileChannel fileChannel)
+            response.setContentLengthLong(fileChannel.size());
+
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        if (async && request.isAsyncSupported())
+        {
+            AsyncContext asyncContext = request.startAsync();
+            // The image is written by the container as the stream becomes writable, not by a blocked thread.
+            asyncContext.setTimeout(0);
+            response.getOutputStream().setWriteListener(new ImageWriter(asyncContext, channel, buffer));
+            return;
+        }
 
-        String path = request.getRequestURI();
-        try (InputStream input = getServletContext().getResourceAsStream(path))
+        try (channel)
         {
-            OutputStream output = response.getOutputStream();
-            byte[] buffer = new byte[4 * 1024];
-            int read;
-            while ((read = input.read(buffer)) >= 0)
+            ServletOutputStream output = response.getOutputStream();
+            while (channel.read(buffer.clear()) >= 0)
+            {
+                buffer.flip();
+                output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+        }
+    }
+
+    private static String getPath(HttpServletRequest request)
+    {
+        String pathInfo = request.getPathInfo();
+        return pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+    }
+
+    private ReadableByteChannel open(String path) throws IOException
+    {
+        String realPath = getServletContext().getRealPath(path);
+        if (realPath != null && Files.isRegularFile(Path.of(realPath)))
+            return FileChannel.open(Path.of(realPath));
+        InputStream input = getServletContext().getResourceAsStream(path);
+        return input == null ? null : Channels.newChannel(input);
+    }
+
+    /**
+     * Copies an image to the response, one buffer at a time, while the response is ready to be written.
+     */
+    private static class ImageWriter implements WriteListener
+    {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream output;
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        private ImageWriter(AsyncContext asyncContext, ReadableByteChannel channel, ByteBuffer buffer) throws IOException
+        {
+            this.asyncContext = asyncContext;
+            this.output = asyncContext.getResponse().getOutputStream();
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException
+        {
+            // Each write may be pending until isReady() returns true again,
+            // and this method is called again once the write completes.
+            while (output.isReady())
+            {
+                if (channel.read(buffer.clear()) < 0)
+                {
+                    channel.close();
+                    asyncContext.complete();
+                    return;
+                }
+                buffer.flip();
+                output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+        }
+
+        @Override
+        public void onError(Throwable failure)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException x)
             {
-                output.write(buffer, 0, read);
+                failure.addSuppressed(x);
             }
+            asyncContext.complete();
         }
     }
 }
@@ -0,0 +1,440 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.ee10.servlet.DefaultServlet;
+import org.eclipse.jetty.ee10.servlet.FilterHolder;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EarlyHintsFilterTest
+{
+    private static final Pattern SUB_RESOURCE = Pattern.compile("(?:src|href)=\"([^\"]+\\.(?:css|png))\"");
+
+    private final Semaphore completions = new Semaphore(0);
+    private Server server;
+    private HTTP2Client http2Client;
+    private Session session;
+    private LinkHints linkHints;
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server, new HTTP2CServerConnectionFactory(new HttpConfiguration()));
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler("/");
+        context.setBaseResourceAsPath(Path.of("src/main/webapp"));
+        FilterHolder completion = new FilterHolder(new CompletionFilter());
+        completion.setAsyncSupported(true);
+        context.addFilter(completion, "/*", null);
+        FilterHolder filter = new FilterHolder(EarlyHintsFilter.class);
+        filter.setInitParameter("manifest", "/WEB-INF/early-hints.properties");
+        filter.setInitParameter("minObservations", "2");
+        filter.setAsyncSupported(true);
+        context.addFilter(filter, "/*", null);
+        // As in web.xml, the images are written asynchronously.
+        context.addServlet(SlowImageServlet.class, "/images/*").setAsyncSupported(true);
+        context.addServlet(AsyncPageServlet.class, "/async/*").setAsyncSupported(true);
+        context.addServlet(EarlyHintsStatsServlet.class, "/early-hints");
+        context.addServlet(DefaultServlet.class, "/");
+        server.setHandler(context);
+        server.start();
+        linkHints = (LinkHints)context.getServletContext().getAttribute(LinkHints.class.getName());
+
+        http2Client = new HTTP2Client();
+        http2Client.start();
+        session = http2Client.connect(new InetSocketAddress("localhost", connector.getLocalPort()), new Session.Listener() {})
+            .get(5, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    public void stop()
+    {
+        LifeCycle.stop(http2Client);
+        LifeCycle.stop(server);
+    }
+
+    @Test
+    public void testManifestThenLearnedHints() throws Exception
+    {
+        // The first view only has the hints of the manifest.
+        Exchange page = page("/http2.html");
+        assertThat(page.status, is(HttpStatus.OK_200));
+        assertThat(page.earlyHints, contains("</style.css>; rel=preload; as=style"));
+        List<String> subResources = loadSubResources(page);
+        assertThat(subResources, hasSize(21));
+
+        // The images are learned once they have been requested twice.
+        loadSubResources(page("/http2.html"));
+        page = page("/http2.html");
+        assertThat(page.earlyHints, hasSize(21));
+        assertThat(page.earlyHints.get(0), is("</style.css>; rel=preload; as=style"));
+        // The images were requested as many times, so they are ordered by path.
+        assertThat(page.earlyHints.get(1), is("</images/00.png>; rel=preload; as=image"));
+        assertThat(page.earlyHints.get(20), is("</images/34.png>; rel=preload; as=image"));
+        // The final response has the hints too.
+        assertThat(page.headers.get(HttpHeader.LINK), startsWith("</style.css>; rel=preload; as=style, </images/00.png>"));
+        loadSubResources(page);
+
+        LinkHints.PageStats stats = linkHints.getPageStats().get("/http2.html");
+        assertThat(stats.views(), is(3L));
+        assertThat(stats.hintsSent(), is(1L + 1 + 21));
+        assertThat(stats.subResources(), is(3L * 21));
+        // The style was hinted and requested 3 times, the images once.
+        assertThat(stats.hintsUsed(), is(3L + 20));
+        assertThat(stats.hitRate(), is(1.0));
+
+        Exchange report = GET("/early-hints", "text/plain", null).get(5, TimeUnit.SECONDS);
+        assertThat(report.content, startsWith("/http2.html views=3 hints=21 hintsSent=23 hintsUsed=23 subResources=63 hitRate=1.00 coverage=0.37"));
+    }
+
+    @Test
+    public void testNoHintsForSubResources() throws Exception
+    {
+        Exchange image = GET("/images/00.png", "image/png", null).get(5, TimeUnit.SECONDS);
+        assertThat(image.status, is(HttpStatus.OK_200));
+        assertThat(image.earlyHints, hasSize(0));
+        assertThat(image.headers.get(HttpHeader.LINK), nullValue());
+
+        // Sub-resources of unknown pages, or of other origins, are not learned.
+        GET("/images/00.png", "image/png", "http://localhost/unknown.html").get(5, TimeUnit.SECONDS);
+        GET("/images/00.png", "image/png", "http://example.com/http2.html").get(5, TimeUnit.SECONDS);
+        GET("/images/00.png", "image/png", "http://localhost:8443/http2.html").get(5, TimeUnit.SECONDS);
+        GET("/images/00.png", "image/png", "https://localhost/http2.html").get(5, TimeUnit.SECONDS);
+        awaitCompletions(5);
+        assertThat(linkHints.getPageStats().get("/unknown.html"), nullValue());
+        assertThat(linkHints.getPageStats().get("/http2.html").subResources(), is(0L));
+    }
+
+    @Test
+    public void testOnlyServedPagesAreLearned() throws Exception
+    {
+        Exchange missing = page("/missing.html");
+        assertThat(missing.status, is(HttpStatus.NOT_FOUND_404));
+        GET("/images/00.png", "image/png", "http://localhost/missing.html").get(5, TimeUnit.SECONDS);
+        awaitCompletions(1);
+        assertThat(linkHints.getPageStats().get("/missing.html"), nullValue());
+
+        Exchange page = page("/index.html");
+        assertThat(page.status, is(HttpStatus.OK_200));
+        assertThat(linkHints.getPageStats().get("/index.html").views(), is(1L));
+    }
+
+    @Test
+    public void testFailedSubResourcesAreNotLearned() throws Exception
+    {
+        page("/http2.html");
+        for (int i = 0; i < 2; i++)
+        {
+            Exchange missing = GET("/missing.png", "image/png", "http://localhost/http2.html").get(5, TimeUnit.SECONDS);
+            assertThat(missing.status, is(HttpStatus.NOT_FOUND_404));
+        }
+        awaitCompletions(2);
+        assertThat(linkHints.getPageStats().get("/http2.html").subResources(), is(0L));
+        assertThat(page("/http2.html").earlyHints, contains("</style.css>; rel=preload; as=style"));
+    }
+
+    @Test
+    public void testAsyncPages() throws Exception
+    {
+        // The status of an async page is only known once it completes.
+        Exchange missing = page("/async/missing.html");
+        assertThat(missing.status, is(HttpStatus.NOT_FOUND_404));
+        assertThat(linkHints.getPageStats().get("/async/missing.html"), nullValue());
+
+        Exchange page = page("/async/page.html");
+        assertThat(page.status, is(HttpStatus.OK_200));
+        assertThat(linkHints.getPageStats().get("/async/page.html").views(), is(1L));
+    }
+
+    @Test
+    public void testUnusedHintsAreUnlearned()
+    {
+        LinkHints hints = new LinkHints(2, 4, 8);
+        hints.onPageResponse("/page.html", HttpStatus.OK_200);
+        hints.onSubResource("/page.html", "/old.css");
+        hints.onSubResource("/page.html", "/old.css");
+        assertThat(hints.getHints("/page.html"), contains(LinkHints.Hint.of("/old.css")));
+
+        // The counts are halved every 4 * maxHints * minObservations requests.
+        for (int i = 0; i < 4 * 4 * 2; i++)
+        {
+            hints.onSubResource("/page.html", "/new.css");
+        }
+        assertThat(hints.getHints("/page.html"), contains(LinkHints.Hint.of("/new.css")));
+    }
+
+    @Test
+    public void testLeastRecentlyRequestedAreForgotten()
+    {
+        LinkHints hints = new LinkHints(2, 4, 8);
+        hints.onPageResponse("/page.html", HttpStatus.OK_200);
+        hints.onSubResource("/page.html", "/old.css");
+        hints.onSubResource("/page.html", "/old.css");
+
+        // Only the 4 * maxHints most recently requested sub-resources are counted.
+        for (int i = 0; i < 4 * 4; i++)
+        {
+            hints.onSubResource("/page.html", "/" + i + ".png");
+        }
+        assertThat(hints.getHints("/page.html"), hasSize(0));
+    }
+
+    private Exchange page(String path) throws Exception
+    {
+        Exchange page = GET(path, "text/html", null).get(5, TimeUnit.SECONDS);
+        awaitCompletions(1);
+        return page;
+    }
+
+    /**
+     * The client may receive a response before its request is learned, so wait for the server to complete the requests.
+     */
+    private void awaitCompletions(int requests) throws InterruptedException
+    {
+        assertTrue(completions.tryAcquire(requests, 5, TimeUnit.SECONDS));
+    }
+
+    private List<String> loadSubResources(Exchange page) throws Exception
+    {
+        List<String> paths = new ArrayList<>();
+        Matcher matcher = SUB_RESOURCE.matcher(page.content);
+        while (matcher.find())
+        {
+            paths.add("/" + matcher.group(1));
+        }
+        List<CompletableFuture<Exchange>> exchanges = new ArrayList<>();
+        for (String path : paths)
+        {
+            exchanges.add(GET(path, "*/*", "http://localhost" + page.path));
+        }
+        for (CompletableFuture<Exchange> exchange : exchanges)
+        {
+            assertThat(exchange.get(5, TimeUnit.SECONDS).status, is(HttpStatus.OK_200));
+        }
+        awaitCompletions(paths.size());
+        return paths;
+    }
+
+    private CompletableFuture<Exchange> GET(String path, String accept, String referer)
+    {
+        HttpFields.Mutable headers = HttpFields.build().put(HttpHeader.ACCEPT, accept);
+        if (referer != null)
+            headers.put(HttpHeader.REFERER, referer);
+        HttpURI uri = HttpURI.from(URI.create("http://localhost").resolve(path));
+        MetaData.Request request = new MetaData.Request("GET", uri, HttpVersion.HTTP_2, headers);
+        Exchange exchange = new Exchange(path);
+        session.newStream(new HeadersFrame(request, null, true), exchange);
+        return exchange.complete;
+    }
+
+    /**
+     * Counts the requests whose response is complete, after the {@link EarlyHintsFilter} has learned them.
+     */
+    private class CompletionFilter implements Filter
+    {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+        {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted())
+            {
+                // The listener of the EarlyHintsFilter was added before, so it is called before.
+                request.getAsyncContext().addListener(new AsyncListener()
+                {
+                    @Override
+                    public void onComplete(AsyncEvent event)
+                    {
+                        completions.release();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event)
+                    {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event)
+                    {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event)
+                    {
+                    }
+                });
+            }
+            else
+            {
+                completions.release();
+            }
+        }
+    }
+
+    /**
+     * Writes a page asynchronously, or a {@code 404} for the paths starting with {@code /missing}.
+     */
+    public static class AsyncPageServlet extends HttpServlet
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response)
+        {
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.start(() ->
+            {
+                try
+                {
+                    if (request.getPathInfo().startsWith("/missing"))
+                    {
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    }
+                    else
+                    {
+                        response.setContentType("text/html");
+                        response.getWriter().print("<html><body>async</body></html>");
+                    }
+                }
+                catch (IOException x)
+                {
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+                finally
+                {
+                    asyncContext.complete();
+                }
+            });
+        }
+    }
+
+    /**
+     * Collects the early hints, headers and content of a response.
+     */
+    private static class Exchange implements Stream.Listener
+    {
+        private final CompletableFuture<Exchange> complete = new CompletableFuture<>();
+        private final List<String> earlyHints = new ArrayList<>();
+        private final StringBuilder body = new StringBuilder();
+        private final String path;
+        private int status;
+        private HttpFields headers;
+        private String content;
+
+        private Exchange(String path)
+        {
+            this.path = path;
+        }
+
+        @Override
+        public void onHeaders(Stream stream, HeadersFrame frame)
+        {
+            MetaData.Response response = (MetaData.Response)frame.getMetaData();
+            if (response.getStatus() == HttpStatus.EARLY_HINTS_103)
+            {
+                earlyHints.addAll(List.of(response.getHttpFields().get(HttpHeader.LINK).split(", ")));
+                return;
+            }
+            status = response.getStatus();
+            headers = response.getHttpFields();
+            if (frame.isEndStream())
+                succeed();
+            else
+                stream.demand();
+        }
+
+        @Override
+        public void onDataAvailable(Stream stream)
+        {
+            Stream.Data data = stream.readData();
+            if (data == null)
+            {
+                stream.demand();
+                return;
+            }
+            body.append(BufferUtil.toString(data.frame().getByteBuffer(), StandardCharsets.ISO_8859_1));
+            data.release();
+            if (data.frame().isEndStream())
+                succeed();
+            else
+                stream.demand();
+        }
+
+        @Override
+        public void onFailure(Stream stream, int error, String reason, Throwable failure, Callback callback)
+        {
+            complete.completeExceptionally(failure);
+            callback.succeeded();
+        }
+
+        private void succeed()
+        {
+            content = body.toString();
+            complete.complete(this);
+        }
+    }
+}
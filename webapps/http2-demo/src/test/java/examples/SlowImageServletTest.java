@@ -0,0 +1,170 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.jetty.client.CompletableResponseListener;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.transport.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class SlowImageServletTest
+{
+    @TempDir
+    private Path webapp;
+    private Server server;
+    private HttpClient httpClient;
+
+    @AfterEach
+    public void stopAll()
+    {
+        LifeCycle.stop(httpClient);
+        LifeCycle.stop(server);
+    }
+
+    private void start(Map<String, String> initParams) throws Exception
+    {
+        // The images of the demo, plus a large one that does not fit in the HTTP/2 flow control window.
+        Path images = Files.createDirectories(webapp.resolve("images"));
+        try (Stream<Path> demoImages = Files.list(Path.of("src/main/webapp/images")))
+        {
+            for (Path image : demoImages.toList())
+            {
+                Files.copy(image, images.resolve(image.getFileName()));
+            }
+        }
+        byte[] large = new byte[4 * 1024 * 1024];
+        new Random().nextBytes(large);
+        Files.write(images.resolve("large.png"), large);
+
+        server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(server, new HTTP2CServerConnectionFactory(httpConfig));
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler("/");
+        context.setBaseResourceAsPath(webapp);
+        ServletHolder holder = new ServletHolder(SlowImageServlet.class);
+        holder.setInitParameters(initParams);
+        holder.setAsyncSupported(true);
+        context.addServlet(holder, "/images/*");
+        server.setHandler(context);
+        server.start();
+
+        httpClient = new HttpClient(new HttpClientTransportOverHTTP2(new HTTP2Client()));
+        httpClient.addBean(new ConnectionStatistics());
+        httpClient.start();
+    }
+
+    private CompletableFuture<ContentResponse> GET(String path)
+    {
+        return new CompletableResponseListener(httpClient.newRequest(server.getURI().resolve(path)), 8 * 1024 * 1024).send();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testImagesMultiplexed(boolean async) throws Exception
+    {
+        start(Map.of("async", String.valueOf(async), "bufferSize", "1024"));
+
+        List<Path> images;
+        try (Stream<Path> list = Files.list(webapp.resolve("images")))
+        {
+            images = list.sorted().toList();
+        }
+        // Open the connection, so that the images are sent once the server's max concurrent streams is known.
+        assertThat(GET("/images/00.png").get(5, TimeUnit.SECONDS).getStatus(), is(HttpStatus.OK_200));
+        List<CompletableFuture<ContentResponse>> responses = new ArrayList<>();
+        for (Path image : images)
+        {
+            responses.add(GET("/images/" + image.getFileName()));
+        }
+
+        for (int i = 0; i < images.size(); i++)
+        {
+            ContentResponse response = responses.get(i).get(10, TimeUnit.SECONDS);
+            assertThat(response.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response.getMediaType(), is("image/png"));
+            byte[] image = Files.readAllBytes(images.get(i));
+            assertThat(response.getHeaders().getLongField(HttpHeader.CONTENT_LENGTH), is((long)image.length));
+            assertArrayEquals(image, response.getContent());
+        }
+        // All the images were multiplexed over a single connection.
+        assertThat(httpClient.getBean(ConnectionStatistics.class).getConnectionsTotal(), is(1L));
+    }
+
+    @Test
+    public void testNotFound() throws Exception
+    {
+        start(Map.of());
+        assertThat(GET("/images/missing.png").get(5, TimeUnit.SECONDS).getStatus(), is(HttpStatus.NOT_FOUND_404));
+    }
+
+    @Test
+    public void testConditionalRequest() throws Exception
+    {
+        start(Map.of());
+        ContentResponse response = GET("/images/00.png").get(5, TimeUnit.SECONDS);
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertThat(response.getHeaders().get(HttpHeader.CACHE_CONTROL), nullValue());
+        String lastModified = response.getHeaders().get(HttpHeader.LAST_MODIFIED);
+        assertThat(lastModified, notNullValue());
+
+        response = httpClient.newRequest(server.getURI().resolve("/images/00.png"))
+            .headers(headers -> headers.put(HttpHeader.IF_MODIFIED_SINCE, lastModified))
+            .send();
+        assertThat(response.getStatus(), is(HttpStatus.NOT_MODIFIED_304));
+    }
+
+    @Test
+    public void testCacheControl() throws Exception
+    {
+        start(Map.of("cacheControl", "no-store"));
+        ContentResponse response = GET("/images/00.png").get(5, TimeUnit.SECONDS);
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertThat(response.getHeaders().get(HttpHeader.CACHE_CONTROL), is("no-store"));
+        assertThat(response.getHeaders().get(HttpHeader.LAST_MODIFIED), nullValue());
+    }
+}
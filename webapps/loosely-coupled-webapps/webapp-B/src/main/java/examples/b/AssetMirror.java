@@ -0,0 +1,261 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.b;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.client.CompletableResponseListener;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Mirrors an asset served by another webapp, with the Jetty {@link HttpClient}.
+ * <p>
+ * The asset is fetched asynchronously when the mirror starts, so that starting does not
+ * depend on the other webapp being deployed, and then refreshed in the background every
+ * {@link #getRefreshPeriod() refresh period} with a conditional GET.
+ * Until a refresh completes, the current {@link MirroredAsset} keeps being served,
+ * and when a refresh fails the stale asset is kept and the refresh is tried again later.
+ * While the asset has never been fetched, fetches are retried every second at most.
+ * </p>
+ */
+public class AssetMirror extends ContainerLifeCycle
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AssetMirror.class);
+
+    private final AtomicReference<MirroredAsset> _asset = new AtomicReference<>();
+    private final LongAdder _fetches = new LongAdder();
+    private final LongAdder _updates = new LongAdder();
+    private final LongAdder _notModified = new LongAdder();
+    private final LongAdder _failures = new LongAdder();
+    private final HttpClient _httpClient;
+    private final URI _uri;
+    private long _refreshPeriod = TimeUnit.MINUTES.toMillis(1);
+    private long _timeout = TimeUnit.SECONDS.toMillis(5);
+    private int _maxAssetSize = 1024 * 1024;
+    private volatile Scheduler.Task _refresh;
+
+    /**
+     * @param httpClient the client used to fetch the asset, managed by this mirror
+     * @param uri the URI of the asset to mirror
+     */
+    public AssetMirror(HttpClient httpClient, URI uri)
+    {
+        _httpClient = httpClient;
+        _uri = uri;
+        addBean(httpClient);
+    }
+
+    public URI getURI()
+    {
+        return _uri;
+    }
+
+    public long getRefreshPeriod()
+    {
+        return _refreshPeriod;
+    }
+
+    /**
+     * @param refreshPeriod the period between refreshes of the asset, in milliseconds
+     */
+    public void setRefreshPeriod(long refreshPeriod)
+    {
+        _refreshPeriod = refreshPeriod;
+    }
+
+    public long getTimeout()
+    {
+        return _timeout;
+    }
+
+    /**
+     * @param timeout the total timeout of a fetch of the asset, in milliseconds
+     */
+    public void setTimeout(long timeout)
+    {
+        _timeout = timeout;
+    }
+
+    public int getMaxAssetSize()
+    {
+        return _maxAssetSize;
+    }
+
+    /**
+     * @param maxAssetSize the maximum size of the asset, larger assets fail the fetch
+     */
+    public void setMaxAssetSize(int maxAssetSize)
+    {
+        _maxAssetSize = maxAssetSize;
+    }
+
+    /**
+     * @return the current snapshot of the asset, or null if it has not been fetched yet
+     */
+    public MirroredAsset getAsset()
+    {
+        return _asset.get();
+    }
+
+    /**
+     * @return the number of fetches of the asset, conditional or not
+     */
+    public long getFetches()
+    {
+        return _fetches.sum();
+    }
+
+    /**
+     * @return the number of fetches that changed the asset
+     */
+    public long getUpdates()
+    {
+        return _updates.sum();
+    }
+
+    /**
+     * @return the number of fetches that found the asset unchanged
+     */
+    public long getNotModified()
+    {
+        return _notModified.sum();
+    }
+
+    /**
+     * @return the number of failed fetches
+     */
+    public long getFailures()
+    {
+        return _failures.sum();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        refresh();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Scheduler.Task refresh = _refresh;
+        if (refresh != null)
+            refresh.cancel();
+        super.doStop();
+    }
+
+    /**
+     * Fetches the asset now, conditionally if it has already been fetched,
+     * and schedules the next refresh when the fetch completes.
+     */
+    public void refresh()
+    {
+        if (!isRunning())
+            return;
+
+        MirroredAsset current = _asset.get();
+        Request request = _httpClient.newRequest(_uri)
+            .timeout(_timeout, TimeUnit.MILLISECONDS);
+        if (current != null && current.originEtag() != null)
+            request.headers(headers -> headers.put(HttpHeader.IF_NONE_MATCH, current.originEtag()));
+        _fetches.increment();
+        new CompletableResponseListener(request, _maxAssetSize).send()
+            .whenComplete((response, failure) ->
+            {
+                try
+                {
+                    if (failure == null)
+                        onResponse(current, response);
+                    else
+                        onFailure(failure);
+                }
+                finally
+                {
+                    schedule();
+                }
+            });
+    }
+
+    private void onResponse(MirroredAsset current, ContentResponse response)
+    {
+        int status = response.getStatus();
+        if (status == HttpStatus.NOT_MODIFIED_304 && current != null)
+        {
+            _notModified.increment();
+            return;
+        }
+        if (status != HttpStatus.OK_200)
+        {
+            onFailure(new IllegalStateException("Response code [" + status + "] on GET of " + _uri));
+            return;
+        }
+
+        byte[] content = response.getContent();
+        String originEtag = response.getHeaders().get(HttpHeader.ETAG);
+        if (current != null && current.hasContent(content))
+        {
+            // The origin does not support conditional requests, or it changed its ETag only,
+            // in which case the next revalidation must use the new one.
+            _notModified.increment();
+            if (!Objects.equals(originEtag, current.originEtag()))
+                _asset.set(current.withOriginEtag(originEtag));
+            return;
+        }
+
+        long lastModified = response.getHeaders().getDateField(HttpHeader.LAST_MODIFIED);
+        if (lastModified < 0)
+            lastModified = System.currentTimeMillis();
+        _asset.set(MirroredAsset.of(content, lastModified, originEtag));
+        _updates.increment();
+        LOG.info("GET of {} complete: size {}", _uri, content.length);
+    }
+
+    private void onFailure(Throwable failure)
+    {
+        _failures.increment();
+        if (_asset.get() == null)
+            LOG.warn("Unable to get {}, retrying: {}", _uri, failure.toString());
+        else
+            LOG.warn("Unable to refresh {}, serving the stale asset: {}", _uri, failure.toString());
+        LOG.debug("Fetch failure", failure);
+    }
+
+    private void schedule()
+    {
+        if (!isRunning())
+            return;
+        long delay = _asset.get() == null ? Math.min(_refreshPeriod, 1000) : _refreshPeriod;
+        _refresh = _httpClient.getScheduler().schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[%s,fetches=%d,updates=%d,notModified=%d,failures=%d]".formatted(getClass().getSimpleName(), hashCode(), _uri, getFetches(), getUpdates(), getNotModified(), getFailures());
+    }
+}
@@ -11,27 +11,40 @@
 // ========================================================================
 //
 
+
 package examples.b;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.concurrent.TimeUnit;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.component.LifeCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Serves the {@code main.css} of WebApp A, mirrored by an {@link AssetMirror}.
+ * <p>
+ * The CSS is fetched in the background, so this servlet initializes even when WebApp A is not
+ * deployed yet, and answers {@code 503} until the first fetch completes.
+ * The mirror is refreshed every {@code refreshPeriodMs} milliseconds, and browsers are told to
+ * cache the CSS for that long and to use a stale copy while they revalidate it.
+ * Requests are answered from a precomputed snapshot: {@code If-None-Match} and
+ * {@code If-Modified-Since} are answered with a {@code 304} without touching the content,
+ * and clients that accept gzip get the precompressed variant.
+ * </p>
+ */
 public class CssServlet extends HttpServlet
 {
     private static final Logger LOG = LoggerFactory.getLogger(CssServlet.class);
 
-    private byte[] rawCss;
+    private AssetMirror mirror;
+    private String cacheControl;
 
     @Override
     public void init() throws ServletException
@@ -44,38 +57,106 @@ public class CssServlet extends HttpServlet
         URI uriCss = URI.create(cssURLRoot).resolve("main.css");
         LOG.debug("uriCss is {}", uriCss);
 
-        // Fetch CSS details from WebApp A
+        mirror = new AssetMirror(new HttpClient(), uriCss);
+        String refreshPeriod = getInitParameter("refreshPeriodMs");
+        if (refreshPeriod != null)
+            mirror.setRefreshPeriod(Long.parseLong(refreshPeriod));
+        long maxAge = TimeUnit.MILLISECONDS.toSeconds(mirror.getRefreshPeriod());
+        cacheControl = "max-age=" + maxAge + ", stale-while-revalidate=" + maxAge;
+
+        // Starting the mirror does not wait for the CSS to be fetched from WebApp A.
         try
         {
-            HttpURLConnection http = (HttpURLConnection)uriCss.toURL().openConnection();
-            http.setConnectTimeout(2000);
-            if (http.getResponseCode() != 200)
-                throw new ServletException("Error: Response code [" + http.getResponseCode() + "] on GET of " + uriCss);
-            try (InputStream stream = http.getInputStream();
-                 ByteArrayOutputStream out = new ByteArrayOutputStream())
-            {
-                byte[] buf = new byte[8096];
-                int len;
-                while ((len = stream.read(buf)) != -1)
-                {
-                    out.write(buf, 0, len);
-                }
-                rawCss = out.toByteArray();
-            }
-            LOG.info("GET of rawCss from {} complete: size {}", uriCss, rawCss.length);
+            mirror.start();
         }
-        catch (IOException e)
+        catch (Exception e)
         {
-            throw new ServletException("Unable to get css: " + uriCss, e);
+            throw new ServletException("Unable to mirror css: " + uriCss, e);
         }
     }
 
+    @Override
+    public void destroy()
+    {
+        LifeCycle.stop(mirror);
+    }
+
+    /**
+     * @return the mirror of the CSS served by this servlet
+     */
+    public AssetMirror getMirror()
+    {
+        return mirror;
+    }
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
     {
+        MirroredAsset css = mirror.getAsset();
+        if (css == null)
+        {
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "CSS not mirrored yet");
+            return;
+        }
+
+        boolean gzip = css.gzipContent() != null && acceptsGzip(req.getHeader("Accept-Encoding"));
+        String etag = gzip ? css.gzipEtag() : css.etag();
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", css.lastModified());
+        resp.setHeader("Cache-Control", cacheControl);
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (isNotModified(req, etag, css.lastModified()))
+        {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] content = gzip ? css.gzipContent() : css.content();
+        if (gzip)
+            resp.setHeader("Content-Encoding", "gzip");
         resp.setContentType("text/css");
         resp.setCharacterEncoding("utf-8");
-        OutputStream out = resp.getOutputStream();
-        out.write(rawCss);
+        resp.setContentLength(content.length);
+        resp.getOutputStream().write(content);
+    }
+
+    private static boolean isNotModified(HttpServletRequest req, String etag, long lastModified)
+    {
+        // If-Modified-Since is ignored when If-None-Match is present, see RFC 9110 section 13.1.3.
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null)
+        {
+            for (String tag : ifNoneMatch.split(","))
+            {
+                tag = tag.trim();
+                // If-None-Match uses the weak comparison.
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag))
+                    return true;
+            }
+            return false;
+        }
+        long ifModifiedSince = req.getDateHeader("If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null)
+            return false;
+        for (String coding : acceptEncoding.split(","))
+        {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*"))
+                continue;
+            for (int i = 1; i < parts.length; i++)
+            {
+                if (parts[i].trim().matches("[qQ]=0(\\.0{0,3})?"))
+                    return false;
+            }
+            return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,97 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.b;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An immutable snapshot of an asset mirrored by an {@link AssetMirror}, with everything needed
+ * to serve it precomputed: its strong ETag, and its gzip variant with its own ETag.
+ *
+ * @param content the bytes of the asset
+ * @param etag the strong ETag of the content, derived from its SHA-256 digest
+ * @param gzipContent the gzip'ed bytes of the asset, or null if they are not smaller than the content
+ * @param gzipEtag the strong ETag of the gzip variant
+ * @param lastModified the time the asset last changed, in milliseconds since the epoch
+ * @param originEtag the ETag of the asset at the origin, to revalidate the mirror, or null
+ */
+public record MirroredAsset(byte[] content, String etag, byte[] gzipContent, String gzipEtag, long lastModified, String originEtag)
+{
+    /**
+     * @param content the bytes of the asset
+     * @param lastModified the time the asset last changed, in milliseconds since the epoch
+     * @param originEtag the ETag of the asset at the origin, or null
+     * @return a new snapshot of the asset
+     */
+    public static MirroredAsset of(byte[] content, long lastModified, String originEtag)
+    {
+        String digest = digest(content);
+        byte[] gzipContent = gzip(content);
+        if (gzipContent.length >= content.length)
+            gzipContent = null;
+        return new MirroredAsset(content, "\"" + digest + "\"", gzipContent, "\"" + digest + "-gzip\"", lastModified, originEtag);
+    }
+
+    /**
+     * @param originEtag the new ETag of the asset at the origin, or null
+     * @return a snapshot of the same content, revalidated with the given ETag
+     */
+    public MirroredAsset withOriginEtag(String originEtag)
+    {
+        return new MirroredAsset(content, etag, gzipContent, gzipEtag, lastModified, originEtag);
+    }
+
+    /**
+     * @param content the bytes of an asset
+     * @return whether the bytes are the ones of this snapshot
+     */
+    public boolean hasContent(byte[] content)
+    {
+        return etag.equals("\"" + digest(content) + "\"");
+    }
+
+    private static String digest(byte[] content)
+    {
+        try
+        {
+            byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(content);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sha256);
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    private static byte[] gzip(byte[] content)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+        {
+            gzip.write(content);
+        }
+        catch (IOException x)
+        {
+            throw new UncheckedIOException(x);
+        }
+        return out.toByteArray();
+    }
+}
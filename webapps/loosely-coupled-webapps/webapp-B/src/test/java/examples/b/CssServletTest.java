@@ -0,0 +1,283 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package examples.b;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CssServletTest
+{
+    private static final String CSS = "body { color: black; }\n".repeat(50);
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private Server server;
+    private ContextHandlerCollection contexts;
+    private CssOrigin origin;
+    private CssServlet cssServlet;
+
+    @BeforeEach
+    public void startServer() throws Exception
+    {
+        server = new Server(0);
+        contexts = new ContextHandlerCollection();
+        server.setHandler(contexts);
+
+        // Stands in for the css directory of WebApp A.
+        origin = new CssOrigin();
+        contexts.addHandler(new ContextHandler(origin, "/appA"));
+
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer()
+    {
+        LifeCycle.stop(server);
+    }
+
+    private void startWebAppB(long refreshPeriod) throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler("/appB");
+        ServletHolder holder = new ServletHolder(CssServlet.class);
+        holder.setInitParameter("cssURLRoot", server.getURI().resolve("/appA/css/").toString());
+        holder.setInitParameter("refreshPeriodMs", String.valueOf(refreshPeriod));
+        holder.setInitOrder(1);
+        context.addServlet(holder, "/dyncss/*");
+        contexts.addHandler(context);
+        if (!context.isStarted())
+            context.start();
+        cssServlet = (CssServlet)holder.getServlet();
+    }
+
+    private HttpResponse<byte[]> GET(String... headers) throws IOException, InterruptedException
+    {
+        HttpRequest.Builder request = HttpRequest.newBuilder(server.getURI().resolve("/appB/dyncss/main.css")).GET();
+        if (headers.length > 0)
+            request.headers(headers);
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean())
+        {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void testStartsBeforeWebAppA() throws Exception
+    {
+        origin.css = null;
+        startWebAppB(TimeUnit.MINUTES.toMillis(1));
+
+        // WebApp B is started, but cannot serve the CSS yet.
+        HttpResponse<byte[]> response = GET();
+        assertThat(response.statusCode(), is(HttpStatus.SERVICE_UNAVAILABLE_503));
+        assertThat(response.headers().firstValue("Retry-After").orElse(null), is("1"));
+
+        // Once WebApp A is deployed, the fetch is retried.
+        origin.css = CSS;
+        await(() -> cssServlet.getMirror().getAsset() != null);
+        response = GET();
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+        assertThat(new String(response.body(), StandardCharsets.UTF_8), is(CSS));
+        assertThat(cssServlet.getMirror().getFailures(), greaterThan(0L));
+    }
+
+    @Test
+    public void testConditionalRequests() throws Exception
+    {
+        startWebAppB(TimeUnit.MINUTES.toMillis(1));
+        await(() -> cssServlet.getMirror().getAsset() != null);
+
+        HttpResponse<byte[]> response = GET();
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+        assertThat(new String(response.body(), StandardCharsets.UTF_8), is(CSS));
+        assertThat(response.headers().firstValue("Content-Type").orElse(null), is("text/css;charset=utf-8"));
+        assertThat(response.headers().firstValue("Cache-Control").orElse(null), is("max-age=60, stale-while-revalidate=60"));
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        assertThat(etag, notNullValue());
+        assertTrue(etag.startsWith("\""));
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        assertThat(lastModified, notNullValue());
+
+        response = GET("If-None-Match", "\"other\", " + etag);
+        assertThat(response.statusCode(), is(HttpStatus.NOT_MODIFIED_304));
+        assertThat(response.body().length, is(0));
+        assertThat(response.headers().firstValue("ETag").orElse(null), is(etag));
+
+        response = GET("If-None-Match", "W/" + etag);
+        assertThat(response.statusCode(), is(HttpStatus.NOT_MODIFIED_304));
+
+        response = GET("If-Modified-Since", lastModified);
+        assertThat(response.statusCode(), is(HttpStatus.NOT_MODIFIED_304));
+
+        // If-Modified-Since is ignored when If-None-Match is present.
+        response = GET("If-None-Match", "\"other\"", "If-Modified-Since", lastModified);
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+
+        // Conditional requests are answered without fetching WebApp A again.
+        assertThat(origin.requests.get(), is(1));
+    }
+
+    @Test
+    public void testGzipVariant() throws Exception
+    {
+        startWebAppB(TimeUnit.MINUTES.toMillis(1));
+        await(() -> cssServlet.getMirror().getAsset() != null);
+
+        HttpResponse<byte[]> identity = GET();
+        HttpResponse<byte[]> response = GET("Accept-Encoding", "br, gzip;q=0.8");
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+        assertThat(response.headers().firstValue("Content-Encoding").orElse(null), is("gzip"));
+        assertThat(response.headers().firstValue("Vary").orElse(null), is("Accept-Encoding"));
+        assertThat(response.body().length, is(Integer.parseInt(response.headers().firstValue("Content-Length").orElseThrow())));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(response.body())))
+        {
+            assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8), is(CSS));
+        }
+        String gzipEtag = response.headers().firstValue("ETag").orElse(null);
+        assertThat(gzipEtag, not(identity.headers().firstValue("ETag").orElse(null)));
+
+        response = GET("Accept-Encoding", "gzip", "If-None-Match", gzipEtag);
+        assertThat(response.statusCode(), is(HttpStatus.NOT_MODIFIED_304));
+
+        response = GET("Accept-Encoding", "gzip;q=0, deflate");
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+        assertThat(response.headers().firstValue("Content-Encoding").orElse(null), nullValue());
+        assertThat(new String(response.body(), StandardCharsets.UTF_8), is(CSS));
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception
+    {
+        startWebAppB(100);
+        AssetMirror mirror = cssServlet.getMirror();
+        await(() -> mirror.getNotModified() > 0);
+        String etag = GET().headers().firstValue("ETag").orElseThrow();
+        assertThat(mirror.getUpdates(), is(1L));
+
+        // The stale CSS is served while WebApp A is unavailable.
+        origin.css = null;
+        long failures = mirror.getFailures();
+        await(() -> mirror.getFailures() > failures);
+        HttpResponse<byte[]> response = GET();
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+        assertThat(new String(response.body(), StandardCharsets.UTF_8), is(CSS));
+
+        String css = CSS + "h1 { color: red; }\n";
+        origin.css = css;
+        await(() -> mirror.getUpdates() == 2);
+        response = GET("If-None-Match", etag);
+        assertThat(response.statusCode(), is(HttpStatus.OK_200));
+        assertThat(new String(response.body(), StandardCharsets.UTF_8), is(css));
+        assertThat(response.headers().firstValue("ETag").orElseThrow(), not(etag));
+    }
+
+    @Test
+    public void testOriginEtagChange() throws Exception
+    {
+        startWebAppB(100);
+        AssetMirror mirror = cssServlet.getMirror();
+        await(() -> mirror.getNotModified() > 0);
+        String etag = GET().headers().firstValue("ETag").orElseThrow();
+
+        // The content is the same, only the ETag of the origin changes,
+        // so the mirror revalidates with the new ETag from now on.
+        origin.etagPrefix = "w";
+        String originEtag = "\"w" + CSS.length() + "\"";
+        await(() -> originEtag.equals(origin.ifNoneMatch));
+        assertThat(mirror.getUpdates(), is(1L));
+        assertThat(GET().headers().firstValue("ETag").orElseThrow(), is(etag));
+    }
+
+    /**
+     * Serves {@code css/main.css} with a version ETag, and answers conditional GETs,
+     * or answers {@code 503} when the CSS is null.
+     */
+    private static class CssOrigin extends Handler.Abstract
+    {
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile String css = CSS;
+        private volatile String etagPrefix = "v";
+        private volatile String ifNoneMatch;
+
+        @Override
+        public boolean handle(Request request, Response response, Callback callback)
+        {
+            requests.incrementAndGet();
+            String css = this.css;
+            if (css == null)
+            {
+                Response.writeError(request, response, callback, HttpStatus.SERVICE_UNAVAILABLE_503);
+                return true;
+            }
+            if (!Request.getPathInContext(request).equals("/css/main.css"))
+            {
+                Response.writeError(request, response, callback, HttpStatus.NOT_FOUND_404);
+                return true;
+            }
+            String etag = "\"" + etagPrefix + css.length() + "\"";
+            response.getHeaders().put(HttpHeader.ETAG, etag);
+            ifNoneMatch = request.getHeaders().get(HttpHeader.IF_NONE_MATCH);
+            if (etag.equals(ifNoneMatch))
+            {
+                response.setStatus(HttpStatus.NOT_MODIFIED_304);
+                callback.succeeded();
+                return true;
+            }
+            response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/css;charset=utf-8");
+            response.write(true, ByteBuffer.wrap(css.getBytes(StandardCharsets.UTF_8)), callback);
+            return true;
+        }
+    }
+}